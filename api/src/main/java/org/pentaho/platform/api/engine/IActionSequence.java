@@ -71,4 +71,14 @@ public interface IActionSequence extends ISequenceDefinition {
    *          The ConditionalExecution object
    */
   public void setConditionalExecution( IConditionalExecution value );
+
+  /**
+   * Returns the revision of the repository file the sequence was parsed from, so that what is worked out from the
+   * definition of a sequence can be reused for later parses of the same revision.
+   * 
+   * @return the revision, or null if the sequence was not parsed from a repository file
+   */
+  default String getRevision() {
+    return null;
+  }
 }
@@ -22,7 +22,10 @@ package org.pentaho.platform.api.engine.security.userroledao;
 
 import org.pentaho.platform.api.mt.ITenant;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Contract for data access objects that read and write users and roles.
@@ -247,4 +250,46 @@ public interface IUserRoleDao {
    * @throws UncategorizedUserRoleDaoException
    */
   List<IPentahoRole> getUserRoles( ITenant tenant, String userName ) throws UncategorizedUserRoleDaoException;
+
+  /**
+   * Retrieves the names of the roles of every user in a given tenant. This is a batch operation provided for
+   * administration UIs; implementations should answer it without a repository round trip per user. If the tenant
+   * is null, then it will get the memberships of the default tenant
+   * 
+   * @param tenant
+   * @return map of user name to role names, sorted by user name
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default Map<String, List<String>> getUserRoleNames( ITenant tenant ) throws UncategorizedUserRoleDaoException {
+    Map<String, List<String>> userRoleNames = new TreeMap<String, List<String>>();
+    for ( IPentahoUser user : getUsers( tenant ) ) {
+      List<String> roleNames = new ArrayList<String>();
+      for ( IPentahoRole role : getUserRoles( tenant, user.getUsername() ) ) {
+        roleNames.add( role.getName() );
+      }
+      userRoleNames.put( user.getUsername(), roleNames );
+    }
+    return userRoleNames;
+  }
+
+  /**
+   * Retrieves the names of the members of every role in a given tenant. This is a batch operation provided for
+   * administration UIs; implementations should answer it without a repository round trip per role. If the tenant
+   * is null, then it will get the memberships of the default tenant
+   * 
+   * @param tenant
+   * @return map of role name to member user names, sorted by role name
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default Map<String, List<String>> getRoleMemberNames( ITenant tenant ) throws UncategorizedUserRoleDaoException {
+    Map<String, List<String>> roleMemberNames = new TreeMap<String, List<String>>();
+    for ( IPentahoRole role : getRoles( tenant ) ) {
+      List<String> userNames = new ArrayList<String>();
+      for ( IPentahoUser user : getRoleMembers( tenant, role.getName() ) ) {
+        userNames.add( user.getUsername() );
+      }
+      roleMemberNames.put( role.getName(), userNames );
+    }
+    return roleMemberNames;
+  }
 }
@@ -20,7 +20,9 @@
 
 package org.pentaho.platform.api.repository2.unified;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * <p>The interface for operations over ACL nodes.</p>
@@ -44,6 +46,22 @@ public interface IAclNodeHelper {
    */
   boolean canAccess( RepositoryFile repositoryFile, EnumSet<RepositoryFilePermission> permissions );
 
+  /**
+   * Same as {@link #canAccess(RepositoryFile, EnumSet)} for several files at once.
+   *
+   * @param repositoryFiles files for which to check access by ACL node
+   * @param permissions EnumSet of permissions to check against each of the files
+   * @return one decision for every file provided, in the same order
+   */
+  default List<Boolean> canAccessInBatch( List<RepositoryFile> repositoryFiles,
+                                          EnumSet<RepositoryFilePermission> permissions ) {
+    List<Boolean> decisions = new ArrayList<Boolean>( repositoryFiles.size() );
+    for ( RepositoryFile repositoryFile : repositoryFiles ) {
+      decisions.add( canAccess( repositoryFile, permissions ) );
+    }
+    return decisions;
+  }
+
 
   /**
    * Returns an ACL for <code>repositoryFile</code>. If none exists, <code>null</code> is returned. <b>Note:</b> this
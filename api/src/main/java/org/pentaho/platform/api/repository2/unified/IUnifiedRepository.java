@@ -21,6 +21,10 @@
 package org.pentaho.platform.api.repository2.unified;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -421,6 +425,29 @@ public interface IUnifiedRepository {
    */
   void deleteFile( final Serializable fileId, final String versionMessage );
 
+  /**
+   * Permanently deletes files, e.g. to empty a trash. Implementations may remove the files in batches and skip files
+   * that cannot be deleted, such as files that are still referenced.
+   * 
+   * @param fileIds
+   *          ids of the files to delete
+   * @param versionMessage
+   *          optional version comment to be applied to parent folders
+   * @return number of files deleted
+   */
+  default int permanentlyDeleteFiles( final List<Serializable> fileIds, final String versionMessage ) {
+    int deleted = 0;
+    for ( Serializable fileId : fileIds ) {
+      try {
+        deleteFile( fileId, true, versionMessage );
+        deleted++;
+      } catch ( RuntimeException e ) {
+        // skip the file and delete the others
+      }
+    }
+    return deleted;
+  }
+
   /**
    * Moves and/or renames file. Folders are recursive. Throws exception on collision (merging does not occur).
    * 
@@ -495,6 +522,61 @@ public interface IUnifiedRepository {
   default List<RepositoryFile> getAllDeletedFiles() {
     return getDeletedFiles();
   }
+
+  /**
+   * Gets one page of deleted files, most recently deleted first.
+   * 
+   * @param owner
+   *          user whose deleted files to list, or {@code null} for the deleted files of all users; only administrators
+   *          may list deleted files of other users
+   * @param origParentFolderPath
+   *          if not {@code null}, only files deleted from this folder or one of its descendants
+   * @param deletedBefore
+   *          if not {@code null}, only files deleted before this date
+   * @param offset
+   *          number of matching files to skip
+   * @param limit
+   *          maximum number of files to return, {@code 0} for no limit
+   * @return list of deleted files
+   */
+  default List<RepositoryFile> getDeletedFiles( final String owner, final String origParentFolderPath,
+      final Date deletedBefore, final int offset, final int limit ) {
+    List<RepositoryFile> matching = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile file : getAllDeletedFiles() ) {
+      String path = file.getOriginalParentFolderPath();
+      if ( ( owner == null || owner.equals( getDeletedBy( file ) ) )
+          && ( origParentFolderPath == null || origParentFolderPath.equals( path ) || ( path != null && path
+              .startsWith( origParentFolderPath + RepositoryFile.SEPARATOR ) ) )
+          && ( deletedBefore == null || ( file.getDeletedDate() != null && file.getDeletedDate().before(
+              deletedBefore ) ) ) ) {
+        matching.add( file );
+      }
+    }
+    Collections.sort( matching, new Comparator<RepositoryFile>() {
+      @Override
+      public int compare( final RepositoryFile o1, final RepositoryFile o2 ) {
+        long d1 = o1.getDeletedDate() != null ? o1.getDeletedDate().getTime() : 0;
+        long d2 = o2.getDeletedDate() != null ? o2.getDeletedDate().getTime() : 0;
+        return Long.compare( d2, d1 );
+      }
+    } );
+    int from = Math.min( Math.max( offset, 0 ), matching.size() );
+    int to = limit > 0 ? Math.min( from + limit, matching.size() ) : matching.size();
+    return new ArrayList<RepositoryFile>( matching.subList( from, to ) );
+  }
+
+  /**
+   * Returns the user who deleted a file listed by {@link #getAllDeletedFiles()}. A deleted file sits in the trash of
+   * the user who deleted it, and trash listings report the owner of that trash, not the user who created the file,
+   * as its creator id.
+   * 
+   * @param deletedFile
+   *          a deleted file
+   * @return the user who deleted the file, or {@code null} if not known
+   */
+  default String getDeletedBy( final RepositoryFile deletedFile ) {
+    return deletedFile.getCreatorId();
+  }
   // ~ Lock methods
   // ====================================================================================================
 
@@ -525,6 +607,36 @@ public interface IUnifiedRepository {
    */
   void unlockFile( final Serializable fileId );
 
+  /**
+   * Unlocks files, e.g. the files left locked by a job that failed. Files that are not locked, or that the current
+   * user cannot unlock, are skipped.
+   * 
+   * @param fileIds
+   *          ids of the files to unlock
+   * @return number of files unlocked
+   */
+  default int unlockFiles( final List<Serializable> fileIds ) {
+    int unlocked = 0;
+    for ( Serializable fileId : fileIds ) {
+      RepositoryFile file = getFileById( fileId );
+      if ( file != null && file.isLocked() && canUnlockFile( fileId ) ) {
+        unlockFile( fileId );
+        unlocked++;
+      }
+    }
+    return unlocked;
+  }
+
+  /**
+   * Lists the locked files whose locks are visible to the current user: the files the user locked, or all locked
+   * files when the user is an administrator.
+   * 
+   * @return list of locked files, empty if the repository cannot list locks without walking the whole tree
+   */
+  default List<RepositoryFile> getLockedFiles() {
+    return Collections.emptyList();
+  }
+
   // ~ Access read/write methods
   // =======================================================================================
 
@@ -674,6 +786,21 @@ public interface IUnifiedRepository {
    */
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  /**
+   * Gets the metadata of every file provided in one call, which implementations may serve from a single session.
+   *
+   * @param files
+   *          Repository files to fetch metadata for. Only {@link RepositoryFile#getId()} is used.
+   * @return metadata for every file provided, in the same order
+   */
+  default List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+    for ( RepositoryFile file : files ) {
+      metadata.add( getFileMetadata( file.getId() ) );
+    }
+    return metadata;
+  }
+
   /**
    * Returns a list of characters which cannot be used in file/folder names. These characters must be escaped using
    * percent-encoding. Callers may safely cache this value. Note that it is the responsibility of the
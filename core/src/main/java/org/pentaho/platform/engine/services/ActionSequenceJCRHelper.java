@@ -90,13 +90,14 @@ public class ActionSequenceJCRHelper {
 
   public IActionSequence getActionSequence( String actionPath, int loggingLevel,
       RepositoryFilePermission actionOperation ) {
-    Document actionSequenceDocument = getSolutionDocument( actionPath, actionOperation );
+    RepositoryFile file = repository.getFile( actionPath );
+    Document actionSequenceDocument = getSolutionDocument( file, actionPath );
     if ( actionSequenceDocument == null ) {
       return null;
     }
     IActionSequence actionSequence =
-        SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, actionPath, pentahoSession, PentahoSystem
-            .getApplicationContext(), loggingLevel );
+        SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, actionPath, getRevision( file ),
+            pentahoSession, PentahoSystem.getApplicationContext(), loggingLevel );
     if ( actionSequence == null ) {
       return null;
     }
@@ -105,8 +106,22 @@ public class ActionSequenceJCRHelper {
   }
 
   public Document getSolutionDocument( final String documentPath, final RepositoryFilePermission actionOperation ) {
+    return getSolutionDocument( repository.getFile( documentPath ), documentPath );
+  }
+
+  /**
+   * Identifies the content of a file: the version for versioned files, together with the modification date, which
+   * also changes when an unversioned file is overwritten.
+   */
+  private static String getRevision( final RepositoryFile file ) {
+    if ( file == null || ( file.getVersionId() == null && file.getLastModifiedDate() == null ) ) {
+      return null;
+    }
+    return file.getVersionId() + "@" //$NON-NLS-1$
+        + ( file.getLastModifiedDate() != null ? file.getLastModifiedDate().getTime() : 0L );
+  }
 
-    RepositoryFile file = repository.getFile( documentPath );
+  private Document getSolutionDocument( final RepositoryFile file, final String documentPath ) {
 
     Document document = null;
     SimpleRepositoryFileData data = null;
@@ -27,6 +27,7 @@ import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.platform.api.engine.IActionParameter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -115,7 +116,8 @@ public class ActionParameter implements IActionParameter {
   }
 
   public List getVariables() {
-    return ( variables == null ) ? new ArrayList() : variables;
+    // resolved for every input of every action run, so do not allocate a list for parameters without sources
+    return ( variables == null ) ? Collections.EMPTY_LIST : variables;
   }
 
   public String getName() {
@@ -38,6 +38,8 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private String revision;
+
   protected ActionSequence( final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek ) {
     this.loopParameter = loopParameter;
@@ -130,4 +132,12 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  public String getRevision() {
+    return revision;
+  }
+
+  public void setRevision( final String revision ) {
+    this.revision = revision;
+  }
+
 }
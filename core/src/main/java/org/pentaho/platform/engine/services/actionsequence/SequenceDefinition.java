@@ -84,6 +84,17 @@ public class SequenceDefinition implements ISequenceDefinition {
 
   public static IActionSequence ActionSequenceFactory( final Document document, final String solutionPath,
       final ILogger logger, final IApplicationContext applicationContext, final int loggingLevel ) {
+    return ActionSequenceFactory( document, solutionPath, null, logger, applicationContext, loggingLevel );
+  }
+
+  /**
+   * Parses an action sequence document read from the given revision of a repository file.
+   *
+   * @see IActionSequence#getRevision()
+   */
+  public static IActionSequence ActionSequenceFactory( final Document document, final String solutionPath,
+      final String revision, final ILogger logger, final IApplicationContext applicationContext,
+      final int loggingLevel ) {
 
     // Check for a sequence document
     Node sequenceDefinitionNode = document.selectSingleNode( "//action-sequence" ); //$NON-NLS-1$
@@ -98,10 +109,13 @@ public class SequenceDefinition implements ISequenceDefinition {
 
     Node actionNode = sequenceDefinitionNode.selectSingleNode( "actions" ); //$NON-NLS-1$
 
-    return ( SequenceDefinition.getNextLoopGroup( seqDef, actionNode, solutionPath, logger, loggingLevel ) );
+    ActionSequence sequence = SequenceDefinition.getNextLoopGroup( seqDef, actionNode, solutionPath, logger,
+        loggingLevel );
+    sequence.setRevision( revision );
+    return sequence;
   }
 
-  private static IActionSequence getNextLoopGroup( final ISequenceDefinition seqDef, final Node actionsNode,
+  private static ActionSequence getNextLoopGroup( final ISequenceDefinition seqDef, final Node actionsNode,
       final String solutionPath, final ILogger logger, final int loggingLevel ) {
 
     String loopParameterName = XmlDom4JHelper.getNodeText( "@loop-on", actionsNode ); //$NON-NLS-1$
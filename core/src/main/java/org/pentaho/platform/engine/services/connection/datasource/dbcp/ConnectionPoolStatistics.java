@@ -0,0 +1,480 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Borrow counters, a borrow wait histogram and pool gauges of one pooled datasource, as recorded by
+ * {@link org.pentaho.platform.plugin.action.kettle.PoolingManagedDataSource}. Statistics survive the pool being
+ * recreated, e.g. after a datasource has been edited, and are registered with the platform MBean server under
+ * <tt>org.pentaho.platform:type=ConnectionPool</tt>.
+ * <p>
+ * A pool may be sized adaptively: every <tt>dbcp-defaults/adaptive-interval</tt> seconds its <tt>maxTotal</tt> is
+ * grown when borrows timed out or waited longer than the configured threshold while the pool was saturated, and
+ * shrunk again when it is mostly idle, between the configured maximum active connections and an upper bound.
+ * <tt>minIdle</tt> follows within its configured value and half of <tt>maxTotal</tt>.
+ * </p>
+ * <p>
+ * The statistics of a datasource are dropped and their MBean unregistered when its pool is closed, and
+ * {@link #shutdown()} stops the adaptive sizing task and unregisters every MBean when the platform shuts down.
+ * </p>
+ */
+public class ConnectionPoolStatistics implements ConnectionPoolStatisticsMBean {
+
+  public static final String ADAPTIVE_SIZING_KEY = "adaptiveSizing"; //$NON-NLS-1$
+
+  public static final String ADAPTIVE_MAX_ACTIVE_KEY = "adaptiveMaxActive"; //$NON-NLS-1$
+
+  public static final String ADAPTIVE_WAIT_THRESHOLD_KEY = "adaptiveWaitThreshold"; //$NON-NLS-1$
+
+  static final long DEFAULT_WAIT_THRESHOLD_MS = 50;
+
+  static final long DEFAULT_ADJUST_INTERVAL_SECONDS = 30;
+
+  private static final String SETTING_ADAPTIVE_SIZING = "dbcp-defaults/adaptive-sizing"; //$NON-NLS-1$
+
+  private static final String SETTING_ADAPTIVE_MAX_ACTIVE = "dbcp-defaults/adaptive-max-act-conn"; //$NON-NLS-1$
+
+  private static final String SETTING_ADAPTIVE_WAIT_THRESHOLD = "dbcp-defaults/adaptive-wait-threshold"; //$NON-NLS-1$
+
+  private static final String SETTING_ADAPTIVE_INTERVAL = "dbcp-defaults/adaptive-interval"; //$NON-NLS-1$
+
+  private static final String OBJECT_NAME_PREFIX = "org.pentaho.platform:type=ConnectionPool,name="; //$NON-NLS-1$
+
+  /**
+   * Messages of the {@link NoSuchElementException}s commons-pool2 throws when no object became available within the
+   * maximum wait, or at once if the pool does not block when exhausted.
+   */
+  private static final String[] POOL_EXHAUSTED_MESSAGES = { "Timeout waiting for idle object", //$NON-NLS-1$
+    "Pool exhausted" }; //$NON-NLS-1$
+
+  /**
+   * Upper bounds, in milliseconds, of the borrow wait histogram buckets. The last bucket is unbounded.
+   */
+  private static final long[] BUCKET_BOUNDS_MS = { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+  private static final Log logger = LogFactory.getLog( ConnectionPoolStatistics.class );
+
+  private static final ConcurrentMap<String, ConnectionPoolStatistics> registry =
+      new ConcurrentHashMap<String, ConnectionPoolStatistics>();
+
+  private static ScheduledExecutorService adjuster;
+
+  private final String datasourceName;
+
+  private final LongAdder borrows = new LongAdder();
+
+  private final LongAdder timeouts = new LongAdder();
+
+  private final LongAdder failures = new LongAdder();
+
+  private final LongAdder totalWaitNanos = new LongAdder();
+
+  private final LongAdder[] buckets = new LongAdder[ BUCKET_BOUNDS_MS.length + 1 ];
+
+  /** borrows, wait and timeouts since the last adaptive adjustment */
+  private final LongAdder windowBorrows = new LongAdder();
+
+  private final LongAdder windowWaitNanos = new LongAdder();
+
+  private final LongAdder windowTimeouts = new LongAdder();
+
+  private volatile GenericObjectPool<?> pool;
+
+  private volatile boolean adaptive;
+
+  private volatile int baseMaxTotal;
+
+  private volatile int baseMinIdle;
+
+  private volatile int adaptiveMaxTotal;
+
+  private volatile long waitThresholdMillis = DEFAULT_WAIT_THRESHOLD_MS;
+
+  ConnectionPoolStatistics( final String datasourceName ) {
+    this.datasourceName = datasourceName;
+    for ( int i = 0; i < buckets.length; i++ ) {
+      buckets[ i ] = new LongAdder();
+    }
+  }
+
+  /**
+   * @return the statistics for the given datasource, created and registered with JMX on first use
+   */
+  public static ConnectionPoolStatistics forDatasource( final String datasourceName ) {
+    ConnectionPoolStatistics statistics = registry.get( datasourceName );
+    if ( statistics == null ) {
+      statistics = new ConnectionPoolStatistics( datasourceName );
+      ConnectionPoolStatistics existing = registry.putIfAbsent( datasourceName, statistics );
+      if ( existing != null ) {
+        return existing;
+      }
+      registerMBean( statistics );
+    }
+    return statistics;
+  }
+
+  /**
+   * @return statistics of every datasource that has been pooled, sorted by datasource name
+   */
+  public static Map<String, ConnectionPoolStatistics> getAll() {
+    return Collections.unmodifiableMap( new TreeMap<String, ConnectionPoolStatistics>( registry ) );
+  }
+
+  /**
+   * Stops the adaptive sizing task and unregisters the statistics of every datasource from JMX.
+   */
+  public static void shutdown() {
+    stopAdjuster();
+    for ( ConnectionPoolStatistics statistics : registry.values() ) {
+      statistics.pool = null;
+      if ( registry.remove( statistics.datasourceName, statistics ) ) {
+        unregisterMBean( statistics );
+      }
+    }
+  }
+
+  /**
+   * Tells whether a connection could not be borrowed because the pool was exhausted: dbcp2 wraps the
+   * {@link NoSuchElementException} of the pool, which carries no cause of its own when no connection became
+   * available in time. Failures to create, activate or validate a connection are wrapped the same way but keep
+   * their cause and message.
+   */
+  public static boolean isPoolExhausted( final SQLException e ) {
+    Throwable cause = e.getCause();
+    if ( !( cause instanceof NoSuchElementException ) || cause.getCause() != null || cause.getMessage() == null ) {
+      return false;
+    }
+    for ( String message : POOL_EXHAUSTED_MESSAGES ) {
+      if ( cause.getMessage().startsWith( message ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ObjectName getObjectName( final ConnectionPoolStatistics statistics ) throws Exception {
+    return new ObjectName( OBJECT_NAME_PREFIX + ObjectName.quote( statistics.datasourceName ) );
+  }
+
+  private static void registerMBean( final ConnectionPoolStatistics statistics ) {
+    try {
+      ObjectName name = getObjectName( statistics );
+      if ( !ManagementFactory.getPlatformMBeanServer().isRegistered( name ) ) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean( statistics, name );
+      }
+    } catch ( Exception e ) {
+      logger.warn( "Unable to register connection pool statistics of " + statistics.datasourceName //$NON-NLS-1$
+          + " with JMX", e ); //$NON-NLS-1$
+    }
+  }
+
+  private static void unregisterMBean( final ConnectionPoolStatistics statistics ) {
+    try {
+      ObjectName name = getObjectName( statistics );
+      if ( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) ) {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean( name );
+      }
+    } catch ( Exception e ) {
+      logger.warn( "Unable to unregister connection pool statistics of " + statistics.datasourceName //$NON-NLS-1$
+          + " from JMX", e ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Starts reporting on a newly created pool of this datasource, and sizes it adaptively if so configured in the
+   * pooling attributes of the datasource or the <tt>dbcp-defaults</tt> system settings.
+   */
+  void attach( final GenericObjectPool<?> pool, final Map<String, String> attributes ) {
+    boolean adaptive = Boolean.parseBoolean( getSetting( attributes, ADAPTIVE_SIZING_KEY, SETTING_ADAPTIVE_SIZING ) );
+    int maxTotal = pool.getMaxTotal();
+    int adaptiveMax = NumberUtils.toInt( getSetting( attributes, ADAPTIVE_MAX_ACTIVE_KEY, SETTING_ADAPTIVE_MAX_ACTIVE ),
+        maxTotal * 2 );
+    long waitThreshold = NumberUtils.toLong(
+        getSetting( attributes, ADAPTIVE_WAIT_THRESHOLD_KEY, SETTING_ADAPTIVE_WAIT_THRESHOLD ),
+        DEFAULT_WAIT_THRESHOLD_MS );
+    attach( pool, adaptive && maxTotal > 0, adaptiveMax, waitThreshold );
+    // the previous pool may have been closed, and these statistics dropped, since they were looked up
+    if ( registry.putIfAbsent( datasourceName, this ) == null ) {
+      registerMBean( this );
+    }
+    if ( this.adaptive ) {
+      startAdjuster();
+    }
+  }
+
+  synchronized void attach( final GenericObjectPool<?> pool, final boolean adaptive, final int adaptiveMaxTotal,
+                            final long waitThresholdMillis ) {
+    this.baseMaxTotal = pool.getMaxTotal();
+    this.baseMinIdle = pool.getMinIdle();
+    this.adaptiveMaxTotal = Math.max( adaptiveMaxTotal, baseMaxTotal );
+    this.waitThresholdMillis = waitThresholdMillis;
+    this.adaptive = adaptive;
+    windowBorrows.reset();
+    windowWaitNanos.reset();
+    windowTimeouts.reset();
+    this.pool = pool;
+  }
+
+  /**
+   * Stops reporting on a closed pool. Unless a newer pool of the datasource has been attached in the meantime, the
+   * statistics are dropped and unregistered from JMX, and the adaptive sizing task stops once no pool is left.
+   */
+  synchronized void detach( final GenericObjectPool<?> closedPool ) {
+    if ( pool != closedPool ) {
+      return;
+    }
+    pool = null;
+    if ( registry.remove( datasourceName, this ) ) {
+      unregisterMBean( this );
+    }
+    if ( registry.isEmpty() ) {
+      stopAdjuster();
+    }
+  }
+
+  private static String getSetting( final Map<String, String> attributes, final String key, final String setting ) {
+    if ( attributes != null && attributes.containsKey( key ) ) {
+      return attributes.get( key );
+    }
+    return PentahoSystem.getSystemSetting( setting, null );
+  }
+
+  private static synchronized void startAdjuster() {
+    if ( adjuster != null ) {
+      return;
+    }
+    long interval = NumberUtils.toLong( PentahoSystem.getSystemSetting( SETTING_ADAPTIVE_INTERVAL, null ),
+        DEFAULT_ADJUST_INTERVAL_SECONDS );
+    adjuster = Executors.newSingleThreadScheduledExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "ConnectionPoolAdjuster" ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    } );
+    adjuster.scheduleWithFixedDelay( () -> {
+      for ( ConnectionPoolStatistics statistics : registry.values() ) {
+        try {
+          statistics.adjust();
+        } catch ( RuntimeException e ) {
+          logger.warn( "Unable to resize connection pool " + statistics.datasourceName, e ); //$NON-NLS-1$
+        }
+      }
+    }, interval, Math.max( interval, 1 ), TimeUnit.SECONDS );
+  }
+
+  private static synchronized void stopAdjuster() {
+    if ( adjuster != null ) {
+      adjuster.shutdownNow();
+      adjuster = null;
+    }
+  }
+
+  /**
+   * Records one connection borrowed from the pool.
+   *
+   * @param waitNanos time spent obtaining the connection
+   * @param timedOut  whether no connection became available within the maximum wait
+   * @param failed    whether no connection was returned
+   */
+  public void recordBorrow( final long waitNanos, final boolean timedOut, final boolean failed ) {
+    borrows.increment();
+    windowBorrows.increment();
+    if ( timedOut ) {
+      timeouts.increment();
+      windowTimeouts.increment();
+    } else if ( failed ) {
+      failures.increment();
+    }
+    totalWaitNanos.add( waitNanos );
+    windowWaitNanos.add( waitNanos );
+    long millis = TimeUnit.NANOSECONDS.toMillis( waitNanos );
+    int bucket = 0;
+    while ( bucket < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[ bucket ] ) {
+      bucket++;
+    }
+    buckets[ bucket ].increment();
+  }
+
+  /**
+   * Grows or shrinks an adaptive pool from the borrows seen since the last call.
+   *
+   * @return whether the pool was resized
+   */
+  boolean adjust() {
+    GenericObjectPool<?> current = pool;
+    long borrowed = windowBorrows.sumThenReset();
+    long waitNanos = windowWaitNanos.sumThenReset();
+    long timedOut = windowTimeouts.sumThenReset();
+    if ( !adaptive || current == null || current.isClosed() ) {
+      return false;
+    }
+    int maxTotal = current.getMaxTotal();
+    int minIdle = current.getMinIdle();
+    long meanWaitMillis = borrowed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis( waitNanos / borrowed );
+    boolean saturated = current.getNumActive() >= maxTotal - 1 || current.getNumWaiters() > 0;
+    if ( ( timedOut > 0 || meanWaitMillis > waitThresholdMillis ) && saturated && maxTotal < adaptiveMaxTotal ) {
+      int grown = Math.min( adaptiveMaxTotal, maxTotal + Math.max( 1, maxTotal / 4 ) );
+      current.setMaxTotal( grown );
+      current.setMinIdle( Math.min( minIdle + 1, grown / 2 ) );
+      logger.info( "Growing connection pool " + datasourceName + " to " + grown //$NON-NLS-1$ //$NON-NLS-2$
+          + " connections, mean borrow wait " + meanWaitMillis + "ms, " + timedOut //$NON-NLS-1$ //$NON-NLS-2$
+          + " timeouts" ); //$NON-NLS-1$
+      return true;
+    }
+    if ( timedOut == 0 && meanWaitMillis * 4 <= waitThresholdMillis && current.getNumWaiters() == 0
+        && current.getNumActive() < maxTotal / 2 && maxTotal > baseMaxTotal ) {
+      int shrunk = Math.max( baseMaxTotal, maxTotal - Math.max( 1, maxTotal / 8 ) );
+      current.setMaxTotal( shrunk );
+      current.setMinIdle( Math.max( baseMinIdle, Math.min( minIdle - 1, shrunk / 2 ) ) );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Shrinking connection pool " + datasourceName + " to " + shrunk ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public String getDatasourceName() {
+    return datasourceName;
+  }
+
+  @Override
+  public long getBorrowCount() {
+    return borrows.sum();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeouts.sum();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  @Override
+  public long getTotalWaitTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( totalWaitNanos.sum() );
+  }
+
+  /**
+   * @return the borrow wait histogram keyed by bucket upper bound in milliseconds; {@link Long#MAX_VALUE} is the
+   * overflow bucket
+   */
+  @Override
+  public Map<Long, Long> getWaitHistogram() {
+    Map<Long, Long> histogram = new TreeMap<Long, Long>();
+    for ( int i = 0; i < buckets.length; i++ ) {
+      long bound = i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[ i ] : Long.MAX_VALUE;
+      histogram.put( bound, buckets[ i ].sum() );
+    }
+    return histogram;
+  }
+
+  @Override
+  public int getNumActive() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getNumActive();
+  }
+
+  @Override
+  public int getNumIdle() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getNumIdle();
+  }
+
+  @Override
+  public int getNumWaiters() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getNumWaiters();
+  }
+
+  @Override
+  public int getMaxTotal() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getMaxTotal();
+  }
+
+  @Override
+  public int getMinIdle() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getMinIdle();
+  }
+
+  @Override
+  public long getCreatedCount() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getCreatedCount();
+  }
+
+  @Override
+  public long getDestroyedCount() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getDestroyedCount();
+  }
+
+  /**
+   * @return mean time a connection was held by its borrower, over recently returned connections
+   */
+  @Override
+  public long getMeanActiveTimeMillis() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getMeanActiveTimeMillis();
+  }
+
+  @Override
+  public long getMeanIdleTimeMillis() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getMeanIdleTimeMillis();
+  }
+
+  @Override
+  public long getMaxBorrowWaitTimeMillis() {
+    GenericObjectPool<?> current = pool;
+    return current == null ? 0 : current.getMaxBorrowWaitTimeMillis();
+  }
+
+  @Override
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+}
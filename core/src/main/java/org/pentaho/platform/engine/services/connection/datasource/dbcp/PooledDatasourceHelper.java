@@ -59,6 +59,8 @@ import java.util.function.Supplier;
 
 public class PooledDatasourceHelper {
 
+  static final int DEFAULT_MAX_OPEN_PREPARED_STATEMENTS = 50;
+
   public static PoolingDataSource setupPooledDataSource( IDatabaseConnection databaseConnection )
     throws DBDatasourceServiceException {
     
@@ -100,6 +102,17 @@ public class PooledDatasourceHelper {
     return pool;
   }
 
+  /**
+   * Reports on the given pool through the {@link ConnectionPoolStatistics} of the datasource, replacing any earlier
+   * pool of the same datasource.
+   */
+  public static ConnectionPoolStatistics attachStatistics( IDatabaseConnection databaseConnection,
+                                                           GenericObjectPool pool ) {
+    ConnectionPoolStatistics statistics = ConnectionPoolStatistics.forDatasource( databaseConnection.getName() );
+    statistics.attach( pool, databaseConnection.getConnectionPoolingProperties() );
+    return statistics;
+  }
+
   private static void configurePool( IDatabaseConnection databaseConnection, IDatabaseDialect dialect, Map<String, String> attributes, GenericObjectPool pool ) throws Exception {
     // Configure Max Connections
     pool.setMaxTotal( databaseConnection.getMaximumPoolSize() );
@@ -224,9 +237,28 @@ public class PooledDatasourceHelper {
       poolableConnectionFactory.setDefaultCatalog( attributes.get( IDBDatasourceService.DEFAULT_CATALOG ) );
     }
 
+    configureStatementPooling( poolableConnectionFactory, attributes );
+
     return genericObjectPool;
   }
 
+  /**
+   * Keeps a bounded cache of prepared statements per physical connection, evicting the least recently used statement
+   * when full, if enabled for the datasource or by default.
+   */
+  static void configureStatementPooling( PoolableConnectionFactory poolableConnectionFactory,
+                                         Map<String, String> attributes ) {
+    boolean poolStatements = getBooleanPropertyValue( attributes, IDBDatasourceService.POOL_PREPARED_STATEMENTS,
+        PentahoSystem.getSystemSetting( "dbcp-defaults/pool-prepared-statements", null ) ); //$NON-NLS-1$
+    if ( poolStatements ) {
+      int maxOpenPreparedStatements = getIntegerPropertyValue( attributes,
+          IDBDatasourceService.MAX_OPEN_PREPARED_STATEMENTS, PentahoSystem.getSystemSetting(
+              "dbcp-defaults/max-open-prepared-statements", String.valueOf( DEFAULT_MAX_OPEN_PREPARED_STATEMENTS ) ) );
+      poolableConnectionFactory.setPoolStatements( true );
+      poolableConnectionFactory.setMaxOpenPreparedStatements( maxOpenPreparedStatements );
+    }
+  }
+
   private static String getPropertyValue( Map<String, String> attributes, String key, String defaultValue ) {
     if ( attributes.containsKey( key ) ){
       return attributes.get( key );
@@ -95,6 +95,8 @@ public class PooledDatasourceSystemListener extends NonPooledDatasourceSystemLis
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_POOL );
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_DATASOURCE );
 
+    ConnectionPoolStatistics.shutdown();
+
     Logger.debug( this, "DatasourceSystemListener: Completed shutdown." ); //$NON-NLS-1$
   }
 
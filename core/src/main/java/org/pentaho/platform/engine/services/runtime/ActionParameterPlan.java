@@ -0,0 +1,150 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameter bindings of one action definition: the local and mapped names of its inputs, outputs and resources in
+ * declaration order, which inputs have a default value and which outputs are output parameters. Setting up the
+ * parameters of an action then only fills the current parameter maps from these arrays, without going back to the
+ * action definition for every name.
+ * <p>
+ * A plan only holds what follows from the definition, not the parameter objects of one parse, so the plans of a
+ * sequence read from a repository file are kept by path and revision and shared by every later parse of that
+ * revision.
+ * </p>
+ */
+final class ActionParameterPlan {
+
+  private static final String[] NO_NAMES = new String[0];
+
+  private static final int MAX_CACHED_SEQUENCES = 500;
+
+  /** plans of the actions of recently parsed sequences, in document order, keyed by path and revision */
+  private static final Map<String, ActionParameterPlan[]> sequencePlans =
+      Collections.synchronizedMap( new LinkedHashMap<String, ActionParameterPlan[]>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, ActionParameterPlan[]> eldest ) {
+          return size() > MAX_CACHED_SEQUENCES;
+        }
+      } );
+
+  final String[] inputNames;
+
+  final String[] mappedInputNames;
+
+  /** whether the input definition has a default value to fall back to */
+  final boolean[] inputDefaults;
+
+  final String[] outputNames;
+
+  final String[] mappedOutputNames;
+
+  /** whether the output definition is an output parameter */
+  final boolean[] outputParameters;
+
+  /** whether the action declares no resources and so sees every resource of the sequence */
+  final boolean allResources;
+
+  final String[] resourceNames;
+
+  final String[] mappedResourceNames;
+
+  ActionParameterPlan( final ISolutionActionDefinition actionDefinition ) {
+    Map inputs = actionDefinition.getActionInputDefinitions();
+    int size = inputs.size();
+    inputNames = new String[size];
+    mappedInputNames = new String[size];
+    inputDefaults = new boolean[size];
+    int i = 0;
+    for ( Iterator it = inputs.entrySet().iterator(); it.hasNext(); i++ ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      inputNames[i] = (String) entry.getKey();
+      mappedInputNames[i] = actionDefinition.getMappedInputName( inputNames[i] );
+      IActionParameter input = (IActionParameter) entry.getValue();
+      inputDefaults[i] = input != null && input.hasDefaultValue();
+    }
+
+    Map outputDefinitions = actionDefinition.getActionOutputDefinitions();
+    size = outputDefinitions.size();
+    outputNames = new String[size];
+    mappedOutputNames = new String[size];
+    outputParameters = new boolean[size];
+    i = 0;
+    for ( Iterator it = outputDefinitions.entrySet().iterator(); it.hasNext(); i++ ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      outputNames[i] = (String) entry.getKey();
+      mappedOutputNames[i] = actionDefinition.getMappedOutputName( outputNames[i] );
+      outputParameters[i] = ( (IActionParameter) entry.getValue() ).isOutputParameter();
+    }
+
+    allResources = !actionDefinition.hasActionResources();
+    if ( allResources ) {
+      resourceNames = NO_NAMES;
+      mappedResourceNames = NO_NAMES;
+    } else {
+      List names = actionDefinition.getActionResourceDefinitionNames();
+      resourceNames = new String[names.size()];
+      mappedResourceNames = new String[names.size()];
+      for ( i = 0; i < resourceNames.length; i++ ) {
+        resourceNames[i] = (String) names.get( i );
+        mappedResourceNames[i] = actionDefinition.getMappedResourceName( resourceNames[i] );
+      }
+    }
+  }
+
+  /**
+   * Returns the plans of the actions of a sequence, reusing those worked out for an earlier parse of the same
+   * revision of the sequence.
+   *
+   * @param path              path of the sequence
+   * @param revision          revision of the sequence, or {@code null} if it has none and cannot be shared
+   * @param actionDefinitions the actions of the sequence, including those of nested loops and conditional blocks, in
+   *                          document order
+   * @return the plans, in the order of the action definitions
+   */
+  static ActionParameterPlan[] forSequence( final String path, final String revision,
+                                            final List<ISolutionActionDefinition> actionDefinitions ) {
+    String key = revision != null && path != null ? path + '\n' + revision : null;
+    ActionParameterPlan[] plans = key != null ? sequencePlans.get( key ) : null;
+    if ( plans != null && plans.length == actionDefinitions.size() ) {
+      return plans;
+    }
+    plans = new ActionParameterPlan[actionDefinitions.size()];
+    for ( int i = 0; i < plans.length; i++ ) {
+      plans[i] = new ActionParameterPlan( actionDefinitions.get( i ) );
+    }
+    if ( key != null ) {
+      sequencePlans.put( key, plans );
+    }
+    return plans;
+  }
+}
@@ -34,6 +34,7 @@ import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource
 import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -63,6 +64,10 @@ public class ParameterManager implements IParameterManager {
 
   private Map sequenceOutputDefs;
 
+  /** parameter bindings of the action definitions of the sequence, keyed by identity */
+  private final Map<ISolutionActionDefinition, ActionParameterPlan> plans =
+      new IdentityHashMap<ISolutionActionDefinition, ActionParameterPlan>();
+
   ParameterManager() {
     allParams = new ListOrderedMap();
     allResources = new ListOrderedMap();
@@ -89,6 +94,43 @@ public class ParameterManager implements IParameterManager {
         (String[]) actionSequence.getResourceDefinitions().keySet().toArray( ParameterManager.EMPTY_ARRAY );
 
     sequenceOutputDefs.putAll( actionSequence.getOutputDefinitions() );
+
+    List<ISolutionActionDefinition> actionDefinitions = new ArrayList<ISolutionActionDefinition>();
+    collectActionDefinitions( actionSequence, actionDefinitions );
+    ActionParameterPlan[] sequencePlans = ActionParameterPlan.forSequence( actionSequence.getSolutionPath(),
+        actionSequence.getRevision(), actionDefinitions );
+    for ( int i = 0; i < sequencePlans.length; i++ ) {
+      plans.put( actionDefinitions.get( i ), sequencePlans[i] );
+    }
+  }
+
+  /**
+   * Lists every action of the sequence, including those of nested loops and conditional blocks, in document order,
+   * so that their parameter bindings are worked out once rather than every time, possibly in a loop, an action runs.
+   */
+  private static void collectActionDefinitions( final IActionSequence actionSequence,
+                                                final List<ISolutionActionDefinition> actionDefinitions ) {
+    List items = actionSequence.getActionDefinitionsAndSequences();
+    if ( items == null ) {
+      return;
+    }
+    for ( Object item : items ) {
+      if ( item instanceof IActionSequence ) {
+        collectActionDefinitions( (IActionSequence) item, actionDefinitions );
+      } else if ( item instanceof ISolutionActionDefinition ) {
+        actionDefinitions.add( (ISolutionActionDefinition) item );
+      }
+    }
+  }
+
+  private ActionParameterPlan getPlan( final ISolutionActionDefinition actionDefinition ) {
+    ActionParameterPlan plan = plans.get( actionDefinition );
+    if ( plan == null ) {
+      // not part of the sequence this manager was created for
+      plan = new ActionParameterPlan( actionDefinition );
+      plans.put( actionDefinition, plan );
+    }
+    return plan;
   }
 
   public Map getAllParameters() {
@@ -182,8 +224,12 @@ public class ParameterManager implements IParameterManager {
     currentResources.clear();
 
     if ( actionDefinition == null ) {
-      currentInputs = resetMap( sequenceInputNames, allParams );
-      currentResources = resetMap( sequenceResourceNames, allParams );
+      for ( String element : sequenceInputNames ) {
+        currentInputs.put( element, allParams.get( element ) );
+      }
+      for ( String element : sequenceResourceNames ) {
+        currentResources.put( element, allParams.get( element ) );
+      }
 
       for ( Iterator it = sequenceOutputDefs.entrySet().iterator(); it.hasNext(); ) {
         Map.Entry entry = (Map.Entry) it.next();
@@ -201,42 +247,33 @@ public class ParameterManager implements IParameterManager {
       return;
     }
 
-    String key;
+    ActionParameterPlan plan = getPlan( actionDefinition );
     Object value;
-    for ( Iterator it = actionDefinition.getActionInputDefinitions().keySet().iterator(); it.hasNext(); ) {
-      key = (String) it.next();
-      value = allParams.get( actionDefinition.getMappedInputName( key ) );
-      if ( value == null ) {
-        value = actionDefinition.getActionInputDefinitions().get( key );
-        if ( !( (ActionParameter) value ).hasDefaultValue() ) {
-          value = null; // Only use if there is a default value;
-        }
+    for ( int i = 0; i < plan.inputNames.length; i++ ) {
+      value = allParams.get( plan.mappedInputNames[i] );
+      if ( value == null && plan.inputDefaults[i] ) { // Only use if there is a default value;
+        value = actionDefinition.getActionInputDefinitions().get( plan.inputNames[i] );
       }
 
       if ( value != null ) {
-        currentInputs.put( key, value );
+        currentInputs.put( plan.inputNames[i], value );
       }
     }
 
-    // currentOutputs.putAll(actionDefinition.getActionOutputDefinitions());
     // only put output parameters
     Map outParams = actionDefinition.getActionOutputDefinitions();
-    for ( Object outKey : outParams.keySet() ) {
-      ActionParameter param = (ActionParameter) outParams.get( outKey );
-      if ( param.isOutputParameter() ) {
-        currentOutputs.put( outKey, param );
+    for ( int i = 0; i < plan.outputNames.length; i++ ) {
+      if ( plan.outputParameters[i] ) {
+        currentOutputs.put( plan.outputNames[i], outParams.get( plan.outputNames[i] ) );
       }
     }
 
     // This enables the old behavior - It should eventually be removed
-    if ( !actionDefinition.hasActionResources() ) {
+    if ( plan.allResources ) {
       currentResources.putAll( allResources );
     } else {
-      for ( Iterator it = actionDefinition.getActionResourceDefinitionNames().iterator(); it.hasNext(); ) {
-        key = (String) it.next();
-        String key2 = actionDefinition.getMappedResourceName( key );
-        value = allResources.get( key2 );
-        currentResources.put( key, value );
+      for ( int i = 0; i < plan.resourceNames.length; i++ ) {
+        currentResources.put( plan.resourceNames[i], allResources.get( plan.mappedResourceNames[i] ) );
       }
     }
   }
@@ -257,11 +294,11 @@ public class ParameterManager implements IParameterManager {
 
   public boolean addOutputParameters( final ISolutionActionDefinition actionDefinition ) {
 
+    ActionParameterPlan plan = getPlan( actionDefinition );
     String key;
-    for ( Iterator it = actionDefinition.getActionOutputDefinitions().keySet().iterator(); it.hasNext(); ) {
-      key = (String) it.next();
-      IActionParameter outputParam = (IActionParameter) currentOutputs.get( key );
-      key = actionDefinition.getMappedOutputName( key );
+    for ( int i = 0; i < plan.outputNames.length; i++ ) {
+      IActionParameter outputParam = (IActionParameter) currentOutputs.get( plan.outputNames[i] );
+      key = plan.mappedOutputNames[i];
 
       // If we already have a parameter with this name, set the value and reuse the definition.
       IActionParameter param = (IActionParameter) allParams.get( key );
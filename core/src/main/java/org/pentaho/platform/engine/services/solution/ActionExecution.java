@@ -0,0 +1,459 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.solution;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle of an action sequence or action run in the background by the {@link ActionExecutionService}. Reports the
+ * state and progress of the run, lets the output produced so far be read while it is still running, and cancels it.
+ * <p>
+ * Code running inside an execution can register cancel hooks through {@link #addCancelHook(Runnable)}, e.g. to cancel
+ * a running JDBC statement, since interrupting the worker thread does not stop a blocked driver call.
+ * </p>
+ * <p>
+ * The output is spooled to a temporary file that is created when the run starts, and deleted by {@link #dispose()},
+ * or when the run finishes if it is disposed while running.
+ * </p>
+ */
+public class ActionExecution {
+
+  public enum State {
+    QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+  }
+
+  private static final ThreadLocal<ActionExecution> current = new ThreadLocal<ActionExecution>();
+
+  private static final Log logger = LogFactory.getLog( ActionExecution.class );
+
+  private final String id;
+
+  private final String owner;
+
+  private final String description;
+
+  private final Date submitted = new Date();
+
+  private volatile Date started;
+
+  private volatile Date finished;
+
+  private volatile State state = State.QUEUED;
+
+  private volatile boolean cancelRequested;
+
+  private volatile String mimeType;
+
+  private volatile String errorMessage;
+
+  private final AtomicInteger completedSteps = new AtomicInteger();
+
+  private volatile int totalSteps;
+
+  private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<Runnable>();
+
+  /** {@code null} until the run starts */
+  private volatile SpoolOutputStream output;
+
+  /** guarded by this */
+  private boolean disposed;
+
+  private volatile Future<?> future;
+
+  ActionExecution( final String id, final String owner, final String description ) {
+    this.id = id;
+    this.owner = owner;
+    this.description = description;
+  }
+
+  /**
+   * @return the execution the calling thread works for, or {@code null}
+   */
+  public static ActionExecution current() {
+    return current.get();
+  }
+
+  /**
+   * Registers a hook to run when the execution of the calling thread is cancelled. Runs the hook right away if it has
+   * been cancelled already.
+   *
+   * @return {@code false} if the calling thread does not work for an execution
+   */
+  public static boolean addCancelHook( final Runnable hook ) {
+    ActionExecution execution = current.get();
+    if ( execution == null ) {
+      return false;
+    }
+    execution.cancelHooks.add( hook );
+    if ( execution.cancelRequested ) {
+      runHook( hook );
+    }
+    return true;
+  }
+
+  public static void removeCancelHook( final Runnable hook ) {
+    ActionExecution execution = current.get();
+    if ( execution != null && hook != null ) {
+      execution.cancelHooks.remove( hook );
+    }
+  }
+
+  private static void runHook( final Runnable hook ) {
+    try {
+      hook.run();
+    } catch ( RuntimeException e ) {
+      logger.debug( "Cancel hook failed", e ); //$NON-NLS-1$
+    }
+  }
+
+  void setFuture( final Future<?> future ) {
+    this.future = future;
+  }
+
+  /**
+   * Runs the work of this execution in the calling thread.
+   */
+  void run( final ActionExecutionService.Work work ) {
+    synchronized ( this ) {
+      if ( state != State.QUEUED || disposed ) {
+        return;
+      }
+      state = State.RUNNING;
+      started = new Date();
+    }
+    current.set( this );
+    boolean succeeded = false;
+    try {
+      output = SpoolOutputStream.create();
+      succeeded = work.run( this, output );
+    } catch ( Throwable t ) {
+      if ( !cancelRequested ) {
+        logger.error( "Background execution of " + description + " failed", t ); //$NON-NLS-1$ //$NON-NLS-2$
+        errorMessage = t.getMessage() != null ? t.getMessage() : t.getClass().getName();
+      }
+    } finally {
+      current.remove();
+      cancelHooks.clear();
+      closeOutput();
+      boolean release;
+      synchronized ( this ) {
+        state = cancelRequested ? State.CANCELLED : succeeded ? State.SUCCEEDED : State.FAILED;
+        finished = new Date();
+        release = disposed;
+      }
+      if ( release ) {
+        deleteOutput();
+      }
+    }
+  }
+
+  /**
+   * Cancels the execution: a queued execution will not run, a running one has its cancel hooks run and its thread
+   * interrupted.
+   *
+   * @return {@code false} if the execution had already finished
+   */
+  public boolean cancel() {
+    synchronized ( this ) {
+      if ( isDone() ) {
+        return false;
+      }
+      cancelRequested = true;
+      if ( state == State.QUEUED ) {
+        state = State.CANCELLED;
+        finished = new Date();
+      }
+    }
+    for ( Runnable hook : cancelHooks ) {
+      runHook( hook );
+    }
+    Future<?> running = future;
+    if ( running != null ) {
+      running.cancel( true );
+    }
+    return true;
+  }
+
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  public boolean isDone() {
+    State s = state;
+    return s == State.SUCCEEDED || s == State.FAILED || s == State.CANCELLED;
+  }
+
+  /**
+   * Reads output written so far.
+   *
+   * @param offset   position to read from
+   * @param maxBytes maximum number of bytes to read
+   * @return the bytes available from the offset, empty if none are available yet
+   */
+  public byte[] readOutput( final long offset, final int maxBytes ) throws IOException {
+    SpoolOutputStream spool = output;
+    long available = spool == null ? 0 : spool.getLength() - offset;
+    if ( available <= 0 || maxBytes <= 0 ) {
+      return new byte[ 0 ];
+    }
+    byte[] bytes = new byte[ (int) Math.min( available, maxBytes ) ];
+    RandomAccessFile file = new RandomAccessFile( spool.getFile(), "r" ); //$NON-NLS-1$
+    try {
+      file.seek( offset );
+      file.readFully( bytes );
+    } finally {
+      file.close();
+    }
+    return bytes;
+  }
+
+  /**
+   * @return number of output bytes that can be read
+   */
+  public long getOutputLength() {
+    SpoolOutputStream spool = output;
+    return spool == null ? 0 : spool.getLength();
+  }
+
+  /**
+   * @return the spool file, {@code null} until the run starts
+   */
+  File getOutputFile() {
+    SpoolOutputStream spool = output;
+    return spool == null ? null : spool.getFile();
+  }
+
+  void stepCompleted() {
+    completedSteps.incrementAndGet();
+  }
+
+  void setTotalSteps( final int totalSteps ) {
+    this.totalSteps = totalSteps;
+  }
+
+  void setMimeType( final String mimeType ) {
+    this.mimeType = mimeType;
+  }
+
+  void setErrorMessage( final String errorMessage ) {
+    this.errorMessage = errorMessage;
+  }
+
+  /**
+   * Releases the spooled output. A running execution releases it once its run finishes; a queued one will not run
+   * anymore.
+   */
+  void dispose() {
+    synchronized ( this ) {
+      disposed = true;
+      if ( state == State.RUNNING ) {
+        return;
+      }
+    }
+    deleteOutput();
+  }
+
+  private void closeOutput() {
+    SpoolOutputStream spool = output;
+    if ( spool != null ) {
+      try {
+        spool.close();
+      } catch ( IOException e ) {
+        logger.warn( "Unable to close the output of " + description, e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  private void deleteOutput() {
+    SpoolOutputStream spool = output;
+    if ( spool == null ) {
+      return;
+    }
+    try {
+      spool.close();
+    } catch ( IOException e ) {
+      // deleted below
+    }
+    File file = spool.getFile();
+    if ( file.exists() && !file.delete() ) {
+      logger.warn( "Unable to delete the output of " + description + ": " + file ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public Date getSubmitted() {
+    return submitted;
+  }
+
+  public Date getStarted() {
+    return started;
+  }
+
+  public Date getFinished() {
+    return finished;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  public int getCompletedSteps() {
+    return completedSteps.get();
+  }
+
+  /**
+   * @return number of steps expected, {@code 0} if not known
+   */
+  public int getTotalSteps() {
+    return totalSteps;
+  }
+
+  /**
+   * @return fraction of the expected steps completed, between 0 and 1
+   */
+  public double getProgress() {
+    if ( state == State.SUCCEEDED ) {
+      return 1;
+    }
+    int total = totalSteps;
+    return total <= 0 ? 0 : Math.min( 1, (double) completedSteps.get() / total );
+  }
+
+  /**
+   * Output stream writing to the spool file in blocks, publishing the length readable by {@link #readOutput} after
+   * each block.
+   */
+  private static final class SpoolOutputStream extends OutputStream {
+    private final File outputFile;
+    private final FileOutputStream file;
+    private final byte[] buffer = new byte[ 8192 ];
+    private int count;
+    private volatile long length;
+    private boolean closed;
+
+    private SpoolOutputStream( final File outputFile ) throws IOException {
+      this.outputFile = outputFile;
+      this.file = new FileOutputStream( outputFile );
+    }
+
+    private static SpoolOutputStream create() throws IOException {
+      File outputFile = File.createTempFile( "action-execution", ".out" ); //$NON-NLS-1$ //$NON-NLS-2$
+      try {
+        return new SpoolOutputStream( outputFile );
+      } catch ( IOException e ) {
+        outputFile.delete();
+        throw e;
+      }
+    }
+
+    @Override
+    public synchronized void write( final int b ) throws IOException {
+      if ( count == buffer.length ) {
+        drain();
+      }
+      buffer[ count++ ] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write( final byte[] b, final int off, final int len ) throws IOException {
+      if ( len >= buffer.length ) {
+        drain();
+        checkOpen();
+        file.write( b, off, len );
+        length += len;
+        return;
+      }
+      if ( len > buffer.length - count ) {
+        drain();
+      }
+      System.arraycopy( b, off, buffer, count, len );
+      count += len;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+      drain();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if ( !closed ) {
+        drain();
+        closed = true;
+        file.close();
+      }
+    }
+
+    private void drain() throws IOException {
+      if ( count > 0 ) {
+        checkOpen();
+        file.write( buffer, 0, count );
+        length += count;
+        count = 0;
+      }
+    }
+
+    private void checkOpen() throws IOException {
+      if ( closed ) {
+        throw new IOException( "Execution output is closed" ); //$NON-NLS-1$
+      }
+    }
+
+    private long getLength() {
+      return length;
+    }
+
+    private File getFile() {
+      return outputFile;
+    }
+  }
+}
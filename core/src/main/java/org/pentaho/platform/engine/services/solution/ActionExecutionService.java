@@ -0,0 +1,400 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.solution;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.action.IAction;
+import org.pentaho.platform.api.action.ISessionAwareAction;
+import org.pentaho.platform.api.action.IStreamingAction;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.IExecutionListener;
+import org.pentaho.platform.api.engine.IMimeTypeListener;
+import org.pentaho.platform.api.engine.IOutputHandler;
+import org.pentaho.platform.api.engine.IParameterProvider;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IRuntimeContext;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
+import org.pentaho.platform.api.engine.ISolutionEngine;
+import org.pentaho.platform.engine.core.output.SimpleOutputHandler;
+import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.util.web.SimpleUrlFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs action sequences and actions on a bounded pool of background threads, so that a request can return right
+ * away with an {@link ActionExecution} handle to poll, read output from and cancel.
+ * <p>
+ * The pool is sized by the {@code action-execution/max-threads} and {@code action-execution/max-queued} system
+ * settings; submissions beyond that are rejected rather than queued without bound. Finished executions are kept for
+ * {@code action-execution/retention-minutes} so that their output can still be read.
+ * </p>
+ * The synchronous {@link ISolutionEngine} API is unchanged; this service is built on top of it.
+ */
+public class ActionExecutionService {
+
+  static final int DEFAULT_MAX_THREADS = 4;
+
+  static final int DEFAULT_MAX_QUEUED = 20;
+
+  static final long DEFAULT_RETENTION_MINUTES = 30;
+
+  private static final Log logger = LogFactory.getLog( ActionExecutionService.class );
+
+  private static volatile ActionExecutionService instance;
+
+  /**
+   * The work of one execution.
+   */
+  interface Work {
+    /**
+     * @return whether the work succeeded
+     */
+    boolean run( ActionExecution execution, OutputStream output ) throws Exception;
+  }
+
+  private final ThreadPoolExecutor executor;
+
+  private final long retentionMillis;
+
+  private final ConcurrentMap<String, ActionExecution> executions = new ConcurrentHashMap<String, ActionExecution>();
+
+  ActionExecutionService( final int maxThreads, final int maxQueued, final long retentionMinutes ) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor( maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>( Math.max( 1, maxQueued ) ), new ThreadFactory() {
+              @Override
+              public Thread newThread( final Runnable r ) {
+                Thread thread = new Thread( r, "ActionExecution-" + threadCount.incrementAndGet() ); //$NON-NLS-1$
+                thread.setDaemon( true );
+                return thread;
+              }
+            } );
+    this.executor.allowCoreThreadTimeOut( true );
+    this.retentionMillis = TimeUnit.MINUTES.toMillis( retentionMinutes );
+  }
+
+  /**
+   * @return the shared service, configured from {@code pentaho.xml} on first use
+   */
+  public static ActionExecutionService getInstance() {
+    if ( instance == null ) {
+      synchronized ( ActionExecutionService.class ) {
+        if ( instance == null ) {
+          instance =
+              new ActionExecutionService(
+                  getSetting( "action-execution/max-threads", DEFAULT_MAX_THREADS ), //$NON-NLS-1$
+                  getSetting( "action-execution/max-queued", DEFAULT_MAX_QUEUED ), //$NON-NLS-1$
+                  getSetting( "action-execution/retention-minutes", (int) DEFAULT_RETENTION_MINUTES ) ); //$NON-NLS-1$
+        }
+      }
+    }
+    return instance;
+  }
+
+  private static int getSetting( final String name, final int defaultValue ) {
+    try {
+      int value = Integer.parseInt( PentahoSystem.getSystemSetting( name, String.valueOf( defaultValue ) ).trim() );
+      return value > 0 ? value : defaultValue;
+    } catch ( RuntimeException e ) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Submits an action sequence for background execution.
+   *
+   * @param session    session to run as
+   * @param actionPath repository path of the action sequence
+   * @param parameters request parameters
+   * @param baseUrl    base url of generated links, e.g. the context path followed by {@code ViewAction?}
+   * @throws RejectedExecutionException if the execution queue is full
+   */
+  public ActionExecution submit( final IPentahoSession session, final String actionPath,
+                                 final Map<String, Object> parameters, final String baseUrl ) {
+    final Map<String, Object> requestParameters = new HashMap<String, Object>( parameters );
+    return submit( session, actionPath, new Work() {
+      @Override
+      public boolean run( final ActionExecution execution, final OutputStream output ) {
+        return runActionSequence( execution, session, actionPath, requestParameters, baseUrl, output );
+      }
+    } );
+  }
+
+  /**
+   * Submits an action for background execution. Streaming actions write to the execution output.
+   *
+   * @throws RejectedExecutionException if the execution queue is full
+   */
+  public ActionExecution submit( final IPentahoSession session, final String description, final IAction action ) {
+    return submit( session, description, new Work() {
+      @Override
+      public boolean run( final ActionExecution execution, final OutputStream output ) throws Exception {
+        if ( action instanceof IStreamingAction ) {
+          execution.setMimeType( ( (IStreamingAction) action ).getMimeType( null ) );
+          ( (IStreamingAction) action ).setOutputStream( output );
+        }
+        if ( action instanceof ISessionAwareAction ) {
+          ( (ISessionAwareAction) action ).setSession( session );
+        }
+        execution.setTotalSteps( 1 );
+        action.execute();
+        execution.stepCompleted();
+        return action.isExecutionSuccessful();
+      }
+    } );
+  }
+
+  ActionExecution submit( final IPentahoSession session, final String description, final Work work ) {
+    purge();
+    final ActionExecution execution =
+        new ActionExecution( UUID.randomUUID().toString(), session != null ? session.getName() : null, description );
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    executions.put( execution.getId(), execution );
+    try {
+      execution.setFuture( executor.submit( new Runnable() {
+        @Override
+        public void run() {
+          IPentahoSession previousSession = PentahoSessionHolder.getSession();
+          PentahoSessionHolder.setSession( session );
+          SecurityContextHolder.getContext().setAuthentication( authentication );
+          try {
+            execution.run( work );
+          } finally {
+            SecurityContextHolder.clearContext();
+            PentahoSessionHolder.setSession( previousSession );
+          }
+        }
+      } ) );
+    } catch ( RejectedExecutionException e ) {
+      executions.remove( execution.getId() );
+      execution.dispose();
+      throw e;
+    }
+    return execution;
+  }
+
+  private boolean runActionSequence( final ActionExecution execution, final IPentahoSession session,
+                                     final String actionPath, final Map<String, Object> parameters,
+                                     final String baseUrl, final OutputStream output ) {
+    PentahoSystem.systemEntryPoint();
+    IRuntimeContext runtime = null;
+    try {
+      ISolutionEngine solutionEngine = PentahoSystem.get( ISolutionEngine.class, session );
+      if ( solutionEngine == null ) {
+        execution.setErrorMessage( "No solution engine is available" ); //$NON-NLS-1$
+        return false;
+      }
+      solutionEngine.init( session );
+      solutionEngine.setlistener( new ProgressListener( execution ) );
+
+      Map<String, IParameterProvider> parameterProviders = new HashMap<String, IParameterProvider>();
+      parameterProviders.put( IParameterProvider.SCOPE_REQUEST, new SimpleParameterProvider( parameters ) );
+
+      SimpleOutputHandler outputHandler = new SimpleOutputHandler( output, false );
+      outputHandler.setOutputPreference( IOutputHandler.OUTPUT_TYPE_DEFAULT );
+      outputHandler.setMimeTypeListener( new IMimeTypeListener() {
+        @Override
+        public void setMimeType( final String mimeType ) {
+          execution.setMimeType( mimeType );
+        }
+
+        @Override
+        public void setName( final String name ) {
+        }
+      } );
+
+      List<Object> messages = new ArrayList<Object>();
+      runtime =
+          solutionEngine.execute( actionPath, execution.getDescription(), false, true, null, false,
+              parameterProviders, outputHandler, null, new SimpleUrlFactory( baseUrl ), messages );
+      if ( runtime == null || runtime.getStatus() != IRuntimeContext.RUNTIME_STATUS_SUCCESS ) {
+        execution.setErrorMessage( messages.isEmpty() ? null : String.valueOf( messages.get( 0 ) ) );
+        return false;
+      }
+      return true;
+    } finally {
+      if ( runtime != null ) {
+        runtime.dispose();
+      }
+      PentahoSystem.systemExitPoint();
+    }
+  }
+
+  /**
+   * @return the execution with the given id, or {@code null} if unknown or expired
+   */
+  public ActionExecution get( final String id ) {
+    return id == null ? null : executions.get( id );
+  }
+
+  /**
+   * @param owner user name, or {@code null} for the executions of every user
+   * @return executions that are running, queued or kept after finishing
+   */
+  public List<ActionExecution> getExecutions( final String owner ) {
+    purge();
+    List<ActionExecution> result = new ArrayList<ActionExecution>();
+    for ( ActionExecution execution : executions.values() ) {
+      if ( owner == null || owner.equals( execution.getOwner() ) ) {
+        result.add( execution );
+      }
+    }
+    return Collections.unmodifiableList( result );
+  }
+
+  /**
+   * Cancels the execution if still running and releases its output, right away or once the cancelled run finishes.
+   *
+   * @return {@code false} if the execution is unknown
+   */
+  public boolean remove( final String id ) {
+    ActionExecution execution = id == null ? null : executions.remove( id );
+    if ( execution == null ) {
+      return false;
+    }
+    execution.cancel();
+    execution.dispose();
+    return true;
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public int getQueuedCount() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Releases finished executions kept longer than the retention period.
+   */
+  void purge() {
+    long oldest = System.currentTimeMillis() - retentionMillis;
+    for ( Iterator<ActionExecution> it = executions.values().iterator(); it.hasNext(); ) {
+      ActionExecution execution = it.next();
+      if ( execution.isDone() && execution.getFinished() != null && execution.getFinished().getTime() < oldest ) {
+        it.remove();
+        execution.dispose();
+      }
+    }
+  }
+
+  /**
+   * Stops the shared service, if it was started, when the platform shuts down. Running executions are interrupted and
+   * every execution's output is released. A later {@link #getInstance()} starts a new service.
+   */
+  public static void shutdownInstance() {
+    ActionExecutionService service;
+    synchronized ( ActionExecutionService.class ) {
+      service = instance;
+      instance = null;
+    }
+    if ( service != null ) {
+      service.shutdown();
+    }
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+    for ( ActionExecution execution : executions.values() ) {
+      execution.dispose();
+    }
+    executions.clear();
+  }
+
+  /**
+   * Tracks the progress of an action sequence and stops it between actions once cancelled.
+   */
+  private static final class ProgressListener implements IExecutionListener {
+    private final ActionExecution execution;
+
+    private ProgressListener( final ActionExecution execution ) {
+      this.execution = execution;
+    }
+
+    @Override
+    public void loaded( final IRuntimeContext runtime ) {
+      checkCancelled();
+      execution.setTotalSteps( countActions( runtime.getActionSequence() ) );
+    }
+
+    @Override
+    public void validated( final IRuntimeContext runtime ) {
+      checkCancelled();
+    }
+
+    @Override
+    public void action( final IRuntimeContext runtime, final ISolutionActionDefinition action ) {
+      execution.stepCompleted();
+      checkCancelled();
+    }
+
+    @Override
+    public void loop( final IRuntimeContext runtime, final long count ) {
+      checkCancelled();
+    }
+
+    private void checkCancelled() {
+      if ( execution.isCancelRequested() ) {
+        throw new CancellationException(
+            "Execution " + execution.getId() + " was cancelled" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+
+    private static int countActions( final IActionSequence sequence ) {
+      if ( sequence == null || sequence.getActionDefinitionsAndSequences() == null ) {
+        return 0;
+      }
+      int count = 0;
+      for ( Object item : sequence.getActionDefinitionsAndSequences() ) {
+        if ( item instanceof IActionSequence ) {
+          count += countActions( (IActionSequence) item );
+        } else if ( item instanceof ISolutionActionDefinition ) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
+}
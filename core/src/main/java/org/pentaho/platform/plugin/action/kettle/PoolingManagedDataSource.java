@@ -22,12 +22,16 @@ package org.pentaho.platform.plugin.action.kettle;
 
 
 import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.pentaho.database.IDatabaseDialect;
 import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.di.core.database.CachedManagedDataSourceInterface;
 import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.engine.services.connection.datasource.dbcp.ConnectionPoolStatistics;
 import org.pentaho.platform.engine.services.connection.datasource.dbcp.PooledDatasourceHelper;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.List;
@@ -39,12 +43,20 @@ public class PoolingManagedDataSource extends PoolingDataSource implements Cache
     private boolean isExpired;
     private String poolConfigHash;
     private List<String> usedBy;
+    private final GenericObjectPool pool;
+    private final ConnectionPoolStatistics statistics;
 
     public PoolingManagedDataSource( IDatabaseConnection databaseConnection, IDatabaseDialect dialect )
       throws Exception {
-        super( PooledDatasourceHelper.createGenericPool( databaseConnection, dialect,
+        this( databaseConnection, PooledDatasourceHelper.createGenericPool( databaseConnection, dialect,
             databaseConnection.getConnectionPoolingProperties() ) );
+    }
+
+    private PoolingManagedDataSource( IDatabaseConnection databaseConnection, GenericObjectPool pool ) {
+        super( pool );
 
+        this.pool = pool;
+        statistics = PooledDatasourceHelper.attachStatistics( databaseConnection, pool );
         isExpired = false;
         poolConfigHash = "";
         usedBy = new ArrayList<>();
@@ -62,6 +74,43 @@ public class PoolingManagedDataSource extends PoolingDataSource implements Cache
         }
     }
 
+    /**
+     * Borrows a connection from the pool, recording the wait in the {@link ConnectionPoolStatistics} of the
+     * datasource.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        boolean timedOut = false;
+        boolean failed = true;
+        try {
+            Connection connection = super.getConnection();
+            failed = false;
+            return connection;
+        } catch ( SQLException e ) {
+            timedOut = ConnectionPoolStatistics.isPoolExhausted( e );
+            throw e;
+        } finally {
+            statistics.recordBorrow( System.nanoTime() - start, timedOut, failed );
+        }
+    }
+
+    public ConnectionPoolStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Closes the pool and stops reporting on it, unregistering the statistics of the datasource from JMX.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            super.close();
+        } finally {
+            statistics.detach( pool );
+        }
+    }
+
     @Override
     public boolean isExpired() {
         return isExpired;
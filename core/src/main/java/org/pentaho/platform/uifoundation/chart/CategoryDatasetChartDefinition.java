@@ -178,7 +178,7 @@ public class CategoryDatasetChartDefinition extends DefaultCategoryDataset imple
 
   private Double maxBarWidth;
 
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   /**
    * version info
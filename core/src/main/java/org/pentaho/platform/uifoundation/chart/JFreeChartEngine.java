@@ -22,6 +22,7 @@ package org.pentaho.platform.uifoundation.chart;
 
 import org.apache.batik.dom.GenericDOMImplementation;
 import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Node;
@@ -106,10 +107,12 @@ import java.awt.Stroke;
 import java.awt.TexturePaint;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
@@ -1189,6 +1192,155 @@ public class JFreeChartEngine {
     // TODO support other image types, e.g. JPG, GIF
   }
 
+  /**
+   * Renders a chart as an image straight to an output stream, e.g. a servlet response, without a temporary file.
+   * 
+   * @param chart
+   *          The chart object to create an image from
+   * @param outputType
+   *          The type of the image to create, OUTPUT_PNG or OUTPUT_SVG
+   * @param width
+   *          The width of the image in pixels
+   * @param height
+   *          The height of the image in pixels
+   * @param out
+   *          The stream to write the image to; it is flushed but not closed
+   * @param info
+   *          Collects the chart entities, may be null
+   * @throws IOException
+   */
+  public static void writeChart( final JFreeChart chart, final int outputType, final int width, final int height,
+      final OutputStream out, final ChartRenderingInfo info ) throws IOException {
+    if ( outputType == JFreeChartEngine.OUTPUT_PNG ) {
+      ChartUtilities.writeChartAsPNG( out, chart, width, height, info );
+    } else if ( outputType == JFreeChartEngine.OUTPUT_SVG ) {
+      org.w3c.dom.DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
+      Document document = domImpl.createDocument( null, "svg", null ); //$NON-NLS-1$
+      SVGGraphics2D svgGenerator = new SVGGraphics2D( document );
+      // set the precision to avoid a null pointer exception in Batik 1.5
+      svgGenerator.getGeneratorContext().setPrecision( 6 );
+      chart.draw( svgGenerator, new Rectangle2D.Double( 0, 0, width, height ), info );
+      Writer writer = new OutputStreamWriter( out, LocaleHelper.getSystemEncoding() );
+      svgGenerator.stream( writer, true );
+      writer.flush();
+    }
+    out.flush();
+  }
+
+  /**
+   * @return the mime type of the images created for the given output type
+   */
+  public static String getMimeType( final int outputType ) {
+    return outputType == JFreeChartEngine.OUTPUT_SVG ? "image/svg+xml" : "image/png"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Renders a chart definition as an image straight to an output stream, e.g. a servlet response or a content item.
+   * An identical chart rendered before is served from the {@link RenderedChartCache} instead of being built and
+   * drawn again.
+   * 
+   * @param dataset
+   *          The chart definition
+   * @param title
+   *          The title of the chart
+   * @param units
+   *          The units of the chart value
+   * @param width
+   *          The width of the image in pixels
+   * @param height
+   *          The height of the image in pixels
+   * @param outputType
+   *          The type of the image to create, OUTPUT_PNG or OUTPUT_SVG
+   * @param out
+   *          The stream to write the image to; it is flushed but not closed
+   * @param info
+   *          Collects the chart entities, may be null
+   * @param logger
+   *          The logger to log any messages to
+   * @throws IOException
+   */
+  public static void writeChart( final Dataset dataset, final String title, final String units, final int width,
+      final int height, final int outputType, final OutputStream out, final ChartRenderingInfo info,
+      final ILogger logger ) throws IOException {
+    RenderedChartCache cache = RenderedChartCache.getInstance();
+    String key = JFreeChartEngine.getCacheKey( cache, dataset, title, units, width, height, outputType );
+    if ( key == null ) {
+      JFreeChart chart = JFreeChartEngine.getChart( dataset, title, units, width, height, logger );
+      JFreeChartEngine.writeChart( chart, outputType, width, height, out, info );
+    } else {
+      out.write( JFreeChartEngine.renderCachedChart( cache, key, dataset, title, units, width, height, outputType,
+          info, logger ) );
+      out.flush();
+    }
+  }
+
+  /**
+   * @return the key of the chart in the cache, or null if the chart is not cached
+   */
+  private static String getCacheKey( final RenderedChartCache cache, final Dataset dataset, final String title,
+      final String units, final int width, final int height, final int outputType ) {
+    if ( !cache.isEnabled()
+        || ( outputType != JFreeChartEngine.OUTPUT_PNG && outputType != JFreeChartEngine.OUTPUT_SVG ) ) {
+      return null;
+    }
+    return RenderedChartCache.fingerprint( dataset, title, units, width, height, outputType );
+  }
+
+  /**
+   * Returns the image of a chart from the {@link RenderedChartCache}, and only builds and draws the chart if it is
+   * not cached yet.
+   */
+  private static byte[] renderCachedChart( final RenderedChartCache cache, final String key, final Dataset dataset,
+      final String title, final String units, final int width, final int height, final int outputType,
+      final ChartRenderingInfo info, final ILogger logger ) throws IOException {
+    ChartRenderingInfo renderingInfo = info == null ? new ChartRenderingInfo() : info;
+    RenderedChartCache.RenderedChart cached = cache.get( key );
+    if ( cached != null ) {
+      try {
+        cached.copyRenderingInfo( renderingInfo );
+        return cached.getBytes();
+      } catch ( CloneNotSupportedException e ) {
+        // render it again below
+      }
+    }
+    JFreeChart chart = JFreeChartEngine.getChart( dataset, title, units, width, height, logger );
+    if ( chart == null ) {
+      throw new IOException(
+          Messages.getInstance().getString( "ChartEngine.ERROR_0002_COULD_NOT_CREATE_CHART" ) ); //$NON-NLS-1$
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JFreeChartEngine.writeChart( chart, outputType, width, height, out, renderingInfo );
+    byte[] bytes = out.toByteArray();
+    cache.put( key, bytes, JFreeChartEngine.getMimeType( outputType ), renderingInfo );
+    return bytes;
+  }
+
+  /**
+   * Saves a chart through the {@link RenderedChartCache}: an identical chart rendered before is reused instead of
+   * being built and drawn again. The temporary file is only written if the cache is configured to do so; the image
+   * is served by its file name from the cache either way.
+   */
+  private static void saveCachedChart( final RenderedChartCache cache, final String key, final Dataset dataset,
+      final String title, final String units, final String path, final int width, final int height,
+      final int outputType, final PrintWriter writer, final ChartRenderingInfo info, final ILogger logger )
+    throws IOException {
+    ChartRenderingInfo renderingInfo = info == null ? new ChartRenderingInfo() : info;
+    byte[] bytes =
+        JFreeChartEngine.renderCachedChart( cache, key, dataset, title, units, width, height, outputType,
+            renderingInfo, logger );
+
+    String extension = outputType == JFreeChartEngine.OUTPUT_SVG ? ".svg" : ".png"; //$NON-NLS-1$ //$NON-NLS-2$
+    File file = new File( path + extension );
+    if ( cache.isWriteTempFiles() ) {
+      FileUtils.writeByteArrayToFile( file, bytes );
+    }
+    cache.alias( file.getName(), key );
+
+    if ( ( outputType == JFreeChartEngine.OUTPUT_PNG ) && ( writer != null ) ) {
+      ChartUtilities.writeImageMap( writer, "map-name", renderingInfo, true ); //$NON-NLS-1$
+    }
+  }
+
   /**
    * Create an image file using dataset object. This method takes a dataset object, e.g. a DialWidgetDefinition,
    * creates a JFreeChart object from it, and then creates an image file.
@@ -1245,11 +1397,18 @@ public class JFreeChartEngine {
       final int width, final int height, final int outputType, final PrintWriter writer, final ChartRenderingInfo info,
       final ILogger logger ) {
 
-    JFreeChart chart = JFreeChartEngine.getChart( dataset, title, units, width, height, logger );
+    RenderedChartCache cache = RenderedChartCache.getInstance();
+    String key = JFreeChartEngine.getCacheKey( cache, dataset, title, units, width, height, outputType );
 
     try {
       String filePath = PentahoSystem.getApplicationContext().getFileOutputPath( fileName );
-      JFreeChartEngine.saveChart( chart, filePath, width, height, outputType, writer, info );
+      if ( key == null ) {
+        JFreeChart chart = JFreeChartEngine.getChart( dataset, title, units, width, height, logger );
+        JFreeChartEngine.saveChart( chart, filePath, width, height, outputType, writer, info );
+      } else {
+        JFreeChartEngine.saveCachedChart( cache, key, dataset, title, units, filePath, width, height, outputType,
+            writer, info, logger );
+      }
     } catch ( IOException e ) {
       logger.error( Messages.getInstance().getString( "ChartEngine.ERROR_0001_COULD_NOT_CREATE_CHART" ), e ); //$NON-NLS-1$
     }
@@ -117,7 +117,7 @@ public class PieDatasetChartDefinition extends DefaultPieDataset implements Char
   private double labelGap = 0.10;
 
   // Other stuff
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   private Font legendFont = null;
 
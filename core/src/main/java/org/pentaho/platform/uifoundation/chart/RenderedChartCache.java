@@ -0,0 +1,488 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.uifoundation.chart;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.entity.ChartEntity;
+import org.jfree.chart.entity.EntityCollection;
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.data.general.Dataset;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of rendered chart images keyed by a digest of the chart definition (its data and chart attributes), the
+ * title, the units, the image dimensions and the output type, so that identical charts rendered by
+ * {@link JFreeChartEngine} are only built, drawn and encoded once.
+ * <p>
+ * Recently used images are kept in memory up to {@link #getMaxMemoryBytes()}; older ones are spilled to a disk tier
+ * under <tt>system/tmp/chart-cache</tt> that is bounded by {@link #getMaxDiskBytes()}. The disk tier only lives as
+ * long as the cache, so it is purged when the cache is created. Files are read and written outside of the cache
+ * lock. Every temporary image name handed out for a chart is registered as an alias of its cache entry, so that
+ * {@code GetImage} can stream the cached bytes without reading the temporary file, which makes writing that file
+ * optional.
+ * </p>
+ * Settings, read from <tt>pentaho.xml</tt> when the shared instance is created:
+ * <ul>
+ * <li><tt>chart-cache/enabled</tt> (default {@code true})</li>
+ * <li><tt>chart-cache/max-memory-bytes</tt> (default 8 MB)</li>
+ * <li><tt>chart-cache/max-disk-bytes</tt> (default 64 MB, {@code 0} disables the disk tier)</li>
+ * <li><tt>chart-cache/write-temp-files</tt> (default {@code true}); when {@code false} charts are only served from
+ * the cache</li>
+ * </ul>
+ */
+public class RenderedChartCache {
+
+  public static final long DEFAULT_MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+
+  public static final long DEFAULT_MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+  static final int MAX_ALIASES = 10000;
+
+  private static final String SETTING_ENABLED = "chart-cache/enabled"; //$NON-NLS-1$
+
+  private static final String SETTING_WRITE_TEMP_FILES = "chart-cache/write-temp-files"; //$NON-NLS-1$
+
+  private static final String SETTING_MAX_MEMORY_BYTES = "chart-cache/max-memory-bytes"; //$NON-NLS-1$
+
+  private static final String SETTING_MAX_DISK_BYTES = "chart-cache/max-disk-bytes"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( RenderedChartCache.class );
+
+  private static RenderedChartCache instance;
+
+  /**
+   * A rendered chart image together with the rendering info (image map entities) produced while drawing it.
+   */
+  public static final class RenderedChart {
+    private final String key;
+    private final String mimeType;
+    private final ChartRenderingInfo info;
+    private final long length;
+    /** {@code null} while the chart is only on disk */
+    private final byte[] bytes;
+    /** the spilled image, {@code null} while the chart is in memory */
+    private final File file;
+
+    private RenderedChart( final String key, final byte[] bytes, final long length, final String mimeType,
+                           final ChartRenderingInfo info, final File file ) {
+      this.key = key;
+      this.bytes = bytes;
+      this.length = length;
+      this.mimeType = mimeType;
+      this.info = info;
+      this.file = file;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    public String getMimeType() {
+      return mimeType;
+    }
+
+    /**
+     * Copies the cached chart area, plot areas and entities into the rendering info of a caller. Entities are
+     * cloned since callers customize their URLs and tool tips.
+     */
+    void copyRenderingInfo( final ChartRenderingInfo target ) throws CloneNotSupportedException {
+      if ( target == null || info == null ) {
+        return;
+      }
+      if ( info.getChartArea() != null ) {
+        target.setChartArea( (Rectangle2D) info.getChartArea().clone() );
+      }
+      PlotRenderingInfo plotInfo = info.getPlotInfo();
+      if ( plotInfo != null && target.getPlotInfo() != null ) {
+        if ( plotInfo.getPlotArea() != null ) {
+          target.getPlotInfo().setPlotArea( (Rectangle2D) plotInfo.getPlotArea().clone() );
+        }
+        if ( plotInfo.getDataArea() != null ) {
+          target.getPlotInfo().setDataArea( (Rectangle2D) plotInfo.getDataArea().clone() );
+        }
+      }
+      EntityCollection entities = info.getEntityCollection();
+      if ( entities != null && target.getEntityCollection() != null ) {
+        for ( Iterator iterator = entities.iterator(); iterator.hasNext(); ) {
+          target.getEntityCollection().add( (ChartEntity) ( (ChartEntity) iterator.next() ).clone() );
+        }
+      }
+    }
+  }
+
+  private final boolean enabled;
+
+  private final boolean writeTempFiles;
+
+  private final long maxMemoryBytes;
+
+  private final long maxDiskBytes;
+
+  private final File diskDirectory;
+
+  /** memory tier in access order */
+  private final LinkedHashMap<String, RenderedChart> memory = new LinkedHashMap<String, RenderedChart>( 16, 0.75f,
+    true );
+
+  /** disk tier in spill order */
+  private final LinkedHashMap<String, RenderedChart> disk = new LinkedHashMap<String, RenderedChart>();
+
+  private final LinkedHashMap<String, String> aliases = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+    private static final long serialVersionUID = -3470431867722130519L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, String> eldest ) {
+      return size() > MAX_ALIASES;
+    }
+  };
+
+  private long memoryBytes;
+
+  private long diskBytes;
+
+  /** makes every spilled file name unique, so a file being written is never one that is being deleted */
+  private long spillCount;
+
+  RenderedChartCache( final boolean enabled, final boolean writeTempFiles, final long maxMemoryBytes,
+                      final long maxDiskBytes, final File diskDirectory ) {
+    this.enabled = enabled;
+    this.writeTempFiles = writeTempFiles || !enabled;
+    this.maxMemoryBytes = Math.max( maxMemoryBytes, 0 );
+    this.maxDiskBytes = diskDirectory == null ? 0 : Math.max( maxDiskBytes, 0 );
+    this.diskDirectory = diskDirectory;
+    purgeDiskDirectory();
+  }
+
+  /**
+   * @return the shared cache, configured from the system settings on first use
+   */
+  public static synchronized RenderedChartCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = Boolean.parseBoolean( PentahoSystem.getSystemSetting( SETTING_ENABLED, "true" ) ); //$NON-NLS-1$
+      boolean writeTempFiles =
+          Boolean.parseBoolean( PentahoSystem.getSystemSetting( SETTING_WRITE_TEMP_FILES, "true" ) ); //$NON-NLS-1$
+      long maxMemoryBytes = getLongSetting( SETTING_MAX_MEMORY_BYTES, DEFAULT_MAX_MEMORY_BYTES );
+      long maxDiskBytes = getLongSetting( SETTING_MAX_DISK_BYTES, DEFAULT_MAX_DISK_BYTES );
+      File diskDirectory = null;
+      IApplicationContext context = PentahoSystem.getApplicationContext();
+      if ( context != null && maxDiskBytes > 0 ) {
+        diskDirectory = new File( context.getSolutionPath( "system/tmp/chart-cache" ) ); //$NON-NLS-1$
+      }
+      instance = new RenderedChartCache( enabled, writeTempFiles, maxMemoryBytes, maxDiskBytes, diskDirectory );
+    }
+    return instance;
+  }
+
+  private static long getLongSetting( final String name, final long defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( name, null );
+    if ( value != null ) {
+      try {
+        return Long.parseLong( value.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid value for " + name + ": " + value ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Computes the cache key of a chart from its definition and the parameters it is rendered with, before the chart
+   * is built. The chart definitions carry the data and every chart attribute, and {@link JFreeChartEngine} builds
+   * the same chart from the same definition, title and units.
+   *
+   * @return the key, or {@code null} if the chart cannot be cached, e.g. because part of its definition is not
+   *         serializable or it uses background images
+   */
+  static String fingerprint( final Dataset definition, final String title, final String units, final int width,
+                             final int height, final int outputType ) {
+    if ( definition == null ) {
+      return null;
+    }
+    if ( definition instanceof ChartDefinition ) {
+      ChartDefinition chartDefinition = (ChartDefinition) definition;
+      if ( chartDefinition.getChartBackgroundImage() != null || chartDefinition.getPlotBackgroundImage() != null ) {
+        return null;
+      }
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "SHA-1" ); //$NON-NLS-1$
+      ObjectOutputStream out =
+          new ObjectOutputStream( new DigestOutputStream( NullOutputStream.NULL_OUTPUT_STREAM, digest ) );
+      out.writeInt( outputType );
+      out.writeInt( width );
+      out.writeInt( height );
+      out.writeObject( title );
+      out.writeObject( units );
+      out.writeObject( definition );
+      out.close();
+      return Hex.encodeHexString( digest.digest() );
+    } catch ( IOException e ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Chart is not cacheable: " + e.getMessage() ); //$NON-NLS-1$
+      }
+      return null;
+    } catch ( NoSuchAlgorithmException e ) {
+      return null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return whether rendered charts are still written to the temporary file requested by the caller
+   */
+  public boolean isWriteTempFiles() {
+    return writeTempFiles;
+  }
+
+  public long getMaxMemoryBytes() {
+    return maxMemoryBytes;
+  }
+
+  public long getMaxDiskBytes() {
+    return maxDiskBytes;
+  }
+
+  /**
+   * @return the cached chart, promoted to the memory tier if it was spilled to disk, or {@code null}
+   */
+  public RenderedChart get( final String key ) {
+    RenderedChart spilled;
+    synchronized ( this ) {
+      RenderedChart chart = memory.get( key );
+      if ( chart != null ) {
+        return chart;
+      }
+      spilled = disk.get( key );
+      if ( spilled == null ) {
+        return null;
+      }
+    }
+    RenderedChart chart;
+    try {
+      chart = new RenderedChart( key, FileUtils.readFileToByteArray( spilled.file ), spilled.length,
+        spilled.mimeType, spilled.info, null );
+    } catch ( IOException e ) {
+      // evicted while it was being read
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Could not read cached chart " + spilled.file, e ); //$NON-NLS-1$
+      }
+      return null;
+    }
+    List<RenderedChart> evicted = Collections.emptyList();
+    synchronized ( this ) {
+      if ( disk.get( key ) == spilled ) {
+        disk.remove( key );
+        diskBytes -= spilled.length;
+        evicted = putInMemory( chart );
+      } else {
+        spilled = null;
+      }
+    }
+    if ( spilled != null ) {
+      FileUtils.deleteQuietly( spilled.file );
+    }
+    spill( evicted );
+    return chart;
+  }
+
+  /**
+   * @return the cached chart registered under the given temporary image name, or {@code null}
+   */
+  public RenderedChart getByName( final String name ) {
+    String key;
+    synchronized ( this ) {
+      key = aliases.get( name );
+    }
+    return key == null ? null : get( key );
+  }
+
+  /**
+   * Caches a rendered chart. The rendering info is copied, so the caller may keep customizing its own.
+   */
+  public void put( final String key, final byte[] bytes, final String mimeType, final ChartRenderingInfo info ) {
+    ChartRenderingInfo copy = null;
+    if ( info != null ) {
+      try {
+        copy = (ChartRenderingInfo) info.clone();
+      } catch ( CloneNotSupportedException e ) {
+        return;
+      }
+    }
+    File replaced;
+    List<RenderedChart> evicted;
+    synchronized ( this ) {
+      replaced = remove( key );
+      evicted = putInMemory( new RenderedChart( key, bytes, bytes.length, mimeType, copy, null ) );
+    }
+    FileUtils.deleteQuietly( replaced );
+    spill( evicted );
+  }
+
+  /**
+   * Registers a temporary image name under which a cached chart is served.
+   */
+  public synchronized void alias( final String name, final String key ) {
+    aliases.put( name, key );
+  }
+
+  public void clear() {
+    List<File> files = new ArrayList<File>();
+    synchronized ( this ) {
+      for ( RenderedChart chart : disk.values() ) {
+        files.add( chart.file );
+      }
+      memory.clear();
+      disk.clear();
+      aliases.clear();
+      memoryBytes = 0;
+      diskBytes = 0;
+    }
+    for ( File file : files ) {
+      FileUtils.deleteQuietly( file );
+    }
+  }
+
+  synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  /**
+   * Removes files left behind by a previous run; their entries were lost with it.
+   */
+  private void purgeDiskDirectory() {
+    if ( diskDirectory == null || !diskDirectory.isDirectory() ) {
+      return;
+    }
+    try {
+      FileUtils.cleanDirectory( diskDirectory );
+    } catch ( IOException e ) {
+      logger.warn( "Could not purge the chart cache directory " + diskDirectory, e ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * @return the spilled file of the removed entry, to be deleted outside of the lock, or {@code null}
+   */
+  private File remove( final String key ) {
+    RenderedChart chart = memory.remove( key );
+    if ( chart != null ) {
+      memoryBytes -= chart.length;
+    }
+    chart = disk.remove( key );
+    if ( chart == null ) {
+      return null;
+    }
+    diskBytes -= chart.length;
+    return chart.file;
+  }
+
+  /**
+   * @return the charts evicted from the memory tier that should be spilled to disk outside of the lock
+   */
+  private List<RenderedChart> putInMemory( final RenderedChart chart ) {
+    List<RenderedChart> evicted = Collections.emptyList();
+    memory.put( chart.key, chart );
+    memoryBytes += chart.length;
+    Iterator<RenderedChart> eldest = memory.values().iterator();
+    while ( memoryBytes > maxMemoryBytes && eldest.hasNext() ) {
+      RenderedChart candidate = eldest.next();
+      eldest.remove();
+      memoryBytes -= candidate.length;
+      if ( maxDiskBytes > 0 && candidate.length <= maxDiskBytes ) {
+        if ( evicted.isEmpty() ) {
+          evicted = new ArrayList<RenderedChart>();
+        }
+        evicted.add( candidate );
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Writes charts evicted from memory to the disk tier. A chart is only registered on disk once its file is
+   * complete, and not at all if it was cached again in the meantime.
+   */
+  private void spill( final List<RenderedChart> charts ) {
+    for ( RenderedChart chart : charts ) {
+      File file;
+      synchronized ( this ) {
+        file = new File( diskDirectory, chart.key + "-" + ( ++spillCount ) ); //$NON-NLS-1$
+      }
+      try {
+        FileUtils.writeByteArrayToFile( file, chart.bytes );
+      } catch ( IOException e ) {
+        logger.warn( "Could not spill cached chart to " + file, e ); //$NON-NLS-1$
+        FileUtils.deleteQuietly( file );
+        continue;
+      }
+      List<File> obsolete = new ArrayList<File>();
+      synchronized ( this ) {
+        if ( memory.containsKey( chart.key ) || disk.containsKey( chart.key ) ) {
+          obsolete.add( file );
+        } else {
+          disk.put( chart.key, new RenderedChart( chart.key, null, chart.length, chart.mimeType, chart.info, file ) );
+          diskBytes += chart.length;
+          Iterator<RenderedChart> eldest = disk.values().iterator();
+          while ( diskBytes > maxDiskBytes && eldest.hasNext() ) {
+            RenderedChart evicted = eldest.next();
+            eldest.remove();
+            diskBytes -= evicted.length;
+            obsolete.add( evicted.file );
+          }
+        }
+      }
+      for ( File obsoleteFile : obsolete ) {
+        FileUtils.deleteQuietly( obsoleteFile );
+      }
+    }
+  }
+}
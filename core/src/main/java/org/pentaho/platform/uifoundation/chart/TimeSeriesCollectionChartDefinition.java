@@ -153,7 +153,7 @@ public class TimeSeriesCollectionChartDefinition extends TimeSeriesCollection im
   private String tooltipXFormat = "d-MMM-yyyy"; //$NON-NLS-1$
 
   // Other stuff
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   private static final long serialVersionUID = 1717509132920946530L;
 
@@ -145,7 +145,7 @@ public class TimeTableXYDatasetChartDefinition extends TimeTableXYDataset implem
   private String tooltipXFormat = "d-MMM-yyyy"; //$NON-NLS-1$
 
   // Other stuff
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   /**
    *
@@ -151,7 +151,7 @@ public class XYSeriesCollectionChartDefinition extends XYSeriesCollection implem
   private String tooltipXFormat = "0"; //$NON-NLS-1$
 
   // Other stuff
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   public XYSeriesCollectionChartDefinition( final IPentahoSession session ) {
     super();
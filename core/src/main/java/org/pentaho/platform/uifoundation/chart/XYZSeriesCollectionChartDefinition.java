@@ -55,7 +55,7 @@ public class XYZSeriesCollectionChartDefinition extends DefaultXYZDataset implem
   private static final long serialVersionUID = -1656592010807615066L;
 
   // Chart Definition variables
-  private IPentahoSession session;
+  private transient IPentahoSession session;
 
   private int chartType = JFreeChartEngine.UNDEFINED_CHART_TYPE;
 
@@ -0,0 +1,222 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPoolStatisticsTest {
+
+  private GenericObjectPool<Object> pool;
+
+  @Before
+  public void setUp() {
+    pool = new GenericObjectPool<Object>( new BasePooledObjectFactory<Object>() {
+      @Override
+      public Object create() {
+        return new Object();
+      }
+
+      @Override
+      public PooledObject<Object> wrap( Object obj ) {
+        return new DefaultPooledObject<Object>( obj );
+      }
+    } );
+    pool.setMaxTotal( 4 );
+    pool.setMinIdle( 0 );
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testRecordBorrow() {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "test" );
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 3 ), false, false );
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 20000 ), true, true );
+    statistics.recordBorrow( 0, false, true );
+
+    assertEquals( 3, statistics.getBorrowCount() );
+    assertEquals( 1, statistics.getTimeoutCount() );
+    assertEquals( 1, statistics.getFailureCount() );
+    assertEquals( 20003, statistics.getTotalWaitTimeMillis() );
+    Map<Long, Long> histogram = statistics.getWaitHistogram();
+    assertEquals( Long.valueOf( 1 ), histogram.get( 1L ) );
+    assertEquals( Long.valueOf( 1 ), histogram.get( 5L ) );
+    assertEquals( Long.valueOf( 1 ), histogram.get( Long.MAX_VALUE ) );
+    // no pool attached yet
+    assertEquals( 0, statistics.getMaxTotal() );
+  }
+
+  @Test
+  public void testGauges() throws Exception {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "test" );
+    statistics.attach( pool, false, 8, 50 );
+    Object borrowed = pool.borrowObject();
+    pool.addObject();
+
+    assertEquals( 1, statistics.getNumActive() );
+    assertEquals( 1, statistics.getNumIdle() );
+    assertEquals( 4, statistics.getMaxTotal() );
+    assertEquals( 2, statistics.getCreatedCount() );
+    pool.returnObject( borrowed );
+  }
+
+  @Test
+  public void testNotAdaptive() throws Exception {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "test" );
+    statistics.attach( pool, false, 8, 50 );
+    List<Object> borrowed = borrowAll();
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 500 ), true, true );
+
+    assertFalse( statistics.adjust() );
+    assertEquals( 4, pool.getMaxTotal() );
+    returnAll( borrowed );
+  }
+
+  @Test
+  public void testAdaptiveGrowAndShrink() throws Exception {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "test" );
+    statistics.attach( pool, true, 5, 50 );
+    List<Object> borrowed = borrowAll();
+
+    // slow borrows from a saturated pool grow it up to the bound
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 200 ), false, false );
+    assertTrue( statistics.adjust() );
+    assertEquals( 5, pool.getMaxTotal() );
+    assertEquals( 1, pool.getMinIdle() );
+    borrowed.add( pool.borrowObject() );
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 200 ), false, false );
+    assertFalse( statistics.adjust() );
+
+    // quiet again, back to the configured size
+    returnAll( borrowed );
+    statistics.recordBorrow( 0, false, false );
+    assertTrue( statistics.adjust() );
+    assertEquals( 4, pool.getMaxTotal() );
+    assertEquals( 0, pool.getMinIdle() );
+    assertFalse( statistics.adjust() );
+  }
+
+  @Test
+  public void testFastBorrowsDoNotGrow() throws Exception {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "test" );
+    statistics.attach( pool, true, 8, 50 );
+    List<Object> borrowed = borrowAll();
+    statistics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 2 ), false, false );
+
+    assertFalse( statistics.adjust() );
+    assertEquals( 4, pool.getMaxTotal() );
+    returnAll( borrowed );
+  }
+
+  @Test
+  public void testDetachUnregisters() throws Exception {
+    ObjectName name =
+        new ObjectName( "org.pentaho.platform:type=ConnectionPool,name=" + ObjectName.quote( "detach" ) );
+    Map<String, String> attributes = new HashMap<String, String>();
+    attributes.put( ConnectionPoolStatistics.ADAPTIVE_SIZING_KEY, "false" );
+    attributes.put( ConnectionPoolStatistics.ADAPTIVE_MAX_ACTIVE_KEY, "8" );
+    attributes.put( ConnectionPoolStatistics.ADAPTIVE_WAIT_THRESHOLD_KEY, "50" );
+    ConnectionPoolStatistics statistics = ConnectionPoolStatistics.forDatasource( "detach" );
+    statistics.attach( pool, attributes );
+    assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+
+    // closing an older pool of the datasource leaves the statistics of the current one alone
+    statistics.detach( mock( GenericObjectPool.class ) );
+    assertSame( statistics, ConnectionPoolStatistics.getAll().get( "detach" ) );
+
+    statistics.detach( pool );
+    assertFalse( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+    assertNull( ConnectionPoolStatistics.getAll().get( "detach" ) );
+    assertEquals( 0, statistics.getMaxTotal() );
+  }
+
+  @Test
+  public void testShutdownUnregistersAll() throws Exception {
+    ObjectName name =
+        new ObjectName( "org.pentaho.platform:type=ConnectionPool,name=" + ObjectName.quote( "shutdown" ) );
+    ConnectionPoolStatistics.forDatasource( "shutdown" );
+    assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+
+    ConnectionPoolStatistics.shutdown();
+    assertFalse( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+    assertTrue( ConnectionPoolStatistics.getAll().isEmpty() );
+  }
+
+  @Test
+  public void testIsPoolExhausted() {
+    assertTrue( ConnectionPoolStatistics.isPoolExhausted( poolError(
+        new NoSuchElementException( "Timeout waiting for idle object, maxWaitDuration=PT1S" ) ) ) );
+    assertTrue(
+        ConnectionPoolStatistics.isPoolExhausted( poolError( new NoSuchElementException( "Pool exhausted" ) ) ) );
+
+    NoSuchElementException validationFailure = new NoSuchElementException( "Unable to validate object" );
+    validationFailure.initCause( new SQLException( "connection refused" ) );
+    assertFalse( ConnectionPoolStatistics.isPoolExhausted( poolError( validationFailure ) ) );
+    assertFalse( ConnectionPoolStatistics.isPoolExhausted( poolError( new NoSuchElementException() ) ) );
+    assertFalse( ConnectionPoolStatistics.isPoolExhausted( new SQLException( "Cannot create PoolableConnection" ) ) );
+  }
+
+  private static SQLException poolError( NoSuchElementException e ) {
+    return new SQLException( "Cannot get a connection, pool error " + e.getMessage(), e );
+  }
+
+  private List<Object> borrowAll() throws Exception {
+    List<Object> borrowed = new ArrayList<Object>();
+    for ( int i = 0; i < pool.getMaxTotal(); i++ ) {
+      borrowed.add( pool.borrowObject() );
+    }
+    return borrowed;
+  }
+
+  private void returnAll( List<Object> borrowed ) {
+    for ( Object object : borrowed ) {
+      pool.returnObject( object );
+    }
+    borrowed.clear();
+  }
+}
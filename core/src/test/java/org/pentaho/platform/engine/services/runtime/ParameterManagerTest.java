@@ -0,0 +1,175 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.map.ListOrderedMap;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource;
+
+public class ParameterManagerTest {
+
+  static ActionParameter sequenceInput( String name, String requestName ) {
+    List<ActionParameterSource> sources = new ArrayList<ActionParameterSource>();
+    sources.add( new ActionParameterSource( "request", requestName ) );
+    return new ActionParameter( name, "string", null, sources, null );
+  }
+
+  static IActionSequence sequence( Map<String, ActionParameter> inputs, List<?> actions ) {
+    IActionSequence sequence = mock( IActionSequence.class );
+    when( sequence.getInputDefinitions() ).thenReturn( inputs );
+    when( sequence.getResourceDefinitions() ).thenReturn( new ListOrderedMap() );
+    when( sequence.getOutputDefinitions() ).thenReturn( new ListOrderedMap() );
+    when( sequence.getActionDefinitionsAndSequences() ).thenReturn( actions );
+    return sequence;
+  }
+
+  /**
+   * An action reading the given inputs, mapped to sequence parameters of the same name prefixed with {@code seq-},
+   * and writing one output mapped to {@code outputName}.
+   */
+  static ISolutionActionDefinition action( Map<String, ActionParameter> inputs, String outputName ) {
+    ISolutionActionDefinition action = mock( ISolutionActionDefinition.class );
+    Map<String, ActionParameter> outputs = new ListOrderedMap();
+    outputs.put( "out", new ActionParameter( "out", "string", null, null, null ) );
+    when( action.getActionInputDefinitions() ).thenReturn( inputs );
+    when( action.getActionOutputDefinitions() ).thenReturn( outputs );
+    when( action.getMappedInputName( anyString() ) ).thenAnswer( new Answer<String>() {
+      @Override
+      public String answer( InvocationOnMock invocation ) {
+        return "seq-" + invocation.getArguments()[0];
+      }
+    } );
+    when( action.getMappedOutputName( "out" ) ).thenReturn( outputName );
+    when( action.hasActionResources() ).thenReturn( false );
+    return action;
+  }
+
+  @Test
+  public void testPlannedInputsAndOutputs() {
+    Map<String, ActionParameter> sequenceInputs = new ListOrderedMap();
+    ActionParameter region = sequenceInput( "seq-region", "regn" );
+    sequenceInputs.put( "seq-region", region );
+
+    Map<String, ActionParameter> inputs = new ListOrderedMap();
+    inputs.put( "region", new ActionParameter( "region", "string", null, null, null ) );
+    ActionParameter withDefault = new ActionParameter( "limit", "string", null, null, "10" );
+    inputs.put( "limit", withDefault );
+    inputs.put( "missing", new ActionParameter( "missing", "string", null, null, null ) );
+    ISolutionActionDefinition first = action( inputs, "result" );
+
+    ParameterManager manager = new ParameterManager( sequence( sequenceInputs, Arrays.asList( first ) ) );
+    manager.setCurrentParameters( first );
+
+    assertSame( region, manager.getCurrentInput( "region" ) );
+    assertSame( withDefault, manager.getCurrentInput( "limit" ) );
+    assertNull( manager.getCurrentInput( "missing" ) );
+    assertEquals( Arrays.asList( "region", "limit" ), new ArrayList<Object>( manager.getCurrentInputNames() ) );
+
+    manager.getCurrentOutput( "out" ).setValue( "done" );
+    manager.addOutputParameters( first );
+    assertEquals( "done", manager.getInput( "result" ).getValue() );
+  }
+
+  @Test
+  public void testPlansSharedPerRevision() {
+    Map<String, ActionParameter> inputs = new ListOrderedMap();
+    inputs.put( "limit", new ActionParameter( "limit", "string", null, null, "10" ) );
+    List<ISolutionActionDefinition> firstParse = Arrays.asList( action( inputs, "result" ) );
+    List<ISolutionActionDefinition> secondParse = Arrays.asList( action( inputs, "result" ) );
+
+    ActionParameterPlan[] plans = ActionParameterPlan.forSequence( "/public/shared.xaction", "1.0@1", firstParse );
+    assertSame( plans, ActionParameterPlan.forSequence( "/public/shared.xaction", "1.0@1", secondParse ) );
+    assertNotSame( plans, ActionParameterPlan.forSequence( "/public/shared.xaction", "1.1@2", secondParse ) );
+    assertNotSame( plans, ActionParameterPlan.forSequence( "/public/other.xaction", "1.0@1", secondParse ) );
+    assertNotSame( ActionParameterPlan.forSequence( "/public/shared.xaction", null, firstParse ),
+        ActionParameterPlan.forSequence( "/public/shared.xaction", null, firstParse ) );
+  }
+
+  @Test
+  public void testSharedPlanUsesParametersOfEachParse() {
+    IActionSequence[] parses = new IActionSequence[2];
+    ISolutionActionDefinition[] actions = new ISolutionActionDefinition[2];
+    ActionParameter[] defaults = new ActionParameter[2];
+    for ( int i = 0; i < 2; i++ ) {
+      Map<String, ActionParameter> inputs = new ListOrderedMap();
+      defaults[i] = new ActionParameter( "limit", "string", null, null, "10" );
+      inputs.put( "limit", defaults[i] );
+      actions[i] = action( inputs, "result" );
+      parses[i] = sequence( new ListOrderedMap(), Arrays.asList( actions[i] ) );
+      when( parses[i].getSolutionPath() ).thenReturn( "/public/parsed.xaction" );
+      when( parses[i].getRevision() ).thenReturn( "1.0@1" );
+    }
+
+    for ( int i = 0; i < 2; i++ ) {
+      ParameterManager manager = new ParameterManager( parses[i] );
+      manager.setCurrentParameters( actions[i] );
+      assertSame( defaults[i], manager.getCurrentInput( "limit" ) );
+      assertSame( actions[i].getActionOutputDefinitions().get( "out" ), manager.getCurrentOutput( "out" ) );
+    }
+  }
+
+  @Test
+  public void testParametersWithoutSourcesDoNotAllocate() {
+    ActionParameter parameter = new ActionParameter( "x", "string", null, null, null );
+    assertTrue( parameter.getVariables().isEmpty() );
+    assertSame( parameter.getVariables(), parameter.getVariables() );
+  }
+
+  @Test
+  public void testNestedAndUnplannedActions() {
+    Map<String, ActionParameter> inputs = new ListOrderedMap();
+    inputs.put( "a", new ActionParameter( "a", "string", null, null, "1" ) );
+    ISolutionActionDefinition nested = action( inputs, "nested-result" );
+    IActionSequence loop = sequence( new ListOrderedMap(), Arrays.asList( nested ) );
+
+    ParameterManager manager = new ParameterManager( sequence( new ListOrderedMap(), Arrays.asList( loop ) ) );
+    for ( int i = 0; i < 3; i++ ) {
+      manager.setCurrentParameters( nested );
+      manager.getCurrentOutput( "out" ).setValue( "v" + i );
+      manager.addOutputParameters( nested );
+    }
+    assertEquals( "v2", manager.getInput( "nested-result" ).getValue() );
+
+    ISolutionActionDefinition other = action( new ListOrderedMap(), "other-result" );
+    manager.setCurrentParameters( other );
+    assertNull( manager.getCurrentInput( "a" ) );
+    assertEquals( 1, manager.getCurrentOutputNames().size() );
+  }
+}
@@ -0,0 +1,277 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.solution;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.action.IStreamingAction;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ActionExecutionServiceTest {
+
+  private ActionExecutionService service;
+
+  private IPentahoSession session;
+
+  @Before
+  public void setUp() {
+    service = new ActionExecutionService( 1, 1, 30 );
+    session = mock( IPentahoSession.class );
+    when( session.getName() ).thenReturn( "joe" );
+  }
+
+  @After
+  public void tearDown() {
+    service.shutdown();
+  }
+
+  @Test
+  public void testStreamingActionOutput() throws Exception {
+    ActionExecution execution = service.submit( session, "hello", new StreamingAction( "hello world" ) );
+    awaitDone( execution );
+
+    assertEquals( ActionExecution.State.SUCCEEDED, execution.getState() );
+    assertEquals( "joe", execution.getOwner() );
+    assertEquals( "text/plain", execution.getMimeType() );
+    assertEquals( 1.0, execution.getProgress(), 0 );
+    assertEquals( 11, execution.getOutputLength() );
+    assertArrayEquals( "world".getBytes( "UTF-8" ), execution.readOutput( 6, 100 ) );
+    assertEquals( 0, execution.readOutput( 11, 100 ).length );
+    assertEquals( 1, service.getExecutions( "joe" ).size() );
+    assertEquals( 0, service.getExecutions( "suzy" ).size() );
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    ActionExecution execution = service.submit( session, "failing", new ActionExecutionService.Work() {
+      @Override
+      public boolean run( ActionExecution execution, OutputStream output ) {
+        throw new IllegalStateException( "boom" );
+      }
+    } );
+    awaitDone( execution );
+
+    assertEquals( ActionExecution.State.FAILED, execution.getState() );
+    assertEquals( "boom", execution.getErrorMessage() );
+  }
+
+  @Test
+  public void testCancelRunsHooks() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch hookRan = new CountDownLatch( 1 );
+    ActionExecution execution = service.submit( session, "blocking", new ActionExecutionService.Work() {
+      @Override
+      public boolean run( ActionExecution execution, OutputStream output ) throws Exception {
+        // stands in for a driver call that ignores interrupts
+        assertTrue( ActionExecution.addCancelHook( new Runnable() {
+          @Override
+          public void run() {
+            hookRan.countDown();
+          }
+        } ) );
+        started.countDown();
+        while ( hookRan.getCount() > 0 ) {
+          try {
+            hookRan.await();
+          } catch ( InterruptedException ignored ) {
+            // wait for the hook
+          }
+        }
+        return true;
+      }
+    } );
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    assertEquals( ActionExecution.State.RUNNING, execution.getState() );
+
+    assertTrue( execution.cancel() );
+    awaitDone( execution );
+    assertEquals( ActionExecution.State.CANCELLED, execution.getState() );
+    assertFalse( execution.cancel() );
+  }
+
+  @Test
+  public void testBoundedQueue() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    ActionExecutionService.Work blocking = new ActionExecutionService.Work() {
+      @Override
+      public boolean run( ActionExecution execution, OutputStream output ) throws Exception {
+        release.await();
+        return true;
+      }
+    };
+    ActionExecution running = service.submit( session, "running", blocking );
+    ActionExecution queued = service.submit( session, "queued", blocking );
+    try {
+      service.submit( session, "rejected", blocking );
+      fail( "queue should be full" );
+    } catch ( RejectedExecutionException expected ) {
+      // expected
+    }
+
+    // a queued execution is cancelled without ever running
+    assertTrue( queued.cancel() );
+    assertEquals( ActionExecution.State.CANCELLED, queued.getState() );
+
+    release.countDown();
+    awaitDone( running );
+    assertEquals( ActionExecution.State.SUCCEEDED, running.getState() );
+    assertTrue( service.remove( running.getId() ) );
+    assertNull( service.get( running.getId() ) );
+  }
+
+  @Test
+  public void testOutputIsSpooledOnlyWhileRunning() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    ActionExecution running = service.submit( session, "running", new ActionExecutionService.Work() {
+      @Override
+      public boolean run( ActionExecution execution, OutputStream output ) throws Exception {
+        output.write( 'x' );
+        started.countDown();
+        while ( release.getCount() > 0 ) {
+          try {
+            release.await();
+          } catch ( InterruptedException ignored ) {
+            // keep running after the cancel, like a driver call that ignores interrupts
+          }
+        }
+        return true;
+      }
+    } );
+    ActionExecution queued = service.submit( session, "queued", new StreamingAction( "queued" ) );
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    // no spool file is opened while queued
+    assertNull( queued.getOutputFile() );
+    assertEquals( 0, queued.getOutputLength() );
+    assertEquals( 0, queued.readOutput( 0, 100 ).length );
+
+    // removing a running execution releases its output once the run finishes
+    File outputFile = running.getOutputFile();
+    assertTrue( outputFile.exists() );
+    assertTrue( service.remove( running.getId() ) );
+    assertTrue( outputFile.exists() );
+    release.countDown();
+    awaitDone( running );
+    awaitDeleted( outputFile );
+
+    awaitDone( queued );
+    outputFile = queued.getOutputFile();
+    assertTrue( outputFile.exists() );
+    assertTrue( service.remove( queued.getId() ) );
+    assertFalse( outputFile.exists() );
+  }
+
+  @Test
+  public void testShutdownListenerStopsSharedService() throws Exception {
+    // nothing to stop before the service is first used
+    ActionExecutionService.shutdownInstance();
+
+    ActionExecutionService shared = ActionExecutionService.getInstance();
+    final CountDownLatch started = new CountDownLatch( 1 );
+    ActionExecution running = shared.submit( session, "running", new ActionExecutionService.Work() {
+      @Override
+      public boolean run( ActionExecution execution, OutputStream output ) throws Exception {
+        output.write( 'x' );
+        started.countDown();
+        new CountDownLatch( 1 ).await();
+        return true;
+      }
+    } );
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    File outputFile = running.getOutputFile();
+    assertTrue( outputFile.exists() );
+
+    assertTrue( new ActionExecutionSystemListener().startup( session ) );
+    new ActionExecutionSystemListener().shutdown();
+    awaitDone( running );
+    awaitDeleted( outputFile );
+    assertEquals( 0, shared.getExecutions( "joe" ).size() );
+    assertNotSame( shared, ActionExecutionService.getInstance() );
+    ActionExecutionService.shutdownInstance();
+  }
+
+  @Test
+  public void testNoHookOutsideExecution() {
+    assertNull( ActionExecution.current() );
+    assertFalse( ActionExecution.addCancelHook( new Runnable() {
+      @Override
+      public void run() {
+      }
+    } ) );
+  }
+
+  private static void awaitDeleted( File file ) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while ( file.exists() && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertFalse( file.exists() );
+  }
+
+  private static void awaitDone( ActionExecution execution ) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while ( !execution.isDone() && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertTrue( execution.isDone() );
+  }
+
+  private static class StreamingAction implements IStreamingAction {
+    private final String text;
+    private OutputStream outputStream;
+
+    StreamingAction( String text ) {
+      this.text = text;
+    }
+
+    @Override
+    public String getMimeType( String streamPropertyName ) {
+      return "text/plain";
+    }
+
+    @Override
+    public void setOutputStream( OutputStream outputStream ) {
+      this.outputStream = outputStream;
+    }
+
+    @Override
+    public void execute() throws Exception {
+      outputStream.write( text.getBytes( "UTF-8" ) );
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.uifoundation.chart;
+
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.entity.ChartEntity;
+import org.jfree.chart.entity.StandardEntityCollection;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RenderedChartCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static PieDatasetChartDefinition createDefinition( double value ) {
+    PieDatasetChartDefinition definition = new PieDatasetChartDefinition( (IPentahoSession) null );
+    definition.setValue( "a", value );
+    definition.setValue( "b", 2.0 );
+    return definition;
+  }
+
+  private static String fingerprint( PieDatasetChartDefinition definition, String title, int height,
+                                     int outputType ) {
+    return RenderedChartCache.fingerprint( definition, title, "", 300, height, outputType );
+  }
+
+  @Test
+  public void testFingerprint() {
+    String key = fingerprint( createDefinition( 1.0 ), "pie", 200, JFreeChartEngine.OUTPUT_PNG );
+    assertNotNull( key );
+    assertEquals( key, fingerprint( createDefinition( 1.0 ), "pie", 200, JFreeChartEngine.OUTPUT_PNG ) );
+    assertNotEquals( key, fingerprint( createDefinition( 3.0 ), "pie", 200, JFreeChartEngine.OUTPUT_PNG ) );
+    assertNotEquals( key, fingerprint( createDefinition( 1.0 ), "bar", 200, JFreeChartEngine.OUTPUT_PNG ) );
+    assertNotEquals( key, fingerprint( createDefinition( 1.0 ), "pie", 201, JFreeChartEngine.OUTPUT_PNG ) );
+    assertNotEquals( key, fingerprint( createDefinition( 1.0 ), "pie", 200, JFreeChartEngine.OUTPUT_SVG ) );
+    assertNotEquals( key,
+        RenderedChartCache.fingerprint( createDefinition( 1.0 ), "pie", "%", 300, 200, JFreeChartEngine.OUTPUT_PNG ) );
+    assertNull( RenderedChartCache.fingerprint( null, "pie", "", 300, 200, JFreeChartEngine.OUTPUT_PNG ) );
+  }
+
+  @Test
+  public void testChartsWithBackgroundImagesAreNotCached() {
+    PieDatasetChartDefinition definition = createDefinition( 1.0 );
+    definition.setPlotBackgroundImage( new BufferedImage( 1, 1, BufferedImage.TYPE_INT_RGB ) );
+    assertNull( fingerprint( definition, "pie", 200, JFreeChartEngine.OUTPUT_PNG ) );
+  }
+
+  @Test
+  public void testSpillToDiskAndPromote() throws Exception {
+    File directory = folder.newFolder();
+    RenderedChartCache cache = new RenderedChartCache( true, false, 10, 100, directory );
+    cache.put( "k1", new byte[] { 1, 2, 3, 4, 5, 6 }, "image/png", null );
+    cache.put( "k2", new byte[] { 7, 8, 9, 10, 11, 12 }, "image/png", null );
+
+    assertEquals( 6, cache.getMemoryBytes() );
+    assertEquals( 6, cache.getDiskBytes() );
+    assertEquals( 1, directory.list().length );
+    assertTrue( directory.list()[ 0 ].startsWith( "k1" ) );
+
+    RenderedChartCache.RenderedChart chart = cache.get( "k1" );
+    assertArrayEquals( new byte[] { 1, 2, 3, 4, 5, 6 }, chart.getBytes() );
+    assertEquals( 1, directory.list().length );
+    assertTrue( directory.list()[ 0 ].startsWith( "k2" ) );
+    assertEquals( 6, cache.getMemoryBytes() );
+    assertEquals( 6, cache.getDiskBytes() );
+  }
+
+  @Test
+  public void testDiskTierIsPurgedAtStartup() throws Exception {
+    File directory = folder.newFolder();
+    File stale = new File( directory, "stale-1" );
+    assertTrue( stale.createNewFile() );
+
+    RenderedChartCache cache = new RenderedChartCache( true, false, 10, 100, directory );
+    assertFalse( stale.exists() );
+    assertEquals( 0, cache.getDiskBytes() );
+  }
+
+  @Test
+  public void testDiskTierIsBounded() throws Exception {
+    File directory = folder.newFolder();
+    RenderedChartCache cache = new RenderedChartCache( true, true, 0, 10, directory );
+    cache.put( "k1", new byte[ 6 ], "image/png", null );
+    cache.put( "k2", new byte[ 6 ], "image/png", null );
+
+    assertEquals( 0, cache.getMemoryBytes() );
+    assertEquals( 6, cache.getDiskBytes() );
+    assertNull( cache.get( "k1" ) );
+    assertNotNull( cache.get( "k2" ) );
+  }
+
+  @Test
+  public void testAliases() {
+    RenderedChartCache cache = new RenderedChartCache( true, false, 100, 0, null );
+    assertFalse( cache.isWriteTempFiles() );
+    cache.put( "k1", new byte[] { 1 }, "image/svg+xml", null );
+    cache.alias( "tmp_chart_1.svg", "k1" );
+    assertEquals( "image/svg+xml", cache.getByName( "tmp_chart_1.svg" ).getMimeType() );
+    assertNull( cache.getByName( "tmp_chart_2.svg" ) );
+
+    cache.clear();
+    assertNull( cache.getByName( "tmp_chart_1.svg" ) );
+  }
+
+  @Test
+  public void testRenderingInfoIsCopied() throws Exception {
+    RenderedChartCache cache = new RenderedChartCache( true, true, 100, 0, null );
+    ChartRenderingInfo info = new ChartRenderingInfo( new StandardEntityCollection() );
+    info.setChartArea( new Rectangle( 0, 0, 300, 200 ) );
+    info.getEntityCollection().add( new ChartEntity( new Rectangle( 0, 0, 10, 10 ), "tip", "url" ) );
+    cache.put( "k1", new byte[] { 1 }, "image/png", info );
+    info.getEntityCollection().getEntity( 0 ).setURLText( "changed" );
+
+    ChartRenderingInfo target = new ChartRenderingInfo( new StandardEntityCollection() );
+    cache.get( "k1" ).copyRenderingInfo( target );
+    assertEquals( new Rectangle( 0, 0, 300, 200 ), target.getChartArea() );
+    assertEquals( 1, target.getEntityCollection().getEntityCount() );
+    assertEquals( "url", target.getEntityCollection().getEntity( 0 ).getURLText() );
+    assertNotSame( info.getEntityCollection().getEntity( 0 ), target.getEntityCollection().getEntity( 0 ) );
+  }
+}
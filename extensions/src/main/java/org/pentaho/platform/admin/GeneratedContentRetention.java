@@ -0,0 +1,464 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.admin;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes generated content that has outlived its {@link RetentionPolicy}, so that the folders scheduled jobs write to
+ * stay small. Expired content is deleted permanently, it does not go to the trash; the trash itself is emptied by
+ * {@link org.pentaho.platform.plugin.services.repository.TrashPurgeSystemListener}.
+ * <p>
+ * The repository is scanned one folder at a time, starting at {@link #getRootFolderPath()}. Generated files, the ones
+ * carrying a lineage id, are grouped per folder and schedule and matched against the most specific policy; files the
+ * policy lets go are permanently deleted in batches of {@link #getBatchSize()}, at most
+ * {@link #getMaxDeletesPerSecond()} files per second. Hidden companion files, such as the images of a report, cannot be
+ * told apart from one run to the next and are only removed by age. Folders still to scan are kept as a checkpoint, so a
+ * run can be paused and later resumed where it stopped. A run that fails drops its checkpoint, which may no longer
+ * match the repository, and the next run starts over. Counters of scanned and reclaimed content add up over all runs.
+ * </p>
+ * The shared instance returned by {@link #getInstance()} is the one run by
+ * {@link org.pentaho.platform.plugin.services.repository.GeneratedContentRetentionSystemListener} and the
+ * administration endpoints.
+ */
+public class GeneratedContentRetention {
+
+  public enum State {
+    IDLE, RUNNING, PAUSED, COMPLETED, FAILED
+  }
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  private static final GeneratedContentRetention instance = new GeneratedContentRetention();
+
+  private final Log logger = LogFactory.getLog( GeneratedContentRetention.class );
+
+  private volatile List<RetentionPolicy> policies = Collections.emptyList();
+
+  private volatile String rootFolderPath;
+
+  private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+  private volatile int maxDeletesPerSecond;
+
+  /** ids of the folders still to scan; the checkpoint between folders */
+  private final Deque<Serializable> pending = new ArrayDeque<Serializable>();
+
+  /** generated files waiting for a full batch, only touched by the running thread */
+  private final List<RepositoryFile> expired = new ArrayList<RepositoryFile>();
+
+  private long windowStart;
+
+  private long windowDeletes;
+
+  private volatile State state = State.IDLE;
+
+  private volatile boolean pauseRequested;
+
+  private volatile Date startTime;
+
+  private volatile Date endTime;
+
+  private IUnifiedRepository lastRepository;
+
+  private final LongAdder scannedFolders = new LongAdder();
+
+  private final LongAdder scannedFiles = new LongAdder();
+
+  private final LongAdder deletedFiles = new LongAdder();
+
+  private final LongAdder reclaimedBytes = new LongAdder();
+
+  private final LongAdder batches = new LongAdder();
+
+  public static GeneratedContentRetention getInstance() {
+    return instance;
+  }
+
+  GeneratedContentRetention() {
+  }
+
+  /**
+   * Runs retention in the calling thread until every folder has been scanned, or a pause is requested. Continues
+   * from the last checkpoint if the previous run was paused; after a failed or completed run it starts again from
+   * {@link #getRootFolderPath()}.
+   *
+   * @return {@code true} if the run completed, {@code false} if it was paused, failed or another run is already
+   * in progress
+   */
+  public boolean run( final IUnifiedRepository repository ) {
+    synchronized ( this ) {
+      if ( state == State.RUNNING ) {
+        logger.warn( "Generated content retention is already running" ); //$NON-NLS-1$
+        return false;
+      }
+      if ( pending.isEmpty() ) {
+        RepositoryFile root = repository.getFile( getRootFolderPath() );
+        if ( root == null ) {
+          logger.error( "Generated content retention cannot find folder " + getRootFolderPath() ); //$NON-NLS-1$
+          return false;
+        }
+        pending.push( root.getId() );
+        startTime = new Date();
+        logger.debug( "Starting generated content retention" ); //$NON-NLS-1$
+      } else {
+        logger.debug( "Resuming generated content retention" ); //$NON-NLS-1$
+      }
+      lastRepository = repository;
+      pauseRequested = false;
+      endTime = null;
+      state = State.RUNNING;
+    }
+
+    boolean completed = false;
+    boolean failed = false;
+    windowStart = System.currentTimeMillis();
+    windowDeletes = 0;
+    try {
+      while ( true ) {
+        Serializable folderId;
+        synchronized ( this ) {
+          if ( pauseRequested || Thread.currentThread().isInterrupted() ) {
+            break;
+          }
+          folderId = pending.poll();
+        }
+        if ( folderId == null ) {
+          break;
+        }
+        scan( repository, folderId );
+        while ( expired.size() >= batchSize ) {
+          delete( repository, take( expired ) );
+        }
+      }
+      while ( !expired.isEmpty() ) {
+        delete( repository, take( expired ) );
+      }
+      synchronized ( this ) {
+        if ( !pending.isEmpty() ) {
+          logger.info( String.format( "Generated content retention paused after %d folders, %d files removed",
+              scannedFolders.sum(), deletedFiles.sum() ) ); //$NON-NLS-1$
+          return false;
+        }
+      }
+      completed = true;
+      logger.info( String.format( "Generated content retention reclaimed %d bytes in %d files", //$NON-NLS-1$
+          reclaimedBytes.sum(), deletedFiles.sum() ) );
+      return true;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch ( RuntimeException e ) {
+      logger.error( "Error running generated content retention", e ); //$NON-NLS-1$
+      failed = true;
+      return false;
+    } finally {
+      expired.clear();
+      synchronized ( this ) {
+        if ( completed ) {
+          state = State.COMPLETED;
+          endTime = new Date();
+        } else if ( failed ) {
+          // the folder that failed was already taken off the checkpoint, so resuming would silently skip it
+          pending.clear();
+          state = State.FAILED;
+          endTime = new Date();
+        } else {
+          state = State.PAUSED;
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues the subfolders of one folder for scanning and its expired generated files for deletion.
+   */
+  private void scan( final IUnifiedRepository repository, final Serializable folderId ) {
+    List<RepositoryFile> children;
+    try {
+      children = repository.getChildren( folderId, null, true );
+    } catch ( RuntimeException e ) {
+      // removed since it was queued
+      logger.debug( "Skipping folder " + folderId, e ); //$NON-NLS-1$
+      return;
+    }
+    scannedFolders.increment();
+    List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+    List<Serializable> folders = new ArrayList<Serializable>();
+    for ( RepositoryFile child : children ) {
+      if ( child.isFolder() ) {
+        folders.add( child.getId() );
+      } else {
+        files.add( child );
+      }
+    }
+    synchronized ( this ) {
+      // push in reverse so that folders are scanned in listing order
+      for ( int i = folders.size() - 1; i >= 0; i-- ) {
+        pending.push( folders.get( i ) );
+      }
+    }
+    if ( files.isEmpty() ) {
+      return;
+    }
+    scannedFiles.add( files.size() );
+
+    List<Map<String, Serializable>> metadata = repository.getFileMetadataInBatch( files );
+    Map<String, List<RepositoryFile>> outputs = new HashMap<String, List<RepositoryFile>>();
+    Map<String, List<RepositoryFile>> companions = new HashMap<String, List<RepositoryFile>>();
+    for ( int i = 0; i < files.size(); i++ ) {
+      Serializable lineageId = metadata.get( i ) != null
+          ? metadata.get( i ).get( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID ) : null;
+      if ( lineageId != null ) {
+        RepositoryFile file = files.get( i );
+        Map<String, List<RepositoryFile>> group = Boolean.TRUE.equals( file.isHidden() ) ? companions : outputs;
+        List<RepositoryFile> generated = group.get( lineageId.toString() );
+        if ( generated == null ) {
+          generated = new ArrayList<RepositoryFile>();
+          group.put( lineageId.toString(), generated );
+        }
+        generated.add( file );
+      }
+    }
+
+    String folderPath = getParentPath( files.get( 0 ) );
+    long now = System.currentTimeMillis();
+    for ( Map.Entry<String, List<RepositoryFile>> entry : outputs.entrySet() ) {
+      RetentionPolicy policy = getPolicy( folderPath, entry.getKey() );
+      if ( policy != null ) {
+        expired.addAll( policy.select( entry.getValue(), now ) );
+      }
+    }
+    for ( Map.Entry<String, List<RepositoryFile>> entry : companions.entrySet() ) {
+      RetentionPolicy policy = getPolicy( folderPath, entry.getKey() );
+      if ( policy != null && policy.getMaxAge() > 0 ) {
+        expired.addAll( new RetentionPolicy( null, null, 0, policy.getMaxAge(), 0 ).select( entry.getValue(), now ) );
+      }
+    }
+  }
+
+  /**
+   * Deletes one batch and waits as long as needed to stay within {@link #getMaxDeletesPerSecond()}. The reclaimed
+   * size is an estimate when only part of the batch could be deleted.
+   */
+  private void delete( final IUnifiedRepository repository, final List<RepositoryFile> batch )
+    throws InterruptedException {
+    List<Serializable> ids = new ArrayList<Serializable>( batch.size() );
+    long size = 0;
+    for ( RepositoryFile file : batch ) {
+      ids.add( file.getId() );
+      size += file.getFileSize() != null ? file.getFileSize() : 0;
+    }
+    int deleted = repository.permanentlyDeleteFiles( ids, GeneratedContentRetention.class.getName() );
+    deletedFiles.add( deleted );
+    reclaimedBytes.add( deleted == ids.size() ? size : size * deleted / ids.size() );
+    batches.increment();
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Generated content retention deleted " + deleted + " of " //$NON-NLS-1$ //$NON-NLS-2$
+          + ids.size() + " files" ); //$NON-NLS-1$
+    }
+
+    if ( maxDeletesPerSecond > 0 ) {
+      windowDeletes += deleted;
+      long minElapsed = windowDeletes * 1000L / maxDeletesPerSecond;
+      long elapsed = System.currentTimeMillis() - windowStart;
+      if ( elapsed < minElapsed ) {
+        Thread.sleep( minElapsed - elapsed );
+      } else if ( elapsed > 60000L ) {
+        // start a new rate window so that a long scan without deletes does not allow a burst
+        windowStart = System.currentTimeMillis();
+        windowDeletes = 0;
+      }
+    }
+  }
+
+  private List<RepositoryFile> take( final List<RepositoryFile> files ) {
+    List<RepositoryFile> head = files.subList( 0, Math.min( batchSize, files.size() ) );
+    List<RepositoryFile> batch = new ArrayList<RepositoryFile>( head );
+    head.clear();
+    return batch;
+  }
+
+  private static String getParentPath( final RepositoryFile file ) {
+    String path = file.getPath();
+    int separator = path != null ? path.lastIndexOf( RepositoryFile.SEPARATOR ) : -1;
+    return separator > 0 ? path.substring( 0, separator ) : RepositoryFile.SEPARATOR;
+  }
+
+  /**
+   * @return the most specific policy for the outputs of a schedule in a folder, or {@code null} to keep them
+   */
+  public RetentionPolicy getPolicy( final String folderPath, final String lineageId ) {
+    for ( RetentionPolicy policy : policies ) {
+      if ( policy.appliesTo( folderPath, lineageId ) ) {
+        return policy;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Asks a running retention to stop after its current folder. The checkpoint is kept for {@link #resume()}.
+   */
+  public void pause() {
+    pauseRequested = true;
+  }
+
+  /**
+   * Continues a paused retention, or starts a new one after a completed or failed run, in a background thread as
+   * the system user, using the repository of the last run.
+   *
+   * @return {@code false} if retention never ran or is already running
+   */
+  public synchronized boolean resume() {
+    if ( state == State.RUNNING || lastRepository == null ) {
+      return false;
+    }
+    final IUnifiedRepository repository = lastRepository;
+    Thread thread = new Thread( new Runnable() {
+      @Override public void run() {
+        try {
+          SecurityHelper.getInstance().runAsSystem( new Callable<Boolean>() {
+            @Override public Boolean call() {
+              return GeneratedContentRetention.this.run( repository );
+            }
+          } );
+        } catch ( Exception e ) {
+          logger.error( "Error running generated content retention", e ); //$NON-NLS-1$
+        }
+      }
+    }, "GeneratedContentRetention" ); //$NON-NLS-1$
+    thread.setDaemon( true );
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Drops the checkpoint, so that the next run starts again from {@link #getRootFolderPath()}.
+   */
+  public synchronized void reset() {
+    if ( state != State.RUNNING ) {
+      pending.clear();
+      state = State.IDLE;
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public synchronized int getPendingFolders() {
+    return pending.size();
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public long getScannedFolders() {
+    return scannedFolders.sum();
+  }
+
+  public long getScannedFiles() {
+    return scannedFiles.sum();
+  }
+
+  public long getDeletedFiles() {
+    return deletedFiles.sum();
+  }
+
+  public long getReclaimedBytes() {
+    return reclaimedBytes.sum();
+  }
+
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  public List<RetentionPolicy> getPolicies() {
+    return policies;
+  }
+
+  /**
+   * @param policies retention policies in any order; generated content no policy applies to is kept
+   */
+  public void setPolicies( final List<RetentionPolicy> policies ) {
+    List<RetentionPolicy> sorted = new ArrayList<RetentionPolicy>();
+    if ( policies != null ) {
+      sorted.addAll( policies );
+    }
+    Collections.sort( sorted, RetentionPolicy.MOST_SPECIFIC_FIRST );
+    this.policies = Collections.unmodifiableList( sorted );
+  }
+
+  public String getRootFolderPath() {
+    String path = rootFolderPath;
+    return path != null ? path : ClientRepositoryPaths.getRootFolderPath();
+  }
+
+  /**
+   * @param rootFolderPath folder to scan, the repository root by default
+   */
+  public void setRootFolderPath( final String rootFolderPath ) {
+    this.rootFolderPath = rootFolderPath == null || rootFolderPath.trim().isEmpty() ? null : rootFolderPath.trim();
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( final int batchSize ) {
+    this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+  }
+
+  public int getMaxDeletesPerSecond() {
+    return maxDeletesPerSecond;
+  }
+
+  /**
+   * @param maxDeletesPerSecond maximum number of files deleted per second, {@code 0} for no limit
+   */
+  public void setMaxDeletesPerSecond( final int maxDeletesPerSecond ) {
+    this.maxDeletesPerSecond = Math.max( maxDeletesPerSecond, 0 );
+  }
+}
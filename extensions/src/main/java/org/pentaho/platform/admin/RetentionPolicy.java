@@ -0,0 +1,195 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.admin;
+
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@link GeneratedContentRetention} keeps the outputs of one schedule in one folder. A policy applies to
+ * the outputs of the schedule with the given lineage id, to outputs written below the given folder, or to both; a
+ * policy without either is a default for everything else. Outputs are ranked newest first and an output is kept only
+ * while it passes every limit that is set:
+ * <ul>
+ * <li><tt>keepLast</tt> - number of most recent outputs to keep</li>
+ * <li><tt>maxAge</tt> - age in milliseconds after which an output is removed</li>
+ * <li><tt>maxBytes</tt> - total size of the kept outputs; once reached, older outputs are removed</li>
+ * </ul>
+ * A limit of {@code 0} is not applied. Outputs without a creation date cannot be ranked or aged; they are skipped and
+ * never removed.
+ */
+public class RetentionPolicy {
+
+  private String folderPath;
+
+  private String lineageId;
+
+  private int keepLast;
+
+  private long maxAge;
+
+  private long maxBytes;
+
+  public RetentionPolicy() {
+  }
+
+  public RetentionPolicy( final String folderPath, final String lineageId, final int keepLast, final long maxAge,
+                          final long maxBytes ) {
+    setFolderPath( folderPath );
+    setLineageId( lineageId );
+    setKeepLast( keepLast );
+    setMaxAge( maxAge );
+    setMaxBytes( maxBytes );
+  }
+
+  /**
+   * @return whether the policy covers outputs of the given schedule written to the given folder
+   */
+  public boolean appliesTo( final String path, final String lineage ) {
+    if ( lineageId != null && !lineageId.equals( lineage ) ) {
+      return false;
+    }
+    return folderPath == null || folderPath.equals( path )
+      || ( path != null && path.startsWith( folderPath.endsWith( RepositoryFile.SEPARATOR ) ? folderPath
+        : folderPath + RepositoryFile.SEPARATOR ) );
+  }
+
+  /**
+   * Orders policies from the most to the least specific: schedule policies first, then folder policies by depth.
+   */
+  static final Comparator<RetentionPolicy> MOST_SPECIFIC_FIRST = new Comparator<RetentionPolicy>() {
+    @Override
+    public int compare( final RetentionPolicy p1, final RetentionPolicy p2 ) {
+      if ( ( p1.lineageId == null ) != ( p2.lineageId == null ) ) {
+        return p1.lineageId != null ? -1 : 1;
+      }
+      int l1 = p1.folderPath != null ? p1.folderPath.length() : -1;
+      int l2 = p2.folderPath != null ? p2.folderPath.length() : -1;
+      return Integer.compare( l2, l1 );
+    }
+  };
+
+  /**
+   * @param outputs outputs of one schedule in one folder
+   * @param now     the time to measure ages against
+   * @return the outputs this policy removes
+   */
+  public List<RepositoryFile> select( final List<RepositoryFile> outputs, final long now ) {
+    if ( keepLast <= 0 && maxAge <= 0 && maxBytes <= 0 ) {
+      return Collections.emptyList();
+    }
+    List<RepositoryFile> newestFirst = new ArrayList<RepositoryFile>( outputs.size() );
+    for ( RepositoryFile output : outputs ) {
+      // of unknown age, so neither old enough to remove nor known to be older than any other output
+      if ( output.getCreatedDate() != null ) {
+        newestFirst.add( output );
+      }
+    }
+    Collections.sort( newestFirst, new Comparator<RepositoryFile>() {
+      @Override
+      public int compare( final RepositoryFile f1, final RepositoryFile f2 ) {
+        return Long.compare( created( f2 ), created( f1 ) );
+      }
+    } );
+    List<RepositoryFile> expired = new ArrayList<RepositoryFile>();
+    long keptBytes = 0;
+    boolean overBudget = false;
+    for ( int i = 0; i < newestFirst.size(); i++ ) {
+      RepositoryFile file = newestFirst.get( i );
+      long size = file.getFileSize() != null ? file.getFileSize() : 0;
+      overBudget = overBudget || ( maxBytes > 0 && keptBytes + size > maxBytes );
+      if ( overBudget || ( keepLast > 0 && i >= keepLast ) || ( maxAge > 0 && now - created( file ) > maxAge ) ) {
+        expired.add( file );
+      } else {
+        keptBytes += size;
+      }
+    }
+    return expired;
+  }
+
+  private static long created( final RepositoryFile file ) {
+    return file.getCreatedDate().getTime();
+  }
+
+  public String getFolderPath() {
+    return folderPath;
+  }
+
+  /**
+   * @param folderPath folder the policy applies to, including its subfolders; {@code null} for any folder
+   */
+  public void setFolderPath( final String folderPath ) {
+    this.folderPath = folderPath == null || folderPath.trim().isEmpty() ? null : folderPath.trim();
+  }
+
+  public String getLineageId() {
+    return lineageId;
+  }
+
+  /**
+   * @param lineageId lineage id of the schedule the policy applies to; {@code null} for any schedule
+   */
+  public void setLineageId( final String lineageId ) {
+    this.lineageId = lineageId == null || lineageId.trim().isEmpty() ? null : lineageId.trim();
+  }
+
+  public int getKeepLast() {
+    return keepLast;
+  }
+
+  public void setKeepLast( final int keepLast ) {
+    this.keepLast = Math.max( keepLast, 0 );
+  }
+
+  public long getMaxAge() {
+    return maxAge;
+  }
+
+  public void setMaxAge( final long maxAge ) {
+    this.maxAge = Math.max( maxAge, 0 );
+  }
+
+  /**
+   * Same as {@link #setMaxAge(long)}, in days.
+   */
+  public void setMaxAgeDays( final int maxAgeDays ) {
+    setMaxAge( TimeUnit.DAYS.toMillis( Math.max( maxAgeDays, 0 ) ) );
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes( final long maxBytes ) {
+    this.maxBytes = Math.max( maxBytes, 0 );
+  }
+
+  @Override
+  public String toString() {
+    return "RetentionPolicy [folderPath=" + folderPath + ", lineageId=" + lineageId + ", keepLast=" + keepLast
+      + ", maxAge=" + maxAge + ", maxBytes=" + maxBytes + "]";
+  }
+}
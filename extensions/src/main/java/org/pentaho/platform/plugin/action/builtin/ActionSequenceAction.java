@@ -100,15 +100,15 @@ public class ActionSequenceAction implements IStreamProcessingAction, IStreaming
             RepositoryFileOutputStream repositoryFileOutputStream =
                 (RepositoryFileOutputStream) xactionResultsOutputStream;
             isFlushed = repositoryFileOutputStream.isFlushed();
-            isEmpty = repositoryFileOutputStream.size() > 0 ? false : true;
+            // the length, not the content, which may have been spilled to disk and be larger than the heap
+            isEmpty = repositoryFileOutputStream.getLength() == 0;
             String extension = RepositoryFilenameUtils.getExtension( repositoryFileOutputStream.getFilePath() );
             String mimeTypeFromExtension = MimeHelper.getMimeTypeFromExtension( "." + extension );
             if ( mimeTypeFromExtension == null ) {
               // unknown type, treat it not as an extension but part of the name
               extension = "";
             }
-            if ( extension.isEmpty()
-                && xactionResultsOutputStream.toString().isEmpty() ) {
+            if ( extension.isEmpty() && isEmpty ) {
               repositoryFileOutputStream.setFilePath( repositoryFileOutputStream.getFilePath() + ".html" );
             }
           } else {
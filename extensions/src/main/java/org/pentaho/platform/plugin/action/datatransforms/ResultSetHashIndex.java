@@ -0,0 +1,69 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.datatransforms;
+
+import org.pentaho.commons.connection.IPentahoResultSet;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hash index over the values of one column of an {@link IPentahoResultSet}. The indexed result set is read once,
+ * row by row in order, so that semi-joins ({@link #contains(Object)}) and anti-joins against it cost one hash probe
+ * per row of the other side instead of a scan of the whole indexed result set.
+ */
+final class ResultSetHashIndex {
+
+  private final Set<Object> values;
+
+  private ResultSetHashIndex( final Set<Object> values ) {
+    this.values = values;
+  }
+
+  /**
+   * Builds an index over the given column of every row of the result set.
+   *
+   * @param resultSet result set to index
+   * @param column    zero based column index
+   */
+  static ResultSetHashIndex build( final IPentahoResultSet resultSet, final int column ) {
+    int rowCount = resultSet.getRowCount();
+    Set<Object> values = new HashSet<Object>( Math.max( 16, (int) ( rowCount / 0.75f ) + 1 ) );
+    for ( int row = 0; row < rowCount; row++ ) {
+      values.add( resultSet.getValueAt( row, column ) );
+    }
+    return new ResultSetHashIndex( values );
+  }
+
+  /**
+   * @return {@code true} if any indexed row has a value equal to the given one
+   */
+  boolean contains( final Object value ) {
+    return values.contains( value );
+  }
+
+  /**
+   * @return number of distinct indexed values
+   */
+  int size() {
+    return values.size();
+  }
+}
@@ -25,7 +25,6 @@ import org.apache.commons.logging.LogFactory;
 import org.dom4j.Element;
 import org.dom4j.Node;
 import org.jfree.chart.ChartRenderingInfo;
-import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.entity.StandardEntityCollection;
 import org.jfree.chart.imagemap.ImageMapUtilities;
@@ -422,8 +421,6 @@ public class ChartComponent extends ComponentBase {
     /**************************** OUTPUT_PNG_BYTES *********************************************/
       case JFreeChartEngine.OUTPUT_PNG_BYTES:
 
-        chart = JFreeChartEngine.getChart( dataDefinition, title, "", width, height, this ); //$NON-NLS-1$
-
         // TODO Shouldn't the mime types and other strings here be constant somewhere? Where do we
         // put this type of general info ?
 
@@ -433,7 +430,8 @@ public class ChartComponent extends ComponentBase {
         try {
 
           OutputStream output = contentItem.getOutputStream( getActionName() );
-          ChartUtilities.writeChartAsPNG( output, chart, width, height );
+          JFreeChartEngine.writeChart( dataDefinition, title, "", width, height, //$NON-NLS-1$
+              JFreeChartEngine.OUTPUT_PNG, output, null, this );
 
         } catch ( Exception e ) {
           error( Messages.getInstance().getErrorString( "ChartComponent.ERROR_0004_CANT_CREATE_IMAGE" ), e ); //$NON-NLS-1$
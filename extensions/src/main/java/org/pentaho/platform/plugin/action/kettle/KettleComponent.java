@@ -20,6 +20,8 @@
 
 package org.pentaho.platform.plugin.action.kettle;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -43,10 +45,13 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.xml.XMLHandlerCache;
 import org.pentaho.di.job.Job;
 import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.RepositoriesMeta;
 import org.pentaho.di.repository.Repository;
 import org.pentaho.di.repository.RepositoryDirectoryInterface;
 import org.pentaho.di.repository.RepositoryMeta;
+import org.pentaho.di.repository.RepositoryObject;
+import org.pentaho.di.repository.RepositoryObjectType;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.RowListener;
@@ -421,6 +426,8 @@ public class KettleComponent extends ComponentBase implements RowListener {
 
     String solutionPath = "solution:";
 
+    KettleMetaCache metaCache = KettleMetaCache.getInstance();
+    long loadStart = System.nanoTime();
     Repository repository = connectToRepository();
     boolean result = false;
 
@@ -478,7 +485,16 @@ public class KettleComponent extends ComponentBase implements RowListener {
         try {
           if ( fileAddress != null ) { // We have an actual loadable
             // filesystem and file
-            transMeta = new TransMeta( fileAddress, repository, true );
+            File file = new File( fileAddress );
+            String cacheKey = "trans:file:" + fileAddress; //$NON-NLS-1$
+            String revision = file.lastModified() + ":" + file.length(); //$NON-NLS-1$
+            transMeta = metaCache.getTransMeta( cacheKey, revision );
+            if ( transMeta == null ) {
+              transMeta = new TransMeta( fileAddress, repository, true );
+              metaCache.putTransMeta( cacheKey, revision, transMeta );
+            } else {
+              transMeta.setRepository( repository );
+            }
             transMeta.setFilename( fileAddress );
           } else if ( repository != null && repository.isConnected() ) {
 
@@ -489,9 +505,17 @@ public class KettleComponent extends ComponentBase implements RowListener {
             String jobXmlStr = getResourceAsString( getResource( KettleComponent.TRANSFORMFILE ) );
             jobXmlStr = jobXmlStr.replaceAll( "\\$\\{pentaho.solutionpath\\}", solutionPath ); //$NON-NLS-1$
             jobXmlStr = jobXmlStr.replaceAll( "\\%\\%pentaho.solutionpath\\%\\%", solutionPath ); //$NON-NLS-1$
-            org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
-            // create a tranformation from the document
-            transMeta = new TransMeta( doc.getFirstChild(), repository );
+            String cacheKey = "trans:resource:" + transformResource.getAddress(); //$NON-NLS-1$
+            String revision = DigestUtils.md5Hex( jobXmlStr );
+            transMeta = metaCache.getTransMeta( cacheKey, revision );
+            if ( transMeta == null ) {
+              org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
+              // create a tranformation from the document
+              transMeta = new TransMeta( doc.getFirstChild(), repository );
+              metaCache.putTransMeta( cacheKey, revision, transMeta );
+            } else {
+              transMeta.setRepository( repository );
+            }
           }
         } catch ( Exception e ) {
           error( Messages.getInstance().getErrorString(
@@ -543,28 +567,24 @@ public class KettleComponent extends ComponentBase implements RowListener {
             // XmlW3CHelper.getContentFromSolutionResource(fileAddress);
             jobXmlStr = jobXmlStr.replaceAll( "\\$\\{pentaho.solutionpath\\}", solutionPath ); //$NON-NLS-1$
             jobXmlStr = jobXmlStr.replaceAll( "\\%\\%pentaho.solutionpath\\%\\%", solutionPath ); //$NON-NLS-1$
-            org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
-            if ( doc == null ) {
-              error( Messages.getInstance().getErrorString(
-                  "Kettle.ERROR_0015_BAD_RESOURCE", KettleComponent.JOBFILE, fileAddress ) ); //$NON-NLS-1$
-              debug( getKettleLog( true ) );
-              return false;
-            }
-            // create a job from the document
-            try {
-              repository = connectToRepository();
-              // if we get a valid repository its great, if not try it
-              // without
-
-              jobMeta = new JobMeta( solutionPath + fileAddress, repository );
-            } catch ( Exception e ) {
-              error( Messages.getInstance().getString( "Kettle.ERROR_0023_NO_META" ), e ); //$NON-NLS-1$
-            } finally {
-              if ( repository != null ) {
-                if ( ComponentBase.debug ) {
-                  debug( Messages.getInstance().getString( "Kettle.DEBUG_DISCONNECTING" ) ); //$NON-NLS-1$
-                }
-                repository.disconnect();
+            String cacheKey = "job:resource:" + solutionPath + fileAddress; //$NON-NLS-1$
+            String revision = DigestUtils.md5Hex( jobXmlStr );
+            jobMeta = metaCache.getJobMeta( cacheKey, revision );
+            if ( jobMeta == null ) {
+              org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
+              if ( doc == null ) {
+                error( Messages.getInstance().getErrorString(
+                    "Kettle.ERROR_0015_BAD_RESOURCE", KettleComponent.JOBFILE, fileAddress ) ); //$NON-NLS-1$
+                debug( getKettleLog( true ) );
+                return false;
+              }
+              // create a job from the document
+              try {
+                // the repository borrowed above, if we got one; it goes back to the pool at the end
+                jobMeta = new JobMeta( solutionPath + fileAddress, repository );
+                metaCache.putJobMeta( cacheKey, revision, jobMeta );
+              } catch ( Exception e ) {
+                error( Messages.getInstance().getString( "Kettle.ERROR_0023_NO_META" ), e ); //$NON-NLS-1$
               }
             }
           }
@@ -599,11 +619,16 @@ public class KettleComponent extends ComponentBase implements RowListener {
       // OK, we have the information, let's load and execute the
       // transformation or job
 
-      if ( transMeta != null ) {
-        result = executeTransformation( transMeta );
-      }
-      if ( jobMeta != null ) {
-        result = executeJob( jobMeta, repository );
+      if ( transMeta != null || jobMeta != null ) {
+        metaCache.recordLoad( System.nanoTime() - loadStart );
+        long executeStart = System.nanoTime();
+        if ( transMeta != null ) {
+          result = executeTransformation( transMeta );
+        }
+        if ( jobMeta != null ) {
+          result = executeJob( jobMeta, repository );
+        }
+        metaCache.recordExecution( System.nanoTime() - executeStart );
       }
 
     } finally {
@@ -613,7 +638,7 @@ public class KettleComponent extends ComponentBase implements RowListener {
           debug( Messages.getInstance().getString( "Kettle.DEBUG_DISCONNECTING" ) ); //$NON-NLS-1$
         }
         try {
-          repository.disconnect();
+          KettleRepositoryPool.getInstance().release( repository );
         } catch ( Exception ignored ) {
           //ignore
         }
@@ -1071,7 +1096,19 @@ public class KettleComponent extends ComponentBase implements RowListener {
         // Load the transformation from the repository
         RepositoryDirectoryInterface repositoryDirectory =
             repository.loadRepositoryDirectoryTree().findDirectory( directoryName );
-        transMeta = repository.loadTransformation( transformationName, repositoryDirectory, null, true, null );
+        KettleMetaCache metaCache = KettleMetaCache.getInstance();
+        String cacheKey = "trans:repository:" + repositoryName + ":" //$NON-NLS-1$ //$NON-NLS-2$
+            + directoryName + "/" + transformationName; //$NON-NLS-1$
+        String revision = metaCache.isEnabled() ? getRepositoryRevision( repository,
+            repository.getTransformationID( transformationName, repositoryDirectory ),
+            RepositoryObjectType.TRANSFORMATION ) : null;
+        transMeta = metaCache.getTransMeta( cacheKey, revision );
+        if ( transMeta == null ) {
+          transMeta = repository.loadTransformation( transformationName, repositoryDirectory, null, true, null );
+          metaCache.putTransMeta( cacheKey, revision, transMeta );
+        } else {
+          transMeta.setRepository( repository );
+        }
       } catch ( Exception e ) {
         error( Messages.getInstance().getErrorString(
             "Kettle.ERROR_0009_TRANSFROMATION_METADATA_NOT_FOUND", directoryName + "/" + transformationName ), e ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1115,7 +1152,18 @@ public class KettleComponent extends ComponentBase implements RowListener {
         // Load the job from the repository
         RepositoryDirectoryInterface repositoryDirectory =
             repository.loadRepositoryDirectoryTree().findDirectory( directoryName );
-        jobMeta = repository.loadJob( jobName, repositoryDirectory, null, null );
+        KettleMetaCache metaCache = KettleMetaCache.getInstance();
+        String cacheKey = "job:repository:" + repositoryName + ":" //$NON-NLS-1$ //$NON-NLS-2$
+            + directoryName + "/" + jobName; //$NON-NLS-1$
+        String revision = metaCache.isEnabled() ? getRepositoryRevision( repository,
+            repository.getJobId( jobName, repositoryDirectory ), RepositoryObjectType.JOB ) : null;
+        jobMeta = metaCache.getJobMeta( cacheKey, revision );
+        if ( jobMeta == null ) {
+          jobMeta = repository.loadJob( jobName, repositoryDirectory, null, null );
+          metaCache.putJobMeta( cacheKey, revision, jobMeta );
+        } else {
+          jobMeta.setRepository( repository );
+        }
       } catch ( Exception e ) {
         error( Messages.getInstance().getErrorString(
             "Kettle.ERROR_0020_JOB_METADATA_NOT_FOUND", directoryName + "/" + jobName ), e ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1136,6 +1184,31 @@ public class KettleComponent extends ComponentBase implements RowListener {
     return null;
   }
 
+  /**
+   * Revision of a repository transformation or job used to validate cached metadata, {@code null} if unknown.
+   */
+  private String getRepositoryRevision( final Repository repository, final ObjectId objectId,
+                                        final RepositoryObjectType objectType ) {
+    if ( objectId == null ) {
+      return null;
+    }
+    try {
+      RepositoryObject information = repository.getObjectInformation( objectId, objectType );
+      if ( information != null && information.getModifiedDate() != null ) {
+        return objectId.getId() + "@" + information.getModifiedDate().getTime(); //$NON-NLS-1$
+      }
+    } catch ( Exception e ) {
+      if ( ComponentBase.debug ) {
+        debug( e.getMessage(), e );
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Borrows a connected repository from the {@link KettleRepositoryPool}; it is handed back at the end of
+   * {@link #executeAction()}.
+   */
   private Repository connectToRepository() {
     boolean useRepository =
         PentahoSystem.getSystemSetting( "kettle/settings.xml", "repository.type", "files" ).equals( "rdbms" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
@@ -1144,6 +1217,16 @@ public class KettleComponent extends ComponentBase implements RowListener {
       return null;
     }
 
+    try {
+      return KettleRepositoryPool.getInstance().borrow( repositoryName, username, password, this::openRepository );
+    } catch ( Exception e ) {
+      error( Messages.getInstance().getErrorString( "Kettle.ERROR_0008_ERROR_RUNNING", e.toString() ), e ); //$NON-NLS-1$
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  Repository openRepository() {
     try {
       if ( ComponentBase.debug ) {
         debug( Messages.getInstance().getString( "Kettle.DEBUG_META_REPOSITORY" ) ); //$NON-NLS-1$
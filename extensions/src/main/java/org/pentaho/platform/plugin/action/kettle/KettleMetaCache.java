@@ -0,0 +1,325 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.resource.ResourceEntry;
+import org.pentaho.di.resource.ResourceReference;
+import org.pentaho.di.trans.TransMeta;
+
+/**
+ * Loaded {@link TransMeta} and {@link JobMeta} templates used by {@link KettleComponent}, keyed by the address of the
+ * transformation or job and a revision of its source (a last-modified time, a content digest or a repository modified
+ * date). A lookup with a different revision misses and drops the stale template.
+ * <p>
+ * The files of the sub-transformations and sub-jobs a template calls (its {@link ResourceEntry.ResourceType#ACTIONFILE}
+ * dependencies) are stamped when it is cached and checked again on every lookup, so editing a called file also
+ * invalidates the caller. Only direct dependencies are checked. A template whose dependencies cannot be stamped is
+ * not cached.
+ * </p>
+ * <p>
+ * Templates are never handed out: every lookup returns a clone, so an execution is free to set parameters and
+ * variables on, and finally clear, the metadata it gets. The cache is bounded and least recently used templates are
+ * evicted first. It also keeps the time spent preparing metadata versus the time spent executing it.
+ * </p>
+ */
+public class KettleMetaCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 100;
+
+  private static final KettleMetaCache instance = new KettleMetaCache();
+
+  private final Log logger = LogFactory.getLog( KettleMetaCache.class );
+
+  private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, Entry> eldest ) {
+      if ( size() > maxEntries ) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private final LongAdder loads = new LongAdder();
+
+  private final LongAdder loadNanos = new LongAdder();
+
+  private final LongAdder executions = new LongAdder();
+
+  private final LongAdder executeNanos = new LongAdder();
+
+  public static KettleMetaCache getInstance() {
+    return instance;
+  }
+
+  KettleMetaCache() {
+  }
+
+  /**
+   * @return a private copy of the cached transformation, or {@code null} if there is none for this revision
+   */
+  public TransMeta getTransMeta( final String key, final String revision ) {
+    Object template = lookup( key, revision, TransMeta.class );
+    if ( template == null ) {
+      return null;
+    }
+    synchronized ( template ) {
+      return (TransMeta) ( (TransMeta) template ).clone();
+    }
+  }
+
+  /**
+   * Caches a copy of a freshly loaded transformation; the given instance stays owned by the caller.
+   */
+  public void putTransMeta( final String key, final String revision, final TransMeta transMeta ) {
+    if ( isEnabled() && revision != null && transMeta != null ) {
+      TransMeta template = (TransMeta) transMeta.clone();
+      // do not pin the connection it was loaded with, clones get the repository of their own execution
+      template.setRepository( null );
+      Map<String, String> dependencies = stampDependencies( transMeta.getResourceDependencies() );
+      if ( dependencies != null ) {
+        store( key, new Entry( revision, template, dependencies ) );
+      }
+    }
+  }
+
+  /**
+   * @return a private copy of the cached job, or {@code null} if there is none for this revision
+   */
+  public JobMeta getJobMeta( final String key, final String revision ) {
+    Object template = lookup( key, revision, JobMeta.class );
+    if ( template == null ) {
+      return null;
+    }
+    synchronized ( template ) {
+      return (JobMeta) ( (JobMeta) template ).clone();
+    }
+  }
+
+  /**
+   * Caches a copy of a freshly loaded job; the given instance stays owned by the caller.
+   */
+  public void putJobMeta( final String key, final String revision, final JobMeta jobMeta ) {
+    if ( isEnabled() && revision != null && jobMeta != null ) {
+      JobMeta template = (JobMeta) jobMeta.clone();
+      template.setRepository( null );
+      Map<String, String> dependencies = stampDependencies( jobMeta.getResourceDependencies() );
+      if ( dependencies != null ) {
+        store( key, new Entry( revision, template, dependencies ) );
+      }
+    }
+  }
+
+  private Object lookup( final String key, final String revision, final Class<?> type ) {
+    if ( !isEnabled() || revision == null ) {
+      return null;
+    }
+    Entry entry;
+    synchronized ( entries ) {
+      entry = entries.get( key );
+    }
+    if ( entry != null && entry.revision.equals( revision ) && type.isInstance( entry.template )
+        && isCurrent( entry.dependencies ) ) {
+      hits.increment();
+      return entry.template;
+    }
+    if ( entry != null ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Dropping stale Kettle metadata for " + key ); //$NON-NLS-1$
+      }
+      synchronized ( entries ) {
+        entries.remove( key, entry );
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  private void store( final String key, final Entry entry ) {
+    synchronized ( entries ) {
+      entries.put( key, entry );
+    }
+  }
+
+  /**
+   * @return the revision of every sub-transformation or sub-job file by path, or {@code null} if one cannot be read
+   */
+  private Map<String, String> stampDependencies( final List<ResourceReference> references ) {
+    if ( references == null || references.isEmpty() ) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> dependencies = new LinkedHashMap<String, String>();
+    for ( ResourceReference reference : references ) {
+      for ( ResourceEntry resource : reference.getEntries() ) {
+        if ( resource.getResourcetype() != ResourceEntry.ResourceType.ACTIONFILE
+            || dependencies.containsKey( resource.getResource() ) ) {
+          continue;
+        }
+        String fileRevision = getFileRevision( resource.getResource() );
+        if ( fileRevision == null ) {
+          return null;
+        }
+        dependencies.put( resource.getResource(), fileRevision );
+      }
+    }
+    return dependencies;
+  }
+
+  private boolean isCurrent( final Map<String, String> dependencies ) {
+    for ( Map.Entry<String, String> dependency : dependencies.entrySet() ) {
+      if ( !dependency.getValue().equals( getFileRevision( dependency.getKey() ) ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the last-modified time and size of a file, or {@code null} if it cannot be read
+   */
+  String getFileRevision( final String path ) {
+    if ( path == null ) {
+      return null;
+    }
+    try {
+      FileObject file = KettleVFS.getFileObject( path );
+      if ( !file.exists() ) {
+        return null;
+      }
+      return file.getContent().getLastModifiedTime() + ":" + file.getContent().getSize(); //$NON-NLS-1$
+    } catch ( Exception e ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Cannot read the revision of Kettle file " + path, e ); //$NON-NLS-1$
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Drops every cached template.
+   */
+  public void clear() {
+    synchronized ( entries ) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Records the time spent loading, or copying, the metadata of one execution.
+   */
+  public void recordLoad( final long elapsedNanos ) {
+    loads.increment();
+    loadNanos.add( elapsedNanos );
+  }
+
+  /**
+   * Records the time spent running one transformation or job.
+   */
+  public void recordExecution( final long elapsedNanos ) {
+    executions.increment();
+    executeNanos.add( elapsedNanos );
+  }
+
+  public boolean isEnabled() {
+    return maxEntries > 0;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @param maxEntries maximum number of cached templates, {@code 0} to disable the cache
+   */
+  public void setMaxEntries( final int maxEntries ) {
+    this.maxEntries = Math.max( maxEntries, 0 );
+    if ( this.maxEntries == 0 ) {
+      clear();
+    }
+  }
+
+  public int size() {
+    synchronized ( entries ) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getLoadCount() {
+    return loads.sum();
+  }
+
+  public long getLoadTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( loadNanos.sum() );
+  }
+
+  public long getExecutionCount() {
+    return executions.sum();
+  }
+
+  public long getExecutionTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( executeNanos.sum() );
+  }
+
+  private static final class Entry {
+    private final String revision;
+    private final Object template;
+    private final Map<String, String> dependencies;
+
+    private Entry( final String revision, final Object template, final Map<String, String> dependencies ) {
+      this.revision = revision;
+      this.template = template;
+      this.dependencies = dependencies;
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.di.repository.Repository;
+
+/**
+ * Connected Kettle {@link Repository} instances kept between executions of {@link KettleComponent}, so that a hot
+ * action sequence does not read <tt>repositories.xml</tt>, load the repository plugin and log in every time it runs.
+ * <p>
+ * A borrowed repository is used by a single execution and handed back with {@link #release(Repository)}. Idle
+ * connections are kept per repository and credentials, at most {@link #getMaxIdle()} of them, and are disconnected
+ * once they have been idle for longer than {@link #getMaxIdleMillis()}. When no idle connection is available a new
+ * one is opened, as long as fewer than {@link #getMaxActive()} are lent out for the same repository and credentials;
+ * otherwise borrowing waits up to {@link #getMaxWaitMillis()} for one to be released and then fails.
+ * </p>
+ * <p>
+ * Connections are pooled by repository name, user name and a digest of the password; the password itself is never
+ * kept by the pool.
+ * </p>
+ */
+public class KettleRepositoryPool {
+
+  public static final int DEFAULT_MAX_IDLE = 4;
+
+  public static final long DEFAULT_MAX_IDLE_MILLIS = 300000L;
+
+  public static final int DEFAULT_MAX_ACTIVE = 8;
+
+  public static final long DEFAULT_MAX_WAIT_MILLIS = 30000L;
+
+  private static final KettleRepositoryPool instance = new KettleRepositoryPool();
+
+  private final Log logger = LogFactory.getLog( KettleRepositoryPool.class );
+
+  private volatile int maxIdle = DEFAULT_MAX_IDLE;
+
+  private volatile long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+
+  private volatile int maxActive = DEFAULT_MAX_ACTIVE;
+
+  private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+  /** idle connections per pool key, most recently released first */
+  private final Map<String, Deque<Idle>> idle = new HashMap<String, Deque<Idle>>();
+
+  /** pool key of every repository currently lent out */
+  private final Map<Repository, String> borrowed = new IdentityHashMap<Repository, String>();
+
+  /** repositories lent out, or being opened, per pool key */
+  private final Map<String, Integer> active = new HashMap<String, Integer>();
+
+  private final LongAdder opened = new LongAdder();
+
+  private final LongAdder reused = new LongAdder();
+
+  private final LongAdder closed = new LongAdder();
+
+  public static KettleRepositoryPool getInstance() {
+    return instance;
+  }
+
+  KettleRepositoryPool() {
+  }
+
+  /**
+   * Lends out an idle connection to the named repository for the given credentials, or opens a new one.
+   *
+   * @param connector opens and connects a new repository; may return {@code null} if that is not possible
+   * @return a connected repository, or whatever the connector returned
+   * @throws TimeoutException if {@link #getMaxActive()} connections stayed lent out for {@link #getMaxWaitMillis()}
+   */
+  public Repository borrow( final String repositoryName, final String username, final String password,
+                            final Callable<Repository> connector ) throws Exception {
+    String key = key( repositoryName, username, password );
+    List<Repository> expired = new ArrayList<Repository>();
+    Repository repository = null;
+    try {
+      synchronized ( this ) {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while ( true ) {
+          Deque<Idle> connections = idle.get( key );
+          long now = System.currentTimeMillis();
+          while ( repository == null && connections != null && !connections.isEmpty() ) {
+            Idle candidate = connections.poll();
+            if ( now - candidate.since > maxIdleMillis || !candidate.repository.isConnected() ) {
+              expired.add( candidate.repository );
+            } else {
+              repository = candidate.repository;
+            }
+          }
+          if ( repository != null ) {
+            borrowed.put( repository, key );
+            active.merge( key, 1, Integer::sum );
+            reused.increment();
+            return repository;
+          }
+          if ( maxActive <= 0 || active.getOrDefault( key, 0 ) < maxActive ) {
+            // reserve the slot while the connection is opened outside the lock
+            active.merge( key, 1, Integer::sum );
+            break;
+          }
+          if ( now >= deadline ) {
+            throw new TimeoutException( "No Kettle repository connection released within " //$NON-NLS-1$
+                + maxWaitMillis + " ms" ); //$NON-NLS-1$
+          }
+          wait( deadline - now );
+        }
+      }
+    } finally {
+      disconnect( expired );
+    }
+
+    boolean lent = false;
+    try {
+      repository = connector.call();
+      if ( repository != null ) {
+        opened.increment();
+        synchronized ( this ) {
+          borrowed.put( repository, key );
+        }
+        lent = true;
+      }
+      return repository;
+    } finally {
+      if ( !lent ) {
+        synchronized ( this ) {
+          returnSlot( key );
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands a repository back to the pool. Repositories not obtained from {@link #borrow}, no longer connected, or in
+   * excess of {@link #getMaxIdle()} are disconnected. Releasing the same repository twice has no effect.
+   */
+  public void release( final Repository repository ) {
+    if ( repository == null ) {
+      return;
+    }
+    synchronized ( this ) {
+      String key = borrowed.remove( repository );
+      if ( key == null && isIdle( repository ) ) {
+        return;
+      }
+      if ( key != null ) {
+        returnSlot( key );
+      }
+      if ( key != null && maxIdle > 0 && repository.isConnected() ) {
+        Deque<Idle> connections = idle.get( key );
+        if ( connections == null ) {
+          connections = new ArrayDeque<Idle>();
+          idle.put( key, connections );
+        }
+        if ( connections.size() < maxIdle ) {
+          connections.push( new Idle( repository ) );
+          return;
+        }
+      }
+    }
+    List<Repository> excess = new ArrayList<Repository>( 1 );
+    excess.add( repository );
+    disconnect( excess );
+  }
+
+  /**
+   * Disconnects every idle repository. Repositories currently lent out are disconnected when they are released.
+   */
+  public void clear() {
+    List<Repository> repositories = new ArrayList<Repository>();
+    synchronized ( this ) {
+      for ( Deque<Idle> connections : idle.values() ) {
+        for ( Idle connection : connections ) {
+          repositories.add( connection.repository );
+        }
+      }
+      idle.clear();
+      borrowed.clear();
+      active.clear();
+      notifyAll();
+    }
+    disconnect( repositories );
+  }
+
+  private void returnSlot( final String key ) {
+    active.computeIfPresent( key, ( k, count ) -> count > 1 ? count - 1 : null );
+    notifyAll();
+  }
+
+  private boolean isIdle( final Repository repository ) {
+    for ( Deque<Idle> connections : idle.values() ) {
+      for ( Idle connection : connections ) {
+        if ( connection.repository == repository ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void disconnect( final List<Repository> repositories ) {
+    for ( Repository repository : repositories ) {
+      closed.increment();
+      try {
+        repository.disconnect();
+      } catch ( Exception e ) {
+        logger.debug( "Error disconnecting Kettle repository", e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  private static String key( final String repositoryName, final String username, final String password ) {
+    return repositoryName + '\n' + username + '\n' + DigestUtils.sha256Hex( password == null ? "" : password );
+  }
+
+  public synchronized int getActiveCount() {
+    int count = 0;
+    for ( Integer connections : active.values() ) {
+      count += connections;
+    }
+    return count;
+  }
+
+  public synchronized int getIdleCount() {
+    int count = 0;
+    for ( Deque<Idle> connections : idle.values() ) {
+      count += connections.size();
+    }
+    return count;
+  }
+
+  public long getOpenedCount() {
+    return opened.sum();
+  }
+
+  public long getReusedCount() {
+    return reused.sum();
+  }
+
+  public long getClosedCount() {
+    return closed.sum();
+  }
+
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  /**
+   * @param maxIdle idle connections kept per repository and credentials, {@code 0} to disconnect on every release
+   */
+  public void setMaxIdle( final int maxIdle ) {
+    this.maxIdle = Math.max( maxIdle, 0 );
+    if ( this.maxIdle == 0 ) {
+      clear();
+    }
+  }
+
+  public long getMaxIdleMillis() {
+    return maxIdleMillis;
+  }
+
+  public void setMaxIdleMillis( final long maxIdleMillis ) {
+    this.maxIdleMillis = maxIdleMillis > 0 ? maxIdleMillis : DEFAULT_MAX_IDLE_MILLIS;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  /**
+   * @param maxActive connections lent out at the same time per repository and credentials, {@code 0} for no limit
+   */
+  public synchronized void setMaxActive( final int maxActive ) {
+    this.maxActive = Math.max( maxActive, 0 );
+    notifyAll();
+  }
+
+  public long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  public void setMaxWaitMillis( final long maxWaitMillis ) {
+    this.maxWaitMillis = Math.max( maxWaitMillis, 0L );
+  }
+
+  private static final class Idle {
+    private final Repository repository;
+    private final long since = System.currentTimeMillis();
+
+    private Idle( final Repository repository ) {
+      this.repository = repository;
+    }
+  }
+}
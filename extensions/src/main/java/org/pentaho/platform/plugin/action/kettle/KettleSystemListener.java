@@ -80,6 +80,8 @@ public class KettleSystemListener implements IPentahoSystemListener {
 
     hookInDataSourceProvider();
 
+    configureCaches();
+
     try {
       KettleSystemListener.environmentInit( session );
     } catch ( Throwable t ) {
@@ -142,6 +144,36 @@ public class KettleSystemListener implements IPentahoSystemListener {
     }
   }
 
+  /**
+   * Sizes the metadata cache and the repository connection pool used by {@link KettleComponent} from
+   * <tt>kettle/settings.xml</tt>.
+   */
+  private void configureCaches() {
+    KettleMetaCache.getInstance().setMaxEntries(
+        getIntSetting( "metadata.cache.size", KettleMetaCache.DEFAULT_MAX_ENTRIES ) ); //$NON-NLS-1$
+    KettleRepositoryPool pool = KettleRepositoryPool.getInstance();
+    pool.setMaxIdle( getIntSetting( "repository.pool.max-idle", KettleRepositoryPool.DEFAULT_MAX_IDLE ) ); //$NON-NLS-1$
+    pool.setMaxIdleMillis( 1000L * getIntSetting( "repository.pool.idle-timeout-seconds", //$NON-NLS-1$
+        (int) ( KettleRepositoryPool.DEFAULT_MAX_IDLE_MILLIS / 1000L ) ) );
+    pool.setMaxActive(
+        getIntSetting( "repository.pool.max-active", KettleRepositoryPool.DEFAULT_MAX_ACTIVE ) ); //$NON-NLS-1$
+    pool.setMaxWaitMillis( 1000L * getIntSetting( "repository.pool.max-wait-seconds", //$NON-NLS-1$
+        (int) ( KettleRepositoryPool.DEFAULT_MAX_WAIT_MILLIS / 1000L ) ) );
+  }
+
+  private int getIntSetting( final String settingName, final int defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( "kettle/settings.xml", settingName, null ); //$NON-NLS-1$
+    if ( StringUtils.isBlank( value ) ) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Ignoring invalid kettle/settings.xml value for " + settingName + ": " + value );
+      return defaultValue;
+    }
+  }
+
   public static Map readProperties( final IPentahoSession session ) {
 
     Properties props = new Properties();
@@ -179,7 +211,8 @@ public class KettleSystemListener implements IPentahoSystemListener {
   }
 
   public void shutdown() {
-    // Nothing required
+    KettleRepositoryPool.getInstance().clear();
+    KettleMetaCache.getInstance().clear();
   }
 
   public void setUsePlatformLogFile( final boolean usePlatformLogFile ) {
@@ -32,7 +32,10 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.plugin.action.messages.Messages;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -230,6 +233,7 @@ public class MetadataQueryComponent {
       }
     }
     // determine parameter values
+    List<Object> parameterValues = new ArrayList<Object>();
     if ( queryObject.getParameters() != null ) {
       for ( Parameter param : queryObject.getParameters() ) {
 
@@ -239,10 +243,28 @@ public class MetadataQueryComponent {
         }
 
         executor.setParameter( param, value );
+        parameterValues.add( value );
 
       }
     }
 
+    // live executors go to the datasource; their copied results may be shared through the query result cache
+    QueryResultCache queryCache = QueryResultCache.getInstance();
+    String cacheDatasource = null;
+    String cacheKey = null;
+    if ( !live && executor.isLive() && queryCache.isEnabled() && queryObject.getDomain() != null ) {
+      cacheDatasource = "metadata:" + queryObject.getDomain().getId(); //$NON-NLS-1$
+      parameterValues.add( maxRows );
+      cacheKey =
+          QueryResultCache.createKey( cacheDatasource, helper.toXML( queryObject ), parameterValues,
+              QueryResultCache.getSecurityContext() );
+      IPentahoResultSet cachedResultSet = queryCache.get( cacheKey );
+      if ( cachedResultSet != null ) {
+        resultSet = cachedResultSet;
+        return true;
+      }
+    }
+
     try {
       executor.setDoQueryLog( logSql );
       executor.setForwardOnly( this.useForwardOnlyResultSet );
@@ -261,6 +283,9 @@ public class MetadataQueryComponent {
         resultSet.close();
         resultSet.closeConnection();
         resultSet = cachedResultSet;
+        if ( cacheKey != null ) {
+          queryCache.put( cacheDatasource, cacheKey, cachedResultSet );
+        }
       }
 
       return resultSet != null;
@@ -39,6 +39,7 @@ import org.pentaho.platform.engine.services.connection.PentahoConnectionFactory;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
 
 import java.text.Format;
@@ -567,6 +568,29 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
       AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
 
+      QueryResultCache queryCache = QueryResultCache.getInstance();
+      String cacheDatasource = null;
+      String cacheKey = null;
+      if ( !live && connectionOwner && queryCache.isEnabled()
+          && !preparedParameters.contains( IPreparedComponent.PREPARE_LATER_PLACEHOLDER ) ) {
+        cacheDatasource = getQueryCacheDatasource();
+        if ( cacheDatasource != null ) {
+          cacheKey = getQueryCacheKey( cacheDatasource, query, preparedParameters );
+          IPentahoResultSet cachedResultSet = queryCache.get( cacheKey );
+          if ( cachedResultSet != null ) {
+            preparedParameters.clear();
+            rSet = cachedResultSet;
+            IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
+            if ( actionOutput != null ) {
+              actionOutput.setValue( cachedResultSet );
+            }
+            connection.close();
+            connection = null;
+            return true;
+          }
+        }
+      }
+
       IPentahoResultSet resultSet = null;
       boolean isForwardOnly = relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue( false );
 
@@ -612,6 +636,9 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
           IPentahoResultSet cachedResultSet = resultSet.memoryCopy();
           rSet = cachedResultSet;
+          if ( cacheKey != null ) {
+            queryCache.put( cacheDatasource, cacheKey, cachedResultSet );
+          }
 
           IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
           if ( actionOutput != null ) {
@@ -885,6 +912,50 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
     return getConnection( null );
   }
 
+  /**
+   * Identifies the datasource this component queries for the {@link QueryResultCache}, from the same inputs
+   * {@link #getConnection(IPentahoConnection)} uses.
+   *
+   * @return the JNDI name or driver, URL and user, or {@code null} if the datasource is not known
+   */
+  protected String getQueryCacheDatasource() {
+    IActionDefinition actionDefinition = getActionDefinition();
+    if ( actionDefinition instanceof SqlConnectionAction ) {
+      SqlConnectionAction sqlConnectionAction = (SqlConnectionAction) actionDefinition;
+      return getQueryCacheDatasource( sqlConnectionAction.getJndi(), sqlConnectionAction.getDriver(),
+          sqlConnectionAction.getDbUrl(), sqlConnectionAction.getUserId() );
+    } else if ( actionDefinition instanceof AbstractRelationalDbAction ) {
+      AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) actionDefinition;
+      return getQueryCacheDatasource( relationalDbAction.getJndi(), relationalDbAction.getDriver(),
+          relationalDbAction.getDbUrl(), relationalDbAction.getUserId() );
+    }
+    return null;
+  }
+
+  /**
+   * Builds the {@link QueryResultCache} key of a query. Like the metadata query component it includes the user name
+   * and roles of the current session, since the datasource may apply row level security for them.
+   */
+  protected String getQueryCacheKey( final String datasource, final String query, final List<?> parameters ) {
+    List<Object> keyParameters = new ArrayList<Object>( parameters );
+    keyParameters.add( getMaxRows() );
+    return QueryResultCache.createKey( datasource, query, keyParameters, QueryResultCache.getSecurityContext() );
+  }
+
+  private String getQueryCacheDatasource( final IActionInput jndi, final IActionInput driver,
+                                          final IActionInput dbUrl, final IActionInput userId ) {
+    String jndiName = jndi.getStringValue();
+    if ( jndiName != null ) {
+      return "jndi:" + jndiName; //$NON-NLS-1$
+    }
+    String connectionInfo = dbUrl.getStringValue();
+    if ( connectionInfo == null ) {
+      return null;
+    }
+    return "jdbc:" + driver.getStringValue() + "|" + connectionInfo + "|" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + userId.getStringValue();
+  }
+
   /**
    * This method retrieves a connection based on the components inputs.
    * 
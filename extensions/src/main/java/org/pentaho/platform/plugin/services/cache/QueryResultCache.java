@@ -0,0 +1,444 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
+import org.pentaho.platform.api.cache.IInvalidatableCacheItem;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cache of in-memory query results shared by the SQL and metadata query components, so that identical parameterized
+ * queries issued within the time to live are answered without going to the datasource.
+ * <p>
+ * Entries are keyed by datasource, normalized query text, bound parameter values and, where the query may be
+ * subject to row level security, the user name and roles. They are stored serialized and deflated, expire after
+ * <tt>query-result-cache/ttl-seconds</tt> and the least recently used ones are evicted once the stored size exceeds
+ * <tt>query-result-cache/max-bytes</tt>. Results holding values that are not serializable are not cached.
+ * </p>
+ * <p>
+ * Each datasource is registered with the {@link ICacheExpirationRegistry} as an {@link IInvalidatableCacheItem}, so
+ * its results can be dropped through the cache expiration service. The cache is off unless
+ * <tt>query-result-cache/enabled</tt> is {@code true}, since it trades freshness for load.
+ * </p>
+ */
+public class QueryResultCache {
+
+  public static final long DEFAULT_TTL_SECONDS = 60;
+
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  static final String CACHE_KEY_PREFIX = "query-result-cache:"; //$NON-NLS-1$
+
+  private static final String SETTING_ENABLED = "query-result-cache/enabled"; //$NON-NLS-1$
+
+  private static final String SETTING_TTL_SECONDS = "query-result-cache/ttl-seconds"; //$NON-NLS-1$
+
+  private static final String SETTING_MAX_BYTES = "query-result-cache/max-bytes"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( QueryResultCache.class );
+
+  private static QueryResultCache instance;
+
+  private static final class Entry {
+    private final String datasource;
+    private final byte[] data;
+    private final long expires;
+
+    private Entry( final String datasource, final byte[] data, final long expires ) {
+      this.datasource = datasource;
+      this.data = data;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * The registered expiration item of one datasource.
+   */
+  private final class Region implements IInvalidatableCacheItem {
+    private final String datasource;
+    private volatile long lastModified = System.currentTimeMillis();
+
+    private Region( final String datasource ) {
+      this.datasource = datasource;
+    }
+
+    @Override
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public String getCacheKey() {
+      return CACHE_KEY_PREFIX + datasource;
+    }
+
+    @Override
+    public void invalidate() {
+      QueryResultCache.this.invalidate( datasource );
+    }
+  }
+
+  private final boolean enabled;
+
+  private final long ttlMillis;
+
+  private final long maxBytes;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+  private final ConcurrentMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+
+  private long bytes;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  QueryResultCache( final boolean enabled, final long ttlSeconds, final long maxBytes ) {
+    this.enabled = enabled;
+    this.ttlMillis = Math.max( ttlSeconds, 0 ) * 1000L;
+    this.maxBytes = Math.max( maxBytes, 0 );
+  }
+
+  /**
+   * @return the shared cache, configured from the system settings on first use
+   */
+  public static synchronized QueryResultCache getInstance() {
+    if ( instance == null ) {
+      String enabled = PentahoSystem.getSystemSetting( SETTING_ENABLED, Boolean.FALSE.toString() );
+      instance = new QueryResultCache( Boolean.parseBoolean( enabled ), getLongSetting( SETTING_TTL_SECONDS, DEFAULT_TTL_SECONDS ),
+          getLongSetting( SETTING_MAX_BYTES, DEFAULT_MAX_BYTES ) );
+    }
+    return instance;
+  }
+
+  private static long getLongSetting( final String name, final long defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( name, null );
+    if ( value != null ) {
+      try {
+        return Long.parseLong( value.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid value for " + name + ": " + value ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return defaultValue;
+  }
+
+  public boolean isEnabled() {
+    return enabled && ttlMillis > 0 && maxBytes > 0;
+  }
+
+  /**
+   * Builds the key of a query result.
+   *
+   * @param datasource      identifies the datasource the query runs against
+   * @param query           query text, normalized with {@link #normalizeQuery(String)}
+   * @param parameters      bound parameter values, in binding order
+   * @param securityContext what else the result depends on for the current user, e.g. from
+   *                        {@link #getSecurityContext()}; {@code null} if the result is the same for everybody
+   */
+  public static String createKey( final String datasource, final String query, final List<?> parameters,
+                                  final String securityContext ) {
+    StringBuilder key = new StringBuilder();
+    key.append( datasource ).append( '\u0000' ).append( normalizeQuery( query ) ).append( '\u0000' );
+    if ( parameters != null ) {
+      for ( Object parameter : parameters ) {
+        if ( parameter == null ) {
+          key.append( "null" ); //$NON-NLS-1$
+        } else if ( parameter instanceof Object[] ) {
+          key.append( parameter.getClass().getName() ).append( ':' )
+              .append( Arrays.deepToString( (Object[]) parameter ) );
+        } else {
+          key.append( parameter.getClass().getName() ).append( ':' ).append( parameter );
+        }
+        key.append( '\u0001' );
+      }
+    }
+    key.append( '\u0000' ).append( securityContext );
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "SHA-256" ); //$NON-NLS-1$
+      return Hex.encodeHexString( digest.digest( key.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+    } catch ( NoSuchAlgorithmException e ) {
+      return key.toString();
+    }
+  }
+
+  /**
+   * Collapses runs of whitespace outside of quoted literals and identifiers into a single blank, so that queries
+   * differing only in layout share a cache entry.
+   */
+  static String normalizeQuery( final String query ) {
+    if ( query == null ) {
+      return null;
+    }
+    StringBuilder normalized = new StringBuilder( query.length() );
+    char quote = 0;
+    boolean pendingSpace = false;
+    for ( int i = 0; i < query.length(); i++ ) {
+      char c = query.charAt( i );
+      if ( quote == 0 && Character.isWhitespace( c ) ) {
+        pendingSpace = normalized.length() > 0;
+        continue;
+      }
+      if ( pendingSpace ) {
+        normalized.append( ' ' );
+        pendingSpace = false;
+      }
+      if ( quote == 0 && ( c == '\'' || c == '"' || c == '`' ) ) {
+        quote = c;
+      } else if ( c == quote ) {
+        quote = 0;
+      }
+      normalized.append( c );
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * @return the user name and sorted roles of the current user, which row level security may depend on
+   */
+  public static String getSecurityContext() {
+    StringBuilder context = new StringBuilder();
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session != null ) {
+      context.append( session.getName() );
+    }
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if ( authentication != null && authentication.getAuthorities() != null ) {
+      List<String> roles = new ArrayList<String>();
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+      Collections.sort( roles );
+      context.append( roles );
+    }
+    return context.toString();
+  }
+
+  /**
+   * @return a new in-memory copy of the cached result, or {@code null} on a miss
+   */
+  public IPentahoResultSet get( final String key ) {
+    Entry entry;
+    synchronized ( this ) {
+      entry = entries.get( key );
+      if ( entry != null && entry.expires <= System.currentTimeMillis() ) {
+        remove( key );
+        entry = null;
+      }
+    }
+    if ( entry == null ) {
+      misses.increment();
+      return null;
+    }
+    try {
+      IPentahoResultSet resultSet = decode( entry.data );
+      hits.increment();
+      return resultSet;
+    } catch ( Exception e ) {
+      logger.warn( "Discarding unreadable cached query result", e ); //$NON-NLS-1$
+      synchronized ( this ) {
+        remove( key );
+      }
+      misses.increment();
+      return null;
+    }
+  }
+
+  /**
+   * Caches an in-memory result set. The result set is rewound afterwards.
+   */
+  public void put( final String datasource, final String key, final IPentahoResultSet resultSet ) {
+    byte[] data;
+    try {
+      data = encode( resultSet );
+    } catch ( IOException e ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Query result is not cacheable: " + e.getMessage() ); //$NON-NLS-1$
+      }
+      return;
+    } finally {
+      resultSet.beforeFirst();
+    }
+    if ( data.length > maxBytes ) {
+      return;
+    }
+    Region region = regions.get( datasource );
+    if ( region == null ) {
+      region = new Region( datasource );
+      if ( regions.putIfAbsent( datasource, region ) == null ) {
+        ICacheExpirationRegistry registry = PentahoSystem.get( ICacheExpirationRegistry.class, null );
+        if ( registry != null ) {
+          registry.register( region );
+        }
+      } else {
+        region = regions.get( datasource );
+      }
+    }
+    synchronized ( this ) {
+      remove( key );
+      entries.put( key, new Entry( datasource, data, System.currentTimeMillis() + ttlMillis ) );
+      bytes += data.length;
+      Iterator<Entry> eldest = entries.values().iterator();
+      while ( bytes > maxBytes && eldest.hasNext() ) {
+        Entry evicted = eldest.next();
+        eldest.remove();
+        bytes -= evicted.data.length;
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Drops every cached result of the given datasource.
+   */
+  public void invalidate( final String datasource ) {
+    synchronized ( this ) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while ( iterator.hasNext() ) {
+        Entry entry = iterator.next();
+        if ( entry.datasource.equals( datasource ) ) {
+          iterator.remove();
+          bytes -= entry.data.length;
+        }
+      }
+    }
+    Region region = regions.get( datasource );
+    if ( region != null ) {
+      region.lastModified = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Drops every cached result.
+   */
+  public void invalidateAll() {
+    synchronized ( this ) {
+      entries.clear();
+      bytes = 0;
+    }
+    for ( Region region : regions.values() ) {
+      region.lastModified = System.currentTimeMillis();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  public synchronized long getSizeBytes() {
+    return bytes;
+  }
+
+  private void remove( final String key ) {
+    Entry entry = entries.remove( key );
+    if ( entry != null ) {
+      bytes -= entry.data.length;
+    }
+  }
+
+  static byte[] encode( final IPentahoResultSet resultSet ) throws IOException {
+    IPentahoMetaData metaData = resultSet.getMetaData();
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream( new DeflaterOutputStream( data ) );
+    try {
+      out.writeObject( metaData.getColumnHeaders() );
+      out.writeObject( metaData.getRowHeaders() );
+      out.writeObject( metaData instanceof MemoryMetaData ? ( (MemoryMetaData) metaData ).getColumnTypes() : null );
+      resultSet.beforeFirst();
+      Object[] row = resultSet.next();
+      while ( row != null ) {
+        out.writeBoolean( true );
+        // unshared, so that equal values in different rows do not keep the whole row graph referenced
+        out.writeUnshared( row );
+        row = resultSet.next();
+      }
+      out.writeBoolean( false );
+    } finally {
+      out.close();
+    }
+    return data.toByteArray();
+  }
+
+  static IPentahoResultSet decode( final byte[] data ) throws IOException, ClassNotFoundException {
+    ObjectInputStream in = new ObjectInputStream( new InflaterInputStream( new ByteArrayInputStream( data ) ) );
+    try {
+      MemoryMetaData metaData = new MemoryMetaData( (Object[][]) in.readObject(), (Object[][]) in.readObject() );
+      String[] columnTypes = (String[]) in.readObject();
+      if ( columnTypes != null ) {
+        metaData.setColumnTypes( columnTypes );
+      }
+      MemoryResultSet resultSet = new MemoryResultSet( metaData );
+      while ( in.readBoolean() ) {
+        resultSet.addRow( (Object[]) in.readUnshared() );
+      }
+      return resultSet;
+    } finally {
+      in.close();
+    }
+  }
+}
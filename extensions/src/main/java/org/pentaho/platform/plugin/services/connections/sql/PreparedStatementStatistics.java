@@ -0,0 +1,95 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.sql;
+
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the statements prepared by {@link SQLConnection} and how many of them were served from the prepared
+ * statement cache of a pooled connection, such as the one dbcp keeps per physical connection when
+ * <tt>poolPreparedStatements</tt> is set on a datasource.
+ * <p>
+ * A cached statement is recognized by the connection handing out the same statement object again. Statements are
+ * only referenced weakly, so closed uncached statements do not accumulate.
+ * </p>
+ */
+public class PreparedStatementStatistics {
+
+  private static final PreparedStatementStatistics instance = new PreparedStatementStatistics();
+
+  private final Map<Statement, Boolean> seen =
+      Collections.synchronizedMap( new WeakHashMap<Statement, Boolean>() );
+
+  private final LongAdder prepares = new LongAdder();
+
+  private final LongAdder reuses = new LongAdder();
+
+  private final LongAdder prepareNanos = new LongAdder();
+
+  PreparedStatementStatistics() {
+  }
+
+  public static PreparedStatementStatistics getInstance() {
+    return instance;
+  }
+
+  /**
+   * Records one statement returned by {@link java.sql.Connection#prepareStatement(String, int, int)}.
+   *
+   * @param statement    the statement, unwrapped from any pooling wrapper
+   * @param elapsedNanos time spent preparing it
+   * @return whether the statement has been handed out before, i.e. came from a statement cache
+   */
+  boolean record( final Statement statement, final long elapsedNanos ) {
+    prepares.increment();
+    prepareNanos.add( elapsedNanos );
+    if ( seen.put( statement, Boolean.TRUE ) != null ) {
+      reuses.increment();
+      return true;
+    }
+    return false;
+  }
+
+  public long getPrepareCount() {
+    return prepares.sum();
+  }
+
+  public long getReuseCount() {
+    return reuses.sum();
+  }
+
+  public long getTotalPrepareTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( prepareNanos.sum() );
+  }
+
+  /**
+   * @return the share of prepares served from a statement cache, between 0 and 1
+   */
+  public double getReuseRatio() {
+    long count = prepares.sum();
+    return count == 0 ? 0 : (double) reuses.sum() / count;
+  }
+}
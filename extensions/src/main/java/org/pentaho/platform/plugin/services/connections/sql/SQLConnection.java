@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.plugin.services.connections.sql;
 
+import org.apache.commons.dbcp2.DelegatingStatement;
 import org.pentaho.commons.connection.ILimitableConnection;
 import org.pentaho.commons.connection.IPentahoConnection;
 import org.pentaho.commons.connection.IPentahoResultSet;
@@ -30,6 +31,7 @@ import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.PentahoSystemException;
 import org.pentaho.platform.engine.core.system.IPentahoLoggingConnection;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.solution.ActionExecution;
 import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.engine.services.connection.datasource.dbcp.PooledDatasourceHelper;
 
@@ -81,6 +83,11 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
 
   private boolean fallBackToNonscrollableOnError = true;
 
+  /** statement most recently executed, cancelled when the background execution running this connection is */
+  private volatile Statement activeStatement;
+
+  private Runnable cancelHook;
+
   public static final int RESULTSET_SCROLLABLE = ResultSet.TYPE_SCROLL_INSENSITIVE;
 
   public static final int RESULTSET_FORWARDONLY = ResultSet.TYPE_FORWARD_ONLY;
@@ -268,6 +275,32 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
   protected void enhanceStatement( Statement statement ) throws SQLException {
   }
 
+  /**
+   * Makes the statement the one cancelled if the {@link ActionExecution} running on this thread is cancelled, since
+   * interrupting the thread does not stop a driver blocked on the database.
+   */
+  private void watchStatement( final Statement statement ) {
+    activeStatement = statement;
+    if ( cancelHook == null ) {
+      Runnable hook = new Runnable() {
+        @Override
+        public void run() {
+          Statement running = activeStatement;
+          if ( running != null ) {
+            try {
+              running.cancel();
+            } catch ( SQLException e ) {
+              // not supported by the driver, or already finished
+            }
+          }
+        }
+      };
+      if ( ActionExecution.addCancelHook( hook ) ) {
+        cancelHook = hook;
+      }
+    }
+  }
+
   /**
    * iterate over and close all statements. Remove each statement from the list.
    */
@@ -310,6 +343,11 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
    * @see org.pentaho.connection.IPentahoConnection#close()
    */
   public void close() {
+    if ( cancelHook != null ) {
+      ActionExecution.removeCancelHook( cancelHook );
+      cancelHook = null;
+    }
+    activeStatement = null;
     closeResultSets();
     closeStatements();
     if ( nativeConnection != null ) {
@@ -389,6 +427,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
 
       stmt = nativeConnection.createStatement( scrollType, concur );
       stmts.add( stmt );
+      watchStatement( stmt );
       enhanceStatement( stmt );
       setStatementLimitations( stmt );
       if ( logger != null && logger.getLoggingLevel() == ILogger.DEBUG ) {
@@ -403,6 +442,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
         // FORCE forward only
         stmt = nativeConnection.createStatement( ResultSet.TYPE_FORWARD_ONLY, concur );
         stmts.add( stmt );
+        watchStatement( stmt );
         enhanceStatement( stmt );
         setStatementLimitations( stmt );
         if ( logger != null && logger.getLoggingLevel() == ILogger.DEBUG ) {
@@ -479,6 +519,41 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
     }
   }
 
+  /**
+   * Prepares a statement on the native connection. A statement served from the statement cache of a pooled connection
+   * still carries the limits of its previous use, so those not set again by {@link #setStatementLimitations(Statement)}
+   * are put back to the driver defaults.
+   */
+  private PreparedStatement prepareStatement( final String query, final int scrollType, final int concur )
+    throws SQLException {
+    long start = System.nanoTime();
+    PreparedStatement pStmt = nativeConnection.prepareStatement( query, scrollType, concur );
+    // pooled connections wrap every statement they hand out, a cached one is only recognized by the driver statement
+    Statement identity = pStmt instanceof DelegatingStatement
+        ? ( (DelegatingStatement) pStmt ).getInnermostDelegate() : pStmt;
+    if ( PreparedStatementStatistics.getInstance().record( identity != null ? identity : pStmt,
+        System.nanoTime() - start ) ) {
+      resetStatementLimitations( pStmt );
+    }
+    return pStmt;
+  }
+
+  private void resetStatementLimitations( final Statement stmt ) {
+    try {
+      if ( this.getFetchSize() < 0 && stmt.getFetchSize() != 0 ) {
+        stmt.setFetchSize( 0 );
+      }
+      if ( this.getMaxRows() < 0 && stmt.getMaxRows() != 0 ) {
+        stmt.setMaxRows( 0 );
+      }
+      if ( this.getQueryTimeout() < 0 && stmt.getQueryTimeout() != 0 ) {
+        stmt.setQueryTimeout( 0 );
+      }
+    } catch ( Exception ignored ) {
+      // the driver does not support the limit, so it cannot have been set on an earlier use either
+    }
+  }
+
   public IPentahoResultSet prepareAndExecuteQuery( final String query, final List parameters, final int scrollType,
       final int concur ) throws SQLException {
 
@@ -498,9 +573,10 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
         logger.debug( "SQLConnection.prepareAndExecuteQuery:" + query ); //$NON-NLS-1$
       }
 
-      pStmt = nativeConnection.prepareStatement( query, scrollType, concur );
+      pStmt = prepareStatement( query, scrollType, concur );
       // add to stmts list for closing when connection closes
       stmts.add( pStmt );
+      watchStatement( pStmt );
       enhanceStatement( pStmt );
       setStatementLimitations( pStmt );
       for ( int i = 0; i < parameters.size(); i++ ) {
@@ -510,15 +586,24 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
 
     } catch ( Exception e ) {
       // attempt to remove the offending statement...
-      stmts.remove( pStmt );
+      if ( pStmt != null ) {
+        stmts.remove( pStmt );
+        try {
+          // hands a cached statement back to its cache
+          pStmt.close();
+        } catch ( Exception ignored ) {
+          //ignored
+        }
+      }
       if ( ( scrollType == ResultSet.TYPE_SCROLL_INSENSITIVE ) && ( isFallBackToNonscrollableOnError() ) ) {
         // FORCE forward only
         if ( logger != null && logger.getLoggingLevel() == ILogger.DEBUG ) {
           logger.debug( "SQLConnection.prepareAndExecuteQuery(e):" + query ); //$NON-NLS-1$
         }
-        pStmt = nativeConnection.prepareStatement( query, ResultSet.TYPE_FORWARD_ONLY, concur );
+        pStmt = prepareStatement( query, ResultSet.TYPE_FORWARD_ONLY, concur );
         // add to stmts list for closing when connection closes
         stmts.add( pStmt );
+        watchStatement( pStmt );
         enhanceStatement( pStmt );
         setStatementLimitations( pStmt );
         for ( int i = 0; i < parameters.size(); i++ ) {
@@ -629,6 +714,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
     // add to stmts list for closing when connection closes
     enhanceStatement( stmt );
     stmts.add( stmt );
+    watchStatement( stmt );
 
     setStatementLimitations( stmt );
 
@@ -0,0 +1,210 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.metadata;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.model.Domain;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local disk store of parsed and localized {@link Domain} objects, used by {@link PentahoMetadataDomainRepository} to
+ * skip XMI parsing after a restart, a flush or a cache eviction.
+ * <p>
+ * Each domain has at most one snapshot file, a gzip-compressed serialized {@code Domain} prefixed by a key made of the
+ * id and version of the domain file and of each of its locale files. A snapshot is only used when its key matches the
+ * current repository files, so any change to the XMI or to a locale bundle makes it stale, and it is replaced the next
+ * time the domain is parsed.
+ * </p>
+ * <p>
+ * Snapshots are read back with an allow-list {@link ObjectInputFilter}: only metadata model classes and the plain JDK
+ * value and collection types they hold can be deserialized. A snapshot referring to anything else is rejected and the
+ * domain is parsed from its XMI instead.
+ * </p>
+ */
+public class DomainSnapshotStore {
+
+  private static final Log logger = LogFactory.getLog( DomainSnapshotStore.class );
+
+  static final int MAGIC = 0x504d4453; // PMDS
+
+  static final int FORMAT_VERSION = 1;
+
+  /**
+   * Classes a snapshot may contain, see {@link ObjectInputFilter.Config#createFilter(String)}.
+   */
+  static final ObjectInputFilter SNAPSHOT_FILTER = ObjectInputFilter.Config.createFilter(
+      "org.pentaho.metadata.**;java.lang.*;java.util.*;java.math.BigDecimal;java.math.BigInteger;" //$NON-NLS-1$
+      + "java.sql.Date;java.sql.Timestamp;maxdepth=200;!*" ); //$NON-NLS-1$
+
+  private static final String SUFFIX = ".domain";
+
+  private final File directory;
+
+  /**
+   * @param directory folder holding the snapshots; created on first write
+   */
+  public DomainSnapshotStore( final File directory ) {
+    if ( directory == null ) {
+      throw new IllegalArgumentException();
+    }
+    this.directory = directory;
+  }
+
+  /**
+   * Builds the key identifying the current state of a domain's repository files.
+   *
+   * @param domainFile  XMI file of the domain
+   * @param localeFiles locale bundle files of the domain, keyed by locale; may be {@code null}
+   */
+  public static String createKey( final RepositoryFile domainFile, final Map<String, RepositoryFile> localeFiles ) {
+    StringBuilder key = new StringBuilder();
+    appendFile( key, domainFile );
+    if ( localeFiles != null ) {
+      for ( Map.Entry<String, RepositoryFile> locale : new TreeMap<String, RepositoryFile>( localeFiles ).entrySet() ) {
+        key.append( '|' ).append( locale.getKey() ).append( '=' );
+        appendFile( key, locale.getValue() );
+      }
+    }
+    return key.toString();
+  }
+
+  private static void appendFile( final StringBuilder key, final RepositoryFile file ) {
+    key.append( file.getId() ).append( ':' ).append( file.getVersionId() ).append( ':' );
+    if ( file.getLastModifiedDate() != null ) {
+      key.append( file.getLastModifiedDate().getTime() );
+    }
+  }
+
+  /**
+   * @return the domain stored under the given key, or {@code null} if there is no snapshot or it is stale
+   */
+  public Domain load( final String domainId, final String key ) {
+    File file = getFile( domainId );
+    if ( !file.isFile() ) {
+      return null;
+    }
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream( new GZIPInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) );
+      in.setObjectInputFilter( SNAPSHOT_FILTER );
+      if ( in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals( domainId )
+          || !in.readUTF().equals( key ) ) {
+        return null;
+      }
+      Domain domain = (Domain) in.readObject();
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Loaded domain snapshot for " + domainId );
+      }
+      return domain;
+    } catch ( Exception e ) {
+      // unreadable or from an incompatible metadata version, the caller parses the XMI instead
+      logger.debug( "Ignoring domain snapshot " + file, e );
+      return null;
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+  }
+
+  /**
+   * Replaces the snapshot of a domain. Failures are logged and otherwise ignored.
+   */
+  public void store( final String domainId, final String key, final Domain domain ) {
+    File tmp = null;
+    try {
+      if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() ) {
+        logger.warn( "Cannot create domain snapshot folder " + directory );
+        return;
+      }
+      tmp = File.createTempFile( "snapshot", ".tmp", directory );
+      ObjectOutputStream out =
+          new ObjectOutputStream( new GZIPOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) );
+      try {
+        out.writeInt( MAGIC );
+        out.writeInt( FORMAT_VERSION );
+        out.writeUTF( domainId );
+        out.writeUTF( key );
+        out.writeObject( domain );
+      } finally {
+        out.close();
+      }
+      try {
+        Files.move( tmp.toPath(), getFile( domainId ).toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException e ) {
+        Files.move( tmp.toPath(), getFile( domainId ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+      }
+      tmp = null;
+    } catch ( IOException e ) {
+      logger.warn( "Cannot write domain snapshot for " + domainId + ": " + e.getMessage() );
+    } finally {
+      if ( tmp != null && !tmp.delete() ) {
+        tmp.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Deletes the snapshot of a domain, if any.
+   */
+  public void remove( final String domainId ) {
+    File file = getFile( domainId );
+    if ( file.exists() && !file.delete() ) {
+      logger.warn( "Cannot delete domain snapshot " + file );
+    }
+  }
+
+  File getFile( final String domainId ) {
+    // domain ids may hold characters that are not valid in file names
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+      byte[] hash = digest.digest( domainId.getBytes( StandardCharsets.UTF_8 ) );
+      StringBuilder name = new StringBuilder( hash.length * 2 + SUFFIX.length() );
+      for ( byte b : hash ) {
+        name.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+      }
+      return new File( directory, name.append( SUFFIX ).toString() );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+}
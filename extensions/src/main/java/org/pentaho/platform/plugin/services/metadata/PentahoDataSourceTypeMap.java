@@ -55,6 +55,15 @@ class PentahoDataSourceTypeMap {
     mapDataSourceTypeToDomainIds.clear();
   }
 
+  /**
+   * Takes over the mappings of a map built elsewhere, e.g. during a reload.
+   * @param other
+   */
+  public void replaceWith( final PentahoDataSourceTypeMap other ) {
+    log.debug( "replaceWith()" );
+    mapDataSourceTypeToDomainIds = other.mapDataSourceTypeToDomainIds;
+  }
+
   /**
    * Add domain Id to a datasource type.
    * @param datasourceType
@@ -34,6 +34,7 @@ import org.pentaho.metadata.repository.DomainStorageException;
 import org.pentaho.metadata.repository.IMetadataDomainRepository;
 import org.pentaho.metadata.util.LocalizationUtil;
 import org.pentaho.metadata.util.XmiParser;
+import org.pentaho.platform.api.engine.IApplicationContext;
 import org.pentaho.platform.api.engine.PentahoAccessControlException;
 import org.pentaho.platform.api.repository2.unified.IAclNodeHelper;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -42,6 +43,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.repository2.unified.RepositoryUtils;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
@@ -50,13 +52,16 @@ import org.pentaho.platform.repository2.unified.jcr.JcrAclNodeHelper;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -66,6 +71,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
@@ -145,8 +151,24 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
 
   private IAclNodeHelper aclHelper;
 
+  // Parsed domains kept on local disk; null when disabled
+  private DomainSnapshotStore domainSnapshotStore;
+  private boolean domainSnapshotStoreResolved;
+
   private final ReentrantReadWriteLock lock;
-  private boolean needToReload;
+  private volatile boolean needToReload;
+  // Orders overlapping reloads; only a reload started after the last published one may replace the mappings
+  private final AtomicLong reloadSequence = new AtomicLong();
+  private long publishedReload;
+  // Bumped under the write lock whenever the mappings are changed in place; a reload built across such a change is
+  // not published, since it could bring back a domain that was just deleted
+  private long mappingGeneration;
+  // Serializes reloads on first use, without blocking readers of the mappings
+  private final Object reloadMonitor = new Object();
+  // Serializes locale file additions, so that the duplicate check and the creation of the file are atomic
+  private final Object localeFileMonitor = new Object();
+
+  private static final int MAX_RELOAD_ATTEMPTS = 3;
 
   private static final String ERROR_0005_ERROR_RETRIEVING_DOMAIN = "PentahoMetadataDomainRepository.ERROR_0005_ERROR_RETRIEVING_DOMAIN";
 
@@ -376,6 +398,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
     } else {
       newDomainFile = updateFile( domainFile, data );
     }
+    removeDomainSnapshot( domainId );
 
     // This invalidates any caching
     flushDomains();
@@ -478,6 +501,16 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       final RepositoryFile file = getMetadataRepositoryFile( domainId );
       if ( file != null ) {
         if ( hasAccessFor( file ) ) {
+          // A snapshot matching the current domain and locale files spares parsing the XMI
+          final DomainSnapshotStore snapshots = getDomainSnapshotStore();
+          String snapshotKey = null;
+          if ( snapshots != null ) {
+            snapshotKey = DomainSnapshotStore.createKey( file, metadataMapping.getLocaleFiles( domainId ) );
+            domain = snapshots.load( domainId, snapshotKey );
+            if ( domain != null ) {
+              return domain;
+            }
+          }
           SimpleRepositoryFileData data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
           if ( data != null ) {
             InputStream is = data.getStream();
@@ -491,6 +524,9 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
             // Load any I18N bundles
             loadLocaleStrings( domainId, domain );
             logger.debug( "loaded I18N bundles" );
+            if ( snapshots != null ) {
+              snapshots.store( domainId, snapshotKey, domain );
+            }
           } else {
             throw new UnifiedRepositoryException( messages.getErrorString(
                     ERROR_0005_ERROR_RETRIEVING_DOMAIN, domainId, "data not found" ) );
@@ -670,6 +706,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       domainFile = metadataMapping.getDomainFile( domainId );
       metadataMapping.deleteDomain( domainId );
       dataSourceTypeMapping.deleteDomainId( domainId );
+      mappingGeneration++;
     } finally {
       lock.writeLock().unlock();
     }
@@ -679,6 +716,8 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       getAclHelper().removeAclFor( domainFile );
     }
 
+    removeDomainSnapshot( domainId );
+
     for ( final RepositoryFile file : domainFiles ) {
       if ( logger.isTraceEnabled() ) {
         logger.trace( "Deleting repository file " + toString( file ) );
@@ -750,56 +789,126 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
   }
 
   /**
-   * Performs the process of reloading the domain information from the repository
+   * Performs the process of reloading the domain information from the repository. The new mappings are built without
+   * holding the lock and then published at once, so readers are only blocked for the swap. When reloads overlap, the
+   * mappings of the one started last win. A reload that overlapped an in-place change of the mappings is built again,
+   * and after {@link #MAX_RELOAD_ATTEMPTS} such attempts it is left to the next access.
    */
   private void internalReloadDomains() {
-    lock.writeLock().lock();
-    try {
-      metadataMapping.reset();
-      dataSourceTypeMapping.reset();
-
-      // Reload the metadata about the metadata (that was fun to say)
-      final List<RepositoryFile> children = repository.getChildren( getMetadataDir().getId(), "*" );
-      logger.trace( "\tFound " + children.size() + " files in the repository" );
-
-      for ( final RepositoryFile child : children ) {
-        if ( getAclHelper().canAccess( child, READ ) ) {
-          // Get the metadata for this file
-          final Map<String, Serializable> fileMetadata = getFileMetadataHelper( child.getId() );
-          if ( fileMetadata == null || StringUtils.isEmpty( (String) fileMetadata.get( PROPERTY_NAME_DOMAIN_ID ) ) ) {
-            logger.warn( messages.getString( "PentahoMetadataDomainRepository.WARN_0001_FILE_WITHOUT_METADATA",
-                    child.getName() ) );
-            continue;
-          }
-          final String domainId = (String) fileMetadata.get( PROPERTY_NAME_DOMAIN_ID );
-          final String type = (String) fileMetadata.get( PROPERTY_NAME_TYPE );
-          final String locale = (String) fileMetadata.get( PROPERTY_NAME_LOCALE );
-          final String datasourceType = (String) fileMetadata.get( PROPERTY_NAME_DATASOURCE_TYPE );
-
-          logger.trace( "\tprocessing file [type=" + type + " : domainId=" + domainId + " : locale=" + locale + "]" );
-
-          // Save the data in the map
-          if ( StringUtils.equals( type, TYPE_DOMAIN ) ) {
-            metadataMapping.addDomain( domainId, child );
-          } else if ( StringUtils.equals( type, TYPE_LOCALE ) ) {
-            metadataMapping.addLocale( domainId, locale, child );
-          }
+    for ( int attempt = 1; ; attempt++ ) {
+      final long reload = reloadSequence.incrementAndGet();
+      final long generation;
+      lock.readLock().lock();
+      try {
+        generation = mappingGeneration;
+      } finally {
+        lock.readLock().unlock();
+      }
+
+      final PentahoMetadataInformationMap newMetadataMapping = new PentahoMetadataInformationMap();
+      final PentahoDataSourceTypeMap newDataSourceTypeMapping = new PentahoDataSourceTypeMap();
+      buildMappings( newMetadataMapping, newDataSourceTypeMapping );
 
-          // keep track of datasource type
-          if ( StringUtils.isNotEmpty( datasourceType ) ) {
-            logger.trace( String.format( "\tTracking domainId: %s with datasource type: %s with id: %s",
-                    domainId, datasourceType, child.getId() ) );
-            dataSourceTypeMapping.addDatasourceType( datasourceType, domainId );
+      lock.writeLock().lock();
+      try {
+        if ( generation == mappingGeneration ) {
+          if ( reload > publishedReload ) {
+            metadataMapping.replaceWith( newMetadataMapping );
+            dataSourceTypeMapping.replaceWith( newDataSourceTypeMapping );
+            publishedReload = reload;
           }
+          needToReload = false;
+          return;
         }
+        if ( attempt >= MAX_RELOAD_ATTEMPTS ) {
+          // keep the in-place changes and build the mappings again on the next access
+          needToReload = true;
+          return;
+        }
+      } finally {
+        lock.writeLock().unlock();
       }
+    }
+  }
 
-      needToReload = false;
-    } finally {
-      lock.writeLock().unlock();
+  /**
+   * Reads the domain and locale files of the metadata folder into new mappings.
+   */
+  private void buildMappings( final PentahoMetadataInformationMap newMetadataMapping,
+                              final PentahoDataSourceTypeMap newDataSourceTypeMapping ) {
+    // Reload the metadata about the metadata (that was fun to say)
+    final List<RepositoryFile> children = repository.getChildren( getMetadataDir().getId(), "*" );
+    logger.trace( "\tFound " + children.size() + " files in the repository" );
+
+    final List<Boolean> access = children.isEmpty()
+            ? Collections.<Boolean>emptyList()
+            : getAclHelper().canAccessInBatch( children, READ );
+    final List<RepositoryFile> readable = new ArrayList<RepositoryFile>( children.size() );
+    for ( int i = 0; i < children.size(); i++ ) {
+      if ( Boolean.TRUE.equals( access.get( i ) ) ) {
+        readable.add( children.get( i ) );
+      }
+    }
+    final List<Map<String, Serializable>> metadata = getFileMetadataInBatchHelper( readable );
+
+    for ( int i = 0; i < readable.size(); i++ ) {
+      final RepositoryFile child = readable.get( i );
+      final Map<String, Serializable> fileMetadata = metadata.get( i );
+      if ( fileMetadata == null || StringUtils.isEmpty( (String) fileMetadata.get( PROPERTY_NAME_DOMAIN_ID ) ) ) {
+        logger.warn( messages.getString( "PentahoMetadataDomainRepository.WARN_0001_FILE_WITHOUT_METADATA",
+                child.getName() ) );
+        continue;
+      }
+      final String domainId = (String) fileMetadata.get( PROPERTY_NAME_DOMAIN_ID );
+      final String type = (String) fileMetadata.get( PROPERTY_NAME_TYPE );
+      final String locale = (String) fileMetadata.get( PROPERTY_NAME_LOCALE );
+      final String datasourceType = (String) fileMetadata.get( PROPERTY_NAME_DATASOURCE_TYPE );
+
+      logger.trace( "\tprocessing file [type=" + type + " : domainId=" + domainId + " : locale=" + locale + "]" );
+
+      // Save the data in the map
+      if ( StringUtils.equals( type, TYPE_DOMAIN ) ) {
+        newMetadataMapping.addDomain( domainId, child );
+      } else if ( StringUtils.equals( type, TYPE_LOCALE ) ) {
+        newMetadataMapping.addLocale( domainId, locale, child );
+      }
+
+      // keep track of datasource type
+      if ( StringUtils.isNotEmpty( datasourceType ) ) {
+        logger.trace( String.format( "\tTracking domainId: %s with datasource type: %s with id: %s",
+                domainId, datasourceType, child.getId() ) );
+        newDataSourceTypeMapping.addDatasourceType( datasourceType, domainId );
+      }
     }
   }
 
+  /**
+   * Fetches the metadata of all files in one repository call, migrating legacy domains the same way as
+   * {@link #getFileMetadataHelper(Serializable)}.
+   * @param files
+   * @return metadata for every file, in the same order
+   */
+  List<Map<String, Serializable>> getFileMetadataInBatchHelper( final List<RepositoryFile> files ) {
+    List<Map<String, Serializable>> metadata = files.isEmpty()
+            ? new ArrayList<Map<String, Serializable>>()
+            : repository.getFileMetadataInBatch( files );
+    if ( metadata == null || metadata.size() != files.size() ) {
+      // repository did not answer for every file, fall back to one call per file
+      metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+      for ( RepositoryFile file : files ) {
+        metadata.add( getFileMetadataHelper( file.getId() ) );
+      }
+      return metadata;
+    }
+    for ( int i = 0; i < files.size(); i++ ) {
+      Map<String, Serializable> fileMetadata = metadata.get( i );
+      if ( fileMetadata != null && isDomain( fileMetadata ) && !hasDatasourceType( fileMetadata ) ) {
+        metadata.set( i, migrateDomain( files.get( i ).getId(), fileMetadata ) );
+      }
+    }
+    return metadata;
+  }
+
   /**
    * Only migrate if certain properties don't exist and other conditions.
    * Else return file metadata.
@@ -914,10 +1023,15 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
                 ERROR_0004_DOMAIN_ID_INVALID, domainId ) );
       }
 
-      lock.writeLock().lock();
-      try {
+      synchronized ( localeFileMonitor ) {
         // Check for duplicates
-        final RepositoryFile localeFile = metadataMapping.getLocaleFile( domainId, locale );
+        final RepositoryFile localeFile;
+        lock.readLock().lock();
+        try {
+          localeFile = metadataMapping.getLocaleFile( domainId, locale );
+        } finally {
+          lock.readLock().unlock();
+        }
         if ( !overwrite && localeFile != null ) {
           throw new DomainStorageException( messages.getErrorString(
             "PentahoMetadataDomainRepository.ERROR_0009_LOCALE_ALREADY_EXISTS", domainId, locale ), null );
@@ -927,15 +1041,20 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
           new SimpleRepositoryFileData( inputStream, DEFAULT_ENCODING, LOCALE_MIME_TYPE );
         if ( localeFile == null ) {
           final RepositoryFile newLocaleFile = createUniqueFile( domainId, locale, data );
-          metadataMapping.addLocale( domainId, locale, newLocaleFile );
+          lock.writeLock().lock();
+          try {
+            metadataMapping.addLocale( domainId, locale, newLocaleFile );
+            mappingGeneration++;
+          } finally {
+            lock.writeLock().unlock();
+          }
         } else {
           updateFile( localeFile, data );
         }
-        // This invalidates any cached information
-        flushDomains();
-      } finally {
-        lock.writeLock().unlock();
       }
+      removeDomainSnapshot( domainId );
+      // This invalidates any cached information
+      flushDomains();
     }
   }
 
@@ -1083,6 +1202,36 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
     return localizationUtil;
   }
 
+  /**
+   * Returns the store of parsed domain snapshots. Unless one was set, snapshots are kept under
+   * {@code system/tmp/metadata-domains} of the solution; the store is disabled when there is no solution to hold
+   * them or when the {@code metadata-domain-snapshots} system setting is {@code false}.
+   */
+  protected synchronized DomainSnapshotStore getDomainSnapshotStore() {
+    if ( !domainSnapshotStoreResolved ) {
+      domainSnapshotStoreResolved = true;
+      IApplicationContext context = PentahoSystem.getApplicationContext();
+      if ( context != null
+          && Boolean.parseBoolean( PentahoSystem.getSystemSetting( "metadata-domain-snapshots", "true" ) ) ) {
+        domainSnapshotStore =
+          new DomainSnapshotStore( new File( context.getSolutionPath( "system/tmp/metadata-domains" ) ) );
+      }
+    }
+    return domainSnapshotStore;
+  }
+
+  private void removeDomainSnapshot( final String domainId ) {
+    final DomainSnapshotStore snapshots = getDomainSnapshotStore();
+    if ( snapshots != null ) {
+      snapshots.remove( domainId );
+    }
+  }
+
+  public synchronized void setDomainSnapshotStore( final DomainSnapshotStore domainSnapshotStore ) {
+    this.domainSnapshotStore = domainSnapshotStore;
+    this.domainSnapshotStoreResolved = true;
+  }
+
   protected void setRepository( final IUnifiedRepository repository ) {
     this.repository = repository;
   }
@@ -1129,15 +1278,12 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
         logger.debug(
           "Requested Domain (" + domainId + ") wasn't found in Metadata Mapping. Domain cache will be reloaded" );
       }
-      lock.writeLock().lock();
+      reloadDomainsIfNeeded();
+      lock.readLock().lock();
       try {
         domainFile = metadataMapping.getDomainFile( domainId );
-        if ( domainFile == null ) {
-          reloadDomainsIfNeeded();
-          domainFile = metadataMapping.getDomainFile( domainId );
-        }
       } finally {
-        lock.writeLock().unlock();
+        lock.readLock().unlock();
       }
     }
 
@@ -1149,13 +1295,12 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
   }
 
   private void reloadDomainsIfNeeded() {
-    lock.writeLock().lock();
-    try {
-      if ( needToReload ) {
-        internalReloadDomains();
+    if ( needToReload ) {
+      synchronized ( reloadMonitor ) {
+        if ( needToReload ) {
+          internalReloadDomains();
+        }
       }
-    } finally {
-      lock.writeLock().unlock();
     }
   }
 
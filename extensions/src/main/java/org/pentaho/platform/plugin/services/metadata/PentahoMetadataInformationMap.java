@@ -51,6 +51,13 @@ class PentahoMetadataInformationMap {
     mapping.clear();
   }
 
+  /**
+   * Takes over the mappings of a map built elsewhere, e.g. during a reload.
+   */
+  public void replaceWith( final PentahoMetadataInformationMap other ) {
+    mapping = other.mapping;
+  }
+
   public RepositoryFile getDomainFile( final String domainId ) {
     Assert.notNull( domainId );
     final Map<String, RepositoryFile> details = getDetails( domainId, false );
@@ -0,0 +1,164 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.admin.GeneratedContentRetention;
+import org.pentaho.platform.admin.RetentionPolicy;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link GeneratedContentRetention} in the background. To use it, update <tt>systemListeners.xml</tt> by adding
+ * the following section:
+ * <pre>
+  &lt;bean id="generatedContentRetentionSystemListener"
+        class="org.pentaho.platform.plugin.services.repository.GeneratedContentRetentionSystemListener"&gt;
+    &lt;property name="policies"&gt;
+      &lt;list&gt;
+        &lt;bean class="org.pentaho.platform.admin.RetentionPolicy"&gt;
+          &lt;property name="folderPath" value="/home"/&gt;
+          &lt;property name="keepLast" value="10"/&gt;
+          &lt;property name="maxAgeDays" value="90"/&gt;
+        &lt;/bean&gt;
+      &lt;/list&gt;
+    &lt;/property&gt;
+  &lt;/bean&gt;
+ * </pre>
+ * <tt>policies</tt> are the {@link RetentionPolicy retention policies} of generated content, by folder and by
+ * schedule lineage id; content no policy applies to is kept, and the listener does nothing without any policy. The
+ * trash is emptied by {@link TrashPurgeSystemListener}. <tt>intervalHours</tt> is the time between runs (24 by
+ * default), <tt>batchSize</tt> the number of files deleted at a time (100 by default), <tt>maxDeletesPerSecond</tt>
+ * the maximum number of files deleted per second (unlimited by default) and <tt>rootFolderPath</tt> the folder to
+ * scan (the repository root by default).
+ * <p>
+ * Retention runs as the system user in a background thread, starting ten minutes after the platform has started. A
+ * run that was paused continues where it stopped at the next interval.
+ * </p>
+ */
+public class GeneratedContentRetentionSystemListener implements IPentahoSystemListener {
+
+  private static final long INITIAL_DELAY_MINUTES = 10;
+
+  private final Log logger = LogFactory.getLog( GeneratedContentRetentionSystemListener.class );
+
+  private List<RetentionPolicy> policies = new ArrayList<RetentionPolicy>();
+  private int intervalHours = 24;
+  private int batchSize = GeneratedContentRetention.DEFAULT_BATCH_SIZE;
+  private int maxDeletesPerSecond = 0;
+  private String rootFolderPath;
+
+  private ScheduledExecutorService executor;
+
+  @Override
+  public boolean startup( IPentahoSession session ) {
+    final GeneratedContentRetention retention = getRetention();
+    retention.setPolicies( policies );
+    retention.setBatchSize( batchSize );
+    retention.setMaxDeletesPerSecond( maxDeletesPerSecond );
+    retention.setRootFolderPath( rootFolderPath );
+    if ( policies.isEmpty() ) {
+      return true;
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "GeneratedContentRetention" ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    } );
+    executor.scheduleWithFixedDelay( () -> {
+      try {
+        SecurityHelper.getInstance().runAsSystem( new Callable<Boolean>() {
+          @Override public Boolean call() throws Exception {
+            return retention.run( PentahoSystem.get( IUnifiedRepository.class ) );
+          }
+        } );
+      } catch ( Exception e ) {
+        logger.error( "Error running generated content retention", e );
+      }
+    }, INITIAL_DELAY_MINUTES, TimeUnit.HOURS.toMinutes( Math.max( intervalHours, 1 ) ), TimeUnit.MINUTES );
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+    if ( executor != null ) {
+      getRetention().pause();
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  GeneratedContentRetention getRetention() {
+    return GeneratedContentRetention.getInstance();
+  }
+
+  public List<RetentionPolicy> getPolicies() {
+    return policies;
+  }
+
+  public void setPolicies( List<RetentionPolicy> policies ) {
+    this.policies = policies != null ? policies : new ArrayList<RetentionPolicy>();
+  }
+
+  public int getIntervalHours() {
+    return intervalHours;
+  }
+
+  public void setIntervalHours( int intervalHours ) {
+    this.intervalHours = intervalHours;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize > 0 ? batchSize : GeneratedContentRetention.DEFAULT_BATCH_SIZE;
+  }
+
+  public int getMaxDeletesPerSecond() {
+    return maxDeletesPerSecond;
+  }
+
+  public void setMaxDeletesPerSecond( int maxDeletesPerSecond ) {
+    this.maxDeletesPerSecond = Math.max( maxDeletesPerSecond, 0 );
+  }
+
+  public String getRootFolderPath() {
+    return rootFolderPath;
+  }
+
+  public void setRootFolderPath( String rootFolderPath ) {
+    this.rootFolderPath = rootFolderPath;
+  }
+}
@@ -32,6 +32,7 @@ import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.OrphanedVersionCollector;
 import org.pentaho.platform.util.StringUtil;
 
 import java.util.ArrayList;
@@ -57,6 +58,11 @@ import java.util.List;
  * </ul>
  * Note, that periodic executions will be planned to start at 0:00. If an execution was not started at that time,
  * e.g. the server was shut down, then it will be started as soon as the scheduler is restored.
+ * <p>
+ * <tt>versionBatchSize</tt> and <tt>maxVersionNodesPerSecond</tt> are non-mandatory parameters that tune the
+ * orphaned version purge: the number of version storage nodes processed per session save (1000 by default) and the
+ * maximum number of nodes visited per second (unlimited by default).
+ * </p>
  * @author Andrey Khayrutdinov
  */
 public class RepositoryCleanerSystemListener implements IPentahoSystemListener, IJobFilter {
@@ -109,9 +115,17 @@ public class RepositoryCleanerSystemListener implements IPentahoSystemListener,
 
   private boolean gcEnabled = true;
   private String execute;
+  private int versionBatchSize = OrphanedVersionCollector.DEFAULT_BATCH_SIZE;
+  private int maxVersionNodesPerSecond = 0;
 
   @Override
   public boolean startup( IPentahoSession session ) {
+    OrphanedVersionCollector collector = OrphanedVersionCollector.getSystemInstance();
+    if ( collector != null ) {
+      collector.setBatchSize( versionBatchSize );
+      collector.setMaxNodesPerSecond( maxVersionNodesPerSecond );
+    }
+
     IScheduler scheduler = PentahoSystem.get( IScheduler.class, "IScheduler2", session );
     if ( scheduler == null ) {
       logger.error( "Cannot obtain an instance of IScheduler2" );
@@ -218,4 +232,20 @@ public class RepositoryCleanerSystemListener implements IPentahoSystemListener,
   public void setExecute( String execute ) {
     this.execute = execute;
   }
+
+  public int getVersionBatchSize() {
+    return versionBatchSize;
+  }
+
+  public void setVersionBatchSize( int versionBatchSize ) {
+    this.versionBatchSize = versionBatchSize;
+  }
+
+  public int getMaxVersionNodesPerSecond() {
+    return maxVersionNodesPerSecond;
+  }
+
+  public void setMaxVersionNodesPerSecond( int maxVersionNodesPerSecond ) {
+    this.maxVersionNodesPerSecond = maxVersionNodesPerSecond;
+  }
 }
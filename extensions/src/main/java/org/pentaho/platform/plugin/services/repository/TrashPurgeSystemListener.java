@@ -0,0 +1,184 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permanently deletes files that have been in the trash for longer than a retention period. To use it, update
+ * <tt>systemListeners.xml</tt> by adding the following section:
+ * <pre>
+  &lt;bean id="trashPurgeSystemListener"
+        class="org.pentaho.platform.plugin.services.repository.TrashPurgeSystemListener"&gt;
+    &lt;property name="retentionDays" value="30"/&gt;
+  &lt;/bean&gt;
+ * </pre>
+ * <tt>retentionDays</tt> is the number of days a deleted file is kept in the trash; <tt>0</tt>, the default, turns
+ * the purge off. <tt>intervalHours</tt> is the time between purges (24 by default), <tt>batchSize</tt> the number
+ * of files listed and deleted at a time (500 by default) and <tt>maxFilesPerSecond</tt> the maximum number of files
+ * deleted per second (unlimited by default).
+ * <p>
+ * The purge runs as the system user in a background thread, starting ten minutes after the platform has started.
+ * </p>
+ */
+public class TrashPurgeSystemListener implements IPentahoSystemListener {
+
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  private static final long INITIAL_DELAY_MINUTES = 10;
+
+  private final Log logger = LogFactory.getLog( TrashPurgeSystemListener.class );
+
+  private int retentionDays = 0;
+  private int intervalHours = 24;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int maxFilesPerSecond = 0;
+
+  private ScheduledExecutorService executor;
+
+  @Override
+  public boolean startup( IPentahoSession session ) {
+    if ( retentionDays <= 0 ) {
+      return true;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "TrashPurge" ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    } );
+    executor.scheduleWithFixedDelay( () -> {
+      try {
+        SecurityHelper.getInstance().runAsSystem( new Callable<Integer>() {
+          @Override public Integer call() throws Exception {
+            return purge( PentahoSystem.get( IUnifiedRepository.class ) );
+          }
+        } );
+      } catch ( Exception e ) {
+        logger.error( "Error purging the trash", e );
+      }
+    }, INITIAL_DELAY_MINUTES, TimeUnit.HOURS.toMinutes( Math.max( intervalHours, 1 ) ), TimeUnit.MINUTES );
+    return true;
+  }
+
+  /**
+   * Permanently deletes, in batches, all files that were moved to the trash before the retention period.
+   *
+   * @return number of files deleted
+   */
+  int purge( IUnifiedRepository repository ) throws InterruptedException {
+    Date deletedBefore = new Date( System.currentTimeMillis() - TimeUnit.DAYS.toMillis( retentionDays ) );
+    long start = System.currentTimeMillis();
+    int purged = 0;
+    int skipped = 0;
+    while ( !Thread.currentThread().isInterrupted() ) {
+      List<RepositoryFile> files = repository.getDeletedFiles( null, null, deletedBefore, skipped, batchSize );
+      if ( files.isEmpty() ) {
+        break;
+      }
+      List<Serializable> fileIds = new ArrayList<Serializable>( files.size() );
+      for ( RepositoryFile file : files ) {
+        fileIds.add( file.getId() );
+      }
+      int deleted = repository.permanentlyDeleteFiles( fileIds, null );
+      purged += deleted;
+      if ( deleted < fileIds.size() ) {
+        // files that could not be deleted are still listed first, page past them but not past files that were gone
+        // already, e.g. deleted by their owner meanwhile
+        for ( Serializable fileId : fileIds ) {
+          if ( repository.getFileById( fileId ) != null ) {
+            skipped++;
+          }
+        }
+      }
+      if ( files.size() < batchSize ) {
+        break;
+      }
+      if ( maxFilesPerSecond > 0 ) {
+        long minElapsed = ( purged + skipped ) * 1000L / maxFilesPerSecond;
+        long elapsed = System.currentTimeMillis() - start;
+        if ( elapsed < minElapsed ) {
+          Thread.sleep( minElapsed - elapsed );
+        }
+      }
+    }
+    if ( purged > 0 || skipped > 0 ) {
+      logger.info( String.format( "Purged %d files deleted before %s from the trash, %d could not be deleted", purged,
+          deletedBefore, skipped ) );
+    }
+    return purged;
+  }
+
+  @Override
+  public void shutdown() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  public int getRetentionDays() {
+    return retentionDays;
+  }
+
+  public void setRetentionDays( int retentionDays ) {
+    this.retentionDays = retentionDays;
+  }
+
+  public int getIntervalHours() {
+    return intervalHours;
+  }
+
+  public void setIntervalHours( int intervalHours ) {
+    this.intervalHours = intervalHours;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+  }
+
+  public int getMaxFilesPerSecond() {
+    return maxFilesPerSecond;
+  }
+
+  public void setMaxFilesPerSecond( int maxFilesPerSecond ) {
+    this.maxFilesPerSecond = Math.max( maxFilesPerSecond, 0 );
+  }
+}
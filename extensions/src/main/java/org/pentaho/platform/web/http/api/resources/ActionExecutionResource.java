@@ -0,0 +1,234 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.services.solution.ActionExecution;
+import org.pentaho.platform.engine.services.solution.ActionExecutionService;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+/**
+ * Runs action sequences in the background. A submission returns right away with the id of the execution, whose
+ * status and output can then be polled while it runs, and which can be cancelled.
+ */
+@Path( "/executions" )
+@Facet( name = "Unsupported" )
+public class ActionExecutionResource extends AbstractJaxRSResource {
+
+  /**
+   * Response header telling whether the execution has finished, i.e. whether more output may follow.
+   */
+  public static final String COMPLETE_HEADER = "X-Execution-Complete"; //$NON-NLS-1$
+
+  static final int MAX_OUTPUT_CHUNK = 1024 * 1024;
+
+  private static final String PATH_PARAMETER = "path"; //$NON-NLS-1$
+
+  /**
+   * Submits an action sequence for background execution. Every request parameter other than {@code path} is passed
+   * to the action sequence.
+   *
+   * @param path repository path of the action sequence, e.g. <code>/public/reports/sales.xaction</code>
+   * @return <code> ActionExecutionStatus </code> of the queued execution
+   */
+  @POST
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Execution submitted" ),
+    @ResponseCode( code = 400, condition = "No action sequence path was given" ),
+    @ResponseCode( code = 503, condition = "Too many executions are running or queued" )
+  } )
+  public Response submit( @QueryParam( PATH_PARAMETER ) String path ) {
+    if ( path == null || path.trim().length() == 0 ) {
+      return Response.status( BAD_REQUEST ).build();
+    }
+    Map<String, Object> parameters = new HashMap<String, Object>();
+    if ( httpServletRequest != null ) {
+      Enumeration<?> names = httpServletRequest.getParameterNames();
+      while ( names.hasMoreElements() ) {
+        String name = (String) names.nextElement();
+        if ( !PATH_PARAMETER.equals( name ) ) {
+          String[] values = httpServletRequest.getParameterValues( name );
+          parameters.put( name, values != null && values.length == 1 ? values[ 0 ] : values );
+        }
+      }
+    }
+    String baseUrl = PentahoRequestContextHolder.getRequestContext().getContextPath() + "ViewAction?"; //$NON-NLS-1$
+    try {
+      ActionExecution execution = getService().submit( getSession(), path, parameters, baseUrl );
+      return Response.ok( new ActionExecutionStatus( execution ) ).build();
+    } catch ( RejectedExecutionException e ) {
+      return Response.status( SERVICE_UNAVAILABLE ).build();
+    }
+  }
+
+  /**
+   * Lists the executions of the current user, or of every user for an administrator.
+   *
+   * @return <code> JaxbList </code> of <code> ActionExecutionStatus </code>
+   */
+  @GET
+  @Produces( { MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the executions" )
+  } )
+  public Response getExecutions() {
+    String owner = canAdminister() ? null : getSession().getName();
+    List<ActionExecutionStatus> statuses = new ArrayList<ActionExecutionStatus>();
+    for ( ActionExecution execution : getService().getExecutions( owner ) ) {
+      statuses.add( new ActionExecutionStatus( execution ) );
+    }
+    return Response.ok( new JaxbList<ActionExecutionStatus>( statuses ), MediaType.APPLICATION_JSON ).build();
+  }
+
+  /**
+   * Returns the state and progress of an execution.
+   *
+   * @param id id returned on submission
+   * @return <code> ActionExecutionStatus </code>
+   */
+  @GET
+  @Path( "/{id}" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the execution status" ),
+    @ResponseCode( code = 403, condition = "The execution belongs to another user" ),
+    @ResponseCode( code = 404, condition = "Unknown or expired execution" )
+  } )
+  public Response getStatus( @PathParam( "id" ) String id ) {
+    ActionExecution execution = getService().get( id );
+    if ( execution == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    if ( !canAccess( execution ) ) {
+      return Response.status( FORBIDDEN ).build();
+    }
+    return Response.ok( new ActionExecutionStatus( execution ) ).build();
+  }
+
+  /**
+   * Returns output produced by an execution, starting at the given offset. Can be called while the execution is
+   * still running; the {@value #COMPLETE_HEADER} header tells whether more output may follow.
+   *
+   * @param id     id returned on submission
+   * @param offset number of output bytes already read
+   */
+  @GET
+  @Path( "/{id}/output" )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the output" ),
+    @ResponseCode( code = 403, condition = "The execution belongs to another user" ),
+    @ResponseCode( code = 404, condition = "Unknown or expired execution" )
+  } )
+  public Response getOutput( @PathParam( "id" ) String id, @QueryParam( "offset" ) @DefaultValue( "0" ) long offset ) {
+    ActionExecution execution = getService().get( id );
+    if ( execution == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    if ( !canAccess( execution ) ) {
+      return Response.status( FORBIDDEN ).build();
+    }
+    // read the state first so that no output written before completion is missed
+    boolean complete = execution.isDone();
+    try {
+      byte[] bytes = execution.readOutput( Math.max( 0, offset ), MAX_OUTPUT_CHUNK );
+      if ( complete && offset + bytes.length < execution.getOutputLength() ) {
+        complete = false;
+      }
+      String mimeType = execution.getMimeType();
+      return Response.ok( bytes, mimeType != null ? mimeType : MediaType.APPLICATION_OCTET_STREAM )
+          .header( COMPLETE_HEADER, String.valueOf( complete ) ).build();
+    } catch ( IOException e ) {
+      // the output has been released
+      return Response.status( NOT_FOUND ).build();
+    }
+  }
+
+  /**
+   * Cancels an execution and releases its output.
+   *
+   * @param id id returned on submission
+   */
+  @DELETE
+  @Path( "/{id}" )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Execution cancelled" ),
+    @ResponseCode( code = 403, condition = "The execution belongs to another user" ),
+    @ResponseCode( code = 404, condition = "Unknown or expired execution" )
+  } )
+  public Response cancel( @PathParam( "id" ) String id ) {
+    ActionExecution execution = getService().get( id );
+    if ( execution == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    if ( !canAccess( execution ) ) {
+      return Response.status( FORBIDDEN ).build();
+    }
+    getService().remove( id );
+    return Response.ok().build();
+  }
+
+  protected ActionExecutionService getService() {
+    return ActionExecutionService.getInstance();
+  }
+
+  protected IPentahoSession getSession() {
+    return PentahoSessionHolder.getSession();
+  }
+
+  private boolean canAccess( ActionExecution execution ) {
+    IPentahoSession session = getSession();
+    return ( session != null && session.getName() != null && session.getName().equals( execution.getOwner() ) )
+        || canAdminister();
+  }
+
+  protected boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.engine.services.solution.ActionExecution;
+
+@XmlRootElement
+public class ActionExecutionStatus {
+
+  private String id;
+  private String owner;
+  private String description;
+  private String state;
+  private String mimeType;
+  private String errorMessage;
+  private int completedSteps;
+  private int totalSteps;
+  private double progress;
+  private long outputLength;
+  private Date submitted;
+  private Date started;
+  private Date finished;
+
+  public ActionExecutionStatus() {
+  }
+
+  public ActionExecutionStatus( ActionExecution execution ) {
+    this.id = execution.getId();
+    this.owner = execution.getOwner();
+    this.description = execution.getDescription();
+    this.state = execution.getState().name();
+    this.mimeType = execution.getMimeType();
+    this.errorMessage = execution.getErrorMessage();
+    this.completedSteps = execution.getCompletedSteps();
+    this.totalSteps = execution.getTotalSteps();
+    this.progress = execution.getProgress();
+    this.outputLength = execution.getOutputLength();
+    this.submitted = execution.getSubmitted();
+    this.started = execution.getStarted();
+    this.finished = execution.getFinished();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public void setOwner( String owner ) {
+    this.owner = owner;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription( String description ) {
+    this.description = description;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public void setState( String state ) {
+    this.state = state;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public void setMimeType( String mimeType ) {
+    this.mimeType = mimeType;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  public void setErrorMessage( String errorMessage ) {
+    this.errorMessage = errorMessage;
+  }
+
+  public int getCompletedSteps() {
+    return completedSteps;
+  }
+
+  public void setCompletedSteps( int completedSteps ) {
+    this.completedSteps = completedSteps;
+  }
+
+  public int getTotalSteps() {
+    return totalSteps;
+  }
+
+  public void setTotalSteps( int totalSteps ) {
+    this.totalSteps = totalSteps;
+  }
+
+  public double getProgress() {
+    return progress;
+  }
+
+  public void setProgress( double progress ) {
+    this.progress = progress;
+  }
+
+  public long getOutputLength() {
+    return outputLength;
+  }
+
+  public void setOutputLength( long outputLength ) {
+    this.outputLength = outputLength;
+  }
+
+  public Date getSubmitted() {
+    return submitted;
+  }
+
+  public void setSubmitted( Date submitted ) {
+    this.submitted = submitted;
+  }
+
+  public Date getStarted() {
+    return started;
+  }
+
+  public void setStarted( Date started ) {
+    this.started = started;
+  }
+
+  public Date getFinished() {
+    return finished;
+  }
+
+  public void setFinished( Date finished ) {
+    this.finished = finished;
+  }
+}
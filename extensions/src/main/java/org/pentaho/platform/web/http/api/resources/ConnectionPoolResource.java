@@ -0,0 +1,126 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.engine.services.connection.datasource.dbcp.ConnectionPoolStatistics;
+import org.pentaho.platform.plugin.services.connections.sql.PreparedStatementStatistics;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports borrow waits, timeouts and sizes of the connection pools of pooled JDBC datasources, and how well their
+ * prepared statement caches serve the SQL components.
+ */
+@Path( "/connection-pools" )
+@Facet( name = "Unsupported" )
+public class ConnectionPoolResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the statistics of every pooled datasource.
+   *
+   * @return list of <code> ConnectionPoolStats </code>
+   */
+  @GET
+  @Path( "/statistics" )
+  @Produces( { MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the pool statistics" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" )
+  } )
+  public Response getStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    List<ConnectionPoolStats> stats = new ArrayList<ConnectionPoolStats>();
+    for ( ConnectionPoolStatistics statistics : getAllStatistics() ) {
+      stats.add( new ConnectionPoolStats( statistics ) );
+    }
+    return Response.ok( new JaxbList<ConnectionPoolStats>( stats ), MediaType.APPLICATION_JSON ).build();
+  }
+
+  /**
+   * Returns the statistics of one pooled datasource.
+   *
+   * @param datasourceName name of the datasource
+   * @return <code> ConnectionPoolStats </code>
+   */
+  @GET
+  @Path( "/statistics/{datasourceName}" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the pool statistics" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" ),
+    @ResponseCode( code = 404, condition = "The datasource has never been pooled" )
+  } )
+  public Response getStatistics( @PathParam( "datasourceName" ) String datasourceName ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    for ( ConnectionPoolStatistics statistics : getAllStatistics() ) {
+      if ( statistics.getDatasourceName().equals( datasourceName ) ) {
+        return Response.ok( new ConnectionPoolStats( statistics ) ).build();
+      }
+    }
+    return Response.status( NOT_FOUND ).build();
+  }
+
+  /**
+   * Returns how many statements prepared by the SQL components were served from a prepared statement cache.
+   *
+   * @return <code> PreparedStatementStats </code>
+   */
+  @GET
+  @Path( "/statement-cache" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the statement cache statistics" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" )
+  } )
+  public Response getStatementCacheStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( new PreparedStatementStats( PreparedStatementStatistics.getInstance() ) ).build();
+  }
+
+  protected Collection<ConnectionPoolStatistics> getAllStatistics() {
+    return ConnectionPoolStatistics.getAll().values();
+  }
+
+  private boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
@@ -0,0 +1,222 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.engine.services.connection.datasource.dbcp.ConnectionPoolStatistics;
+
+@XmlRootElement
+public class ConnectionPoolStats {
+
+  private String datasourceName;
+  private long borrowCount;
+  private long timeoutCount;
+  private long failureCount;
+  private long totalWaitTimeMillis;
+  private int numActive;
+  private int numIdle;
+  private int numWaiters;
+  private int maxTotal;
+  private int minIdle;
+  private long createdCount;
+  private long destroyedCount;
+  private long meanActiveTimeMillis;
+  private long meanIdleTimeMillis;
+  private long maxBorrowWaitTimeMillis;
+  private boolean adaptive;
+  private List<Long> waitBucketBoundsMillis = new ArrayList<Long>();
+  private List<Long> waitBucketCounts = new ArrayList<Long>();
+
+  public ConnectionPoolStats() {
+  }
+
+  public ConnectionPoolStats( ConnectionPoolStatistics statistics ) {
+    this.datasourceName = statistics.getDatasourceName();
+    this.borrowCount = statistics.getBorrowCount();
+    this.timeoutCount = statistics.getTimeoutCount();
+    this.failureCount = statistics.getFailureCount();
+    this.totalWaitTimeMillis = statistics.getTotalWaitTimeMillis();
+    this.numActive = statistics.getNumActive();
+    this.numIdle = statistics.getNumIdle();
+    this.numWaiters = statistics.getNumWaiters();
+    this.maxTotal = statistics.getMaxTotal();
+    this.minIdle = statistics.getMinIdle();
+    this.createdCount = statistics.getCreatedCount();
+    this.destroyedCount = statistics.getDestroyedCount();
+    this.meanActiveTimeMillis = statistics.getMeanActiveTimeMillis();
+    this.meanIdleTimeMillis = statistics.getMeanIdleTimeMillis();
+    this.maxBorrowWaitTimeMillis = statistics.getMaxBorrowWaitTimeMillis();
+    this.adaptive = statistics.isAdaptive();
+    for ( Map.Entry<Long, Long> bucket : statistics.getWaitHistogram().entrySet() ) {
+      waitBucketBoundsMillis.add( bucket.getKey() );
+      waitBucketCounts.add( bucket.getValue() );
+    }
+  }
+
+  public String getDatasourceName() {
+    return datasourceName;
+  }
+
+  public void setDatasourceName( String datasourceName ) {
+    this.datasourceName = datasourceName;
+  }
+
+  public long getBorrowCount() {
+    return borrowCount;
+  }
+
+  public void setBorrowCount( long borrowCount ) {
+    this.borrowCount = borrowCount;
+  }
+
+  public long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  public void setTimeoutCount( long timeoutCount ) {
+    this.timeoutCount = timeoutCount;
+  }
+
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  public void setFailureCount( long failureCount ) {
+    this.failureCount = failureCount;
+  }
+
+  public long getTotalWaitTimeMillis() {
+    return totalWaitTimeMillis;
+  }
+
+  public void setTotalWaitTimeMillis( long totalWaitTimeMillis ) {
+    this.totalWaitTimeMillis = totalWaitTimeMillis;
+  }
+
+  public int getNumActive() {
+    return numActive;
+  }
+
+  public void setNumActive( int numActive ) {
+    this.numActive = numActive;
+  }
+
+  public int getNumIdle() {
+    return numIdle;
+  }
+
+  public void setNumIdle( int numIdle ) {
+    this.numIdle = numIdle;
+  }
+
+  public int getNumWaiters() {
+    return numWaiters;
+  }
+
+  public void setNumWaiters( int numWaiters ) {
+    this.numWaiters = numWaiters;
+  }
+
+  public int getMaxTotal() {
+    return maxTotal;
+  }
+
+  public void setMaxTotal( int maxTotal ) {
+    this.maxTotal = maxTotal;
+  }
+
+  public int getMinIdle() {
+    return minIdle;
+  }
+
+  public void setMinIdle( int minIdle ) {
+    this.minIdle = minIdle;
+  }
+
+  public long getCreatedCount() {
+    return createdCount;
+  }
+
+  public void setCreatedCount( long createdCount ) {
+    this.createdCount = createdCount;
+  }
+
+  public long getDestroyedCount() {
+    return destroyedCount;
+  }
+
+  public void setDestroyedCount( long destroyedCount ) {
+    this.destroyedCount = destroyedCount;
+  }
+
+  public long getMeanActiveTimeMillis() {
+    return meanActiveTimeMillis;
+  }
+
+  public void setMeanActiveTimeMillis( long meanActiveTimeMillis ) {
+    this.meanActiveTimeMillis = meanActiveTimeMillis;
+  }
+
+  public long getMeanIdleTimeMillis() {
+    return meanIdleTimeMillis;
+  }
+
+  public void setMeanIdleTimeMillis( long meanIdleTimeMillis ) {
+    this.meanIdleTimeMillis = meanIdleTimeMillis;
+  }
+
+  public long getMaxBorrowWaitTimeMillis() {
+    return maxBorrowWaitTimeMillis;
+  }
+
+  public void setMaxBorrowWaitTimeMillis( long maxBorrowWaitTimeMillis ) {
+    this.maxBorrowWaitTimeMillis = maxBorrowWaitTimeMillis;
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  public void setAdaptive( boolean adaptive ) {
+    this.adaptive = adaptive;
+  }
+
+  public List<Long> getWaitBucketBoundsMillis() {
+    return waitBucketBoundsMillis;
+  }
+
+  public void setWaitBucketBoundsMillis( List<Long> waitBucketBoundsMillis ) {
+    this.waitBucketBoundsMillis = waitBucketBoundsMillis;
+  }
+
+  public List<Long> getWaitBucketCounts() {
+    return waitBucketCounts;
+  }
+
+  public void setWaitBucketCounts( List<Long> waitBucketCounts ) {
+    this.waitBucketCounts = waitBucketCounts;
+  }
+}
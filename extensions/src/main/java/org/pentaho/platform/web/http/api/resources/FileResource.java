@@ -57,6 +57,7 @@ import org.pentaho.platform.plugin.services.importexport.Exporter;
 import org.pentaho.platform.repository.RepositoryDownloadWhitelist;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.repository2.unified.webservices.FileVersioningConfiguration;
@@ -87,6 +88,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -104,6 +106,7 @@ import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -285,6 +288,62 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Permanently deletes the selected list of files from the repository in bulk, e.g. to empty a large trash. The files
+   * are removed in batches, and files that cannot be deleted, e.g. because they are still referenced, are skipped.
+   *
+   * <p><b>Example Request:</b><br />
+   *    PUT pentaho/api/repo/files/deletepermanent/bulk
+   * </p>
+   *
+   * @param params Comma separated list of the files to be deleted.
+   *
+   * @return Server Response with the number of files deleted.
+   */
+  @PUT
+  @Path ( "/deletepermanent/bulk" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { MediaType.TEXT_PLAIN } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully deleted the files; the response holds how many." ),
+    @ResponseCode ( code = 500, condition = "Failure to delete the files." ) } )
+  public Response doDeleteFilesPermanentInBulk( String params ) {
+    try {
+      return buildPlainTextOkResponse( String.valueOf( fileService.doDeleteFilesPermanentInBulk( params ) ) );
+    } catch ( Throwable t ) {
+      logger.error( t.getMessage(), t );
+      return buildServerErrorResponse( t );
+    }
+  }
+
+  /**
+   * Unlocks the selected list of files in bulk, e.g. the files left locked by a failed job. Files that are not locked,
+   * or that the current user cannot unlock, are skipped.
+   *
+   * <p><b>Example Request:</b><br />
+   *    PUT pentaho/api/repo/files/unlock/bulk
+   * </p>
+   *
+   * @param params Comma separated list of the files to be unlocked.
+   *
+   * @return Server Response with the number of files unlocked.
+   */
+  @PUT
+  @Path ( "/unlock/bulk" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { MediaType.TEXT_PLAIN } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully unlocked the files; the response holds how many." ),
+    @ResponseCode ( code = 500, condition = "Failure to unlock the files." ) } )
+  public Response doUnlockFilesInBulk( String params ) {
+    try {
+      return buildPlainTextOkResponse( String.valueOf( fileService.doUnlockFilesInBulk( params ) ) );
+    } catch ( Throwable t ) {
+      logger.error( t.getMessage(), t );
+      return buildServerErrorResponse( t );
+    }
+  }
+
   /**
    * Moves a list of files from its current location to another.
    *
@@ -456,6 +515,9 @@ public class FileResource extends AbstractJaxRSResource {
 
   /**
    * Takes a pathId and returns a Response with the output stream based on the file located at the pathId.
+   * A single byte range may be requested with a <code>Range</code> header, e.g. to fetch a large file in parallel
+   * parts or to resume a download; an <code>If-Range</code> header must then carry the <code>ETag</code> of a
+   * previous partial response.
    *
    * <p><b>Example Request:</b><br />
    *    GET pentaho/api/repo/files/:jmeter-test:test_file_1.xml
@@ -475,11 +537,20 @@ public class FileResource extends AbstractJaxRSResource {
   @Produces ( { MediaType.WILDCARD } )
   @StatusCodes ( {
       @ResponseCode ( code = 200, condition = "Successfully get the file or directory." ),
+      @ResponseCode ( code = 206, condition = "Successfully get the requested range of the file." ),
       @ResponseCode ( code = 404, condition = "Failed to find the file or resource." ),
+      @ResponseCode ( code = 416, condition = "The requested range is outside of the file." ),
       @ResponseCode ( code = 500, condition = "Failed to open content." ) } )
   public Response doGetFileOrDir( @PathParam ( "pathId" ) String pathId ) {
     try {
       FileService.RepositoryFileToStreamWrapper wrapper = fileService.doGetFileOrDir( pathId );
+      if ( wrapper.getInputStream() != null ) {
+        String range = httpServletRequest != null ? httpServletRequest.getHeader( "Range" ) : null;
+        if ( range != null ) {
+          return buildRangeResponse( wrapper, range, httpServletRequest.getHeader( "If-Range" ) );
+        }
+        return buildRangeableOkResponse( wrapper );
+      }
       return buildOkResponse( wrapper );
     } catch ( FileNotFoundException fileNotFound ) {
       return buildStatusResponse( Response.Status.NOT_FOUND );
@@ -1879,6 +1950,64 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetDeletedFiles();
   }
 
+  /**
+   * Retrieves one page of the files in the trash, most recently deleted first. Administrators may list the trash of
+   * any user, or of all users by leaving out <code>owner</code>; anyone else only sees their own deleted files.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/deleted/page?owner=suzy&amp;offset=0&amp;limit=100
+   * </p>
+   *
+   * @param owner         User whose deleted files to list.
+   * @param pathId        Only files deleted from this folder or one of its descendants, using colon characters in
+   *                      place of / or \ characters.
+   * @param deletedBefore Only files deleted before this time, in milliseconds since the epoch.
+   * @param offset        Number of deleted files to skip.
+   * @param limit         Maximum number of deleted files to return.
+   *
+   * @return A list of RepositoryFileDto objects, as for <code>/deleted</code>.
+   */
+  @GET
+  @Path ( "/deleted/page" )
+  @Produces ( {MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the page of files from the trash." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public List<RepositoryFileDto> doGetDeletedFilesPage( @QueryParam ( "owner" ) String owner,
+                                                        @QueryParam ( "path" ) String pathId,
+                                                        @QueryParam ( "deletedBefore" ) Long deletedBefore,
+                                                        @QueryParam ( "offset" ) @DefaultValue ( "0" ) int offset,
+                                                        @QueryParam ( "limit" ) @DefaultValue ( "1000" ) int limit ) {
+    return fileService.doGetDeletedFiles( owner, pathId, deletedBefore, offset, limit );
+  }
+
+  /**
+   * Retrieves the locked files. Administrators get every locked file; anyone else only gets the files they locked.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/locked
+   * </p>
+   *
+   * @return A list of RepositoryFileDto objects with their lock owner, date and message.
+   */
+  @GET
+  @Path ( "/locked" )
+  @Produces ( {MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the locked files." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetLockedFiles() {
+    try {
+      final GenericEntity<List<RepositoryFileDto>> entity =
+        new GenericEntity<List<RepositoryFileDto>>( fileService.doGetLockedFiles() ) {
+        };
+      return Response.ok( entity ).build();
+    } catch ( Throwable t ) {
+      logger.error( t.getMessage(), t );
+      return buildServerErrorResponse( t );
+    }
+  }
+
   /**
    * Retrieve the metadata of the selected file. Even though the hidden flag is a property of the file node itself, and not
    * the metadata child, it is considered metadata from PUC and is included in the setMetadata call.
@@ -2232,6 +2361,121 @@ public class FileResource extends AbstractJaxRSResource {
         .getRepositoryFile().getName(), false ) ).build();
   }
 
+  /**
+   * Builds a 206 response carrying the requested byte range of the file, or falls back to the full content when the
+   * range is not a single byte range, the size of the content is unknown or <code>If-Range</code> does not match.
+   */
+  protected Response buildRangeResponse( FileService.RepositoryFileToStreamWrapper wrapper, String range,
+                                         String ifRange ) {
+    final RepositoryFileInputStream is = wrapper.getInputStream();
+    String entityTag = getEntityTag( wrapper.getRepositoryFile() );
+    long size;
+    try {
+      size = is.getSize();
+    } catch ( IOException e ) {
+      size = -1;
+    }
+    long[] bounds = size < 0 || ( ifRange != null && !ifRange.equals( entityTag ) ) ? null : parseRange( range, size );
+    if ( bounds == null ) {
+      return buildRangeableOkResponse( wrapper );
+    }
+    if ( bounds.length == 0 ) {
+      // nothing is streamed, so release the content opened to find its size
+      IOUtils.closeQuietly( is );
+      return Response.status( 416 ).header( "Content-Range", "bytes */" + size ).build(); //$NON-NLS-1$
+    }
+    final long offset = bounds[ 0 ];
+    final long length = bounds[ 1 ] - bounds[ 0 ] + 1;
+    StreamingOutput output = new StreamingOutput() {
+      public void write( OutputStream out ) throws IOException {
+        try {
+          is.copyRange( offset, length, out );
+        } finally {
+          is.close();
+        }
+      }
+    };
+
+    MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
+    if ( wrapper.getMimetype() != null ) {
+      try {
+        mediaType = MediaType.valueOf( wrapper.getMimetype() );
+      } catch ( IllegalArgumentException e ) {
+        logger.warn( "Custom media type is used: " + wrapper.getMimetype(), e );
+      }
+    }
+    return Response.status( 206 ).entity( output ).type( mediaType )
+        .header( "Content-Range", "bytes " + bounds[ 0 ] + "-" + bounds[ 1 ] + "/" + size ) //$NON-NLS-1$
+        .header( "Content-Length", String.valueOf( length ) )
+        .header( "Accept-Ranges", "bytes" )
+        .header( "ETag", entityTag )
+        .header( "Content-Disposition", HttpMimeTypeListener.buildContentDispositionValue( wrapper
+            .getRepositoryFile().getName(), false ) ).build();
+  }
+
+  /**
+   * Builds a 200 response carrying the full content of a file, telling the client it may ask for byte ranges of it
+   * and which <code>ETag</code> to send back in <code>If-Range</code>.
+   */
+  protected Response buildRangeableOkResponse( FileService.RepositoryFileToStreamWrapper wrapper ) {
+    return Response.fromResponse( buildOkResponse( wrapper ) )
+        .header( "Accept-Ranges", "bytes" ) //$NON-NLS-1$ //$NON-NLS-2$
+        .header( "ETag", getEntityTag( wrapper.getRepositoryFile() ) ).build(); //$NON-NLS-1$
+  }
+
+  /**
+   * Parses a <code>Range</code> header holding a single byte range.
+   *
+   * @return first and last byte position of the range, an empty array if the range is outside of the content, or
+   * <code>null</code> if the header is malformed or asks for several ranges
+   */
+  static long[] parseRange( String range, long size ) {
+    String value = range.trim();
+    if ( !value.startsWith( "bytes=" ) || value.indexOf( ',' ) >= 0 ) { //$NON-NLS-1$
+      return null;
+    }
+    value = value.substring( "bytes=".length() ).trim(); //$NON-NLS-1$
+    int dash = value.indexOf( '-' );
+    if ( dash < 0 ) {
+      return null;
+    }
+    try {
+      String first = value.substring( 0, dash ).trim();
+      String last = value.substring( dash + 1 ).trim();
+      long start;
+      long end;
+      if ( first.isEmpty() ) {
+        // suffix range: the last n bytes
+        long suffix = Long.parseLong( last );
+        if ( suffix <= 0 || size == 0 ) {
+          return new long[ 0 ];
+        }
+        start = Math.max( 0, size - suffix );
+        end = size - 1;
+      } else {
+        start = Long.parseLong( first );
+        end = last.isEmpty() ? size - 1 : Math.min( Long.parseLong( last ), size - 1 );
+        if ( start < 0 || ( !last.isEmpty() && Long.parseLong( last ) < start ) ) {
+          return null;
+        }
+        if ( start >= size ) {
+          return new long[ 0 ];
+        }
+      }
+      return new long[] { start, end };
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a validator that changes whenever the file content does
+   */
+  protected String getEntityTag( RepositoryFile file ) {
+    Date lastModified = file.getLastModifiedDate();
+    return "\"" + file.getId() + "-" + ( lastModified != null ? lastModified.getTime() : 0 ) + "\""; //$NON-NLS-1$
+  }
+
   protected Response buildZipOkResponse( FileService.DownloadFileWrapper wrapper ) {
     return Response.ok( wrapper.getOutputStream(), APPLICATION_ZIP + "; charset=UTF-8" )
         .header( "Content-Disposition", wrapper.getAttachment() ).build();
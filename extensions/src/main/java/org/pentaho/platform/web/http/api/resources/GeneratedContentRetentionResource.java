@@ -0,0 +1,113 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.admin.GeneratedContentRetention;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.CONFLICT;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports on and controls the retention of generated content.
+ */
+@Path( "/generated-content-retention" )
+@Facet( name = "Unsupported" )
+public class GeneratedContentRetentionResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the progress of the current or last retention run and the space reclaimed so far.
+   *
+   * @return <code> GeneratedContentRetentionStatus </code>
+   */
+  @GET
+  @Path( "/status" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the retention status" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" )
+  } )
+  public Response getStatus() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( new GeneratedContentRetentionStatus( getRetention() ) ).build();
+  }
+
+  /**
+   * Asks a running retention to stop after the folder it is scanning. It can later continue where it stopped.
+   */
+  @POST
+  @Path( "/pause" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Pause requested" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" )
+  } )
+  public Response pause() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    GeneratedContentRetention retention = getRetention();
+    retention.pause();
+    return Response.ok( new GeneratedContentRetentionStatus( retention ) ).build();
+  }
+
+  /**
+   * Continues a paused retention, or starts a new one, in the background.
+   */
+  @POST
+  @Path( "/resume" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Retention resumed" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" ),
+    @ResponseCode( code = 409, condition = "Retention is already running or has never run" )
+  } )
+  public Response resume() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    GeneratedContentRetention retention = getRetention();
+    if ( !retention.resume() ) {
+      return Response.status( CONFLICT ).build();
+    }
+    return Response.ok( new GeneratedContentRetentionStatus( retention ) ).build();
+  }
+
+  protected GeneratedContentRetention getRetention() {
+    return GeneratedContentRetention.getInstance();
+  }
+
+  private boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
@@ -0,0 +1,148 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.admin.GeneratedContentRetention;
+
+@XmlRootElement
+public class GeneratedContentRetentionStatus {
+
+  private String state;
+  private int pendingFolders;
+  private long scannedFolders;
+  private long scannedFiles;
+  private long deletedFiles;
+  private long reclaimedBytes;
+  private long batches;
+  private int batchSize;
+  private int maxDeletesPerSecond;
+  private Date startTime;
+  private Date endTime;
+
+  public GeneratedContentRetentionStatus() {
+  }
+
+  public GeneratedContentRetentionStatus( GeneratedContentRetention retention ) {
+    this.state = retention.getState().name();
+    this.pendingFolders = retention.getPendingFolders();
+    this.scannedFolders = retention.getScannedFolders();
+    this.scannedFiles = retention.getScannedFiles();
+    this.deletedFiles = retention.getDeletedFiles();
+    this.reclaimedBytes = retention.getReclaimedBytes();
+    this.batches = retention.getBatches();
+    this.batchSize = retention.getBatchSize();
+    this.maxDeletesPerSecond = retention.getMaxDeletesPerSecond();
+    this.startTime = retention.getStartTime();
+    this.endTime = retention.getEndTime();
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public void setState( String state ) {
+    this.state = state;
+  }
+
+  public int getPendingFolders() {
+    return pendingFolders;
+  }
+
+  public void setPendingFolders( int pendingFolders ) {
+    this.pendingFolders = pendingFolders;
+  }
+
+  public long getScannedFolders() {
+    return scannedFolders;
+  }
+
+  public void setScannedFolders( long scannedFolders ) {
+    this.scannedFolders = scannedFolders;
+  }
+
+  public long getScannedFiles() {
+    return scannedFiles;
+  }
+
+  public void setScannedFiles( long scannedFiles ) {
+    this.scannedFiles = scannedFiles;
+  }
+
+  public long getDeletedFiles() {
+    return deletedFiles;
+  }
+
+  public void setDeletedFiles( long deletedFiles ) {
+    this.deletedFiles = deletedFiles;
+  }
+
+  public long getReclaimedBytes() {
+    return reclaimedBytes;
+  }
+
+  public void setReclaimedBytes( long reclaimedBytes ) {
+    this.reclaimedBytes = reclaimedBytes;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public void setBatches( long batches ) {
+    this.batches = batches;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize;
+  }
+
+  public int getMaxDeletesPerSecond() {
+    return maxDeletesPerSecond;
+  }
+
+  public void setMaxDeletesPerSecond( int maxDeletesPerSecond ) {
+    this.maxDeletesPerSecond = maxDeletesPerSecond;
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime( Date startTime ) {
+    this.startTime = startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime( Date endTime ) {
+    this.endTime = endTime;
+  }
+}
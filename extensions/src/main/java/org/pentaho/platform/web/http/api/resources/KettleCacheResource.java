@@ -0,0 +1,65 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.plugin.action.kettle.KettleMetaCache;
+import org.pentaho.platform.plugin.action.kettle.KettleRepositoryPool;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports how well the Kettle metadata cache and repository connection pool serve the Kettle components, and how
+ * the time of their executions splits between loading metadata and running it.
+ */
+@Path( "/kettle-cache" )
+@Facet( name = "Unsupported" )
+public class KettleCacheResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the statistics of the Kettle metadata cache and repository connection pool.
+   *
+   * @return <code> KettleCacheStats </code>
+   */
+  @GET
+  @Path( "/statistics" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the Kettle cache statistics" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" )
+  } )
+  public Response getStatistics() {
+    if ( !SystemUtils.canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( new KettleCacheStats( KettleMetaCache.getInstance(), KettleRepositoryPool.getInstance() ) )
+        .build();
+  }
+}
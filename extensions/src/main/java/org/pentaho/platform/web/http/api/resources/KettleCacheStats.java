@@ -0,0 +1,177 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.plugin.action.kettle.KettleMetaCache;
+import org.pentaho.platform.plugin.action.kettle.KettleRepositoryPool;
+
+@XmlRootElement
+public class KettleCacheStats {
+
+  private int cacheSize;
+  private int maxCacheSize;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long loadCount;
+  private long loadTimeMillis;
+  private long executionCount;
+  private long executionTimeMillis;
+  private int activeConnections;
+  private int idleConnections;
+  private long openedConnections;
+  private long reusedConnections;
+  private long closedConnections;
+
+  public KettleCacheStats() {
+  }
+
+  public KettleCacheStats( KettleMetaCache cache, KettleRepositoryPool pool ) {
+    this.cacheSize = cache.size();
+    this.maxCacheSize = cache.getMaxEntries();
+    this.hitCount = cache.getHitCount();
+    this.missCount = cache.getMissCount();
+    this.evictionCount = cache.getEvictionCount();
+    this.loadCount = cache.getLoadCount();
+    this.loadTimeMillis = cache.getLoadTimeMillis();
+    this.executionCount = cache.getExecutionCount();
+    this.executionTimeMillis = cache.getExecutionTimeMillis();
+    this.activeConnections = pool.getActiveCount();
+    this.idleConnections = pool.getIdleCount();
+    this.openedConnections = pool.getOpenedCount();
+    this.reusedConnections = pool.getReusedCount();
+    this.closedConnections = pool.getClosedCount();
+  }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize( int cacheSize ) {
+    this.cacheSize = cacheSize;
+  }
+
+  public int getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  public void setMaxCacheSize( int maxCacheSize ) {
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount( long hitCount ) {
+    this.hitCount = hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount( long missCount ) {
+    this.missCount = missCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public void setEvictionCount( long evictionCount ) {
+    this.evictionCount = evictionCount;
+  }
+
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  public void setLoadCount( long loadCount ) {
+    this.loadCount = loadCount;
+  }
+
+  public long getLoadTimeMillis() {
+    return loadTimeMillis;
+  }
+
+  public void setLoadTimeMillis( long loadTimeMillis ) {
+    this.loadTimeMillis = loadTimeMillis;
+  }
+
+  public long getExecutionCount() {
+    return executionCount;
+  }
+
+  public void setExecutionCount( long executionCount ) {
+    this.executionCount = executionCount;
+  }
+
+  public long getExecutionTimeMillis() {
+    return executionTimeMillis;
+  }
+
+  public void setExecutionTimeMillis( long executionTimeMillis ) {
+    this.executionTimeMillis = executionTimeMillis;
+  }
+
+  public int getActiveConnections() {
+    return activeConnections;
+  }
+
+  public void setActiveConnections( int activeConnections ) {
+    this.activeConnections = activeConnections;
+  }
+
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  public void setIdleConnections( int idleConnections ) {
+    this.idleConnections = idleConnections;
+  }
+
+  public long getOpenedConnections() {
+    return openedConnections;
+  }
+
+  public void setOpenedConnections( long openedConnections ) {
+    this.openedConnections = openedConnections;
+  }
+
+  public long getReusedConnections() {
+    return reusedConnections;
+  }
+
+  public void setReusedConnections( long reusedConnections ) {
+    this.reusedConnections = reusedConnections;
+  }
+
+  public long getClosedConnections() {
+    return closedConnections;
+  }
+
+  public void setClosedConnections( long closedConnections ) {
+    this.closedConnections = closedConnections;
+  }
+}
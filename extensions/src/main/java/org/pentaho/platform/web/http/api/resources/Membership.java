@@ -0,0 +1,61 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A user with the names of its roles, or a role with the names of its members.
+ */
+@XmlRootElement( name = "membership" )
+public class Membership {
+  String name;
+  List<String> names = new ArrayList<String>();
+
+  public Membership() {
+  }
+
+  public Membership( String name, List<String> names ) {
+    this.name = name;
+    this.names.addAll( names );
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  public List<String> getNames() {
+    return names;
+  }
+
+  public void setNames( List<String> names ) {
+    if ( names != this.names ) {
+      this.names.clear();
+      this.names.addAll( names );
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a user/role membership matrix.
+ */
+@XmlRootElement( name = "membershipList" )
+public class MembershipListWrapper {
+  int total;
+  int offset;
+  List<Membership> memberships = new ArrayList<Membership>();
+
+  public MembershipListWrapper() {
+  }
+
+  /**
+   * @param matrix sorted membership matrix
+   * @param offset index of the first entry to include
+   * @param limit  maximum number of entries to include, or a negative value for all remaining entries
+   */
+  public MembershipListWrapper( Map<String, List<String>> matrix, int offset, int limit ) {
+    this.total = matrix.size();
+    this.offset = Math.max( offset, 0 );
+    int index = 0;
+    for ( Map.Entry<String, List<String>> entry : matrix.entrySet() ) {
+      if ( limit >= 0 && memberships.size() >= limit ) {
+        break;
+      }
+      if ( index++ >= this.offset ) {
+        memberships.add( new Membership( entry.getKey(), entry.getValue() ) );
+      }
+    }
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal( int total ) {
+    this.total = total;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  public List<Membership> getMemberships() {
+    return memberships;
+  }
+
+  public void setMemberships( List<Membership> memberships ) {
+    if ( memberships != this.memberships ) {
+      this.memberships.clear();
+      this.memberships.addAll( memberships );
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.web.servlet.PluginDispatchStatistics;
+
+@XmlRootElement
+public class PluginDispatchStats {
+
+  private String pluginId;
+  private long requestCount;
+  private long errorCount;
+  private long totalTimeMillis;
+  private List<Long> latencyBucketBoundsMillis = new ArrayList<Long>();
+  private List<Long> latencyBucketCounts = new ArrayList<Long>();
+
+  public PluginDispatchStats() {
+  }
+
+  public PluginDispatchStats( PluginDispatchStatistics statistics ) {
+    this.pluginId = statistics.getPluginId();
+    this.requestCount = statistics.getRequestCount();
+    this.errorCount = statistics.getErrorCount();
+    this.totalTimeMillis = statistics.getTotalTimeMillis();
+    for ( Map.Entry<Long, Long> bucket : statistics.getLatencyHistogram().entrySet() ) {
+      latencyBucketBoundsMillis.add( bucket.getKey() );
+      latencyBucketCounts.add( bucket.getValue() );
+    }
+  }
+
+  public String getPluginId() {
+    return pluginId;
+  }
+
+  public void setPluginId( String pluginId ) {
+    this.pluginId = pluginId;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public void setRequestCount( long requestCount ) {
+    this.requestCount = requestCount;
+  }
+
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+  public void setErrorCount( long errorCount ) {
+    this.errorCount = errorCount;
+  }
+
+  public long getTotalTimeMillis() {
+    return totalTimeMillis;
+  }
+
+  public void setTotalTimeMillis( long totalTimeMillis ) {
+    this.totalTimeMillis = totalTimeMillis;
+  }
+
+  public List<Long> getLatencyBucketBoundsMillis() {
+    return latencyBucketBoundsMillis;
+  }
+
+  public void setLatencyBucketBoundsMillis( List<Long> latencyBucketBoundsMillis ) {
+    this.latencyBucketBoundsMillis = latencyBucketBoundsMillis;
+  }
+
+  public List<Long> getLatencyBucketCounts() {
+    return latencyBucketCounts;
+  }
+
+  public void setLatencyBucketCounts( List<Long> latencyBucketCounts ) {
+    this.latencyBucketCounts = latencyBucketCounts;
+  }
+}
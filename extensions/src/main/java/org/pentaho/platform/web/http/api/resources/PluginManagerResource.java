@@ -31,6 +31,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadAction;
+import org.pentaho.platform.web.servlet.PluginDispatchStatistics;
 import org.pentaho.ui.xul.XulOverlay;
 
 import javax.ws.rs.DefaultValue;
@@ -184,6 +185,26 @@ public class PluginManagerResource {
     return Response.ok( new JaxbList<Setting>( settings ), MediaType.APPLICATION_JSON ).build();
   }
 
+  /**
+   * Retrieve request counts and latency histograms of the servlets dispatched to each plugin
+   *
+   * @return list of <code> PluginDispatchStats </code>
+   */
+  @GET
+  @Path( "/dispatch-statistics" )
+  @Produces( { APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public Response getDispatchStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    ArrayList<PluginDispatchStats> stats = new ArrayList<PluginDispatchStats>();
+    for ( PluginDispatchStatistics statistics : PluginDispatchStatistics.getAll().values() ) {
+      stats.add( new PluginDispatchStats( statistics ) );
+    }
+    return Response.ok( new JaxbList<PluginDispatchStats>( stats ), MediaType.APPLICATION_JSON ).build();
+  }
+
   private boolean canAdminister() {
     IAuthorizationPolicy policy = PentahoSystem.get( IAuthorizationPolicy.class );
     return policy.isAllowed( RepositoryReadAction.NAME ) && policy.isAllowed( RepositoryCreateAction.NAME )
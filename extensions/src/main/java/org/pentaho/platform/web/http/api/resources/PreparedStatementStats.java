@@ -0,0 +1,76 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.plugin.services.connections.sql.PreparedStatementStatistics;
+
+@XmlRootElement
+public class PreparedStatementStats {
+
+  private long prepareCount;
+  private long reuseCount;
+  private long totalPrepareTimeMillis;
+  private double reuseRatio;
+
+  public PreparedStatementStats() {
+  }
+
+  public PreparedStatementStats( PreparedStatementStatistics statistics ) {
+    this.prepareCount = statistics.getPrepareCount();
+    this.reuseCount = statistics.getReuseCount();
+    this.totalPrepareTimeMillis = statistics.getTotalPrepareTimeMillis();
+    this.reuseRatio = statistics.getReuseRatio();
+  }
+
+  public long getPrepareCount() {
+    return prepareCount;
+  }
+
+  public void setPrepareCount( long prepareCount ) {
+    this.prepareCount = prepareCount;
+  }
+
+  public long getReuseCount() {
+    return reuseCount;
+  }
+
+  public void setReuseCount( long reuseCount ) {
+    this.reuseCount = reuseCount;
+  }
+
+  public long getTotalPrepareTimeMillis() {
+    return totalPrepareTimeMillis;
+  }
+
+  public void setTotalPrepareTimeMillis( long totalPrepareTimeMillis ) {
+    this.totalPrepareTimeMillis = totalPrepareTimeMillis;
+  }
+
+  public double getReuseRatio() {
+    return reuseRatio;
+  }
+
+  public void setReuseRatio( double reuseRatio ) {
+    this.reuseRatio = reuseRatio;
+  }
+}
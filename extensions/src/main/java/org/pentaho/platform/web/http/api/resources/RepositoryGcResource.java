@@ -0,0 +1,127 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.repository2.unified.jcr.OrphanedVersionCollector;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.CONFLICT;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports on and controls the orphaned version purge run by the repository garbage collector.
+ */
+@Path( "/repository-gc" )
+@Facet( name = "Unsupported" )
+public class RepositoryGcResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the progress of the current or last orphaned version purge.
+   *
+   * @return <code> RepositoryGcStatus </code>
+   */
+  @GET
+  @Path( "/status" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully returned the purge status" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" ),
+    @ResponseCode( code = 404, condition = "The repository does not support version purging" )
+  } )
+  public Response getStatus() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    OrphanedVersionCollector collector = getCollector();
+    if ( collector == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    return Response.ok( new RepositoryGcStatus( collector ) ).build();
+  }
+
+  /**
+   * Asks a running purge to stop after its current batch. The purge can later continue where it stopped.
+   */
+  @POST
+  @Path( "/pause" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Pause requested" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" ),
+    @ResponseCode( code = 404, condition = "The repository does not support version purging" )
+  } )
+  public Response pause() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    OrphanedVersionCollector collector = getCollector();
+    if ( collector == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    collector.pause();
+    return Response.ok( new RepositoryGcStatus( collector ) ).build();
+  }
+
+  /**
+   * Continues a paused purge, or starts a new one, in the background.
+   */
+  @POST
+  @Path( "/resume" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Purge resumed" ),
+    @ResponseCode( code = 401, condition = "User is not an administrator" ),
+    @ResponseCode( code = 404, condition = "The repository does not support version purging" ),
+    @ResponseCode( code = 409, condition = "Purge is already running or has never run" )
+  } )
+  public Response resume() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    OrphanedVersionCollector collector = getCollector();
+    if ( collector == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    if ( !collector.resume() ) {
+      return Response.status( CONFLICT ).build();
+    }
+    return Response.ok( new RepositoryGcStatus( collector ) ).build();
+  }
+
+  protected OrphanedVersionCollector getCollector() {
+    return OrphanedVersionCollector.getSystemInstance();
+  }
+
+  private boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
@@ -0,0 +1,128 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.pentaho.platform.repository2.unified.jcr.OrphanedVersionCollector;
+
+@XmlRootElement
+public class RepositoryGcStatus {
+
+  private String state;
+  private long visitedNodes;
+  private long removedVersions;
+  private long batches;
+  private int pendingNodes;
+  private int batchSize;
+  private int maxNodesPerSecond;
+  private Date startTime;
+  private Date endTime;
+
+  public RepositoryGcStatus() {
+  }
+
+  public RepositoryGcStatus( OrphanedVersionCollector collector ) {
+    this.state = collector.getState().name();
+    this.visitedNodes = collector.getVisitedNodes();
+    this.removedVersions = collector.getRemovedVersions();
+    this.batches = collector.getBatches();
+    this.pendingNodes = collector.getPendingNodes();
+    this.batchSize = collector.getBatchSize();
+    this.maxNodesPerSecond = collector.getMaxNodesPerSecond();
+    this.startTime = collector.getStartTime();
+    this.endTime = collector.getEndTime();
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public void setState( String state ) {
+    this.state = state;
+  }
+
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  public void setVisitedNodes( long visitedNodes ) {
+    this.visitedNodes = visitedNodes;
+  }
+
+  public long getRemovedVersions() {
+    return removedVersions;
+  }
+
+  public void setRemovedVersions( long removedVersions ) {
+    this.removedVersions = removedVersions;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public void setBatches( long batches ) {
+    this.batches = batches;
+  }
+
+  public int getPendingNodes() {
+    return pendingNodes;
+  }
+
+  public void setPendingNodes( int pendingNodes ) {
+    this.pendingNodes = pendingNodes;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize;
+  }
+
+  public int getMaxNodesPerSecond() {
+    return maxNodesPerSecond;
+  }
+
+  public void setMaxNodesPerSecond( int maxNodesPerSecond ) {
+    this.maxNodesPerSecond = maxNodesPerSecond;
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime( Date startTime ) {
+    this.startTime = startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime( Date endTime ) {
+    this.endTime = endTime;
+  }
+}
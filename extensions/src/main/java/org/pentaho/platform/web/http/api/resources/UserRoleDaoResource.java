@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -528,6 +529,80 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Returns one page of the users of the current tenant, each with the names of its roles. This replaces a
+   * <code>userRoles</code> call per user when loading the user administration screens.
+   *
+   * <p><b>Example Request:</b><br />
+   *   GET pentaho/api/userroledao/userRoleMemberships?offset=0&amp;limit=100
+   * </p>
+   *
+   * @param offset Index of the first user to return, users are sorted by name.
+   * @param limit Maximum number of users to return; a negative value returns all remaining users.
+   *
+   * @return Page of users with their roles.
+   *
+   *<p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *   &lt;membershipList&gt;&lt;memberships&gt;&lt;name&gt;admin&lt;/name&gt;&lt;names&gt;Administrator&lt;/names&gt;&lt;/memberships&gt;&lt;offset&gt;0&lt;/offset&gt;&lt;total&gt;4&lt;/total&gt;&lt;/membershipList&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/userRoleMemberships" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the users and their roles." ),
+    @ResponseCode ( code = 403, condition = "Only users with administrative privileges can access this method." ),
+    @ResponseCode ( code = 500, condition = "The system was not able to return the users and their roles." )
+    } )
+  public MembershipListWrapper getUserRoleMemberships( @QueryParam ( "offset" ) @DefaultValue ( "0" ) int offset,
+                                                       @QueryParam ( "limit" ) @DefaultValue ( "-1" ) int limit ) {
+    try {
+      return userRoleDaoService.getUserRoleMemberships( offset, limit );
+    } catch ( UncategorizedUserRoleDaoException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
+  /**
+   * Returns one page of the roles of the current tenant, each with the names of its members. This replaces a
+   * <code>roleMembers</code> call per role when loading the role administration screens.
+   *
+   * <p><b>Example Request:</b><br />
+   *   GET pentaho/api/userroledao/roleMemberships?offset=0&amp;limit=100
+   * </p>
+   *
+   * @param offset Index of the first role to return, roles are sorted by name.
+   * @param limit Maximum number of roles to return; a negative value returns all remaining roles.
+   *
+   * @return Page of roles with their members.
+   *
+   *<p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *   &lt;membershipList&gt;&lt;memberships&gt;&lt;name&gt;Power User&lt;/name&gt;&lt;names&gt;suzy&lt;/names&gt;&lt;/memberships&gt;&lt;offset&gt;0&lt;/offset&gt;&lt;total&gt;5&lt;/total&gt;&lt;/membershipList&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/roleMemberships" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the roles and their members." ),
+    @ResponseCode ( code = 403, condition = "Only users with administrative privileges can access this method." ),
+    @ResponseCode ( code = 500, condition = "The system was not able to return the roles and their members." )
+    } )
+  public MembershipListWrapper getRoleMemberships( @QueryParam ( "offset" ) @DefaultValue ( "0" ) int offset,
+                                                   @QueryParam ( "limit" ) @DefaultValue ( "-1" ) int limit ) {
+    try {
+      return userRoleDaoService.getRoleMemberships( offset, limit );
+    } catch ( UncategorizedUserRoleDaoException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Associate a particular role to a list of physical permissions available in the system. Setting the physical permissions to the roles is a way to add and delete permissions from the role.
    * Any permissions the role had before that are not on this list will be deleted. Any permissions on this list that were not previously assigned will now be assigned.
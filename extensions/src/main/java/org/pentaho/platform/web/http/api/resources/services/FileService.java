@@ -39,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -242,6 +243,30 @@ public class FileService {
     }
   }
 
+  /**
+   * Permanently deletes the selected list of files in bulk. Files that cannot be deleted are skipped rather than
+   * failing the whole operation.
+   *
+   * @param params Comma separated list of the files to be deleted
+   * @return number of files deleted
+   */
+  public int doDeleteFilesPermanentInBulk( String params ) {
+    String[] sourceFileIds = FileUtils.convertCommaSeparatedStringToArray( params ); //$NON-NLS-1$
+    return getRepository().permanentlyDeleteFiles( new ArrayList<Serializable>( Arrays.asList( sourceFileIds ) ),
+        null );
+  }
+
+  /**
+   * Unlocks the selected list of files in bulk. Files that are not locked or cannot be unlocked are skipped.
+   *
+   * @param params Comma separated list of the files to be unlocked
+   * @return number of files unlocked
+   */
+  public int doUnlockFilesInBulk( String params ) {
+    String[] sourceFileIds = FileUtils.convertCommaSeparatedStringToArray( params ); //$NON-NLS-1$
+    return getRepository().unlockFiles( new ArrayList<Serializable>( Arrays.asList( sourceFileIds ) ) );
+  }
+
   /**
    * Delete the locale for the selected file and locale
    *
@@ -778,6 +803,7 @@ public class FileService {
 
     RepositoryFileToStreamWrapper wrapper = new RepositoryFileToStreamWrapper();
     wrapper.setOutputStream( streamingOutput );
+    wrapper.setInputStream( is );
     wrapper.setRepositoryFile( repoFile );
     wrapper.setMimetype( is.getMimeType() );
 
@@ -1047,6 +1073,42 @@ public class FileService {
     return getRepoWs().getDeletedFiles();
   }
 
+  /**
+   * Get one page of deleted files, most recently deleted first
+   *
+   * @param owner         user whose deleted files to list, <code>null</code> for all users
+   * @param pathId        colon separated path of the folder the files were deleted from, <code>null</code> for any
+   * @param deletedBefore only files deleted before this time in milliseconds, <code>null</code> for any
+   * @param offset        number of files to skip
+   * @param limit         maximum number of files to return
+   * @return
+   */
+  public List<RepositoryFileDto> doGetDeletedFiles( String owner, String pathId, Long deletedBefore, int offset,
+                                                    int limit ) {
+    List<RepositoryFile> deletedFiles = getRepository().getDeletedFiles( owner,
+        pathId != null ? idToPath( pathId ) : null, deletedBefore != null ? new Date( deletedBefore ) : null,
+        offset, limit );
+    List<RepositoryFileDto> dtos = new ArrayList<RepositoryFileDto>( deletedFiles.size() );
+    for ( RepositoryFile deletedFile : deletedFiles ) {
+      dtos.add( toFileDto( deletedFile, null, false ) );
+    }
+    return dtos;
+  }
+
+  /**
+   * Get the locked files visible to the current user
+   *
+   * @return list of locked files
+   */
+  public List<RepositoryFileDto> doGetLockedFiles() {
+    List<RepositoryFile> lockedFiles = getRepository().getLockedFiles();
+    List<RepositoryFileDto> dtos = new ArrayList<RepositoryFileDto>( lockedFiles.size() );
+    for ( RepositoryFile lockedFile : lockedFiles ) {
+      dtos.add( toFileDto( lockedFile, null, false ) );
+    }
+    return dtos;
+  }
+
   /**
    * Get metadata for a file by path id
    *
@@ -1840,6 +1902,7 @@ public class FileService {
 
   public class RepositoryFileToStreamWrapper {
     private StreamingOutput outputStream;
+    private RepositoryFileInputStream inputStream;
     private RepositoryFile repositoryFile;
     private String mimetype;
 
@@ -1847,6 +1910,17 @@ public class FileService {
       this.outputStream = outputStream;
     }
 
+    /**
+     * @param inputStream stream the output stream copies from, used instead of it to serve part of the content
+     */
+    public void setInputStream( RepositoryFileInputStream inputStream ) {
+      this.inputStream = inputStream;
+    }
+
+    public RepositoryFileInputStream getInputStream() {
+      return inputStream;
+    }
+
     public void setRepositoryFile( RepositoryFile repositoryFile ) {
       this.repositoryFile = repositoryFile;
     }
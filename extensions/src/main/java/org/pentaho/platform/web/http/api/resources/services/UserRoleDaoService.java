@@ -46,6 +46,7 @@ import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadActi
 import org.pentaho.platform.web.http.api.resources.LocalizedLogicalRoleName;
 import org.pentaho.platform.web.http.api.resources.LogicalRoleAssignment;
 import org.pentaho.platform.web.http.api.resources.LogicalRoleAssignments;
+import org.pentaho.platform.web.http.api.resources.MembershipListWrapper;
 import org.pentaho.platform.web.http.api.resources.RoleListWrapper;
 import org.pentaho.platform.web.http.api.resources.SystemRolesMap;
 import org.pentaho.platform.web.http.api.resources.User;
@@ -155,6 +156,26 @@ public class UserRoleDaoService {
     }
   }
 
+  public MembershipListWrapper getUserRoleMemberships( int offset, int limit )
+    throws UncategorizedUserRoleDaoException, SecurityException {
+    if ( canAdminister() ) {
+      return new MembershipListWrapper( getRoleDao().getUserRoleNames( TenantUtils.getCurrentTenant() ), offset,
+        limit );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
+  public MembershipListWrapper getRoleMemberships( int offset, int limit )
+    throws UncategorizedUserRoleDaoException, SecurityException {
+    if ( canAdminister() ) {
+      return new MembershipListWrapper( getRoleDao().getRoleMemberNames( TenantUtils.getCurrentTenant() ), offset,
+        limit );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
   private boolean containsReservedChars( String username ) {
     StringBuffer reservedChars = new FileService().doGetReservedChars();
     return StringUtils.containsAny( username, reservedChars );
@@ -23,10 +23,13 @@ package org.pentaho.platform.web.servlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
+import org.pentaho.platform.api.cache.IInvalidatableCacheItem;
 import org.pentaho.platform.api.cache.ILastModifiedCacheItem;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.SoapHelper;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 import org.pentaho.platform.util.messages.LocaleHelper;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -62,6 +65,14 @@ public class CacheExpirationService extends ServletBase {
     if ( cacheExpirationRegistry == null ) {
       cacheExpirationRegistry = PentahoSystem.get( ICacheExpirationRegistry.class, null );
     }
+    String invalidate = request.getParameter( "invalidate" ); //$NON-NLS-1$
+    if ( invalidate != null ) {
+      if ( !SystemUtils.canAdminister() ) {
+        response.sendError( HttpServletResponse.SC_FORBIDDEN );
+        return;
+      }
+      invalidate( invalidate );
+    }
     OutputStream outputStream = response.getOutputStream();
 
     try {
@@ -71,6 +82,10 @@ public class CacheExpirationService extends ServletBase {
       outputStream.write( SoapHelper.openSoapResponse().getBytes( LocaleHelper.getSystemEncoding() ) );
 
       outputStream.write( getXml().getBytes( LocaleHelper.getSystemEncoding() ) );
+      if ( "true".equals( request.getParameter( "stats" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+        outputStream.write( getQueryResultCacheXml( QueryResultCache.getInstance() )
+            .getBytes( LocaleHelper.getSystemEncoding() ) );
+      }
 
       outputStream.write( SoapHelper.closeSoapResponse().getBytes( LocaleHelper.getSystemEncoding() ) );
       outputStream.write( SoapHelper.getSoapFooter().getBytes( LocaleHelper.getSystemEncoding() ) );
@@ -110,4 +125,39 @@ public class CacheExpirationService extends ServletBase {
     return sb.toString();
   }
 
+  /**
+   * Invalidates the registered items that support it.
+   *
+   * @param cacheKey key of the item to invalidate, or {@code all} for every invalidatable item
+   * @return number of items invalidated
+   */
+  public int invalidate( String cacheKey ) {
+    int invalidated = 0;
+    if ( cacheExpirationRegistry != null ) {
+      for ( ILastModifiedCacheItem item : cacheExpirationRegistry.getCachedItems() ) {
+        if ( item instanceof IInvalidatableCacheItem
+            && ( "all".equals( cacheKey ) || item.getCacheKey().equals( cacheKey ) ) ) { //$NON-NLS-1$
+          ( (IInvalidatableCacheItem) item ).invalidate();
+          invalidated++;
+        }
+      }
+    }
+    return invalidated;
+  }
+
+  public String getQueryResultCacheXml( QueryResultCache queryResultCache ) {
+    StringBuilder sb = new StringBuilder();
+    sb.append( "<query-result-cache>" ); //$NON-NLS-1$
+    sb.append( "<enabled>" ).append( queryResultCache.isEnabled() ).append( "</enabled>" ); //$NON-NLS-1$ //$NON-NLS-2$
+    sb.append( "<entries>" ).append( queryResultCache.getEntryCount() ) //$NON-NLS-1$
+        .append( "</entries>" ); //$NON-NLS-1$
+    sb.append( "<bytes>" ).append( queryResultCache.getSizeBytes() ).append( "</bytes>" ); //$NON-NLS-1$ //$NON-NLS-2$
+    sb.append( "<hits>" ).append( queryResultCache.getHitCount() ).append( "</hits>" ); //$NON-NLS-1$ //$NON-NLS-2$
+    sb.append( "<misses>" ).append( queryResultCache.getMissCount() ).append( "</misses>" ); //$NON-NLS-1$ //$NON-NLS-2$
+    sb.append( "<evictions>" ).append( queryResultCache.getEvictionCount() ) //$NON-NLS-1$
+        .append( "</evictions>" ); //$NON-NLS-1$
+    sb.append( "</query-result-cache>" ); //$NON-NLS-1$
+    return sb.toString();
+  }
+
 }
@@ -0,0 +1,313 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.web.servlet.messages.Messages;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The HTTP side of {@link ChunkedUploadStore}, shared by the upload servlets. A chunked upload is driven with these
+ * requests against the servlet that finally imports the file:
+ * <ol>
+ * <li>{@code POST ?chunked=true&file_name=..&total_size=..[&content_type=..]} starts an upload and answers its id</li>
+ * <li>{@code PUT ?upload_id=..&offset=..[&checksum=..]} with the raw bytes of a chunk as the request body appends
+ * the chunk; {@code checksum} is the hex encoded SHA-256 of the chunk</li>
+ * <li>{@code GET ?upload_id=..} answers the staged length, where an interrupted upload resumes</li>
+ * <li>{@code POST ?upload_id=..[&checksum=..]} together with the usual parameters of the servlet imports the staged
+ * file; {@code checksum} is the hex encoded SHA-256 of the whole file</li>
+ * <li>{@code DELETE ?upload_id=..} discards the upload</li>
+ * </ol>
+ * Chunk requests answer the staged length both as the response body and as the {@value #OFFSET_HEADER} header, also
+ * when a chunk is refused.
+ */
+final class ChunkedUploadRequests {
+
+  static final String PARAM_CHUNKED = "chunked"; //$NON-NLS-1$
+
+  static final String PARAM_UPLOAD_ID = "upload_id"; //$NON-NLS-1$
+
+  static final String PARAM_FILE_NAME = "file_name"; //$NON-NLS-1$
+
+  static final String PARAM_CONTENT_TYPE = "content_type"; //$NON-NLS-1$
+
+  static final String PARAM_TOTAL_SIZE = "total_size"; //$NON-NLS-1$
+
+  static final String PARAM_OFFSET = "offset"; //$NON-NLS-1$
+
+  static final String PARAM_CHECKSUM = "checksum"; //$NON-NLS-1$
+
+  static final String OFFSET_HEADER = "Upload-Offset"; //$NON-NLS-1$
+
+  private static final int SC_UNPROCESSABLE_ENTITY = 422;
+
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  private ChunkedUploadRequests() {
+  }
+
+  /**
+   * @return whether the request starts a chunked upload
+   */
+  static boolean isBegin( final HttpServletRequest request ) {
+    return request.getParameter( PARAM_UPLOAD_ID ) == null
+      && Boolean.parseBoolean( request.getParameter( PARAM_CHUNKED ) );
+  }
+
+  /**
+   * @return whether the request imports the file of a chunked upload
+   */
+  static boolean isCompletion( final HttpServletRequest request ) {
+    return request.getParameter( PARAM_UPLOAD_ID ) != null;
+  }
+
+  /**
+   * @return the declared size of the file of a chunked upload that is about to begin, {@code -1} if there is none
+   */
+  static long getTotalSize( final HttpServletRequest request ) {
+    return parseLong( request.getParameter( PARAM_TOTAL_SIZE ) );
+  }
+
+  static void begin( final HttpServletRequest request, final HttpServletResponse response, final long maxFileSize )
+    throws IOException {
+    String owner = getOwner();
+    if ( StringUtils.isEmpty( owner ) ) {
+      // an upload without an owner could be continued by anyone who learns its id
+      writeError( response, HttpServletResponse.SC_FORBIDDEN,
+        Messages.getInstance().getErrorString( "ChunkedUpload.ERROR_0009_NO_OWNER" ) ); //$NON-NLS-1$
+      return;
+    }
+    String fileName = request.getParameter( PARAM_FILE_NAME );
+    long totalSize = getTotalSize( request );
+    if ( StringUtils.isEmpty( fileName ) || totalSize < 0 ) {
+      writeError( response, HttpServletResponse.SC_BAD_REQUEST,
+        Messages.getInstance().getErrorString( "ChunkedUpload.ERROR_0001_INVALID_PARAMETERS" ) ); //$NON-NLS-1$
+      return;
+    }
+    if ( totalSize > maxFileSize ) {
+      writeError( response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+        Messages.getInstance().getErrorString( "ChunkedUpload.ERROR_0002_FILE_TOO_BIG" ) ); //$NON-NLS-1$
+      return;
+    }
+    String uploadId;
+    try {
+      uploadId = getStore().begin( owner, fileName, request.getParameter( PARAM_CONTENT_TYPE ), totalSize );
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      writeError( response, e );
+      return;
+    }
+    response.setContentType( "text/plain" ); //$NON-NLS-1$
+    response.getWriter().write( uploadId );
+  }
+
+  static void append( final HttpServletRequest request, final HttpServletResponse response ) throws IOException {
+    long offset = parseLong( request.getParameter( PARAM_OFFSET ) );
+    if ( offset < 0 ) {
+      writeError( response, HttpServletResponse.SC_BAD_REQUEST,
+        Messages.getInstance().getErrorString( "ChunkedUpload.ERROR_0001_INVALID_PARAMETERS" ) ); //$NON-NLS-1$
+      return;
+    }
+    try {
+      writeOffset( response, getStore().append( getOwner(), request.getParameter( PARAM_UPLOAD_ID ), offset,
+        request.getInputStream(), request.getParameter( PARAM_CHECKSUM ) ) );
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      writeError( response, e );
+    }
+  }
+
+  static void getOffset( final HttpServletRequest request, final HttpServletResponse response ) throws IOException {
+    try {
+      writeOffset( response, getStore().getOffset( getOwner(), request.getParameter( PARAM_UPLOAD_ID ) ) );
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      writeError( response, e );
+    }
+  }
+
+  static void abort( final HttpServletRequest request, final HttpServletResponse response ) throws IOException {
+    try {
+      getStore().abort( getOwner(), request.getParameter( PARAM_UPLOAD_ID ) );
+      response.setStatus( HttpServletResponse.SC_NO_CONTENT );
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      writeError( response, e );
+    }
+  }
+
+  /**
+   * Ends a chunked upload. The staged file then belongs to the caller; one left behind is swept up by
+   * {@link ChunkedUploadStore#purgeExpired()}.
+   *
+   * @return the completed upload, or {@code null} if it was refused and the error has been written to the response
+   */
+  static ChunkedUploadStore.Upload complete( final HttpServletRequest request, final HttpServletResponse response )
+    throws IOException {
+    try {
+      return getStore().complete( getOwner(), request.getParameter( PARAM_UPLOAD_ID ),
+        request.getParameter( PARAM_CHECKSUM ) );
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      writeError( response, e );
+      return null;
+    }
+  }
+
+  /**
+   * @return the staged file of a completed upload as a form part; deleting the part deletes the staged file
+   */
+  static Part toPart( final ChunkedUploadStore.Upload upload ) {
+    return new StagedPart( upload );
+  }
+
+  private static void writeOffset( final HttpServletResponse response, final long offset ) throws IOException {
+    response.setHeader( OFFSET_HEADER, String.valueOf( offset ) );
+    response.setContentType( "text/plain" ); //$NON-NLS-1$
+    response.getWriter().write( String.valueOf( offset ) );
+  }
+
+  private static void writeError( final HttpServletResponse response,
+                                  final ChunkedUploadStore.ChunkedUploadException e ) throws IOException {
+    String offset = String.valueOf( e.getOffset() );
+    switch ( e.getReason() ) {
+      case OFFSET_MISMATCH:
+        response.setHeader( OFFSET_HEADER, offset );
+        writeError( response, HttpServletResponse.SC_CONFLICT, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0004_OFFSET_MISMATCH", offset ) ); //$NON-NLS-1$
+        break;
+      case CHECKSUM_MISMATCH:
+        response.setHeader( OFFSET_HEADER, offset );
+        writeError( response, SC_UNPROCESSABLE_ENTITY, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0005_CHECKSUM_MISMATCH", offset ) ); //$NON-NLS-1$
+        break;
+      case TOO_LARGE:
+        response.setHeader( OFFSET_HEADER, offset );
+        writeError( response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0006_CHUNK_TOO_LARGE" ) ); //$NON-NLS-1$
+        break;
+      case INCOMPLETE:
+        response.setHeader( OFFSET_HEADER, offset );
+        writeError( response, HttpServletResponse.SC_CONFLICT, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0007_UPLOAD_INCOMPLETE", offset ) ); //$NON-NLS-1$
+        break;
+      case QUOTA_EXCEEDED:
+        writeError( response, SC_TOO_MANY_REQUESTS, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0008_QUOTA_EXCEEDED" ) ); //$NON-NLS-1$
+        break;
+      default:
+        writeError( response, HttpServletResponse.SC_NOT_FOUND, Messages.getInstance().getErrorString(
+          "ChunkedUpload.ERROR_0003_UPLOAD_NOT_FOUND" ) ); //$NON-NLS-1$
+        break;
+    }
+  }
+
+  private static void writeError( final HttpServletResponse response, final int status, final String error )
+    throws IOException {
+    response.setStatus( status );
+    response.setContentType( "text/plain" ); //$NON-NLS-1$
+    response.getWriter().write( error );
+  }
+
+  private static long parseLong( final String value ) {
+    if ( value == null ) {
+      return -1;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      return -1;
+    }
+  }
+
+  private static String getOwner() {
+    return PentahoSessionHolder.getSession() != null ? PentahoSessionHolder.getSession().getName() : null;
+  }
+
+  private static ChunkedUploadStore getStore() {
+    return ChunkedUploadStore.getInstance();
+  }
+
+  private static class StagedPart implements Part {
+    private final ChunkedUploadStore.Upload upload;
+
+    StagedPart( final ChunkedUploadStore.Upload upload ) {
+      this.upload = upload;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new FileInputStream( upload.getFile() );
+    }
+
+    @Override
+    public String getContentType() {
+      return upload.getContentType();
+    }
+
+    @Override
+    public String getName() {
+      return upload.getId();
+    }
+
+    @Override
+    public String getSubmittedFileName() {
+      return upload.getFileName();
+    }
+
+    @Override
+    public long getSize() {
+      return upload.getFile().length();
+    }
+
+    @Override
+    public void delete() throws IOException {
+      File file = upload.getFile();
+      if ( file.exists() && !file.delete() ) {
+        throw new IOException( "Could not delete " + file ); //$NON-NLS-1$
+      }
+    }
+
+    @Override
+    public void write( String s ) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getHeader( String s ) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> getHeaders( String s ) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,473 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server side staging of files uploaded in chunks, so that large files can be published over slow or unreliable
+ * links without holding a single request open for the whole transfer.
+ * <p>
+ * An upload is started with {@link #begin}, which returns its id. Chunks are then appended in order with
+ * {@link #append}: a chunk must start exactly at the staged length, may carry a SHA-256 checksum, and is rolled back
+ * if it does not match or the connection drops while it is received. After a disconnect {@link #getOffset} tells the
+ * client where to resume. Once every byte has arrived {@link #complete} hands the staged file over for import.
+ * Uploads that receive no chunk for {@link #getExpiryMillis()} are discarded, both when a new upload begins and
+ * periodically by {@link ChunkedUploadSystemListener}.
+ * </p>
+ * <p>
+ * Every upload belongs to the user that started it and is invisible to anyone else. The number of uploads in progress
+ * and the bytes they may stage, as declared by their total size when they begin, are limited per user and overall; an
+ * upload that would exceed a limit is refused before anything is staged.
+ * </p>
+ */
+public class ChunkedUploadStore {
+
+  public enum Reason {
+    NOT_FOUND, OFFSET_MISMATCH, CHECKSUM_MISMATCH, TOO_LARGE, INCOMPLETE, QUOTA_EXCEEDED
+  }
+
+  /**
+   * Refusal of a chunked upload operation. The staged content is left as it was before the operation.
+   */
+  public static class ChunkedUploadException extends IOException {
+
+    private static final long serialVersionUID = -2370446052962231517L;
+
+    private final Reason reason;
+
+    private final long offset;
+
+    ChunkedUploadException( final Reason reason, final long offset ) {
+      super( reason.name() + " at offset " + offset ); //$NON-NLS-1$
+      this.reason = reason;
+      this.offset = offset;
+    }
+
+    public Reason getReason() {
+      return reason;
+    }
+
+    /**
+     * @return the staged length of the upload, where the client has to resume
+     */
+    public long getOffset() {
+      return offset;
+    }
+  }
+
+  /**
+   * A staged upload.
+   */
+  public static final class Upload {
+    private final String id;
+    private final String owner;
+    private final String fileName;
+    private final String contentType;
+    private final long totalSize;
+    private final File file;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private Upload( final String id, final String owner, final String fileName, final String contentType,
+                    final long totalSize, final File file ) {
+      this.id = id;
+      this.owner = owner;
+      this.fileName = fileName;
+      this.contentType = contentType;
+      this.totalSize = totalSize;
+      this.file = file;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public long getTotalSize() {
+      return totalSize;
+    }
+
+    public File getFile() {
+      return file;
+    }
+  }
+
+  public static final long DEFAULT_EXPIRY_MILLIS = 86400000L;
+
+  public static final int DEFAULT_MAX_UPLOADS_PER_USER = 4;
+
+  public static final int DEFAULT_MAX_UPLOADS = 32;
+
+  public static final long DEFAULT_MAX_STAGED_BYTES_PER_USER = 2147483648L;
+
+  public static final long DEFAULT_MAX_STAGED_BYTES = 10737418240L;
+
+  static final String STAGING_FOLDER = "system/chunked-uploads"; //$NON-NLS-1$
+
+  private static final String CHECKSUM_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+  private static final String STAGED_SUFFIX = ".part"; //$NON-NLS-1$
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private static final ChunkedUploadStore instance = new ChunkedUploadStore();
+
+  private final Log logger = LogFactory.getLog( ChunkedUploadStore.class );
+
+  private final Map<String, Upload> uploads = new ConcurrentHashMap<String, Upload>();
+
+  private volatile long expiryMillis = DEFAULT_EXPIRY_MILLIS;
+
+  private volatile int maxUploadsPerUser = DEFAULT_MAX_UPLOADS_PER_USER;
+
+  private volatile int maxUploads = DEFAULT_MAX_UPLOADS;
+
+  private volatile long maxStagedBytesPerUser = DEFAULT_MAX_STAGED_BYTES_PER_USER;
+
+  private volatile long maxStagedBytes = DEFAULT_MAX_STAGED_BYTES;
+
+  private File stagingDir;
+
+  public static ChunkedUploadStore getInstance() {
+    return instance;
+  }
+
+  ChunkedUploadStore() {
+  }
+
+  ChunkedUploadStore( final File stagingDir ) {
+    this.stagingDir = stagingDir;
+  }
+
+  /**
+   * Starts a new upload and creates its empty staging file.
+   *
+   * @param owner     name of the user sending the file
+   * @param fileName  name the file was submitted with
+   * @param totalSize size of the complete file in bytes
+   * @return the id to send chunks to
+   * @throws ChunkedUploadException with {@link Reason#QUOTA_EXCEEDED} if the upload would exceed one of the limits
+   */
+  public String begin( final String owner, final String fileName, final String contentType, final long totalSize )
+    throws IOException {
+    if ( owner == null || owner.isEmpty() ) {
+      throw new IllegalArgumentException( "owner" ); //$NON-NLS-1$
+    }
+    if ( totalSize < 0 ) {
+      throw new IllegalArgumentException( "totalSize" ); //$NON-NLS-1$
+    }
+    purgeExpired();
+    String id = UUID.randomUUID().toString();
+    File file = new File( getStagingDir(), id + STAGED_SUFFIX );
+    // the quotas are checked and the upload registered atomically, so concurrent begins cannot overshoot them
+    synchronized ( uploads ) {
+      checkQuota( owner, totalSize );
+      if ( !file.createNewFile() ) {
+        throw new IOException( "Staging file already exists: " + file ); //$NON-NLS-1$
+      }
+      uploads.put( id, new Upload( id, owner, fileName, contentType, totalSize, file ) );
+    }
+    return id;
+  }
+
+  private void checkQuota( final String owner, final long totalSize ) throws ChunkedUploadException {
+    int ownerUploads = 0;
+    long ownerBytes = totalSize;
+    long stagedBytes = totalSize;
+    for ( Upload upload : uploads.values() ) {
+      stagedBytes += upload.totalSize;
+      if ( upload.owner.equals( owner ) ) {
+        ownerUploads++;
+        ownerBytes += upload.totalSize;
+      }
+    }
+    if ( ( maxUploadsPerUser > 0 && ownerUploads >= maxUploadsPerUser )
+      || ( maxUploads > 0 && uploads.size() >= maxUploads )
+      || ( maxStagedBytesPerUser > 0 && ownerBytes > maxStagedBytesPerUser )
+      || ( maxStagedBytes > 0 && stagedBytes > maxStagedBytes ) ) {
+      throw new ChunkedUploadException( Reason.QUOTA_EXCEEDED, 0 );
+    }
+  }
+
+  /**
+   * @return the number of bytes staged so far, which is where the next chunk has to start
+   */
+  public long getOffset( final String owner, final String uploadId ) throws ChunkedUploadException {
+    Upload upload = get( owner, uploadId );
+    synchronized ( upload ) {
+      return upload.file.length();
+    }
+  }
+
+  /**
+   * Appends one chunk to the staging file. A chunk that fails for any reason, including a dropped connection, is
+   * removed again so that it can simply be sent once more.
+   *
+   * @param offset   position of the chunk in the file, which has to be the current staged length
+   * @param chunk    content of the chunk
+   * @param checksum hex encoded SHA-256 of the chunk, or {@code null} not to verify it
+   * @return the staged length including this chunk
+   */
+  public long append( final String owner, final String uploadId, final long offset, final InputStream chunk,
+                      final String checksum ) throws IOException {
+    Upload upload = get( owner, uploadId );
+    synchronized ( upload ) {
+      checkActive( upload );
+      long staged = upload.file.length();
+      if ( offset != staged ) {
+        throw new ChunkedUploadException( Reason.OFFSET_MISMATCH, staged );
+      }
+      MessageDigest digest = checksum != null ? newDigest() : null;
+      RandomAccessFile out = new RandomAccessFile( upload.file, "rw" ); //$NON-NLS-1$
+      try {
+        boolean appended = false;
+        try {
+          out.seek( staged );
+          byte[] buffer = new byte[ BUFFER_SIZE ];
+          long length = staged;
+          int read;
+          while ( ( read = chunk.read( buffer ) ) != -1 ) {
+            length += read;
+            if ( length > upload.totalSize ) {
+              throw new ChunkedUploadException( Reason.TOO_LARGE, staged );
+            }
+            if ( digest != null ) {
+              digest.update( buffer, 0, read );
+            }
+            out.write( buffer, 0, read );
+          }
+          if ( digest != null && !checksum.equalsIgnoreCase( Hex.encodeHexString( digest.digest() ) ) ) {
+            throw new ChunkedUploadException( Reason.CHECKSUM_MISMATCH, staged );
+          }
+          appended = true;
+          upload.lastActivity = System.currentTimeMillis();
+          return length;
+        } finally {
+          if ( !appended ) {
+            out.setLength( staged );
+          }
+        }
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Ends an upload whose last chunk has arrived. The upload is forgotten and its staging file becomes the caller's
+   * to move or delete.
+   *
+   * @param checksum hex encoded SHA-256 of the whole file, or {@code null} not to verify it
+   */
+  public Upload complete( final String owner, final String uploadId, final String checksum ) throws IOException {
+    Upload upload = get( owner, uploadId );
+    synchronized ( upload ) {
+      checkActive( upload );
+      long staged = upload.file.length();
+      if ( staged != upload.totalSize ) {
+        throw new ChunkedUploadException( Reason.INCOMPLETE, staged );
+      }
+      if ( checksum != null && !checksum.equalsIgnoreCase( checksum( upload.file ) ) ) {
+        // no single chunk can be blamed, so the upload has to start over
+        abort( upload );
+        throw new ChunkedUploadException( Reason.CHECKSUM_MISMATCH, 0 );
+      }
+      uploads.remove( upload.id );
+      return upload;
+    }
+  }
+
+  /**
+   * Discards an upload and its staged content.
+   */
+  public void abort( final String owner, final String uploadId ) throws ChunkedUploadException {
+    Upload upload = get( owner, uploadId );
+    synchronized ( upload ) {
+      abort( upload );
+    }
+  }
+
+  /**
+   * Discards uploads that have been idle for longer than {@link #getExpiryMillis()}, as well as staging files left
+   * behind by a previous run of the server.
+   */
+  public void purgeExpired() {
+    long oldest = System.currentTimeMillis() - expiryMillis;
+    for ( Iterator<Upload> it = uploads.values().iterator(); it.hasNext(); ) {
+      Upload upload = it.next();
+      if ( upload.lastActivity < oldest ) {
+        synchronized ( upload ) {
+          if ( upload.lastActivity < oldest ) {
+            if ( logger.isDebugEnabled() ) {
+              logger.debug( "Discarding expired chunked upload " + upload.id ); //$NON-NLS-1$
+            }
+            abort( upload );
+          }
+        }
+      }
+    }
+    File[] files = getStagingDir().listFiles();
+    if ( files != null ) {
+      for ( File file : files ) {
+        String name = file.getName();
+        if ( name.endsWith( STAGED_SUFFIX ) && file.lastModified() < oldest
+          && !uploads.containsKey( name.substring( 0, name.length() - STAGED_SUFFIX.length() ) ) ) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  private void abort( final Upload upload ) {
+    uploads.remove( upload.id );
+    if ( upload.file.exists() && !upload.file.delete() ) {
+      logger.warn( "Could not delete staged upload " + upload.file ); //$NON-NLS-1$
+    }
+  }
+
+  private Upload get( final String owner, final String uploadId ) throws ChunkedUploadException {
+    Upload upload = uploadId != null ? uploads.get( uploadId ) : null;
+    if ( upload == null || !upload.owner.equals( owner ) ) {
+      throw new ChunkedUploadException( Reason.NOT_FOUND, 0 );
+    }
+    return upload;
+  }
+
+  /**
+   * Refuses an upload that expired or was aborted while the caller was waiting for it.
+   */
+  private void checkActive( final Upload upload ) throws ChunkedUploadException {
+    if ( uploads.get( upload.id ) != upload ) {
+      throw new ChunkedUploadException( Reason.NOT_FOUND, 0 );
+    }
+  }
+
+  private static String checksum( final File file ) throws IOException {
+    MessageDigest digest = newDigest();
+    InputStream in = new FileInputStream( file );
+    try {
+      byte[] buffer = new byte[ BUFFER_SIZE ];
+      int read;
+      while ( ( read = in.read( buffer ) ) != -1 ) {
+        digest.update( buffer, 0, read );
+      }
+    } finally {
+      in.close();
+    }
+    return Hex.encodeHexString( digest.digest() );
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance( CHECKSUM_ALGORITHM );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private synchronized File getStagingDir() {
+    if ( stagingDir == null ) {
+      stagingDir = new File( PentahoSystem.getApplicationContext().getSolutionPath( STAGING_FOLDER ) );
+    }
+    if ( !stagingDir.exists() ) {
+      stagingDir.mkdirs();
+    }
+    return stagingDir;
+  }
+
+  public int getUploadCount() {
+    return uploads.size();
+  }
+
+  public long getExpiryMillis() {
+    return expiryMillis;
+  }
+
+  public void setExpiryMillis( final long expiryMillis ) {
+    this.expiryMillis = expiryMillis > 0 ? expiryMillis : DEFAULT_EXPIRY_MILLIS;
+  }
+
+  public int getMaxUploadsPerUser() {
+    return maxUploadsPerUser;
+  }
+
+  /**
+   * @param maxUploadsPerUser uploads one user may have in progress at the same time, {@code 0} for no limit
+   */
+  public void setMaxUploadsPerUser( final int maxUploadsPerUser ) {
+    this.maxUploadsPerUser = Math.max( maxUploadsPerUser, 0 );
+  }
+
+  public int getMaxUploads() {
+    return maxUploads;
+  }
+
+  /**
+   * @param maxUploads uploads all users together may have in progress at the same time, {@code 0} for no limit
+   */
+  public void setMaxUploads( final int maxUploads ) {
+    this.maxUploads = Math.max( maxUploads, 0 );
+  }
+
+  public long getMaxStagedBytesPerUser() {
+    return maxStagedBytesPerUser;
+  }
+
+  /**
+   * @param maxStagedBytesPerUser total size of the uploads one user may have in progress, {@code 0} for no limit
+   */
+  public void setMaxStagedBytesPerUser( final long maxStagedBytesPerUser ) {
+    this.maxStagedBytesPerUser = Math.max( maxStagedBytesPerUser, 0L );
+  }
+
+  public long getMaxStagedBytes() {
+    return maxStagedBytes;
+  }
+
+  /**
+   * @param maxStagedBytes total size of the uploads all users together may have in progress, {@code 0} for no limit
+   */
+  public void setMaxStagedBytes( final long maxStagedBytes ) {
+    this.maxStagedBytes = Math.max( maxStagedBytes, 0L );
+  }
+}
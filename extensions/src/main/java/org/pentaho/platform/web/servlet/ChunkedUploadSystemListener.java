@@ -0,0 +1,142 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the {@link ChunkedUploadStore} and discards its expired uploads periodically, so that abandoned staging
+ * files do not wait for the next upload to begin. Registered in <tt>systemListeners.xml</tt>:
+ * <pre>
+  &lt;bean id="chunkedUploadSystemListener" class="org.pentaho.platform.web.servlet.ChunkedUploadSystemListener"&gt;
+    &lt;property name="maxUploadsPerUser" value="4"/&gt;
+  &lt;/bean&gt;
+ * </pre>
+ * <tt>expiryHours</tt> is the time after which an upload without activity is discarded (24 by default) and
+ * <tt>purgeIntervalMinutes</tt> the time between purges (60 by default). <tt>maxUploadsPerUser</tt>,
+ * <tt>maxUploads</tt>, <tt>maxStagedBytesPerUser</tt> and <tt>maxStagedBytes</tt> limit the uploads in progress
+ * and their declared sizes, per user and for all users together; <tt>0</tt> turns a limit off.
+ */
+public class ChunkedUploadSystemListener implements IPentahoSystemListener {
+
+  private final Log logger = LogFactory.getLog( ChunkedUploadSystemListener.class );
+
+  private int expiryHours = (int) TimeUnit.MILLISECONDS.toHours( ChunkedUploadStore.DEFAULT_EXPIRY_MILLIS );
+  private int purgeIntervalMinutes = 60;
+  private int maxUploadsPerUser = ChunkedUploadStore.DEFAULT_MAX_UPLOADS_PER_USER;
+  private int maxUploads = ChunkedUploadStore.DEFAULT_MAX_UPLOADS;
+  private long maxStagedBytesPerUser = ChunkedUploadStore.DEFAULT_MAX_STAGED_BYTES_PER_USER;
+  private long maxStagedBytes = ChunkedUploadStore.DEFAULT_MAX_STAGED_BYTES;
+
+  private ScheduledExecutorService executor;
+
+  @Override
+  public boolean startup( IPentahoSession session ) {
+    ChunkedUploadStore store = getStore();
+    store.setExpiryMillis( TimeUnit.HOURS.toMillis( expiryHours ) );
+    store.setMaxUploadsPerUser( maxUploadsPerUser );
+    store.setMaxUploads( maxUploads );
+    store.setMaxStagedBytesPerUser( maxStagedBytesPerUser );
+    store.setMaxStagedBytes( maxStagedBytes );
+
+    executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "ChunkedUploadPurge" ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    } );
+    long interval = Math.max( purgeIntervalMinutes, 1 );
+    executor.scheduleWithFixedDelay( () -> {
+      try {
+        store.purgeExpired();
+      } catch ( Exception e ) {
+        logger.error( "Error purging expired chunked uploads", e ); //$NON-NLS-1$
+      }
+    }, interval, interval, TimeUnit.MINUTES );
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  ChunkedUploadStore getStore() {
+    return ChunkedUploadStore.getInstance();
+  }
+
+  public int getExpiryHours() {
+    return expiryHours;
+  }
+
+  public void setExpiryHours( int expiryHours ) {
+    this.expiryHours = expiryHours;
+  }
+
+  public int getPurgeIntervalMinutes() {
+    return purgeIntervalMinutes;
+  }
+
+  public void setPurgeIntervalMinutes( int purgeIntervalMinutes ) {
+    this.purgeIntervalMinutes = purgeIntervalMinutes;
+  }
+
+  public int getMaxUploadsPerUser() {
+    return maxUploadsPerUser;
+  }
+
+  public void setMaxUploadsPerUser( int maxUploadsPerUser ) {
+    this.maxUploadsPerUser = maxUploadsPerUser;
+  }
+
+  public int getMaxUploads() {
+    return maxUploads;
+  }
+
+  public void setMaxUploads( int maxUploads ) {
+    this.maxUploads = maxUploads;
+  }
+
+  public long getMaxStagedBytesPerUser() {
+    return maxStagedBytesPerUser;
+  }
+
+  public void setMaxStagedBytesPerUser( long maxStagedBytesPerUser ) {
+    this.maxStagedBytesPerUser = maxStagedBytesPerUser;
+  }
+
+  public long getMaxStagedBytes() {
+    return maxStagedBytes;
+  }
+
+  public void setMaxStagedBytes( long maxStagedBytes ) {
+    this.maxStagedBytes = maxStagedBytes;
+  }
+}
@@ -23,6 +23,7 @@ package org.pentaho.platform.web.servlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.uifoundation.chart.RenderedChartCache;
 import org.pentaho.platform.util.StringUtil;
 import org.pentaho.platform.web.servlet.messages.Messages;
 
@@ -80,6 +81,22 @@ public class GetImage extends ServletBase {
         return;
       }
 
+      // charts rendered through the chart cache are streamed from it, their temporary file may not exist
+      RenderedChartCache.RenderedChart chart =
+          RenderedChartCache.getInstance().getByName( new File( image ).getName() );
+      if ( chart != null ) {
+        byte[] bytes = chart.getBytes();
+        response.setContentType( chart.getMimeType() );
+        response.setContentLength( bytes.length );
+        OutputStream out = response.getOutputStream();
+        try {
+          out.write( bytes );
+        } finally {
+          out.close();
+        }
+        return;
+      }
+
       String location = ""; //$NON-NLS-1$
       if ( image.startsWith( "/" ) || image.startsWith( "\\" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
         location = "system/tmp/" + image.substring( 1 ); //$NON-NLS-1$ 
@@ -0,0 +1,164 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
+
+/**
+ * Message bundles served by {@link LocalizationServlet}, already serialized to JSON, keyed by plugin, bundle name and
+ * locale. Each entry keeps the encoded body, its gzip-compressed form and an ETag, so a hit is written out without
+ * consulting the plugin manager or re-reading the bundle. The whole store is dropped whenever the plugin manager
+ * reloads.
+ */
+final class LocalizationBundleStore {
+
+  private static final LocalizationBundleStore instance = new LocalizationBundleStore();
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private IPluginManager boundPluginManager;
+
+  static LocalizationBundleStore getInstance() {
+    return instance;
+  }
+
+  LocalizationBundleStore() {
+  }
+
+  /**
+   * Serialized form of one bundle.
+   */
+  static final class Entry {
+    private final byte[] body;
+    private final byte[] gzippedBody;
+    private final String eTag;
+    private final String gzippedETag;
+
+    Entry( final String json, final String encoding ) throws IOException {
+      this.body = encode( json, encoding );
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream( body.length / 3 + 32 );
+      GZIPOutputStream gzip = new GZIPOutputStream( compressed );
+      try {
+        gzip.write( body );
+      } finally {
+        gzip.close();
+      }
+      this.gzippedBody = compressed.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update( body );
+      String tag = Long.toHexString( crc.getValue() ) + "-" + Integer.toHexString( body.length ); //$NON-NLS-1$
+      this.eTag = "\"" + tag + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+      // a different representation of the same content needs its own strong validator
+      this.gzippedETag = "\"" + tag + "-gzip\""; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static byte[] encode( final String json, final String encoding ) throws UnsupportedEncodingException {
+      return encoding == null ? json.getBytes( "UTF-8" ) : json.getBytes( encoding ); //$NON-NLS-1$
+    }
+
+    byte[] getBody() {
+      return body;
+    }
+
+    byte[] getGzippedBody() {
+      return gzippedBody;
+    }
+
+    String getETag() {
+      return eTag;
+    }
+
+    String getGzippedETag() {
+      return gzippedETag;
+    }
+  }
+
+  /**
+   * @return the stored bundle, or {@code null}
+   */
+  Entry get( final String pluginId, final String name, final Locale locale ) {
+    return entries.get( key( pluginId, name, locale ) );
+  }
+
+  /**
+   * Current reload generation; read it before building an entry and pass it to
+   * {@link #put(String, String, Locale, Entry, long)}.
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Stores an entry unless the plugins were reloaded since {@code builtInGeneration} was read.
+   */
+  void put( final String pluginId, final String name, final Locale locale, final Entry entry,
+            final long builtInGeneration ) {
+    String key = key( pluginId, name, locale );
+    entries.put( key, entry );
+    if ( generation.get() != builtInGeneration ) {
+      // raced with a reload, the entry may have been built from unloaded plugin resources
+      entries.remove( key, entry );
+    }
+  }
+
+  /**
+   * Registers for reload notifications of the given plugin manager, once.
+   */
+  synchronized void bind( final IPluginManager pluginManager ) {
+    if ( pluginManager == null || pluginManager == boundPluginManager ) {
+      return;
+    }
+    boundPluginManager = pluginManager;
+    pluginManager.addPluginManagerListener( new IPluginManagerListener() {
+      @Override public void onReload() {
+        invalidate();
+      }
+    } );
+    // anything stored before binding may predate a reload we were not told about
+    invalidate();
+  }
+
+  void invalidate() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static String key( final String pluginId, final String name, final Locale locale ) {
+    return pluginId + '\u0000' + name + '\u0000' + locale;
+  }
+}
@@ -33,7 +33,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.util.Locale;
 import java.util.ResourceBundle;
 
 /**
@@ -62,17 +63,32 @@ public class LocalizationServlet extends ServletBase {
     String name = req.getParameter( "name" ); //$NON-NLS-1$
 
     try {
-      String json = getJSONBundle( pluginId, name );
+      LocalizationBundleStore.Entry entry = getBundleEntry( pluginId, name, LocaleHelper.getLocale() );
       this.setCorsHeaders( req, resp );
 
+      boolean gzip = acceptsGzip( req.getHeader( "Accept-Encoding" ) ); //$NON-NLS-1$
+      String eTag = gzip ? entry.getGzippedETag() : entry.getETag();
+      resp.setHeader( "ETag", eTag ); //$NON-NLS-1$
+      resp.setHeader( "Vary", "Accept-Encoding" ); //$NON-NLS-1$ //$NON-NLS-2$
+      if ( matchesETag( req.getHeader( "If-None-Match" ), eTag ) ) { //$NON-NLS-1$
+        resp.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+        return;
+      }
+
       resp.setContentType( "text/plain" ); //$NON-NLS-1$
       resp.setStatus( HttpServletResponse.SC_OK );
       resp.setCharacterEncoding( LocaleHelper.getSystemEncoding() );
-      PrintWriter writer = resp.getWriter();
+      byte[] body = entry.getBody();
+      if ( gzip ) {
+        resp.setHeader( "Content-Encoding", "gzip" ); //$NON-NLS-1$ //$NON-NLS-2$
+        body = entry.getGzippedBody();
+      }
+      resp.setContentLength( body.length );
+      OutputStream out = resp.getOutputStream();
       try {
-        writer.write( json );
+        out.write( body );
       } finally {
-        writer.close();
+        out.close();
       }
     } catch ( Exception ex ) {
       error( Messages.getInstance().getErrorString( "LocalizationServlet.ERROR_0000_ERROR" ), ex ); //$NON-NLS-1$
@@ -80,6 +96,85 @@ public class LocalizationServlet extends ServletBase {
     }
   }
 
+  /**
+   * Tells whether an <tt>Accept-Encoding</tt> header allows a gzip response. An explicit <tt>gzip</tt> entry wins over
+   * <tt>*</tt>, and either one is refused with <tt>q=0</tt>.
+   */
+  static boolean acceptsGzip( String acceptEncoding ) {
+    if ( acceptEncoding == null ) {
+      return false;
+    }
+    Float gzipQuality = null;
+    Float anyQuality = null;
+    for ( String coding : acceptEncoding.split( "," ) ) { //$NON-NLS-1$
+      String[] parts = coding.split( ";" ); //$NON-NLS-1$
+      String name = parts[0].trim().toLowerCase( Locale.ROOT );
+      float quality = 1f;
+      for ( int i = 1; i < parts.length; i++ ) {
+        String param = parts[i].trim();
+        if ( param.startsWith( "q=" ) || param.startsWith( "Q=" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+          try {
+            quality = Float.parseFloat( param.substring( 2 ).trim() );
+          } catch ( NumberFormatException e ) {
+            quality = 0f;
+          }
+        }
+      }
+      if ( "gzip".equals( name ) || "x-gzip".equals( name ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+        gzipQuality = quality;
+      } else if ( "*".equals( name ) ) { //$NON-NLS-1$
+        anyQuality = quality;
+      }
+    }
+    if ( gzipQuality != null ) {
+      return gzipQuality > 0f;
+    }
+    return anyQuality != null && anyQuality > 0f;
+  }
+
+  /**
+   * Tells whether an <tt>If-None-Match</tt> header, a list of entity tags or <tt>*</tt>, matches the given ETag.
+   * Comparison is weak, as required for <tt>If-None-Match</tt>.
+   */
+  static boolean matchesETag( String ifNoneMatch, String eTag ) {
+    if ( ifNoneMatch == null ) {
+      return false;
+    }
+    for ( String candidate : ifNoneMatch.split( "," ) ) { //$NON-NLS-1$
+      candidate = candidate.trim();
+      if ( "*".equals( candidate ) ) { //$NON-NLS-1$
+        return true;
+      }
+      if ( candidate.startsWith( "W/" ) ) { //$NON-NLS-1$
+        candidate = candidate.substring( 2 );
+      }
+      if ( candidate.equals( eTag ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the serialized bundle from the shared {@link LocalizationBundleStore}, building it on a miss. Bundles of
+   * plugins that have message caching disabled are rebuilt on every request.
+   */
+  LocalizationBundleStore.Entry getBundleEntry( String pluginId, String name, Locale locale ) throws IOException {
+    LocalizationBundleStore store = LocalizationBundleStore.getInstance();
+    LocalizationBundleStore.Entry entry = store.get( pluginId, name, locale );
+    if ( entry != null ) {
+      return entry;
+    }
+    IPluginManager pm = PentahoSystem.get( IPluginManager.class );
+    store.bind( pm );
+    long generation = store.getGeneration();
+    entry = new LocalizationBundleStore.Entry( getJSONBundle( pluginId, name ), LocaleHelper.getSystemEncoding() );
+    if ( isMessageCachingEnabled( pm, pluginId ) ) {
+      store.put( pluginId, name, locale, entry, generation );
+    }
+    return entry;
+  }
+
   /**
    * Retrieve a {@link java.util.ResourceBundle} from a plugin.
    * 
@@ -44,6 +44,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.Iterator;
 import java.util.List;
 
@@ -61,6 +62,32 @@ public class PluggableUploadFileServlet extends HttpServlet implements Servlet {
       }
 
       response.setContentType( "text/plain" ); //$NON-NLS-1$
+      if ( ChunkedUploadRequests.isBegin( request ) ) {
+        // refuse a file the target folder has no room for before any of it is staged
+        long totalSize = ChunkedUploadRequests.getTotalSize( request );
+        if ( totalSize > 0
+            && totalSize + getFolderSize( getTargetDir( uploaderPlugin ) ) > uploaderPlugin.getMaxFolderSize() ) {
+          response.getWriter().write(
+              Messages.getInstance().getErrorString( "PluggableUploadFileServlet.ERROR_0004_FOLDER_SIZE_LIMIT_REACHED" ) ); //$NON-NLS-1$
+          return;
+        }
+        ChunkedUploadRequests.begin( request, response, uploaderPlugin.getMaxFileSize() );
+        return;
+      }
+
+      if ( ChunkedUploadRequests.isCompletion( request ) ) {
+        ChunkedUploadStore.Upload upload = ChunkedUploadRequests.complete( request, response );
+        if ( upload != null ) {
+          try {
+            store( uploaderPlugin, upload.getFile(), response );
+          } finally {
+            // unlike a multipart upload the staged file is not cleaned up by the container
+            upload.getFile().delete();
+          }
+        }
+        return;
+      }
+
       FileItem uploadItem = getFileItem( request, uploaderPlugin.getMaxFileSize() );
       if ( uploadItem == null ) {
         response.getWriter().write(
@@ -114,6 +141,68 @@ public class PluggableUploadFileServlet extends HttpServlet implements Servlet {
     }
   }
 
+  /**
+   * Appends a chunk to a chunked upload, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doPut( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
+    IOException {
+    ChunkedUploadRequests.append( request, response );
+  }
+
+  /**
+   * Answers how much of a chunked upload has been received, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
+    IOException {
+    ChunkedUploadRequests.getOffset( request, response );
+  }
+
+  /**
+   * Discards a chunked upload, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doDelete( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
+    IOException {
+    ChunkedUploadRequests.abort( request, response );
+  }
+
+  /**
+   * Moves the staged file of a completed chunked upload into the target folder of the uploader.
+   */
+  private void store( IUploadFileServletPlugin uploaderPlugin, File stagedFile, HttpServletResponse response )
+    throws IOException {
+    File pathDir = getTargetDir( uploaderPlugin );
+
+    // checked again, the folder may have grown while the chunks were sent
+    if ( stagedFile.length() + getFolderSize( pathDir ) > uploaderPlugin.getMaxFolderSize() ) {
+      response.getWriter().write(
+          Messages.getInstance().getErrorString( "PluggableUploadFileServlet.ERROR_0004_FOLDER_SIZE_LIMIT_REACHED" ) ); //$NON-NLS-1$
+      return;
+    }
+
+    File outFile = new File( pathDir, UUIDUtil.getUUID().toString() + uploaderPlugin.getFileExtension() );
+    if ( doesFileExists( outFile ) ) {
+      response.getWriter().write(
+          Messages.getInstance().getErrorString( "PluggableUploadFileServlet.ERROR_0002_FILE_ALREADY_EXIST" ) ); //$NON-NLS-1$
+      return;
+    }
+
+    // a rename when the staging and target folders share a file system, a single copy otherwise
+    Files.move( stagedFile.toPath(), outFile.toPath() );
+    uploaderPlugin.onSuccess( outFile.getAbsolutePath(), response );
+  }
+
+  private File getTargetDir( IUploadFileServletPlugin uploaderPlugin ) {
+    File pathDir =
+        new File( PentahoSystem.getApplicationContext().getSolutionPath( uploaderPlugin.getTargetFolder() ) );
+    if ( !pathDir.exists() ) {
+      pathDir.mkdirs();
+    }
+    return pathDir;
+  }
+
   protected IUploadFileServletPlugin getUploaderBean( String uploaderBeanId, HttpServletResponse response )
     throws PluginBeanException, IOException {
     if ( StringUtils.isEmpty( uploaderBeanId ) ) {
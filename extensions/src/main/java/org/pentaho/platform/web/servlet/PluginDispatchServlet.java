@@ -68,11 +68,13 @@ public class PluginDispatchServlet implements Servlet {
 
   private ServletConfig servletConfig;
 
-  private boolean initialized = false;
-
   private IPluginManager pluginManager = PentahoSystem.get( IPluginManager.class );
 
-  private Map<String, Servlet> pluginServletMap = new HashMap<String, Servlet>();
+  /**
+   * Immutable dispatch table; replaced as a whole on plugin reload so requests never observe a partial rebuild.
+   * {@code null} until the first initialization.
+   */
+  private volatile PluginServletTrie servletTrie;
 
   private static final String WEBSOCKET_PLUGIN_PATH_PREFIX = "websocket";
 
@@ -81,13 +83,16 @@ public class PluginDispatchServlet implements Servlet {
   }
 
   public void destroy() {
-    for ( Map.Entry<String, Servlet> pluginServlet : pluginServletMap.entrySet() ) {
-      pluginServlet.getValue().destroy();
+    PluginServletTrie trie = servletTrie;
+    if ( trie != null ) {
+      for ( PluginServletTrie.Target target : trie.getTargets() ) {
+        target.getServlet().destroy();
+      }
     }
   }
 
   public void service( final ServletRequest req, final ServletResponse res ) throws ServletException, IOException {
-    if ( !initialized ) {
+    if ( servletTrie == null ) {
       doInit();
     }
     if ( !( req instanceof HttpServletRequest ) ) {
@@ -98,19 +103,31 @@ public class PluginDispatchServlet implements Servlet {
     HttpServletRequest request = (HttpServletRequest) req;
     HttpServletResponse response = (HttpServletResponse) res;
 
-    Servlet pluginServlet = getTargetServlet( request, response );
+    PluginServletTrie.Target target = getTarget( request );
 
-    if ( pluginServlet == null ) {
+    if ( target == null ) {
       response.sendError( 404 );
       // FIXME: log more detail here for debugging
       return;
     }
 
-    pluginServlet.service( req, res );
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      target.getServlet().service( req, res );
+      failed = false;
+    } finally {
+      target.getStatistics().record( System.nanoTime() - start, failed );
+    }
   }
 
   protected Servlet getTargetServlet( HttpServletRequest request, HttpServletResponse response )
     throws ServletException {
+    PluginServletTrie.Target target = getTarget( request );
+    return target == null ? null : target.getServlet();
+  }
+
+  private PluginServletTrie.Target getTarget( HttpServletRequest request ) {
     String dispatchKey = getDispatchKey( request );
 
     if ( StringUtils.isEmpty( dispatchKey ) ) {
@@ -121,30 +138,19 @@ public class PluginDispatchServlet implements Servlet {
       return null;
     }
 
-    Servlet targetServlet = null;
-    String checkPath = dispatchKey;
-    do {
-      logger.debug(
-        "checking for servlet registered to service request for \"" + checkPath + "\"" ); //$NON-NLS-1$//$NON-NLS-2$
-      targetServlet = pluginServletMap.get( checkPath );
-      if ( targetServlet != null ) {
-        logger.debug( "servlet " + targetServlet.getClass().getName() + " will service request for \"" + dispatchKey
-          //$NON-NLS-1$//$NON-NLS-2$
-          + "\"" ); //$NON-NLS-1$
-        return targetServlet;
-      }
-      if ( checkPath.contains( "/" ) ) { //$NON-NLS-1$
-        checkPath = checkPath.substring( 0, checkPath.lastIndexOf( "/" ) ); //$NON-NLS-1$
+    PluginServletTrie trie = servletTrie;
+    PluginServletTrie.Target target = trie == null ? null : trie.match( dispatchKey );
+
+    if ( logger.isDebugEnabled() ) {
+      if ( target != null ) {
+        logger.debug( "servlet " + target.getServlet().getClass().getName() + " registered to \"" //$NON-NLS-1$//$NON-NLS-2$
+          + target.getContext() + "\" will service request for \"" + dispatchKey + "\"" ); //$NON-NLS-1$//$NON-NLS-2$
       } else {
-        checkPath = null;
+        logger
+          .debug( "no servlet registered to service request for \"" + dispatchKey + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
       }
-    } while ( checkPath != null );
-
-    if ( targetServlet == null ) {
-      logger
-        .debug( "no servlet registered to service request for \"" + dispatchKey + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
     }
-    return targetServlet;
+    return target;
   }
 
   /**
@@ -171,8 +177,8 @@ public class PluginDispatchServlet implements Servlet {
     pluginManager.addPluginManagerListener( new IPluginManagerListener() {
       @Override public void onReload() {
         try {
-          initialized = false;
-          doInit();
+          // requests keep being served by the current trie until the new one is published
+          rebuild();
         } catch ( ServletException e ) {
           logger.error( e );
         }
@@ -181,17 +187,20 @@ public class PluginDispatchServlet implements Servlet {
     doInit();
   }
 
-  @SuppressWarnings( "unchecked" )
-  /** Restore the caching once the Plugin Type Tracking system is in place, for now we'll look-up every time **/
   private synchronized void doInit() throws ServletException {
+    if ( servletTrie != null ) {
+      return;
+    }
+    rebuild();
+  }
+
+  /** Restore the caching once the Plugin Type Tracking system is in place, for now we'll look-up every time **/
+  private synchronized void rebuild() throws ServletException {
     if ( logger.isDebugEnabled() ) {
       logger.debug( "PluginDispatchServlet.init" ); //$NON-NLS-1$
     }
 
-    if ( initialized ) {
-      return;
-    }
-    pluginServletMap.clear();
+    PluginServletTrie.Builder trieBuilder = new PluginServletTrie.Builder();
 
     Map<String, ListableBeanFactory> pluginBeanFactoryMap = getPluginBeanFactories();
 
@@ -213,7 +222,7 @@ public class PluginDispatchServlet implements Servlet {
         String pluginId = pluginBeanFactoryEntry.getKey();
         String context = pluginId + "/" + servletId; //$NON-NLS-1$
 
-        pluginServletMap.put( context, pluginServlet );
+        trieBuilder.add( pluginId, servletId, pluginServlet );
         if ( logger.isDebugEnabled() ) {
           logger
             .debug( "calling init on servlet " + pluginServlet.getClass().getName() + " serving context "
@@ -230,10 +239,16 @@ public class PluginDispatchServlet implements Servlet {
       configurePluginWebsockets( pluginBeanFactoryEntry );
     }
 
-    // Set initialized to true at the end of the synchronized method, so
-    // that invocations of service() before this method has completed will not
-    // cause NullPointerException
-    initialized = true;
+    // Publish the new dispatch table only once every servlet has been initialized, so that
+    // invocations of service() never see a partially built table
+    servletTrie = trieBuilder.build();
+  }
+
+  /**
+   * @return request counters and latency histograms of the plugins served by this dispatcher
+   */
+  public Map<String, PluginDispatchStatistics> getPluginStatistics() {
+    return PluginDispatchStatistics.getAll();
   }
 
   public ServletConfig getServletConfig() {
@@ -0,0 +1,132 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and a latency histogram for the servlets of one plugin, as dispatched by
+ * {@link PluginDispatchServlet}. Statistics survive plugin reloads.
+ */
+public class PluginDispatchStatistics {
+
+  /**
+   * Upper bounds, in milliseconds, of the latency histogram buckets. The last bucket is unbounded.
+   */
+  private static final long[] BUCKET_BOUNDS_MS = { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+  private static final ConcurrentMap<String, PluginDispatchStatistics> registry =
+      new ConcurrentHashMap<String, PluginDispatchStatistics>();
+
+  private final String pluginId;
+
+  private final LongAdder requests = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  private final LongAdder[] buckets = new LongAdder[ BUCKET_BOUNDS_MS.length + 1 ];
+
+  PluginDispatchStatistics( final String pluginId ) {
+    this.pluginId = pluginId;
+    for ( int i = 0; i < buckets.length; i++ ) {
+      buckets[ i ] = new LongAdder();
+    }
+  }
+
+  /**
+   * @return the statistics for the given plugin, created on first use
+   */
+  public static PluginDispatchStatistics forPlugin( final String pluginId ) {
+    PluginDispatchStatistics statistics = registry.get( pluginId );
+    if ( statistics == null ) {
+      statistics = new PluginDispatchStatistics( pluginId );
+      PluginDispatchStatistics existing = registry.putIfAbsent( pluginId, statistics );
+      if ( existing != null ) {
+        statistics = existing;
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * @return statistics of every plugin that has had servlets registered, sorted by plugin id
+   */
+  public static Map<String, PluginDispatchStatistics> getAll() {
+    return Collections.unmodifiableMap( new TreeMap<String, PluginDispatchStatistics>( registry ) );
+  }
+
+  /**
+   * Records one dispatched request.
+   *
+   * @param elapsedNanos time spent in the plugin servlet
+   * @param failed       whether the plugin servlet threw
+   */
+  void record( final long elapsedNanos, final boolean failed ) {
+    requests.increment();
+    if ( failed ) {
+      errors.increment();
+    }
+    totalNanos.add( elapsedNanos );
+    long millis = TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+    int bucket = 0;
+    while ( bucket < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[ bucket ] ) {
+      bucket++;
+    }
+    buckets[ bucket ].increment();
+  }
+
+  public String getPluginId() {
+    return pluginId;
+  }
+
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  public long getTotalTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( totalNanos.sum() );
+  }
+
+  /**
+   * @return the latency histogram keyed by bucket upper bound in milliseconds; {@link Long#MAX_VALUE} is the
+   * overflow bucket
+   */
+  public Map<Long, Long> getLatencyHistogram() {
+    Map<Long, Long> histogram = new TreeMap<Long, Long>();
+    for ( int i = 0; i < buckets.length; i++ ) {
+      long bound = i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[ i ] : Long.MAX_VALUE;
+      histogram.put( bound, buckets[ i ].sum() );
+    }
+    return histogram;
+  }
+}
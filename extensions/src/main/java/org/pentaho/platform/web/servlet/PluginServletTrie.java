@@ -0,0 +1,224 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.Servlet;
+
+/**
+ * Immutable path-segment trie of plugin servlets, keyed by {@code pluginId/servletId} contexts. {@link #match(String)}
+ * finds the servlet registered to the longest {@code /}-delimited prefix of a dispatch key without allocating.
+ * Instances are built once per plugin (re)load and published by replacing the reference.
+ */
+final class PluginServletTrie {
+
+  /**
+   * A registered servlet together with its owning plugin.
+   */
+  static final class Target {
+    private final String pluginId;
+    private final String context;
+    private final Servlet servlet;
+    private final PluginDispatchStatistics statistics;
+
+    Target( final String pluginId, final String context, final Servlet servlet ) {
+      this.pluginId = pluginId;
+      this.context = context;
+      this.servlet = servlet;
+      this.statistics = PluginDispatchStatistics.forPlugin( pluginId );
+    }
+
+    String getPluginId() {
+      return pluginId;
+    }
+
+    String getContext() {
+      return context;
+    }
+
+    Servlet getServlet() {
+      return servlet;
+    }
+
+    PluginDispatchStatistics getStatistics() {
+      return statistics;
+    }
+  }
+
+  private static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[ 0 ];
+    private static final String[] NO_SEGMENTS = new String[ 0 ];
+
+    /** sorted by {@link String#compareTo(String)} */
+    private final String[] segments;
+    private final Node[] children;
+    private final Target target;
+
+    private Node( final String[] segments, final Node[] children, final Target target ) {
+      this.segments = segments;
+      this.children = children;
+      this.target = target;
+    }
+
+    private Node child( final String path, final int start, final int end ) {
+      int low = 0;
+      int high = segments.length - 1;
+      while ( low <= high ) {
+        int mid = ( low + high ) >>> 1;
+        int cmp = compare( segments[ mid ], path, start, end );
+        if ( cmp < 0 ) {
+          low = mid + 1;
+        } else if ( cmp > 0 ) {
+          high = mid - 1;
+        } else {
+          return children[ mid ];
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Same ordering as {@link String#compareTo(String)} against {@code path.substring( start, end )}.
+     */
+    private static int compare( final String segment, final String path, final int start, final int end ) {
+      int length = end - start;
+      int min = Math.min( segment.length(), length );
+      for ( int i = 0; i < min; i++ ) {
+        char a = segment.charAt( i );
+        char b = path.charAt( start + i );
+        if ( a != b ) {
+          return a - b;
+        }
+      }
+      return segment.length() - length;
+    }
+  }
+
+  private final Node root;
+
+  private final List<Target> targets;
+
+  private PluginServletTrie( final Node root, final List<Target> targets ) {
+    this.root = root;
+    this.targets = targets;
+  }
+
+  /**
+   * @param dispatchKey e.g. {@code myPlugin/myServlet/some/path}
+   * @return the target registered to the longest matching prefix, or {@code null}
+   */
+  Target match( final String dispatchKey ) {
+    Node node = root;
+    Target best = null;
+    int length = dispatchKey.length();
+    int start = 0;
+    while ( true ) {
+      int end = dispatchKey.indexOf( '/', start );
+      if ( end < 0 ) {
+        end = length;
+      }
+      node = node.child( dispatchKey, start, end );
+      if ( node == null ) {
+        return best;
+      }
+      if ( node.target != null ) {
+        best = node.target;
+      }
+      if ( end == length ) {
+        return best;
+      }
+      start = end + 1;
+    }
+  }
+
+  /**
+   * @return every registered target
+   */
+  List<Target> getTargets() {
+    return targets;
+  }
+
+  static final class Builder {
+
+    private final BuilderNode root = new BuilderNode();
+
+    private final List<Target> targets = new ArrayList<Target>();
+
+    /**
+     * Registers a servlet; a later registration for the same context replaces an earlier one.
+     */
+    Builder add( final String pluginId, final String servletId, final Servlet servlet ) {
+      String context = pluginId + "/" + servletId; //$NON-NLS-1$
+      BuilderNode node = root;
+      int start = 0;
+      while ( true ) {
+        int end = context.indexOf( '/', start );
+        String segment = end < 0 ? context.substring( start ) : context.substring( start, end );
+        BuilderNode child = node.children.get( segment );
+        if ( child == null ) {
+          child = new BuilderNode();
+          node.children.put( segment, child );
+        }
+        node = child;
+        if ( end < 0 ) {
+          break;
+        }
+        start = end + 1;
+      }
+      Target target = new Target( pluginId, context, servlet );
+      if ( node.target != null ) {
+        targets.remove( node.target );
+      }
+      node.target = target;
+      targets.add( target );
+      return this;
+    }
+
+    PluginServletTrie build() {
+      return new PluginServletTrie( root.freeze(), Collections.unmodifiableList( new ArrayList<Target>( targets ) ) );
+    }
+  }
+
+  private static final class BuilderNode {
+    private final Map<String, BuilderNode> children = new TreeMap<String, BuilderNode>();
+    private Target target;
+
+    private Node freeze() {
+      if ( children.isEmpty() ) {
+        return new Node( Node.NO_SEGMENTS, Node.NO_CHILDREN, target );
+      }
+      String[] segments = new String[ children.size() ];
+      Node[] frozen = new Node[ children.size() ];
+      int i = 0;
+      for ( Map.Entry<String, BuilderNode> entry : children.entrySet() ) {
+        segments[ i ] = entry.getKey();
+        frozen[ i ] = entry.getValue().freeze();
+        i++;
+      }
+      return new Node( segments, frozen, target );
+    }
+  }
+}
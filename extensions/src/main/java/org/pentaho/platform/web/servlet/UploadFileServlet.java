@@ -51,7 +51,21 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
 
       response.setContentType( "text/plain" );
 
-      Part uploadPart = request.getPart( "uploadFormElement" );
+      if ( ChunkedUploadRequests.isBegin( request ) ) {
+        ChunkedUploadRequests.begin( request, response, new UploadFileUtils( session ).getMaxFileSize() );
+        return;
+      }
+
+      Part uploadPart;
+      if ( ChunkedUploadRequests.isCompletion( request ) ) {
+        ChunkedUploadStore.Upload upload = ChunkedUploadRequests.complete( request, response );
+        if ( upload == null ) {
+          return;
+        }
+        uploadPart = ChunkedUploadRequests.toPart( upload );
+      } else {
+        uploadPart = request.getPart( "uploadFormElement" );
+      }
       if ( uploadPart == null ) {
         String error = Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0001_NO_FILE_TO_UPLOAD" );
         response.getWriter().write( error );
@@ -84,8 +98,15 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
       utils.setWriter( response.getWriter() );
       utils.setUploadedPart( uploadPart );
 
-      // Do nothing with success value - the output should already have been written to the servlet response.
-      utils.process();
+      try {
+        // Do nothing with success value - the output should already have been written to the servlet response.
+        utils.process();
+      } finally {
+        if ( ChunkedUploadRequests.isCompletion( request ) ) {
+          // unlike a multipart upload the staged file is not cleaned up by the container
+          uploadPart.delete();
+        }
+      }
 
     } catch ( FileNotFoundException e ) {
       response.getWriter().write( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0013_NO_SUCH_FILE_OR_DIRECTORY" ) );
@@ -97,6 +118,47 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
     }
   }
 
+  /**
+   * Appends a chunk to a chunked upload, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doPut( HttpServletRequest request, HttpServletResponse response )
+    throws ServletException, IOException {
+    if ( isAuthorized( response ) ) {
+      ChunkedUploadRequests.append( request, response );
+    }
+  }
+
+  /**
+   * Answers how much of a chunked upload has been received, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doGet( HttpServletRequest request, HttpServletResponse response )
+    throws ServletException, IOException {
+    if ( isAuthorized( response ) ) {
+      ChunkedUploadRequests.getOffset( request, response );
+    }
+  }
+
+  /**
+   * Discards a chunked upload, see {@link ChunkedUploadRequests}.
+   */
+  @Override
+  protected void doDelete( HttpServletRequest request, HttpServletResponse response )
+    throws ServletException, IOException {
+    if ( isAuthorized( response ) ) {
+      ChunkedUploadRequests.abort( request, response );
+    }
+  }
+
+  private boolean isAuthorized( HttpServletResponse response ) throws IOException {
+    if ( !hasManageDataAccessPermission( PentahoSessionHolder.getSession() ) ) {
+      response.sendError( 403, Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0009_UNAUTHORIZED" ) );
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Returns true if the current user has Manage Data Source Security. Otherwise returns false.
    *
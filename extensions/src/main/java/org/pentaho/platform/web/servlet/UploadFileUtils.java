@@ -635,6 +635,10 @@ public class UploadFileUtils {
     this.fileName = value;
   }
 
+  public long getMaxFileSize() {
+    return maxFileSize;
+  }
+
   public boolean isShouldUnzip() {
     return shouldUnzip;
   }
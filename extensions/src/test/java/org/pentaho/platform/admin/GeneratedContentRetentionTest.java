@@ -0,0 +1,249 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.admin;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GeneratedContentRetentionTest {
+
+  private static final long DAY = 86400000L;
+
+  private IUnifiedRepository repository;
+
+  private GeneratedContentRetention retention;
+
+  private final Map<Serializable, Map<String, Serializable>> metadata = new HashMap<>();
+
+  private final List<Serializable> deleted = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    repository = mock( IUnifiedRepository.class );
+    retention = new GeneratedContentRetention();
+    retention.setRootFolderPath( "/" );
+    when( repository.getFile( "/" ) ).thenReturn( folder( "root", "/" ) );
+    when( repository.getFileMetadataInBatch( anyList() ) ).thenAnswer( invocation -> {
+      List<Map<String, Serializable>> result = new ArrayList<>();
+      for ( Object file : (List<?>) invocation.getArgument( 0 ) ) {
+        Map<String, Serializable> values = metadata.get( ( (RepositoryFile) file ).getId() );
+        result.add( values != null ? values : Collections.emptyMap() );
+      }
+      return result;
+    } );
+    when( repository.permanentlyDeleteFiles( anyList(), anyString() ) ).thenAnswer( invocation -> {
+      List<?> ids = invocation.getArgument( 0 );
+      for ( Object id : ids ) {
+        deleted.add( (Serializable) id );
+      }
+      return ids.size();
+    } );
+  }
+
+  @Test
+  public void testKeepsLastOutputsOfEachSchedule() {
+    children( "root", folder( "home", "/home" ) );
+    children( "home",
+      output( "a1", "/home/a1.pdf", "scheduleA", 3, 100 ),
+      output( "a2", "/home/a2.pdf", "scheduleA", 2, 100 ),
+      output( "a3", "/home/a3.pdf", "scheduleA", 1, 100 ),
+      output( "b1", "/home/b1.pdf", "scheduleB", 3, 100 ),
+      file( "manual", "/home/manual.pdf", 10 ) );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( "/home", null, 1, 0, 0 ) ) );
+
+    assertTrue( retention.run( repository ) );
+
+    assertEquals( Arrays.asList( "a1", "a2" ), sorted( deleted ) );
+    assertEquals( GeneratedContentRetention.State.COMPLETED, retention.getState() );
+    assertEquals( 2, retention.getDeletedFiles() );
+    assertEquals( 200, retention.getReclaimedBytes() );
+    assertEquals( 2, retention.getScannedFolders() );
+    assertEquals( 5, retention.getScannedFiles() );
+  }
+
+  @Test
+  public void testSchedulePolicyWinsOverFolderPolicy() {
+    children( "root",
+      output( "a1", "/a1.pdf", "scheduleA", 3, 100 ),
+      output( "a2", "/a2.pdf", "scheduleA", 2, 100 ),
+      output( "b1", "/b1.pdf", "scheduleB", 3, 100 ),
+      output( "b2", "/b2.pdf", "scheduleB", 2, 100 ) );
+    retention.setPolicies( Arrays.asList( new RetentionPolicy( "/", null, 1, 0, 0 ),
+      new RetentionPolicy( null, "scheduleB", 5, 0, 0 ) ) );
+
+    retention.run( repository );
+
+    assertEquals( Collections.singletonList( "a1" ), deleted );
+  }
+
+  @Test
+  public void testContentWithoutPolicyIsKept() {
+    children( "root", output( "a1", "/public/a1.pdf", "scheduleA", 300, 100 ) );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( "/home", null, 0, DAY, 0 ) ) );
+
+    assertTrue( retention.run( repository ) );
+
+    verify( repository, never() ).permanentlyDeleteFiles( anyList(), anyString() );
+  }
+
+  @Test
+  public void testHiddenCompanionsAreOnlyRemovedByAge() {
+    children( "root",
+      output( "a1", "/a1.html", "scheduleA", 2, 100 ),
+      output( "a2", "/a2.html", "scheduleA", 1, 100 ),
+      hidden( output( "a1.png", "/a1.png", "scheduleA", 30, 10 ) ),
+      hidden( output( "a2.png", "/a2.png", "scheduleA", 1, 10 ) ) );
+    RetentionPolicy policy = new RetentionPolicy( null, null, 1, 0, 0 );
+    policy.setMaxAgeDays( 10 );
+    retention.setPolicies( Collections.singletonList( policy ) );
+
+    retention.run( repository );
+
+    assertEquals( Arrays.asList( "a1", "a1.png" ), sorted( deleted ) );
+  }
+
+  @Test
+  public void testDeletesInBatches() {
+    List<RepositoryFile> outputs = new ArrayList<>();
+    for ( int i = 0; i < 5; i++ ) {
+      outputs.add( output( "f" + i, "/f" + i + ".pdf", "scheduleA", 20 + i, 10 ) );
+    }
+    children( "root", outputs.toArray( new RepositoryFile[ 0 ] ) );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( null, null, 0, DAY, 0 ) ) );
+    retention.setBatchSize( 2 );
+
+    retention.run( repository );
+
+    verify( repository, times( 3 ) ).permanentlyDeleteFiles( anyList(), anyString() );
+    assertEquals( 5, deleted.size() );
+    assertEquals( 3, retention.getBatches() );
+  }
+
+  @Test
+  public void testLeavesTrashAlone() {
+    children( "root" );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( null, null, 0, DAY, 0 ) ) );
+
+    assertTrue( retention.run( repository ) );
+
+    // the trash is emptied by TrashPurgeSystemListener
+    verify( repository, never() ).getDeletedFiles( any(), any(), any(), anyInt(), anyInt() );
+    assertTrue( deleted.isEmpty() );
+  }
+
+  @Test
+  public void testPausedRunResumesFromCheckpoint() {
+    children( "root", folder( "first", "/first" ), folder( "second", "/second" ) );
+    doAnswer( invocation -> {
+      retention.pause();
+      return Collections.singletonList( output( "a1", "/first/a1.pdf", "scheduleA", 20, 10 ) );
+    } ).when( repository ).getChildren( "first", null, true );
+    children( "second", output( "b1", "/second/b1.pdf", "scheduleB", 20, 10 ) );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( null, null, 0, DAY, 0 ) ) );
+
+    assertFalse( retention.run( repository ) );
+    assertEquals( GeneratedContentRetention.State.PAUSED, retention.getState() );
+    assertEquals( Collections.singletonList( "a1" ), deleted );
+    assertEquals( 1, retention.getPendingFolders() );
+
+    assertTrue( retention.run( repository ) );
+    assertEquals( Arrays.asList( "a1", "b1" ), deleted );
+    verify( repository, times( 1 ) ).getChildren( "root", null, true );
+  }
+
+  @Test
+  public void testFailedRunStartsOver() {
+    children( "root", folder( "first", "/first" ), folder( "second", "/second" ) );
+    children( "first", output( "a1", "/first/a1.pdf", "scheduleA", 20, 10 ) );
+    children( "second", output( "b1", "/second/b1.pdf", "scheduleB", 20, 10 ) );
+    retention.setPolicies( Collections.singletonList( new RetentionPolicy( null, null, 0, DAY, 0 ) ) );
+    retention.setBatchSize( 1 );
+    when( repository.permanentlyDeleteFiles( anyList(), anyString() ) ).thenThrow( new IllegalStateException() )
+      .thenAnswer( invocation -> {
+        deleted.addAll( invocation.getArgument( 0 ) );
+        return 1;
+      } );
+
+    assertFalse( retention.run( repository ) );
+    assertEquals( GeneratedContentRetention.State.FAILED, retention.getState() );
+    assertEquals( 0, retention.getPendingFolders() );
+
+    assertTrue( retention.run( repository ) );
+    assertEquals( Arrays.asList( "a1", "b1" ), deleted );
+    verify( repository, times( 2 ) ).getChildren( "root", null, true );
+  }
+
+  private void children( String folderId, RepositoryFile... children ) {
+    when( repository.getChildren( folderId, null, true ) ).thenReturn( Arrays.asList( children ) );
+  }
+
+  private RepositoryFile output( String id, String path, String lineageId, int ageDays, long size ) {
+    Map<String, Serializable> values = new HashMap<>();
+    values.put( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID, lineageId );
+    metadata.put( id, values );
+    return new RepositoryFile.Builder( id, id ).path( path ).fileSize( size )
+      .createdDate( new Date( System.currentTimeMillis() - ageDays * DAY ) ).build();
+  }
+
+  private static RepositoryFile hidden( RepositoryFile file ) {
+    return new RepositoryFile.Builder( file ).hidden( true ).build();
+  }
+
+  private static RepositoryFile file( String id, String path, long size ) {
+    return new RepositoryFile.Builder( id, id ).path( path ).fileSize( size ).createdDate( new Date( 0 ) ).build();
+  }
+
+  private static RepositoryFile folder( String id, String path ) {
+    return new RepositoryFile.Builder( id, id ).path( path ).folder( true ).build();
+  }
+
+  private static List<Serializable> sorted( List<Serializable> ids ) {
+    List<Serializable> sorted = new ArrayList<>( ids );
+    sorted.sort( null );
+    return sorted;
+  }
+}
@@ -0,0 +1,106 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.admin;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetentionPolicyTest {
+
+  private static final long NOW = 1000000000L;
+
+  @Test
+  public void testAppliesTo() {
+    RetentionPolicy folder = new RetentionPolicy( "/home/suzy", null, 1, 0, 0 );
+    assertTrue( folder.appliesTo( "/home/suzy", "lineage" ) );
+    assertTrue( folder.appliesTo( "/home/suzy/reports", null ) );
+    assertFalse( folder.appliesTo( "/home/suzyq", "lineage" ) );
+
+    RetentionPolicy schedule = new RetentionPolicy( null, "lineage", 1, 0, 0 );
+    assertTrue( schedule.appliesTo( "/public", "lineage" ) );
+    assertFalse( schedule.appliesTo( "/public", "other" ) );
+  }
+
+  @Test
+  public void testKeepLast() {
+    RepositoryFile oldest = file( "1", 10, 3000 );
+    RepositoryFile older = file( "2", 10, 2000 );
+    RepositoryFile newest = file( "3", 10, 1000 );
+
+    List<RepositoryFile> expired =
+      new RetentionPolicy( null, null, 2, 0, 0 ).select( Arrays.asList( newest, oldest, older ), NOW );
+
+    assertEquals( Arrays.asList( oldest ), expired );
+  }
+
+  @Test
+  public void testMaxAge() {
+    RepositoryFile old = file( "1", 10, 5000 );
+    RepositoryFile recent = file( "2", 10, 1000 );
+
+    List<RepositoryFile> expired = new RetentionPolicy( null, null, 0, 2000, 0 ).select( Arrays.asList( old, recent ),
+      NOW );
+
+    assertEquals( Arrays.asList( old ), expired );
+  }
+
+  @Test
+  public void testMaxBytesRemovesEverythingOlderOnceReached() {
+    RepositoryFile newest = file( "1", 40, 1000 );
+    RepositoryFile large = file( "2", 80, 2000 );
+    RepositoryFile small = file( "3", 10, 3000 );
+
+    List<RepositoryFile> expired =
+      new RetentionPolicy( null, null, 0, 0, 100 ).select( Arrays.asList( small, large, newest ), NOW );
+
+    assertEquals( Arrays.asList( large, small ), expired );
+  }
+
+  @Test
+  public void testFilesOfUnknownAgeAreSkipped() {
+    RepositoryFile undated = new RepositoryFile.Builder( "1", "1.html" ).fileSize( 10L ).build();
+    RepositoryFile recent = file( "2", 10, 1000 );
+
+    assertTrue( new RetentionPolicy( null, null, 0, 2000, 0 ).select( Arrays.asList( undated, recent ), NOW )
+      .isEmpty() );
+    // nor does it take the place of a dated output
+    assertTrue( new RetentionPolicy( null, null, 1, 0, 0 ).select( Arrays.asList( undated, recent ), NOW )
+      .isEmpty() );
+  }
+
+  @Test
+  public void testNoLimitsKeepsEverything() {
+    assertTrue( new RetentionPolicy().select( Arrays.asList( file( "1", 10, 100000 ) ), NOW ).isEmpty() );
+  }
+
+  private static RepositoryFile file( String id, long size, long age ) {
+    return new RepositoryFile.Builder( id, id + ".html" ).fileSize( size ).createdDate( new Date( NOW - age ) )
+      .build();
+  }
+}
@@ -24,6 +24,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.apache.logging.log4j.Level;
@@ -156,6 +158,20 @@ public class ResultSetCompareComponentTest {
     assertEquals( IRuntimeContext.RUNTIME_STATUS_SUCCESS, actualExecuteResult );
   }
 
+  @Test
+  public void executeSuccessful_with_unordered_rows() {
+    ResultSetCompareComponent rscc = createResultSetCompareComponent();
+    IPentahoResultSet rs1 = createResultSet( new String[][] { { FIRST_ROW }, { SECOND_ROW } } );
+    IPentahoResultSet rs2 = createResultSet( new String[][] { { SECOND_ROW }, { FIRST_ROW } } );
+    ResultSetCompareAction resultSetCompareAction = createResultSetCompareAction( rs1, rs2, 0, false, true );
+    rscc.setActionDefinition( resultSetCompareAction );
+    rscc.validate();
+    int actualExecuteResult = rscc.execute();
+    assertEquals( IRuntimeContext.RUNTIME_STATUS_SUCCESS, actualExecuteResult );
+    // the comparison result set is read once rather than once per source row
+    verify( rs2, times( 2 ) ).getValueAt( anyInt(), anyInt() );
+  }
+
   @After
   public void tearDown() {
     LogUtil.setLevel(LogManager.getLogger(), Level.OFF);
@@ -0,0 +1,72 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.datatransforms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+
+public class ResultSetHashIndexTest {
+
+  private static IPentahoResultSet createResultSet( int rows ) {
+    MemoryResultSet rs = new MemoryResultSet( new MemoryMetaData( new String[][] { { "id", "name" } }, null ) );
+    for ( int i = 0; i < rows; i++ ) {
+      rs.addRow( new Object[] { i % 10, "row" + i } );
+    }
+    return rs;
+  }
+
+  @Test
+  public void testContains() {
+    ResultSetHashIndex index = ResultSetHashIndex.build( createResultSet( 25 ), 0 );
+    assertEquals( 10, index.size() );
+    assertTrue( index.contains( 0 ) );
+    assertTrue( index.contains( 9 ) );
+    assertFalse( index.contains( 10 ) );
+    assertFalse( index.contains( "0" ) );
+    assertFalse( index.contains( null ) );
+  }
+
+  @Test
+  public void testReadsEachRowOnce() {
+    IPentahoResultSet rs = spy( createResultSet( 1000 ) );
+    ResultSetHashIndex index = ResultSetHashIndex.build( rs, 1 );
+    assertEquals( 1000, index.size() );
+    assertTrue( index.contains( "row999" ) );
+    verify( rs, times( 1000 ) ).getValueAt( anyInt(), anyInt() );
+  }
+
+  @Test
+  public void testNullValues() {
+    MemoryResultSet rs = new MemoryResultSet( new MemoryMetaData( new String[][] { { "id" } }, null ) );
+    rs.addRow( new Object[] { null } );
+    assertTrue( ResultSetHashIndex.build( rs, 0 ).contains( null ) );
+  }
+}
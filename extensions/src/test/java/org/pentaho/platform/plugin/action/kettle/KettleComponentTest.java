@@ -0,0 +1,95 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.AdditionalAnswers.returnsLastArg;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.dom4j.DocumentHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.platform.api.engine.IActionSequenceResource;
+import org.pentaho.platform.api.engine.IRuntimeContext;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+public class KettleComponentTest {
+
+  private final KettleRepositoryPool pool = KettleRepositoryPool.getInstance();
+
+  @Before
+  public void setUp() {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    when( settings.getSystemSetting( anyString(), anyString(), nullable( String.class ) ) ).then( returnsLastArg() );
+    when( settings.getSystemSetting( anyString(), nullable( String.class ) ) ).then( returnsLastArg() );
+    when( settings.getSystemSetting( "kettle/settings.xml", "repository.type", "files" ) ).thenReturn( "rdbms" );
+    PentahoSystem.setSystemSettingsService( settings );
+    pool.setMaxActive( 2 );
+    pool.setMaxWaitMillis( 0 );
+  }
+
+  @After
+  public void tearDown() {
+    pool.clear();
+    pool.setMaxActive( KettleRepositoryPool.DEFAULT_MAX_ACTIVE );
+    pool.setMaxWaitMillis( KettleRepositoryPool.DEFAULT_MAX_WAIT_MILLIS );
+    PentahoSystem.setSystemSettingsService( null );
+  }
+
+  @Test
+  public void testJobResourceReturnsRepositoryToPool() throws Exception {
+    IActionSequenceResource resource = mock( IActionSequenceResource.class );
+    when( resource.getAddress() ).thenReturn( "/public/missing.kjb" );
+    IRuntimeContext runtimeContext = mock( IRuntimeContext.class );
+    when( runtimeContext.getInputNames() ).thenReturn( Collections.emptySet() );
+    when( runtimeContext.getOutputNames() ).thenReturn( Collections.emptySet() );
+    when( runtimeContext.getResourceNames() ).thenReturn( Collections.singleton( "job-file" ) );
+    when( runtimeContext.getResourceDefintion( "job-file" ) ).thenReturn( resource );
+    when( runtimeContext.getResourceAsString( resource ) ).thenReturn( "<job/>" );
+
+    long opened = pool.getOpenedCount();
+    int runs = pool.getMaxActive() + 1;
+    for ( int run = 0; run < runs; run++ ) {
+      KettleComponent component = spy( new KettleComponent() );
+      component.setRuntimeContext( runtimeContext );
+      component.setComponentDefinition( DocumentHelper.createElement( "component-definition" ) );
+      // a repository that is not connected, so the job is read from the resource
+      doReturn( mock( Repository.class ) ).when( component ).openRepository();
+
+      // the job file does not exist
+      assertFalse( component.executeAction() );
+      assertEquals( 0, pool.getActiveCount() );
+    }
+    // one repository borrowed per run
+    assertEquals( opened + runs, pool.getOpenedCount() );
+  }
+}
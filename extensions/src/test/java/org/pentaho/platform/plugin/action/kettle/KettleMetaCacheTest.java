@@ -0,0 +1,148 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+package org.pentaho.platform.plugin.action.kettle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.resource.ResourceEntry;
+import org.pentaho.di.resource.ResourceReference;
+import org.pentaho.di.trans.TransMeta;
+
+public class KettleMetaCacheTest {
+
+  private static TransMeta loadedTransMeta( final TransMeta template ) {
+    TransMeta loaded = mock( TransMeta.class );
+    when( loaded.clone() ).thenReturn( template );
+    return loaded;
+  }
+
+  @Test
+  public void testLookupReturnsCopies() {
+    KettleMetaCache cache = new KettleMetaCache();
+    TransMeta template = mock( TransMeta.class );
+    TransMeta copy = mock( TransMeta.class );
+    when( template.clone() ).thenReturn( copy );
+
+    assertNull( cache.getTransMeta( "trans:a", "1" ) );
+    cache.putTransMeta( "trans:a", "1", loadedTransMeta( template ) );
+    verify( template ).setRepository( null );
+
+    assertSame( copy, cache.getTransMeta( "trans:a", "1" ) );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  @Test
+  public void testRevisionChangeInvalidates() {
+    KettleMetaCache cache = new KettleMetaCache();
+    TransMeta template = mock( TransMeta.class );
+    cache.putTransMeta( "trans:a", "1", loadedTransMeta( template ) );
+
+    assertNull( cache.getTransMeta( "trans:a", "2" ) );
+    assertEquals( 0, cache.size() );
+    // no revision, no caching
+    cache.putTransMeta( "trans:a", null, loadedTransMeta( template ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testTypesDoNotMix() {
+    KettleMetaCache cache = new KettleMetaCache();
+    JobMeta loaded = mock( JobMeta.class );
+    when( loaded.clone() ).thenReturn( mock( JobMeta.class ) );
+    cache.putJobMeta( "a", "1", loaded );
+
+    assertNull( cache.getTransMeta( "a", "1" ) );
+  }
+
+  @Test
+  public void testSubTransformationChangeInvalidates() {
+    Map<String, String> files = new HashMap<String, String>();
+    files.put( "/etl/sub.ktr", "1:10" );
+    KettleMetaCache cache = new KettleMetaCache() {
+      @Override
+      String getFileRevision( final String path ) {
+        return files.get( path );
+      }
+    };
+    ResourceReference reference = mock( ResourceReference.class );
+    when( reference.getEntries() ).thenReturn( Collections.singletonList(
+        new ResourceEntry( "/etl/sub.ktr", ResourceEntry.ResourceType.ACTIONFILE ) ) );
+    JobMeta template = mock( JobMeta.class );
+    when( template.clone() ).thenReturn( mock( JobMeta.class ) );
+    JobMeta loaded = mock( JobMeta.class );
+    when( loaded.clone() ).thenReturn( template );
+    when( loaded.getResourceDependencies() ).thenReturn( Collections.singletonList( reference ) );
+
+    cache.putJobMeta( "job:a", "1", loaded );
+    assertNotNull( cache.getJobMeta( "job:a", "1" ) );
+
+    files.put( "/etl/sub.ktr", "2:12" );
+    assertNull( cache.getJobMeta( "job:a", "1" ) );
+    assertEquals( 0, cache.size() );
+
+    // a dependency that cannot be read is never cached
+    files.clear();
+    cache.putJobMeta( "job:a", "1", loaded );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testBoundedAndDisabled() {
+    KettleMetaCache cache = new KettleMetaCache();
+    cache.setMaxEntries( 2 );
+    cache.putTransMeta( "a", "1", loadedTransMeta( mock( TransMeta.class ) ) );
+    cache.putTransMeta( "b", "1", loadedTransMeta( mock( TransMeta.class ) ) );
+    cache.putTransMeta( "c", "1", loadedTransMeta( mock( TransMeta.class ) ) );
+    assertEquals( 2, cache.size() );
+    assertEquals( 1, cache.getEvictionCount() );
+
+    cache.setMaxEntries( 0 );
+    assertEquals( 0, cache.size() );
+    cache.putTransMeta( "a", "1", loadedTransMeta( mock( TransMeta.class ) ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testTimings() {
+    KettleMetaCache cache = new KettleMetaCache();
+    cache.recordLoad( 5000000L );
+    cache.recordExecution( 20000000L );
+
+    assertEquals( 1, cache.getLoadCount() );
+    assertEquals( 5, cache.getLoadTimeMillis() );
+    assertEquals( 1, cache.getExecutionCount() );
+    assertEquals( 20, cache.getExecutionTimeMillis() );
+  }
+}
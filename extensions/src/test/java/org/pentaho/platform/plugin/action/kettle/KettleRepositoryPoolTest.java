@@ -0,0 +1,174 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+package org.pentaho.platform.plugin.action.kettle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.pentaho.di.repository.Repository;
+
+public class KettleRepositoryPoolTest {
+
+  private static Repository connected() {
+    Repository repository = mock( Repository.class );
+    when( repository.isConnected() ).thenReturn( true );
+    return repository;
+  }
+
+  @Test
+  public void testReleasedRepositoryIsReused() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    Repository repository = connected();
+
+    assertSame( repository, pool.borrow( "repo", "admin", "pwd", () -> repository ) );
+    pool.release( repository );
+    assertEquals( 1, pool.getIdleCount() );
+
+    Callable<Repository> unexpected = () -> {
+      throw new IllegalStateException();
+    };
+    assertSame( repository, pool.borrow( "repo", "admin", "pwd", unexpected ) );
+    assertEquals( 0, pool.getIdleCount() );
+    assertEquals( 1, pool.getOpenedCount() );
+    assertEquals( 1, pool.getReusedCount() );
+    verify( repository, never() ).disconnect();
+  }
+
+  @Test
+  public void testCredentialsArePartOfTheKey() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    Repository admin = connected();
+    pool.release( pool.borrow( "repo", "admin", "pwd", () -> admin ) );
+
+    Repository other = connected();
+    assertSame( other, pool.borrow( "repo", "suzy", "pwd", () -> other ) );
+    assertNotSame( admin, pool.borrow( "repo", "admin", "other", () -> connected() ) );
+  }
+
+  @Test
+  public void testExcessAndDisconnectedAreClosed() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    pool.setMaxIdle( 1 );
+    Repository first = connected();
+    Repository second = connected();
+    Repository broken = mock( Repository.class );
+    pool.borrow( "repo", "admin", "pwd", () -> first );
+    pool.borrow( "repo", "admin", "pwd", () -> second );
+    pool.borrow( "repo", "admin", "pwd", () -> broken );
+
+    pool.release( first );
+    pool.release( second );
+    pool.release( broken );
+    // releasing twice does not disconnect a pooled repository
+    pool.release( first );
+
+    assertEquals( 1, pool.getIdleCount() );
+    verify( first, never() ).disconnect();
+    verify( second, times( 1 ) ).disconnect();
+    verify( broken, times( 1 ) ).disconnect();
+  }
+
+  @Test
+  public void testActiveConnectionsAreBounded() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    pool.setMaxActive( 1 );
+    pool.setMaxWaitMillis( 0 );
+    Repository repository = connected();
+    pool.borrow( "repo", "admin", "pwd", () -> repository );
+    assertEquals( 1, pool.getActiveCount() );
+
+    try {
+      pool.borrow( "repo", "admin", "pwd", () -> connected() );
+      fail();
+    } catch ( TimeoutException expected ) {
+      // the only connection is still lent out
+    }
+    // other credentials have their own limit
+    pool.release( pool.borrow( "repo", "suzy", "pwd", () -> connected() ) );
+
+    pool.release( repository );
+    assertEquals( 0, pool.getActiveCount() );
+    assertSame( repository, pool.borrow( "repo", "admin", "pwd", () -> connected() ) );
+    assertEquals( 2, pool.getOpenedCount() );
+  }
+
+  @Test
+  public void testBorrowWaitsForRelease() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    pool.setMaxActive( 1 );
+    pool.setMaxWaitMillis( 10000L );
+    Repository repository = connected();
+    pool.borrow( "repo", "admin", "pwd", () -> repository );
+
+    Thread releaser = new Thread( () -> {
+      try {
+        Thread.sleep( 100L );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      pool.release( repository );
+    } );
+    releaser.start();
+    assertSame( repository, pool.borrow( "repo", "admin", "pwd", () -> connected() ) );
+    releaser.join();
+  }
+
+  @Test
+  public void testFailedConnectReturnsSlot() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    pool.setMaxActive( 1 );
+    pool.setMaxWaitMillis( 0 );
+    assertNull( pool.borrow( "repo", "admin", "pwd", () -> null ) );
+    try {
+      pool.borrow( "repo", "admin", "pwd", () -> {
+        throw new IllegalStateException();
+      } );
+      fail();
+    } catch ( IllegalStateException expected ) {
+      // the connector failed
+    }
+    assertEquals( 0, pool.getActiveCount() );
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    KettleRepositoryPool pool = new KettleRepositoryPool();
+    Repository repository = connected();
+    pool.release( pool.borrow( "repo", "admin", "pwd", () -> repository ) );
+
+    pool.clear();
+    assertEquals( 0, pool.getIdleCount() );
+    verify( repository ).disconnect();
+  }
+}
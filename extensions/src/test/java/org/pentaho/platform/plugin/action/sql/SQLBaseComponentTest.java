@@ -0,0 +1,92 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class SQLBaseComponentTest {
+
+  private static final String DATASOURCE = "jndi:SampleData";
+
+  private static final String QUERY = "select * from customers";
+
+  private static final List<Object> PARAMETERS = Collections.<Object>singletonList( "US" );
+
+  @After
+  public void tearDown() {
+    PentahoSessionHolder.removeSession();
+    SecurityContextHolder.clearContext();
+  }
+
+  private static void login( String user, String... roles ) {
+    PentahoSessionHolder.setSession( new StandaloneSession( user ) );
+    List<SimpleGrantedAuthority> authorities = new ArrayList<SimpleGrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( user, "password", authorities ) );
+  }
+
+  @Test
+  public void testUsersDoNotShareQueryCacheEntries() {
+    SQLBaseComponent component = new SQLLookupRule();
+    QueryResultCache cache = new QueryResultCache( true, 60, 1024 * 1024 );
+
+    login( "alice", "Sales" );
+    String aliceKey = component.getQueryCacheKey( DATASOURCE, QUERY, PARAMETERS );
+    assertEquals( aliceKey, component.getQueryCacheKey( DATASOURCE, QUERY, PARAMETERS ) );
+    MemoryMetaData metaData = new MemoryMetaData( new Object[][] { { "NAME" } }, null );
+    metaData.setColumnTypes( new String[] { "string" } );
+    MemoryResultSet aliceRows = new MemoryResultSet( metaData );
+    aliceRows.addRow( new Object[] { "visible to alice" } );
+    cache.put( DATASOURCE, aliceKey, aliceRows );
+
+    login( "bob", "Sales" );
+    String bobKey = component.getQueryCacheKey( DATASOURCE, QUERY, PARAMETERS );
+    assertNotEquals( aliceKey, bobKey );
+    assertNull( cache.get( bobKey ) );
+
+    login( "alice", "Sales", "Admin" );
+    assertNotEquals( aliceKey, component.getQueryCacheKey( DATASOURCE, QUERY, PARAMETERS ) );
+
+    login( "alice", "Sales" );
+    assertNotNull( cache.get( component.getQueryCacheKey( DATASOURCE, QUERY, PARAMETERS ) ) );
+  }
+}
@@ -0,0 +1,149 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+
+public class QueryResultCacheTest {
+
+  private static MemoryResultSet resultSet( int rows ) {
+    MemoryMetaData metaData = new MemoryMetaData( new Object[][] { { "ID", "NAME" } }, null );
+    metaData.setColumnTypes( new String[] { "integer", "string" } );
+    MemoryResultSet resultSet = new MemoryResultSet( metaData );
+    for ( int i = 0; i < rows; i++ ) {
+      resultSet.addRow( new Object[] { i, "row" + i } );
+    }
+    return resultSet;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    QueryResultCache cache = new QueryResultCache( true, 60, 1024 * 1024 );
+    assertTrue( cache.isEnabled() );
+    String key = QueryResultCache.createKey( "jndi:SampleData", "select * from t", null, null );
+    assertNull( cache.get( key ) );
+
+    MemoryResultSet source = resultSet( 3 );
+    cache.put( "jndi:SampleData", key, source );
+    // the source is left rewound for its consumer
+    assertArrayEquals( new Object[] { 0, "row0" }, source.next() );
+
+    IPentahoResultSet cached = cache.get( key );
+    assertNotNull( cached );
+    assertEquals( 3, cached.getRowCount() );
+    assertEquals( "row2", cached.getValueAt( 2, 1 ) );
+    assertEquals( "NAME", cached.getMetaData().getColumnHeaders()[0][1] );
+    assertArrayEquals( new String[] { "integer", "string" },
+        ( (MemoryMetaData) cached.getMetaData() ).getColumnTypes() );
+    // every hit gets its own copy
+    assertNotSame( cached, cache.get( key ) );
+    assertEquals( 2, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    QueryResultCache cache = new QueryResultCache( true, 1, 1024 * 1024 );
+    String key = QueryResultCache.createKey( "ds", "select 1", null, null );
+    cache.put( "ds", key, resultSet( 1 ) );
+    assertNotNull( cache.get( key ) );
+    Thread.sleep( 1100 );
+    assertNull( cache.get( key ) );
+    assertEquals( 0, cache.getEntryCount() );
+    assertEquals( 0, cache.getSizeBytes() );
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    MemoryResultSet source = resultSet( 50 );
+    QueryResultCache probe = new QueryResultCache( true, 60, Long.MAX_VALUE );
+    probe.put( "ds", "probe", source );
+    long entrySize = probe.getSizeBytes();
+
+    QueryResultCache cache = new QueryResultCache( true, 60, entrySize * 2 );
+    cache.put( "ds", "a", resultSet( 50 ) );
+    cache.put( "ds", "b", resultSet( 50 ) );
+    assertNotNull( cache.get( "a" ) );
+    cache.put( "ds", "c", resultSet( 50 ) );
+
+    assertNotNull( cache.get( "a" ) );
+    assertNull( cache.get( "b" ) );
+    assertNotNull( cache.get( "c" ) );
+    assertEquals( 1, cache.getEvictionCount() );
+    assertTrue( cache.getSizeBytes() <= entrySize * 2 );
+  }
+
+  @Test
+  public void testInvalidate() {
+    QueryResultCache cache = new QueryResultCache( true, 60, 1024 * 1024 );
+    cache.put( "ds1", "a", resultSet( 1 ) );
+    cache.put( "ds2", "b", resultSet( 1 ) );
+
+    cache.invalidate( "ds1" );
+    assertNull( cache.get( "a" ) );
+    assertNotNull( cache.get( "b" ) );
+
+    cache.invalidateAll();
+    assertNull( cache.get( "b" ) );
+    assertEquals( 0, cache.getSizeBytes() );
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse( new QueryResultCache( false, 60, 1024 ).isEnabled() );
+    assertFalse( new QueryResultCache( true, 0, 1024 ).isEnabled() );
+  }
+
+  @Test
+  public void testCreateKey() {
+    String key = QueryResultCache.createKey( "ds", "select *\n  from t where a = 'x  y'",
+        Arrays.asList( 1, "b" ), "joe" );
+    assertEquals( key, QueryResultCache.createKey( "ds", "  select * from\tt where a = 'x  y' ",
+        Arrays.asList( 1, "b" ), "joe" ) );
+    // whitespace inside literals is significant
+    assertNotEquals( key, QueryResultCache.createKey( "ds", "select * from t where a = 'x y'",
+        Arrays.asList( 1, "b" ), "joe" ) );
+    // so are parameter types, the datasource and the user
+    assertNotEquals( key, QueryResultCache.createKey( "ds", "select * from t where a = 'x  y'",
+        Arrays.asList( "1", "b" ), "joe" ) );
+    assertNotEquals( key, QueryResultCache.createKey( "other", "select * from t where a = 'x  y'",
+        Arrays.asList( 1, "b" ), "joe" ) );
+    assertNotEquals( key, QueryResultCache.createKey( "ds", "select * from t where a = 'x  y'",
+        Arrays.asList( 1, "b" ), "suzy" ) );
+    assertNotEquals( QueryResultCache.createKey( "ds", "q", Collections.singletonList( new String[] { "a" } ), null ),
+        QueryResultCache.createKey( "ds", "q", Collections.singletonList( new String[] { "b" } ), null ) );
+  }
+}
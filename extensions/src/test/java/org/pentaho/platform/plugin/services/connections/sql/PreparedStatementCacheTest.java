@@ -0,0 +1,143 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+
+/**
+ * Runs a parameterized lookup against the embedded HSQLDB through dbcp pools with and without prepared statement
+ * pooling, checking that statements are reused only when pooled and do not keep the limits of an earlier use.
+ */
+public class PreparedStatementCacheTest {
+
+  private static final String URL = "jdbc:hsqldb:mem:statementcache";
+
+  private static final String LOOKUP = "select name from lookup where id = ?";
+
+  private static final int ROWS = 100;
+
+  private static final int ITERATIONS = 50;
+
+  private static Connection setupConnection;
+
+  @BeforeClass
+  public static void setUpDatabase() throws Exception {
+    Class.forName( "org.hsqldb.jdbcDriver" );
+    setupConnection = new DriverManagerConnectionFactory( URL, credentials() ).createConnection();
+    Statement statement = setupConnection.createStatement();
+    statement.execute( "create table lookup ( id integer primary key, name varchar(20) )" );
+    statement.close();
+    PreparedStatement insert = setupConnection.prepareStatement( "insert into lookup values ( ?, ? )" );
+    for ( int i = 0; i < ROWS; i++ ) {
+      insert.setInt( 1, i );
+      insert.setString( 2, "name" + i );
+      insert.executeUpdate();
+    }
+    insert.close();
+  }
+
+  @AfterClass
+  public static void tearDownDatabase() throws Exception {
+    Statement statement = setupConnection.createStatement();
+    statement.execute( "shutdown" );
+    statement.close();
+  }
+
+  private static Properties credentials() {
+    Properties properties = new Properties();
+    properties.put( "user", "sa" );
+    properties.put( "password", "" );
+    return properties;
+  }
+
+  private static GenericObjectPool<PoolableConnection> createPool( boolean poolStatements ) {
+    PoolableConnectionFactory factory =
+        new PoolableConnectionFactory( new DriverManagerConnectionFactory( URL, credentials() ), null );
+    factory.setPoolStatements( poolStatements );
+    factory.setMaxOpenPreparedStatements( 10 );
+    GenericObjectPool<PoolableConnection> pool = new GenericObjectPool<PoolableConnection>( factory );
+    pool.setMaxTotal( 1 );
+    factory.setPool( pool );
+    return pool;
+  }
+
+  private static int runLookups( GenericObjectPool<PoolableConnection> pool, String query, int iterations,
+                                 int maxRows ) throws Exception {
+    PoolingDataSource<PoolableConnection> dataSource = new PoolingDataSource<PoolableConnection>( pool );
+    int rows = 0;
+    for ( int i = 0; i < iterations; i++ ) {
+      SQLConnection connection = new SQLConnection();
+      connection.nativeConnection = dataSource.getConnection();
+      connection.setMaxRows( maxRows );
+      IPentahoResultSet resultSet =
+          connection.prepareAndExecuteQuery( query, Collections.<Object>singletonList( i % ROWS ) );
+      while ( resultSet.next() != null ) {
+        rows++;
+      }
+      connection.close();
+    }
+    return rows;
+  }
+
+  @Test
+  public void testStatementsAreReusedOnlyWhenPooled() throws Exception {
+    PreparedStatementStatistics statistics = PreparedStatementStatistics.getInstance();
+
+    GenericObjectPool<PoolableConnection> uncached = createPool( false );
+    long reuses = statistics.getReuseCount();
+    assertEquals( ITERATIONS, runLookups( uncached, LOOKUP, ITERATIONS, -1 ) );
+    assertEquals( reuses, statistics.getReuseCount() );
+    uncached.close();
+
+    GenericObjectPool<PoolableConnection> cached = createPool( true );
+    reuses = statistics.getReuseCount();
+    assertEquals( ITERATIONS, runLookups( cached, LOOKUP, ITERATIONS, -1 ) );
+    // the first lookup prepares the statement, every later one reuses it
+    assertEquals( reuses + ITERATIONS - 1, statistics.getReuseCount() );
+    cached.close();
+  }
+
+  @Test
+  public void testLimitsOfCachedStatementAreReset() throws Exception {
+    GenericObjectPool<PoolableConnection> cached = createPool( true );
+    String query = "select name from lookup where id >= ?";
+    assertEquals( 1, runLookups( cached, query, 1, 1 ) );
+    // served from the statement cache, without the row limit of the previous use
+    assertEquals( ROWS, runLookups( cached, query, 1, -1 ) );
+    cached.close();
+  }
+}
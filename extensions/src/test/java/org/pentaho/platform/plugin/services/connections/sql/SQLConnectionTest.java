@@ -21,7 +21,10 @@
 package org.pentaho.platform.plugin.services.connections.sql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -39,6 +42,7 @@ import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -106,4 +110,37 @@ public class SQLConnectionTest {
     props.put( IPentahoConnection.CONNECTION_NAME, "test" );
     assertTrue( "Pool Test", sqlc.connect( props ) );
   }
+
+  @Test
+  public void testCachedStatementLimitsReset() throws Exception {
+    PreparedStatement statement = mock( PreparedStatement.class );
+    doReturn( statement ).when( nativeConnection ).prepareStatement( "select ?", ResultSet.TYPE_SCROLL_INSENSITIVE,
+        ResultSet.CONCUR_READ_ONLY );
+    doReturn( mock( ResultSet.class ) ).when( statement ).executeQuery();
+    PreparedStatementStatistics statistics = PreparedStatementStatistics.getInstance();
+    long reuses = statistics.getReuseCount();
+
+    SQLConnection first = new SQLConnection();
+    first.nativeConnection = nativeConnection;
+    first.setMaxRows( 10 );
+    first.setQueryTimeout( 5 );
+    first.prepareAndExecuteQuery( "select ?", Collections.singletonList( 1 ) );
+    first.close();
+    verify( statement ).close();
+    assertEquals( reuses, statistics.getReuseCount() );
+
+    // the same statement handed out again by a statement cache keeps the limits of its last use
+    doReturn( 10 ).when( statement ).getMaxRows();
+    doReturn( 5 ).when( statement ).getQueryTimeout();
+    SQLConnection second = new SQLConnection();
+    second.nativeConnection = nativeConnection;
+    second.setQueryTimeout( 7 );
+    second.prepareAndExecuteQuery( "select ?", Collections.singletonList( 2 ) );
+
+    assertEquals( reuses + 1, statistics.getReuseCount() );
+    verify( statement ).setMaxRows( 0 );
+    verify( statement, never() ).setQueryTimeout( 0 );
+    verify( statement ).setQueryTimeout( 7 );
+    verify( statement, never() ).setFetchSize( anyInt() );
+  }
 }
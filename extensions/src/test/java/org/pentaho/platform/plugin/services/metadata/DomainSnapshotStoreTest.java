@@ -0,0 +1,130 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2022 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.metadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.metadata.model.Domain;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DomainSnapshotStoreTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static RepositoryFile file( String id, String versionId, long modified ) {
+    return new RepositoryFile.Builder( id, id + ".xmi" ).versionId( versionId )
+      .lastModificationDate( new Date( modified ) ).build();
+  }
+
+  @Test
+  public void testKeyTracksDomainAndLocaleFiles() {
+    Map<String, RepositoryFile> locales = new HashMap<String, RepositoryFile>();
+    locales.put( "en", file( "en", "1", 10L ) );
+    locales.put( "de", file( "de", "1", 10L ) );
+    String key = DomainSnapshotStore.createKey( file( "d", "1", 10L ), locales );
+
+    assertEquals( key, DomainSnapshotStore.createKey( file( "d", "1", 10L ), new HashMap<>( locales ) ) );
+    assertNotEquals( key, DomainSnapshotStore.createKey( file( "d", "2", 10L ), locales ) );
+    assertNotEquals( key, DomainSnapshotStore.createKey( file( "d", "1", 11L ), locales ) );
+    assertNotEquals( key, DomainSnapshotStore.createKey( file( "d", "1", 10L ), null ) );
+    locales.put( "de", file( "de", "2", 10L ) );
+    assertNotEquals( key, DomainSnapshotStore.createKey( file( "d", "1", 10L ), locales ) );
+  }
+
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    DomainSnapshotStore store = new DomainSnapshotStore( new File( tempFolder.getRoot(), "snapshots" ) );
+    Domain domain = new Domain();
+    domain.setId( "steel-wheels" );
+
+    assertNull( store.load( "steel-wheels", "k1" ) );
+    store.store( "steel-wheels", "k1", domain );
+
+    Domain loaded = store.load( "steel-wheels", "k1" );
+    assertNotNull( loaded );
+    assertEquals( "steel-wheels", loaded.getId() );
+    assertNull( store.load( "steel-wheels", "k2" ) );
+    assertNull( store.load( "other", "k1" ) );
+
+    store.remove( "steel-wheels" );
+    assertNull( store.load( "steel-wheels", "k1" ) );
+    assertFalse( store.getFile( "steel-wheels" ).exists() );
+  }
+
+  @Test
+  public void testForeignClassesAreNotDeserialized() throws Exception {
+    DomainSnapshotStore store = new DomainSnapshotStore( tempFolder.getRoot() );
+    ObjectOutputStream out =
+      new ObjectOutputStream( new GZIPOutputStream( new FileOutputStream( store.getFile( "foreign" ) ) ) );
+    try {
+      out.writeInt( DomainSnapshotStore.MAGIC );
+      out.writeInt( DomainSnapshotStore.FORMAT_VERSION );
+      out.writeUTF( "foreign" );
+      out.writeUTF( "k1" );
+      out.writeObject( new Foreign() );
+    } finally {
+      out.close();
+    }
+    assertNull( store.load( "foreign", "k1" ) );
+    assertFalse( Foreign.deserialized );
+  }
+
+  private static class Foreign implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static boolean deserialized;
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+      deserialized = true;
+      in.defaultReadObject();
+    }
+  }
+
+  @Test
+  public void testCorruptSnapshotIsIgnored() throws Exception {
+    DomainSnapshotStore store = new DomainSnapshotStore( tempFolder.getRoot() );
+    FileOutputStream out = new FileOutputStream( store.getFile( "broken" ) );
+    try {
+      out.write( new byte[] { 1, 2, 3 } );
+    } finally {
+      out.close();
+    }
+    assertNull( store.load( "broken", "k1" ) );
+  }
+}
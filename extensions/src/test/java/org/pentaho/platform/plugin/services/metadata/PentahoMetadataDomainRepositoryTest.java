@@ -36,6 +36,7 @@ import org.pentaho.metadata.model.Domain;
 import org.pentaho.metadata.model.LogicalModel;
 import org.pentaho.metadata.util.XmiParser;
 import org.pentaho.platform.api.engine.IUserRoleListService;
+import org.pentaho.platform.api.repository2.unified.IAclNodeHelper;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
@@ -60,6 +61,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -881,6 +886,141 @@ public class PentahoMetadataDomainRepositoryTest {
     return true;
   }
 
+  @Test
+  public void testGetFileMetadataInBatchHelper_migratesDomains() throws Exception {
+    // SETUP
+    RepositoryFile domainFile = new RepositoryFile.Builder( "domain-file-id", "domain.xmi" ).build();
+    RepositoryFile localeFile = new RepositoryFile.Builder( "locale-file-id", "domain_en.properties" ).build();
+
+    Map<String, Serializable> domainMetadataLegacy = new HashMap<String, Serializable>() {{
+      put( PROPERTY_NAME_DOMAIN_ID, "someId" );
+      put( PROPERTY_NAME_TYPE, TYPE_DOMAIN );
+    } };
+    Map<String, Serializable> localeMetadata = new HashMap<String, Serializable>() {{
+      put( PROPERTY_NAME_DOMAIN_ID, "someId" );
+      put( PROPERTY_NAME_TYPE, TYPE_LOCALE );
+      put( PROPERTY_NAME_LOCALE, "en" );
+    } };
+
+    SimpleRepositoryFileData srfd = Mockito.mock( SimpleRepositoryFileData.class );
+    when( srfd.getInputStream() ).thenReturn( new ByteArrayInputStream( new byte[0] ) );
+
+    IUnifiedRepository repository = Mockito.mock( IUnifiedRepository.class );
+    when( repository.getFileMetadataInBatch( any() ) )
+      .thenReturn( new ArrayList<>( Arrays.asList( domainMetadataLegacy, localeMetadata ) ) );
+    when( repository.getDataForRead( any(), any() ) ).thenReturn( srfd );
+
+    XmiParser xmiParser = Mockito.mock( XmiParser.class );
+    when( xmiParser.parseXmi( any( InputStream.class ) ) ).thenReturn( createMetadataTestObject() );
+
+    PentahoMetadataDomainRepository pmdr = new PentahoMetadataDomainRepository( repository, null, xmiParser, null );
+
+    // EXECUTE
+    List<Map<String, Serializable>> metadata =
+      pmdr.getFileMetadataInBatchHelper( Arrays.asList( domainFile, localeFile ) );
+
+    // VERIFY
+    assertEquals( 2, metadata.size() );
+    assertEquals( PentahoDataSourceType.METADATA.toString(), metadata.get( 0 ).get( PROPERTY_NAME_DATASOURCE_TYPE ) );
+    assertTrue( equalMaps( localeMetadata, metadata.get( 1 ) ) );
+    verify( repository, times( 1 ) ).setFileMetadata( eq( "domain-file-id" ), any() );
+    verify( repository, times( 0 ) ).getFileMetadata( any() );
+  }
+
+  @Test
+  public void testGetFileMetadataInBatchHelper_fallsBackToSingleCalls() throws Exception {
+    // SETUP
+    RepositoryFile localeFile = new RepositoryFile.Builder( "locale-file-id", "domain_en.properties" ).build();
+    Map<String, Serializable> localeMetadata = new HashMap<String, Serializable>() {{
+      put( PROPERTY_NAME_DOMAIN_ID, "someId" );
+      put( PROPERTY_NAME_TYPE, TYPE_LOCALE );
+    } };
+
+    // a repository answering the batch call with nothing
+    IUnifiedRepository repository = Mockito.mock( IUnifiedRepository.class );
+    when( repository.getFileMetadata( eq( "locale-file-id" ) ) ).thenReturn( localeMetadata );
+
+    PentahoMetadataDomainRepository pmdr =
+      new PentahoMetadataDomainRepository( repository, null, Mockito.mock( XmiParser.class ), null );
+
+    // EXECUTE
+    List<Map<String, Serializable>> metadata =
+      pmdr.getFileMetadataInBatchHelper( Collections.singletonList( localeFile ) );
+
+    // VERIFY
+    assertEquals( 1, metadata.size() );
+    assertTrue( equalMaps( localeMetadata, metadata.get( 0 ) ) );
+  }
+
+  @Test
+  public void testReloadOverlappingRemoveDomainDoesNotResurrectIt() throws Exception {
+    // SETUP
+    final RepositoryFile metadataDir =
+      new RepositoryFile.Builder( "metadata-dir-id", "metadata" ).folder( true ).build();
+    final RepositoryFile domainFile = new RepositoryFile.Builder( "race-file-id", "race.xmi" ).build();
+    final Map<String, Serializable> domainMetadata = new HashMap<>();
+    domainMetadata.put( PROPERTY_NAME_DOMAIN_ID, "race" );
+    domainMetadata.put( PROPERTY_NAME_TYPE, TYPE_DOMAIN );
+    domainMetadata.put( PROPERTY_NAME_DATASOURCE_TYPE, PentahoDataSourceType.METADATA.toString() );
+
+    IUnifiedRepository repository = Mockito.mock( IUnifiedRepository.class );
+    IAclNodeHelper aclHelper = Mockito.mock( IAclNodeHelper.class );
+    when( aclHelper.canAccessInBatch( any(), any() ) ).thenAnswer( invocation ->
+      Collections.nCopies( invocation.<List<?>>getArgument( 0 ).size(), Boolean.TRUE ) );
+    when( aclHelper.canAccess( any(), any() ) ).thenReturn( true );
+    when( repository.getFileMetadataInBatch( any() ) ).thenAnswer( invocation ->
+      new ArrayList<>( Collections.nCopies( invocation.<List<?>>getArgument( 0 ).size(), domainMetadata ) ) );
+
+    final PentahoMetadataDomainRepository pmdr =
+      new PentahoMetadataDomainRepository( repository, null, Mockito.mock( XmiParser.class ), null ) {
+        @Override protected RepositoryFile getMetadataDir() {
+          return metadataDir;
+        }
+
+        @Override protected IAclNodeHelper getAclHelper() {
+          return aclHelper;
+        }
+      };
+    pmdr.setDomainSnapshotStore( null );
+
+    final AtomicBoolean deleted = new AtomicBoolean();
+    final AtomicInteger listings = new AtomicInteger();
+    final CountDownLatch deleting = new CountDownLatch( 1 );
+    final CountDownLatch releaseDelete = new CountDownLatch( 1 );
+    final Thread remover = new Thread( () -> pmdr.removeDomain( "race" ) );
+    when( repository.getChildren( "metadata-dir-id", "*" ) ).thenAnswer( invocation -> {
+      if ( listings.incrementAndGet() == 2 ) {
+        // the reload under test lists the domain, which is then removed before the reload is published
+        remover.start();
+        assertTrue( deleting.await( 10, TimeUnit.SECONDS ) );
+        return new ArrayList<>( Collections.singletonList( domainFile ) );
+      }
+      return deleted.get()
+        ? new ArrayList<RepositoryFile>() : new ArrayList<>( Collections.singletonList( domainFile ) );
+    } );
+    Mockito.doAnswer( invocation -> {
+      deleted.set( true );
+      deleting.countDown();
+      assertTrue( releaseDelete.await( 10, TimeUnit.SECONDS ) );
+      return null;
+    } ).when( repository ).deleteFile( "race-file-id", true, null );
+
+    pmdr.reloadDomains();
+    assertEquals( Collections.singleton( "race" ), pmdr.getDomainIds() );
+
+    // EXECUTE
+    pmdr.reloadDomains();
+
+    // VERIFY
+    try {
+      assertTrue( pmdr.getDomainIds().isEmpty() );
+    } finally {
+      releaseDelete.countDown();
+      remover.join();
+    }
+    assertTrue( pmdr.getDomainIds().isEmpty() );
+  }
+
   public static class UserProvider implements MockUnifiedRepository.ICurrentUserProvider {
     public String getUser() {
       return "__root__";
@@ -0,0 +1,104 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.repository;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TrashPurgeSystemListenerTest {
+
+  private static List<RepositoryFile> files( String... ids ) {
+    List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+    for ( String id : ids ) {
+      files.add( new RepositoryFile.Builder( id, id ).build() );
+    }
+    return files;
+  }
+
+  @Test
+  public void testPurgePagesPastUndeletableFiles() throws Exception {
+    TrashPurgeSystemListener listener = new TrashPurgeSystemListener();
+    listener.setRetentionDays( 30 );
+    listener.setBatchSize( 2 );
+
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    when( repository.getDeletedFiles( isNull(), isNull(), any( Date.class ), eq( 0 ), eq( 2 ) ) )
+        .thenReturn( files( "a", "b" ) );
+    // "b" is still referenced, so the next page starts after it
+    when( repository.getDeletedFiles( isNull(), isNull(), any( Date.class ), eq( 1 ), eq( 2 ) ) )
+        .thenReturn( files( "c" ) );
+    when( repository.permanentlyDeleteFiles( anyList(), isNull() ) ).thenReturn( 1 );
+    when( repository.getFileById( "b" ) ).thenReturn( files( "b" ).get( 0 ) );
+
+    long before = System.currentTimeMillis();
+    assertEquals( 2, listener.purge( repository ) );
+
+    verify( repository ).permanentlyDeleteFiles( eq( Arrays.<Serializable>asList( "a", "b" ) ), isNull() );
+    verify( repository ).permanentlyDeleteFiles( eq( Collections.<Serializable>singletonList( "c" ) ), isNull() );
+    long retention = 30L * 24 * 60 * 60 * 1000;
+    verify( repository ).getDeletedFiles( isNull(), isNull(),
+        argThat( ( Date date ) -> date.getTime() >= before - retention ), eq( 0 ), eq( 2 ) );
+  }
+
+  @Test
+  public void testPurgeDoesNotPagePastFilesAlreadyGone() throws Exception {
+    TrashPurgeSystemListener listener = new TrashPurgeSystemListener();
+    listener.setRetentionDays( 30 );
+    listener.setBatchSize( 2 );
+
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    // "b" was purged by someone else before this purge got to it, so it is not deleted here but no longer listed
+    when( repository.getDeletedFiles( isNull(), isNull(), any( Date.class ), eq( 0 ), eq( 2 ) ) )
+        .thenReturn( files( "a", "b" ), files( "c" ) );
+    when( repository.permanentlyDeleteFiles( anyList(), isNull() ) ).thenReturn( 1 );
+
+    assertEquals( 2, listener.purge( repository ) );
+    verify( repository ).permanentlyDeleteFiles( eq( Collections.<Serializable>singletonList( "c" ) ), isNull() );
+    verify( repository, never() ).getDeletedFiles( isNull(), isNull(), any( Date.class ), eq( 1 ), eq( 2 ) );
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    TrashPurgeSystemListener listener = new TrashPurgeSystemListener();
+    assertTrue( listener.startup( null ) );
+    listener.shutdown();
+  }
+}
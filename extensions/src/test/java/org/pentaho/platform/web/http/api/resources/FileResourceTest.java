@@ -48,6 +48,7 @@ import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.importexport.Exporter;
 import org.pentaho.platform.plugin.services.importexport.StreamConverter;
+import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
@@ -73,11 +74,13 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static javax.ws.rs.core.Response.Status.OK;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
@@ -490,6 +493,56 @@ public class FileResourceTest {
     verify( fileResource, times( 1 ) ).buildOkResponse( mockWrapper );
   }
 
+  @Test
+  public void testDoGetFileOrDirRange() throws Exception {
+    RepositoryFile file = new RepositoryFile.Builder( "id1", "file.txt" ).build();
+    RepositoryFileInputStream mockInputStream = mock( RepositoryFileInputStream.class );
+    doReturn( 100L ).when( mockInputStream ).getSize();
+    FileService.RepositoryFileToStreamWrapper wrapper = fileResource.fileService.new RepositoryFileToStreamWrapper();
+    wrapper.setRepositoryFile( file );
+    wrapper.setInputStream( mockInputStream );
+    wrapper.setMimetype( "text/plain" );
+    doReturn( wrapper ).when( fileResource.fileService ).doGetFileOrDir( PATH_ID );
+    doReturn( "bytes=10-19" ).when( fileResource.httpServletRequest ).getHeader( "Range" );
+
+    Response testResponse = fileResource.doGetFileOrDir( PATH_ID );
+
+    assertEquals( 206, testResponse.getStatus() );
+    assertEquals( "bytes 10-19/100", testResponse.getMetadata().getFirst( "Content-Range" ) );
+    ( (StreamingOutput) testResponse.getEntity() ).write( new ByteArrayOutputStream() );
+    verify( mockInputStream ).copyRange( eq( 10L ), eq( 10L ), any( OutputStream.class ) );
+    verify( mockInputStream ).close();
+
+    // unsatisfiable
+    doReturn( "bytes=100-" ).when( fileResource.httpServletRequest ).getHeader( "Range" );
+    testResponse = fileResource.doGetFileOrDir( PATH_ID );
+    assertEquals( 416, testResponse.getStatus() );
+    assertEquals( "bytes */100", testResponse.getMetadata().getFirst( "Content-Range" ) );
+    verify( mockInputStream, times( 2 ) ).close();
+
+    // no range, the full content advertises ranges
+    doReturn( null ).when( fileResource.httpServletRequest ).getHeader( "Range" );
+    testResponse = fileResource.doGetFileOrDir( PATH_ID );
+    assertEquals( 200, testResponse.getStatus() );
+    assertEquals( "bytes", testResponse.getMetadata().getFirst( "Accept-Ranges" ) );
+    assertEquals( "\"id1-0\"", testResponse.getMetadata().getFirst( "ETag" ) );
+  }
+
+  @Test
+  public void testParseRange() {
+    assertArrayEquals( new long[] { 0, 99 }, FileResource.parseRange( "bytes=0-", 100 ) );
+    assertArrayEquals( new long[] { 10, 19 }, FileResource.parseRange( "bytes=10-19", 100 ) );
+    assertArrayEquals( new long[] { 90, 99 }, FileResource.parseRange( "bytes=90-200", 100 ) );
+    assertArrayEquals( new long[] { 80, 99 }, FileResource.parseRange( "bytes=-20", 100 ) );
+    assertArrayEquals( new long[] { 0, 99 }, FileResource.parseRange( "bytes=-200", 100 ) );
+    assertEquals( 0, FileResource.parseRange( "bytes=100-", 100 ).length );
+    assertEquals( 0, FileResource.parseRange( "bytes=-0", 100 ).length );
+    assertNull( FileResource.parseRange( "bytes=20-10", 100 ) );
+    assertNull( FileResource.parseRange( "bytes=0-1,5-6", 100 ) );
+    assertNull( FileResource.parseRange( "items=0-1", 100 ) );
+    assertNull( FileResource.parseRange( "bytes=a-b", 100 ) );
+  }
+
   @Test
   public void testDoGetFileOrDirError() throws Exception {
     Exception mockFileNotFoundException = mock( FileNotFoundException.class );
@@ -1424,6 +1477,28 @@ public class FileResourceTest {
     verify( fileResource.fileService, times( 1 ) ).doGetDeletedFiles();
   }
 
+  @Test
+  public void testDoGetLockedFiles() {
+    List<RepositoryFileDto> lockedFiles = Collections.singletonList( mock( RepositoryFileDto.class ) );
+    doReturn( lockedFiles ).when( fileResource.fileService ).doGetLockedFiles();
+
+    Response testResponse = fileResource.doGetLockedFiles();
+
+    assertEquals( OK.getStatusCode(), testResponse.getStatus() );
+    verify( fileResource.fileService, times( 1 ) ).doGetLockedFiles();
+  }
+
+  @Test
+  public void testDoGetLockedFilesError() {
+    Throwable mockException = mock( UnsupportedOperationException.class );
+    doThrow( mockException ).when( fileResource.fileService ).doGetLockedFiles();
+
+    Response mockResponse = mock( Response.class );
+    doReturn( mockResponse ).when( fileResource ).buildServerErrorResponse( mockException );
+
+    assertEquals( mockResponse, fileResource.doGetLockedFiles() );
+  }
+
   @Test
   public void testDoGetMetadata() throws Exception {
 
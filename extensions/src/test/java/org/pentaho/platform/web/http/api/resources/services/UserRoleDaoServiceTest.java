@@ -44,6 +44,7 @@ import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRo
 import org.pentaho.platform.security.policy.rolebased.RoleBindingStruct;
 import org.pentaho.platform.web.http.api.resources.LogicalRoleAssignment;
 import org.pentaho.platform.web.http.api.resources.LogicalRoleAssignments;
+import org.pentaho.platform.web.http.api.resources.MembershipListWrapper;
 import org.pentaho.platform.web.http.api.resources.RoleListWrapper;
 import org.pentaho.platform.web.http.api.resources.SystemRolesMap;
 import org.pentaho.platform.web.http.api.resources.User;
@@ -61,6 +62,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -401,6 +403,34 @@ public class UserRoleDaoServiceTest {
     userRoleService.getRoleMembers( "Report Author" );
   }
 
+  @Test
+  public void testGetUserRoleMemberships() {
+    setupMockSessionUser( SESSION_USER_NAME, true );
+
+    Map<String, List<String>> matrix = new TreeMap<>();
+    matrix.put( "admin", Arrays.asList( "Administrator", "Authenticated" ) );
+    matrix.put( "pat", Arrays.asList( "Authenticated" ) );
+    matrix.put( "suzy", Arrays.asList( "Power User" ) );
+    IUserRoleDao roleDao = mock( IUserRoleDao.class );
+    when( roleDao.getUserRoleNames( nullable( ITenant.class ) ) ).thenReturn( matrix );
+    PentahoSystem.registerObject( roleDao );
+
+    MembershipListWrapper page = userRoleService.getUserRoleMemberships( 1, 1 );
+    assertEquals( 3, page.getTotal() );
+    assertEquals( 1, page.getOffset() );
+    assertEquals( 1, page.getMemberships().size() );
+    assertEquals( "pat", page.getMemberships().get( 0 ).getName() );
+    assertEquals( Arrays.asList( "Authenticated" ), page.getMemberships().get( 0 ).getNames() );
+
+    assertEquals( 3, userRoleService.getUserRoleMemberships( 0, -1 ).getMemberships().size() );
+  }
+
+  @Test( expected = SecurityException.class )
+  public void testGetRoleMembershipsSecurityException() {
+    setupMockSessionUser( SESSION_USER_NAME, false );
+    userRoleService.getRoleMemberships( 0, -1 );
+  }
+
   @Test
   public void testDeleteRole() {
     String roles = "role1\trole2\t";
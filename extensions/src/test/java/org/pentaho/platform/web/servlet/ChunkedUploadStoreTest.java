@@ -0,0 +1,242 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedUploadStoreTest {
+
+  private static final String OWNER = "admin";
+
+  private static final byte[] CONTENT = "0123456789abcdef".getBytes( StandardCharsets.UTF_8 );
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ChunkedUploadStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    store = new ChunkedUploadStore( tempFolder.newFolder( "staging" ) );
+  }
+
+  @Test
+  public void testUploadInChunks() throws IOException {
+    String id = store.begin( OWNER, "data.csv", "text/csv", CONTENT.length );
+
+    assertEquals( 0, store.getOffset( OWNER, id ) );
+    assertEquals( 10, store.append( OWNER, id, 0, chunk( 0, 10 ), DigestUtils.sha256Hex( slice( 0, 10 ) ) ) );
+    assertEquals( 16, store.append( OWNER, id, 10, chunk( 10, 16 ), null ) );
+
+    ChunkedUploadStore.Upload upload = store.complete( OWNER, id, DigestUtils.sha256Hex( CONTENT ) );
+    assertEquals( "data.csv", upload.getFileName() );
+    assertEquals( "text/csv", upload.getContentType() );
+    assertArrayEquals( CONTENT, FileUtils.readFileToByteArray( upload.getFile() ) );
+    assertEquals( 0, store.getUploadCount() );
+  }
+
+  @Test
+  public void testChunkAtWrongOffsetIsRefused() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    store.append( OWNER, id, 0, chunk( 0, 10 ), null );
+
+    assertRefused( ChunkedUploadStore.Reason.OFFSET_MISMATCH, 10, () -> store.append( OWNER, id, 4, chunk( 4, 16 ),
+      null ) );
+    assertEquals( 10, store.getOffset( OWNER, id ) );
+  }
+
+  @Test
+  public void testChunkWithWrongChecksumIsRolledBack() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    store.append( OWNER, id, 0, chunk( 0, 10 ), null );
+
+    assertRefused( ChunkedUploadStore.Reason.CHECKSUM_MISMATCH, 10,
+      () -> store.append( OWNER, id, 10, chunk( 10, 16 ), DigestUtils.sha256Hex( "other" ) ) );
+    assertEquals( 10, store.getOffset( OWNER, id ) );
+
+    assertEquals( 16, store.append( OWNER, id, 10, chunk( 10, 16 ), DigestUtils.sha256Hex( slice( 10, 16 ) ) ) );
+  }
+
+  @Test
+  public void testInterruptedChunkIsRolledBack() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    InputStream broken = new InputStream() {
+      private int read;
+
+      @Override
+      public int read() throws IOException {
+        if ( read++ < 5 ) {
+          return 'x';
+        }
+        throw new IOException( "connection reset" );
+      }
+    };
+
+    try {
+      store.append( OWNER, id, 0, broken, null );
+      fail();
+    } catch ( IOException e ) {
+      assertEquals( "connection reset", e.getMessage() );
+    }
+    assertEquals( 0, store.getOffset( OWNER, id ) );
+  }
+
+  @Test
+  public void testChunkBeyondDeclaredSizeIsRefused() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, 8 );
+
+    assertRefused( ChunkedUploadStore.Reason.TOO_LARGE, 0, () -> store.append( OWNER, id, 0, chunk( 0, 16 ), null ) );
+    assertEquals( 0, store.getOffset( OWNER, id ) );
+  }
+
+  @Test
+  public void testIncompleteUploadCannotComplete() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    store.append( OWNER, id, 0, chunk( 0, 10 ), null );
+
+    assertRefused( ChunkedUploadStore.Reason.INCOMPLETE, 10, () -> store.complete( OWNER, id, null ) );
+    assertEquals( 1, store.getUploadCount() );
+  }
+
+  @Test
+  public void testWrongFileChecksumDiscardsUpload() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    store.append( OWNER, id, 0, chunk( 0, 16 ), null );
+
+    assertRefused( ChunkedUploadStore.Reason.CHECKSUM_MISMATCH, 0,
+      () -> store.complete( OWNER, id, DigestUtils.sha256Hex( "other" ) ) );
+    assertEquals( 0, store.getUploadCount() );
+  }
+
+  @Test
+  public void testUploadIsPrivateToItsOwner() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+
+    assertRefused( ChunkedUploadStore.Reason.NOT_FOUND, 0, () -> store.append( "suzy", id, 0, chunk( 0, 16 ), null ) );
+    assertRefused( ChunkedUploadStore.Reason.NOT_FOUND, 0, () -> store.getOffset( "suzy", id ) );
+    assertRefused( ChunkedUploadStore.Reason.NOT_FOUND, 0, () -> store.getOffset( OWNER, "unknown" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUploadWithoutOwnerIsRefused() throws IOException {
+    store.begin( null, "data.csv", null, CONTENT.length );
+  }
+
+  @Test
+  public void testUploadsInProgressAreLimited() throws IOException {
+    store.setMaxUploadsPerUser( 2 );
+    store.setMaxUploads( 3 );
+    store.begin( OWNER, "a.csv", null, 1 );
+    String second = store.begin( OWNER, "b.csv", null, 1 );
+
+    assertRefused( ChunkedUploadStore.Reason.QUOTA_EXCEEDED, 0, () -> store.begin( OWNER, "c.csv", null, 1 ) );
+    store.begin( "suzy", "c.csv", null, 1 );
+    assertRefused( ChunkedUploadStore.Reason.QUOTA_EXCEEDED, 0, () -> store.begin( "pat", "d.csv", null, 1 ) );
+
+    // a finished upload frees its place
+    store.abort( OWNER, second );
+    store.begin( OWNER, "c.csv", null, 1 );
+    assertEquals( 3, store.getUploadCount() );
+  }
+
+  @Test
+  public void testStagedBytesAreLimited() throws IOException {
+    store.setMaxStagedBytesPerUser( 20 );
+    store.setMaxStagedBytes( 40 );
+    store.begin( OWNER, "a.csv", null, CONTENT.length );
+
+    // refused up front on the declared size, before anything is staged
+    assertRefused( ChunkedUploadStore.Reason.QUOTA_EXCEEDED, 0,
+      () -> store.begin( OWNER, "b.csv", null, CONTENT.length ) );
+    store.begin( "suzy", "b.csv", null, CONTENT.length );
+    assertRefused( ChunkedUploadStore.Reason.QUOTA_EXCEEDED, 0,
+      () -> store.begin( "pat", "c.csv", null, CONTENT.length ) );
+    assertEquals( 2, new File( tempFolder.getRoot(), "staging" ).list().length );
+  }
+
+  @Test
+  public void testAbortDeletesStagedFile() throws IOException {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    store.append( OWNER, id, 0, chunk( 0, 10 ), null );
+
+    store.abort( OWNER, id );
+
+    assertEquals( 0, store.getUploadCount() );
+    assertEquals( 0, new File( tempFolder.getRoot(), "staging" ).list().length );
+  }
+
+  @Test
+  public void testPurgeExpired() throws Exception {
+    String id = store.begin( OWNER, "data.csv", null, CONTENT.length );
+    File orphan = new File( new File( tempFolder.getRoot(), "staging" ), "left-over.part" );
+    assertTrue( orphan.createNewFile() );
+    assertTrue( orphan.setLastModified( System.currentTimeMillis() - 10000 ) );
+    store.setExpiryMillis( 1000 );
+    Thread.sleep( 1100 );
+
+    store.purgeExpired();
+
+    assertEquals( 0, store.getUploadCount() );
+    assertFalse( orphan.exists() );
+    assertRefused( ChunkedUploadStore.Reason.NOT_FOUND, 0, () -> store.getOffset( OWNER, id ) );
+  }
+
+  private static InputStream chunk( int from, int to ) {
+    return new ByteArrayInputStream( slice( from, to ) );
+  }
+
+  private static byte[] slice( int from, int to ) {
+    byte[] slice = new byte[ to - from ];
+    System.arraycopy( CONTENT, from, slice, 0, slice.length );
+    return slice;
+  }
+
+  private static void assertRefused( ChunkedUploadStore.Reason reason, long offset, Call call ) throws IOException {
+    try {
+      call.run();
+      fail();
+    } catch ( ChunkedUploadStore.ChunkedUploadException e ) {
+      assertEquals( reason, e.getReason() );
+      assertEquals( offset, e.getOffset() );
+    }
+  }
+
+  private interface Call {
+    void run() throws IOException;
+  }
+}
@@ -0,0 +1,61 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedUploadSystemListenerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testConfiguresStore() throws Exception {
+    ChunkedUploadStore store = new ChunkedUploadStore( tempFolder.newFolder( "staging" ) );
+    ChunkedUploadSystemListener listener = new ChunkedUploadSystemListener() {
+      @Override
+      ChunkedUploadStore getStore() {
+        return store;
+      }
+    };
+    listener.setExpiryHours( 2 );
+    listener.setMaxUploadsPerUser( 1 );
+    listener.setMaxUploads( 0 );
+    listener.setMaxStagedBytesPerUser( 100L );
+    listener.setMaxStagedBytes( 1000L );
+
+    try {
+      assertTrue( listener.startup( null ) );
+      assertEquals( 7200000L, store.getExpiryMillis() );
+      assertEquals( 1, store.getMaxUploadsPerUser() );
+      assertEquals( 0, store.getMaxUploads() );
+      assertEquals( 100L, store.getMaxStagedBytesPerUser() );
+      assertEquals( 1000L, store.getMaxStagedBytes() );
+    } finally {
+      listener.shutdown();
+    }
+  }
+}
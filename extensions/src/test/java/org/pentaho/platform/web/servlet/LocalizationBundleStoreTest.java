@@ -0,0 +1,103 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
+
+public class LocalizationBundleStoreTest {
+
+  @Test
+  public void testEntry() throws Exception {
+    LocalizationBundleStore.Entry entry = new LocalizationBundleStore.Entry( "{\"key\":\"valeur \u00e9\"}", "UTF-8" );
+
+    assertArrayEquals( "{\"key\":\"valeur \u00e9\"}".getBytes( "UTF-8" ), entry.getBody() );
+    GZIPInputStream in = new GZIPInputStream( new ByteArrayInputStream( entry.getGzippedBody() ) );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[ 256 ];
+    int read;
+    while ( ( read = in.read( buffer ) ) > 0 ) {
+      out.write( buffer, 0, read );
+    }
+    assertArrayEquals( entry.getBody(), out.toByteArray() );
+
+    assertEquals( entry.getETag(),
+        new LocalizationBundleStore.Entry( "{\"key\":\"valeur \u00e9\"}", "UTF-8" ).getETag() );
+    assertNotEquals( entry.getETag(), new LocalizationBundleStore.Entry( "{\"key\":\"value\"}", "UTF-8" ).getETag() );
+    // the gzip representation is validated separately from the identity one
+    assertNotEquals( entry.getETag(), entry.getGzippedETag() );
+  }
+
+  @Test
+  public void testKeyedByPluginNameAndLocale() throws Exception {
+    LocalizationBundleStore store = new LocalizationBundleStore();
+    LocalizationBundleStore.Entry entry = new LocalizationBundleStore.Entry( "{}", "UTF-8" );
+    store.put( "plugin", "messages/messages", Locale.US, entry, store.getGeneration() );
+
+    assertSame( entry, store.get( "plugin", "messages/messages", Locale.US ) );
+    assertNull( store.get( "plugin", "messages/messages", Locale.FRANCE ) );
+    assertNull( store.get( "plugin", "messages/other", Locale.US ) );
+    assertNull( store.get( "other", "messages/messages", Locale.US ) );
+  }
+
+  @Test
+  public void testStaleEntryIsNotStored() throws Exception {
+    LocalizationBundleStore store = new LocalizationBundleStore();
+    long generation = store.getGeneration();
+    store.invalidate();
+    store.put( "plugin", "messages", Locale.US, new LocalizationBundleStore.Entry( "{}", "UTF-8" ), generation );
+
+    assertEquals( 0, store.size() );
+  }
+
+  @Test
+  public void testPluginReloadInvalidates() throws Exception {
+    LocalizationBundleStore store = new LocalizationBundleStore();
+    IPluginManager pluginManager = mock( IPluginManager.class );
+    store.bind( pluginManager );
+    store.bind( pluginManager );
+    ArgumentCaptor<IPluginManagerListener> listener = ArgumentCaptor.forClass( IPluginManagerListener.class );
+    verify( pluginManager, times( 1 ) ).addPluginManagerListener( listener.capture() );
+
+    store.put( "plugin", "messages", Locale.US, new LocalizationBundleStore.Entry( "{}", "UTF-8" ),
+        store.getGeneration() );
+    assertEquals( 1, store.size() );
+
+    listener.getValue().onReload();
+    assertEquals( 0, store.size() );
+  }
+}
@@ -0,0 +1,51 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LocalizationServletTest {
+
+  @Test
+  public void testAcceptsGzip() {
+    assertTrue( LocalizationServlet.acceptsGzip( "gzip, deflate" ) );
+    assertTrue( LocalizationServlet.acceptsGzip( "deflate;q=1.0, GZIP;q=0.5" ) );
+    assertTrue( LocalizationServlet.acceptsGzip( "*" ) );
+    assertFalse( LocalizationServlet.acceptsGzip( null ) );
+    assertFalse( LocalizationServlet.acceptsGzip( "identity" ) );
+    assertFalse( LocalizationServlet.acceptsGzip( "gzip;q=0" ) );
+    assertFalse( LocalizationServlet.acceptsGzip( "gzip; q=0.0, *" ) );
+    assertFalse( LocalizationServlet.acceptsGzip( "*;q=0" ) );
+  }
+
+  @Test
+  public void testMatchesETag() {
+    assertTrue( LocalizationServlet.matchesETag( "\"abc-1\"", "\"abc-1\"" ) );
+    assertTrue( LocalizationServlet.matchesETag( "\"other\", \"abc-1\"", "\"abc-1\"" ) );
+    assertTrue( LocalizationServlet.matchesETag( "W/\"abc-1\"", "\"abc-1\"" ) );
+    assertTrue( LocalizationServlet.matchesETag( "*", "\"abc-1\"" ) );
+    assertFalse( LocalizationServlet.matchesETag( null, "\"abc-1\"" ) );
+    assertFalse( LocalizationServlet.matchesETag( "\"abc-1-gzip\"", "\"abc-1\"" ) );
+  }
+}
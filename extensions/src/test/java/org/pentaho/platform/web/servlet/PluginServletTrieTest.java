@@ -0,0 +1,87 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.junit.Test;
+
+import javax.servlet.Servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class PluginServletTrieTest {
+
+  @Test
+  public void testLongestPrefixMatch() {
+    Servlet api = mock( Servlet.class );
+    Servlet apiRepos = mock( Servlet.class );
+    Servlet other = mock( Servlet.class );
+    PluginServletTrie trie = new PluginServletTrie.Builder()
+      .add( "myPlugin", "api", api )
+      .add( "myPlugin", "api/repos", apiRepos )
+      .add( "otherPlugin", "api", other )
+      .build();
+
+    assertSame( api, trie.match( "myPlugin/api" ).getServlet() );
+    assertSame( api, trie.match( "myPlugin/api/files/a.txt" ).getServlet() );
+    assertSame( apiRepos, trie.match( "myPlugin/api/repos" ).getServlet() );
+    assertSame( apiRepos, trie.match( "myPlugin/api/repos/x/y" ).getServlet() );
+    assertSame( api, trie.match( "myPlugin/api/reposX" ).getServlet() );
+    assertSame( other, trie.match( "otherPlugin/api/" ).getServlet() );
+    assertEquals( "otherPlugin", trie.match( "otherPlugin/api" ).getPluginId() );
+
+    assertNull( trie.match( "myPlugin" ) );
+    assertNull( trie.match( "myPlugin/apix" ) );
+    assertNull( trie.match( "unknown/api" ) );
+    assertNull( new PluginServletTrie.Builder().build().match( "myPlugin/api" ) );
+  }
+
+  @Test
+  public void testReRegistrationReplaces() {
+    Servlet first = mock( Servlet.class );
+    Servlet second = mock( Servlet.class );
+    PluginServletTrie trie = new PluginServletTrie.Builder()
+      .add( "myPlugin", "api", first )
+      .add( "myPlugin", "api", second )
+      .build();
+
+    assertSame( second, trie.match( "myPlugin/api" ).getServlet() );
+    assertEquals( 1, trie.getTargets().size() );
+  }
+
+  @Test
+  public void testStatistics() {
+    PluginDispatchStatistics statistics = PluginDispatchStatistics.forPlugin( "statsPlugin" );
+    assertSame( statistics, PluginDispatchStatistics.forPlugin( "statsPlugin" ) );
+
+    statistics.record( 2000000L, false );
+    statistics.record( 20000000000L, true );
+
+    assertEquals( 2, statistics.getRequestCount() );
+    assertEquals( 1, statistics.getErrorCount() );
+    assertEquals( Long.valueOf( 1 ), statistics.getLatencyHistogram().get( 5L ) );
+    assertEquals( Long.valueOf( 1 ), statistics.getLatencyHistogram().get( Long.MAX_VALUE ) );
+    assertTrue( PluginDispatchStatistics.getAll().containsKey( "statsPlugin" ) );
+  }
+}
@@ -22,6 +22,7 @@ package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -324,6 +325,14 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     deleteFile( fileId, false, versionMessage );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public int permanentlyDeleteFiles( final List<Serializable> fileIds, final String versionMessage ) {
+    Assert.notNull( fileIds );
+    return repositoryFileDao.permanentlyDeleteFiles( fileIds, versionMessage );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -362,6 +371,14 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getAllDeletedFiles();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> getDeletedFiles( final String owner, final String origParentFolderPath,
+                                               final Date deletedBefore, final int offset, final int limit ) {
+    return repositoryFileDao.getDeletedFiles( owner, origParentFolderPath, deletedBefore, offset, limit );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -394,6 +411,21 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     repositoryFileDao.unlockFile( fileId );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public int unlockFiles( final List<Serializable> fileIds ) {
+    Assert.notNull( fileIds );
+    return repositoryFileDao.unlockFiles( fileIds );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> getLockedFiles() {
+    return repositoryFileDao.getLockedFiles();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -542,6 +574,14 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    Assert.notNull( files );
+    return repositoryFileDao.getFileMetadataInBatch( files );
+  }
+
   public List<Character> getReservedChars() {
     return repositoryFileDao.getReservedChars();
   }
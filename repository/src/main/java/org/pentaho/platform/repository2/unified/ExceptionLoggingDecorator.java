@@ -24,6 +24,7 @@ import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -135,6 +136,14 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.deleteFile", fileId ) ); //$NON-NLS-1$
   }
 
+  public int permanentlyDeleteFiles( final List<Serializable> fileIds, final String versionMessage ) {
+    return callLogThrow( new Callable<Integer>() {
+      public Integer call() throws Exception {
+        return delegatee.permanentlyDeleteFiles( fileIds, versionMessage );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.permanentlyDeleteFiles" ) ); //$NON-NLS-1$
+  }
+
   public void deleteFileAtVersion( final Serializable fileId, final Serializable versionId ) {
     callLogThrow( new Callable<Void>() {
       public Void call() throws Exception {
@@ -260,6 +269,15 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getAllDeletedFiles" ) ); //$NON-NLS-1$
   }
 
+  public List<RepositoryFile> getDeletedFiles( final String owner, final String origParentFolderPath,
+                                               final Date deletedBefore, final int offset, final int limit ) {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getDeletedFiles( owner, origParentFolderPath, deletedBefore, offset, limit );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getDeletedFilesPage" ) ); //$NON-NLS-1$
+  }
+
   public List<RepositoryFileAce> getEffectiveAces( final Serializable fileId ) {
     return callLogThrow( new Callable<List<RepositoryFileAce>>() {
       public List<RepositoryFileAce> call() throws Exception {
@@ -440,6 +458,22 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.unlockFile", fileId ) ); //$NON-NLS-1$
   }
 
+  public int unlockFiles( final List<Serializable> fileIds ) {
+    return callLogThrow( new Callable<Integer>() {
+      public Integer call() throws Exception {
+        return delegatee.unlockFiles( fileIds );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.unlockFiles" ) ); //$NON-NLS-1$
+  }
+
+  public List<RepositoryFile> getLockedFiles() {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getLockedFiles();
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getLockedFiles" ) ); //$NON-NLS-1$
+  }
+
   public RepositoryFileAcl updateAcl( final RepositoryFileAcl acl ) {
     return callLogThrow( new Callable<RepositoryFileAcl>() {
       public RepositoryFileAcl call() throws Exception {
@@ -596,6 +630,14 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadata", fileId ) ); //$NON-NLS-1$
   }
 
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    return callLogThrow( new Callable<List<Map<String, Serializable>>>() {
+      public List<Map<String, Serializable>> call() throws Exception {
+        return delegatee.getFileMetadataInBatch( files );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadataInBatch" ) ); //$NON-NLS-1$
+  }
+
   public List<Character> getReservedChars() {
     return callLogThrow( new Callable<List<Character>>() {
       public List<Character> call() throws Exception {
@@ -21,6 +21,9 @@
 package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -92,6 +95,24 @@ public interface IRepositoryFileDao {
 
   void permanentlyDeleteFile( final Serializable fileId, final String versionMessage );
 
+  /**
+   * Permanently deletes files, skipping the ones that cannot be deleted.
+   *
+   * @return number of files deleted
+   */
+  default int permanentlyDeleteFiles( final List<Serializable> fileIds, final String versionMessage ) {
+    int deleted = 0;
+    for ( Serializable fileId : fileIds ) {
+      try {
+        permanentlyDeleteFile( fileId, versionMessage );
+        deleted++;
+      } catch ( RuntimeException e ) {
+        // skip the file and delete the others
+      }
+    }
+    return deleted;
+  }
+
   List<RepositoryFile> getDeletedFiles( final String origParentFolderPath, final String filter );
 
   List<RepositoryFile> getDeletedFiles();
@@ -100,12 +121,30 @@ public interface IRepositoryFileDao {
     return getDeletedFiles();
   }
 
+  List<RepositoryFile> getDeletedFiles( final String owner, final String origParentFolderPath,
+      final Date deletedBefore, final int offset, final int limit );
+
   boolean canUnlockFile( final Serializable fileId );
 
   void lockFile( final Serializable fileId, final String message );
 
   void unlockFile( final Serializable fileId );
 
+  default int unlockFiles( final List<Serializable> fileIds ) {
+    int unlocked = 0;
+    for ( Serializable fileId : fileIds ) {
+      if ( canUnlockFile( fileId ) ) {
+        unlockFile( fileId );
+        unlocked++;
+      }
+    }
+    return unlocked;
+  }
+
+  default List<RepositoryFile> getLockedFiles() {
+    return Collections.emptyList();
+  }
+
   List<VersionSummary> getVersionSummaries( final Serializable fileId );
 
   VersionSummary getVersionSummary( final Serializable fileId, final Serializable versionId );
@@ -124,6 +163,14 @@ public interface IRepositoryFileDao {
 
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  default List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+    for ( RepositoryFile file : files ) {
+      metadata.add( getFileMetadata( file.getId() ) );
+    }
+    return metadata;
+  }
+
   List<Character> getReservedChars();
 
   List<Locale> getAvailableLocalesForFileById( final Serializable fileId );
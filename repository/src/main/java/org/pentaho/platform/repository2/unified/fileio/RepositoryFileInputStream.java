@@ -24,15 +24,27 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.transform.BinaryInputStream;
 
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
 
+/**
+ * Stream over the content of a repository file. Reads, skips and {@link #available()} are delegated in bulk to the
+ * content stream of the repository, and {@link #read(long, byte[], int, int)} and
+ * {@link #copyRange(long, long, OutputStream)} read parts of the content, e.g. for HTTP range requests.
+ */
 public class RepositoryFileInputStream extends InputStream {
 
+  private static final int COPY_BUFFER_SIZE = 65536;
+
   protected InputStream is = null;
 
   protected IUnifiedRepository repository = null;
@@ -108,6 +120,121 @@ public class RepositoryFileInputStream extends InputStream {
     return is.read();
   }
 
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.read( b, off, len );
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.skip( n );
+  }
+
+  @Override
+  public int available() throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( is != null ) {
+      is.close();
+    }
+  }
+
+  /**
+   * Reads up to {@code len} bytes starting at {@code position} in the content, without changing the position of this
+   * stream when the repository supports positioned reads.
+   *
+   * @return number of bytes read, {@code -1} if {@code position} is at or past the end of the content
+   */
+  public int read( long position, byte[] b, int off, int len ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    if ( is instanceof BinaryInputStream ) {
+      return ( (BinaryInputStream) is ).read( position, b, off, len );
+    }
+    if ( is instanceof FileInputStream ) {
+      return ( (FileInputStream) is ).getChannel().read( ByteBuffer.wrap( b, off, len ), position );
+    }
+    // no positioned access: read from a stream of its own
+    InputStream content = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class ).getInputStream();
+    try {
+      skipFully( content, position );
+      return content.read( b, off, len );
+    } catch ( EOFException e ) {
+      return -1;
+    } finally {
+      content.close();
+    }
+  }
+
+  /**
+   * Copies {@code length} bytes of the content starting at {@code offset} to {@code out}. The stream is positioned
+   * by skipping, which the repository content streams do without reading the skipped bytes.
+   *
+   * @param length number of bytes to copy, {@code -1} for all bytes up to the end of the content
+   * @return number of bytes copied
+   */
+  public long copyRange( long offset, long length, OutputStream out ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    skipFully( is, offset );
+    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    long copied = 0;
+    while ( length < 0 || copied < length ) {
+      int read = is.read( buffer, 0, length < 0 ? buffer.length : (int) Math.min( buffer.length, length - copied ) );
+      if ( read < 0 ) {
+        break;
+      }
+      out.write( buffer, 0, read );
+      copied += read;
+    }
+    return copied;
+  }
+
+  private static void skipFully( InputStream in, long n ) throws IOException {
+    while ( n > 0 ) {
+      long skipped = in.skip( n );
+      if ( skipped <= 0 ) {
+        // skip may stop short without being at the end
+        if ( in.read() < 0 ) {
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  /**
+   * @return size of the content in bytes, {@code -1} if not known
+   */
+  public long getSize() throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    if ( is instanceof BinaryInputStream ) {
+      return ( (BinaryInputStream) is ).getSize();
+    }
+    if ( is instanceof FileInputStream ) {
+      return ( (FileInputStream) is ).getChannel().size();
+    }
+    Long fileSize = file.getFileSize();
+    return fileSize != null && fileSize > 0 ? fileSize : -1;
+  }
+
   public String getMimeType() {
     if ( fileData == null ) {
       fileData = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
@@ -32,21 +32,44 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Output stream writing its content to a repository file when flushed or closed.
+ * <p>
+ * Content is kept in memory up to the {@linkplain #setSpillThreshold(int) spill threshold} and spilled to a temporary
+ * file beyond it, so large generated content such as report exports does not have to fit in the heap. The repository
+ * is handed a single-pass stream over the content, which it copies straight into the binary it stores. The
+ * {@link ByteArrayOutputStream} methods still work on spilled content, but {@link #toByteArray()} then reads it all
+ * back into memory.
+ * </p>
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
   private static final String TRANS_EXT = "ktr";
   private static final String JOB_EXT = "kjb";
 
+  /**
+   * Number of bytes kept in memory before content is spilled to a temporary file.
+   */
+  public static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
   protected boolean hidden = false;
   protected String path = null;
   protected IUnifiedRepository repository;
@@ -57,6 +80,12 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean flushed = false;
   protected boolean forceFlush = true;
   protected ArrayList<IStreamListener> listeners = new ArrayList<>();
+  protected int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+  /** temporary file holding the content once spilled; {@link #buf} then buffers writes to it */
+  private File spillFile;
+  private OutputStream spillOut;
+  private long spilledBytes;
 
   public RepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
       final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
@@ -156,6 +185,146 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     this.forceFlush = forceFlush;
   }
 
+  @Override
+  public synchronized void write( int b ) {
+    if ( count >= spillThreshold ) {
+      spill();
+    }
+    super.write( b );
+  }
+
+  @Override
+  public synchronized void write( byte[] b, int off, int len ) {
+    if ( count + len > spillThreshold ) {
+      spill();
+      if ( len >= spillThreshold ) {
+        // too large to be worth buffering
+        try {
+          spillOut.write( b, off, len );
+        } catch ( IOException e ) {
+          throw new UncheckedIOException( e );
+        }
+        spilledBytes += len;
+        return;
+      }
+    }
+    super.write( b, off, len );
+  }
+
+  /**
+   * Moves the buffered content to the spill file, creating it on first use.
+   */
+  private void spill() {
+    try {
+      if ( spillFile == null ) {
+        spillFile = File.createTempFile( "repository-output", ".tmp" ); //$NON-NLS-1$ //$NON-NLS-2$
+        spillOut = new FileOutputStream( spillFile );
+      }
+      spillOut.write( buf, 0, count );
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+    spilledBytes += count;
+    count = 0;
+  }
+
+  /**
+   * @return number of bytes written, which unlike {@link #size()} may exceed {@link Integer#MAX_VALUE}
+   */
+  public synchronized long getLength() {
+    return spilledBytes + count;
+  }
+
+  /**
+   * @return whether the content has been spilled to a temporary file
+   */
+  public synchronized boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  @Override
+  public synchronized int size() {
+    return (int) Math.min( getLength(), Integer.MAX_VALUE );
+  }
+
+  @Override
+  public synchronized byte[] toByteArray() {
+    if ( spillFile == null ) {
+      return super.toByteArray();
+    }
+    if ( getLength() > Integer.MAX_VALUE - 8 ) {
+      throw new IllegalStateException( MessageFormat.format(
+          "Content of {0} is too large for a byte array: {1} bytes", path, getLength() ) ); //$NON-NLS-1$
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( (int) getLength() );
+    try {
+      writeTo( bytes );
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public synchronized void writeTo( OutputStream out ) throws IOException {
+    if ( spillFile != null ) {
+      spillOut.flush();
+      InputStream in = new FileInputStream( spillFile );
+      try {
+        byte[] chunk = new byte[8192];
+        long remaining = spilledBytes;
+        int read;
+        while ( remaining > 0 && ( read = in.read( chunk, 0, (int) Math.min( chunk.length, remaining ) ) ) > 0 ) {
+          out.write( chunk, 0, read );
+          remaining -= read;
+        }
+      } finally {
+        in.close();
+      }
+    }
+    super.writeTo( out );
+  }
+
+  @Override
+  public synchronized String toString() {
+    return spillFile == null ? super.toString() : new String( toByteArray() );
+  }
+
+  @Override
+  public synchronized String toString( String charsetName ) throws UnsupportedEncodingException {
+    return spillFile == null ? super.toString( charsetName ) : new String( toByteArray(), charsetName );
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    spilledBytes = 0;
+    if ( spillFile != null ) {
+      try {
+        spillOut.close();
+      } catch ( IOException ignored ) {
+        // the file is deleted below
+      }
+      if ( !spillFile.delete() ) {
+        spillFile.deleteOnExit();
+      }
+      spillFile = null;
+      spillOut = null;
+    }
+  }
+
+  /**
+   * Opens a single-pass stream over everything written so far. In-memory content is not copied.
+   */
+  protected synchronized InputStream openContent() throws IOException {
+    if ( spillFile == null ) {
+      return new ByteArrayInputStream( buf, 0, count );
+    }
+    spill();
+    spillOut.flush();
+    return new BufferedInputStream( new FileInputStream( spillFile ) );
+  }
+
   @Override
   public void flush() throws IOException {
     if ( closed ) {
@@ -163,17 +332,22 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    byte[] data = toByteArray();
-
-    if ( !forceFlush && data.length == 0 ) {
+    if ( !forceFlush && getLength() == 0 ) {
       for ( IStreamListener listener : listeners ) {
         listener.streamComplete();
       }
       flushed = true;
       return;
     }
-    ByteArrayInputStream bis = new ByteArrayInputStream( data );
+    InputStream bis = openContent();
+    try {
+      store( bis );
+    } finally {
+      bis.close();
+    }
+  }
 
+  private void store( InputStream bis ) throws IOException {
     // make an effort to determine the correct mime type, default to application/octet-stream
     String extension = RepositoryFilenameUtils.getExtension( path );
     String mimeType = "application/octet-stream"; //$NON-NLS-1$
@@ -302,7 +476,7 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
   }
 
-  IRepositoryFileData convert( Converter converter, ByteArrayInputStream bis, String mimeType ) {
+  IRepositoryFileData convert( Converter converter, InputStream bis, String mimeType ) {
     final IRepositoryFileData payload;
     if ( converter != null ) {
       payload = converter.convert( bis, charsetName, mimeType );
@@ -312,6 +486,17 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     return payload;
   }
 
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * @param spillThreshold number of bytes kept in memory before content is spilled to a temporary file
+   */
+  public synchronized void setSpillThreshold( int spillThreshold ) {
+    this.spillThreshold = Math.max( spillThreshold, 0 );
+  }
+
   public String getFilePath() {
     return path;
   }
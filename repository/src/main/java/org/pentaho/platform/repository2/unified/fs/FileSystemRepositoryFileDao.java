@@ -221,6 +221,11 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
 
+  public List<RepositoryFile> getDeletedFiles( String owner, String origParentFolderPath, Date deletedBefore,
+      int offset, int limit ) {
+    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+  }
+
   public RepositoryFile internalGetFile( File f ) {
 
     RepositoryFile file = null;
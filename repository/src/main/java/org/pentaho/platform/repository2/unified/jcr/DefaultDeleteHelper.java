@@ -46,10 +46,12 @@ import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.ValueFactory;
 import javax.jcr.lock.Lock;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.Ordering;
 import javax.jcr.query.qom.QueryObjectModelConstants;
 import javax.jcr.query.qom.QueryObjectModelFactory;
 import javax.jcr.query.qom.Selector;
@@ -401,6 +403,107 @@ public class DefaultDeleteHelper implements IDeleteHelper {
     return getDeletedFiles( session, pentahoJcrConstants );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Runs a single JQOM query on the indexed <code>pho:deletedDate</code> and <code>pho:origParentFolderPath</code>
+   * properties of the trash file ID nodes below the user's trash, or below the tenant's home folder when listing the
+   * deleted files of all users, so that neither the users nor the trash folders have to be walked.
+   * </p>
+   */
+  public List<RepositoryFile> getDeletedFiles( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+                                               final String owner, final String origParentFolderPath,
+                                               final Date deletedBefore, final int offset, final int limit )
+    throws RepositoryException {
+    ITenant tenant = JcrTenantUtils.getTenant();
+    String currentUser = getCurrentUser();
+    String scopePath;
+    if ( owner != null && !owner.equals( currentUser ) && !isAdmin() ) {
+      return Collections.emptyList();
+    } else if ( owner == null && isAdmin() ) {
+      scopePath = ServerRepositoryPaths.getTenantHomeFolderPath( tenant );
+    } else {
+      scopePath = getHomePath( tenant, owner != null ? owner : currentUser ) + RepositoryFile.SEPARATOR
+          + FOLDER_NAME_TRASH;
+    }
+    if ( !session.itemExists( scopePath ) ) {
+      return Collections.emptyList();
+    }
+
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    ValueFactory valueFactory = session.getValueFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( "nt:base", selectorName ); //$NON-NLS-1$
+    Constraint constraint = fac.and( fac.descendantNode( selectorName, scopePath ),
+        fac.propertyExistence( selectorName, pentahoJcrConstants.getPHO_DELETEDDATE() ) );
+    if ( StringUtils.hasLength( origParentFolderPath ) ) {
+      // the folder itself or any of its descendants
+      String pattern = escapeLikePattern( origParentFolderPath ) + RepositoryFile.SEPARATOR + "%"; //$NON-NLS-1$
+      constraint = fac.and( constraint, fac.or(
+          fac.comparison( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_ORIGPARENTFOLDERPATH() ),
+              QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO,
+              fac.literal( valueFactory.createValue( origParentFolderPath ) ) ),
+          fac.comparison( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_ORIGPARENTFOLDERPATH() ),
+              QueryObjectModelConstants.JCR_OPERATOR_LIKE, fac.literal( valueFactory.createValue( pattern ) ) ) ) );
+    }
+    if ( deletedBefore != null ) {
+      Calendar before = Calendar.getInstance();
+      before.setTime( deletedBefore );
+      constraint = fac.and( constraint,
+          fac.comparison( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_DELETEDDATE() ),
+              QueryObjectModelConstants.JCR_OPERATOR_LESS_THAN, fac.literal( valueFactory.createValue( before ) ) ) );
+    }
+    Ordering[] orderings =
+        { fac.descending( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_DELETEDDATE() ) ) };
+    Query query = fac.createQuery( selector, constraint, orderings, null );
+    if ( offset > 0 ) {
+      query.setOffset( offset );
+    }
+    if ( limit > 0 ) {
+      query.setLimit( limit );
+    }
+
+    List<RepositoryFile> deletedFiles = new ArrayList<>();
+    NodeIterator nodeIter = query.execute().getNodes();
+    while ( nodeIter.hasNext() ) {
+      Node trashFileIdNode = nodeIter.nextNode();
+      NodeIterator children = trashFileIdNode.getNodes();
+      if ( children.hasNext() ) {
+        deletedFiles.add( nodeToDeletedFile( session, pentahoJcrConstants, children.nextNode(),
+            getTrashOwner( trashFileIdNode ) ) );
+      } else {
+        logger.debug( Messages.getInstance().getString( "DefaultDeleteHelper.ERROR_0002_NOT_CLEAN" ) ); //$NON-NLS-1$
+      }
+    }
+    return deletedFiles;
+  }
+
+  /**
+   * Returns the user owning the trash that contains the given trash file ID node.
+   */
+  private String getTrashOwner( final Node trashFileIdNode ) throws RepositoryException {
+    Node node = trashFileIdNode.getParent();
+    while ( !FOLDER_NAME_TRASH.equals( node.getName() ) ) {
+      if ( node.getDepth() == 0 ) {
+        return null;
+      }
+      node = node.getParent();
+    }
+    return JcrStringHelper.fileNameDecode( node.getParent().getName() );
+  }
+
+  private static String escapeLikePattern( final String value ) {
+    StringBuilder escaped = new StringBuilder( value.length() + 8 );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      if ( c == '%' || c == '_' || c == '\\' ) {
+        escaped.append( '\\' );
+      }
+      escaped.append( c );
+    }
+    return escaped.toString();
+  }
+
   protected String getHomePath( ITenant tenant, String user ) {
     return ServerRepositoryPaths.getUserHomeFolderPath( tenant, JcrStringHelper.fileNameEncode( user ) );
   }
@@ -502,7 +605,9 @@ public class DefaultDeleteHelper implements IDeleteHelper {
 
     purgeHistory( fileNode, session, pentahoJcrConstants );
 
-    if ( fileNode.getPath().startsWith( trashFolder ) ) {
+    // the trash file ID node may also be in the trash of another user when an administrator purges it
+    if ( fileNode.getPath().startsWith( trashFolder )
+        || parent.hasProperty( pentahoJcrConstants.getPHO_DELETEDDATE() ) ) {
       // Remove the file and then the wrapper folder
       fileNode.remove();
       parent.remove();
@@ -28,17 +28,23 @@ import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
 import org.springframework.util.Assert;
 
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 import javax.jcr.lock.LockManager;
+import javax.jcr.query.Query;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -120,9 +126,10 @@ public class DefaultLockHelper implements ILockHelper {
   protected String getLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
-    Assert.isTrue( nodes.hasNext() );
-    return nodes.nextNode().getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
+    String fileId = lock.getNode().getIdentifier();
+    // lock token nodes are named after the file id; look the child up by name rather than scanning all of them
+    Assert.isTrue( lockTokensNode.hasNode( fileId ) );
+    return lockTokensNode.getNode( fileId ).getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
   }
 
   /**
@@ -132,19 +139,19 @@ public class DefaultLockHelper implements ILockHelper {
   public void removeLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
-    if ( nodes.hasNext() ) {
-      nodes.nextNode().remove();
+    String fileId = lock.getNode().getIdentifier();
+    if ( lockTokensNode.hasNode( fileId ) ) {
+      lockTokensNode.getNode( fileId ).remove();
     }
     session.save();
   }
 
   protected Node getOrCreateLockTokensNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Lock lock ) throws RepositoryException {
+    String lockOwner = getLockOwner( session, pentahoJcrConstants, lock );
     String absPath =
-        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( getLockOwner( session,
-            pentahoJcrConstants, lock ) ), userNameUtils.getPrincipleName( getLockOwner( session, pentahoJcrConstants,
-            lock ) ) );
+        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( lockOwner ), userNameUtils
+            .getPrincipleName( lockOwner ) );
     Node userHomeFolderNode = (Node) session.getItem( absPath );
     if ( userHomeFolderNode.hasNode( FOLDER_NAME_LOCK_TOKENS ) ) {
       return userHomeFolderNode.getNode( FOLDER_NAME_LOCK_TOKENS );
@@ -216,6 +223,43 @@ public class DefaultLockHelper implements ILockHelper {
     lockManager.unlock( fileNode.getPath() );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Runs a single query for the lock token nodes below the tenant's home folder. Access control on the users' home
+   * folders limits the result to the lock tokens the session's user may read.
+   * </p>
+   */
+  public List<Serializable> getLockedFileIds( final Session session, final PentahoJcrConstants pentahoJcrConstants )
+    throws RepositoryException {
+    String scopePath = ServerRepositoryPaths.getTenantHomeFolderPath( JcrTenantUtils.getTenant() );
+    if ( !session.itemExists( scopePath ) ) {
+      return Collections.emptyList();
+    }
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    Selector selector = fac.selector( pentahoJcrConstants.getPHO_NT_LOCKTOKENSTORAGE(), selectorName );
+    Query query = fac.createQuery( selector, fac.descendantNode( selectorName, scopePath ), null, null );
+
+    List<Serializable> fileIds = new ArrayList<Serializable>();
+    NodeIterator nodeIter = query.execute().getNodes();
+    while ( nodeIter.hasNext() ) {
+      Node lockTokenNode = nodeIter.nextNode();
+      Node fileNode;
+      try {
+        fileNode = session.getNodeByIdentifier( lockTokenNode.getName() );
+      } catch ( ItemNotFoundException e ) {
+        logger.debug( "lock token " + lockTokenNode.getPath() + " refers to a missing file", //$NON-NLS-1$ //$NON-NLS-2$
+            e );
+        continue;
+      }
+      if ( fileNode.holdsLock() ) {
+        fileIds.add( fileNode.getIdentifier() );
+      }
+    }
+    return fileIds;
+  }
+
   /**
    * {@inheritDoc}
    */
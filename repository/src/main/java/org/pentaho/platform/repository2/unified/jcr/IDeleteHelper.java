@@ -25,6 +25,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -90,6 +91,26 @@ public interface IDeleteHelper {
   List<RepositoryFile> getAllDeletedFiles( final Session session, final PentahoJcrConstants pentahoJcrConstants )
     throws RepositoryException;
 
+  /**
+   * Lists one page of deleted files, most recently deleted first. Only administrators may list deleted files of
+   * other users; for anyone else the listing is limited to their own deleted files.
+   * 
+   * @param owner
+   *          user whose deleted files to list, {@code null} for all users
+   * @param origParentFolderPath
+   *          if not {@code null}, only files deleted from this folder or one of its descendants
+   * @param deletedBefore
+   *          if not {@code null}, only files deleted before this date
+   * @param offset
+   *          number of matching files to skip
+   * @param limit
+   *          maximum number of files to return, {@code 0} for no limit
+   * @return list of deleted files
+   */
+  List<RepositoryFile> getDeletedFiles( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final String owner, final String origParentFolderPath, final Date deletedBefore, final int offset,
+      final int limit ) throws RepositoryException;
+
   /**
    * Returns the absolute path of the original parent folder. Can be used by caller to checkout parent folder
    * before calling {@link #undeleteFile(Session, PentahoJcrConstants, Serializable)}.
@@ -25,6 +25,7 @@ import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Helper class that stores, retrieves, and removes lock tokens. In section 8.4.7 of the JSR-170 specification, it
@@ -101,6 +102,21 @@ public interface ILockHelper {
   void unlockFile( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Serializable fileId )
     throws RepositoryException;
 
+  /**
+   * Lists the files holding a lock whose lock token the user represented by session may read, without walking the
+   * users' home folders. For an administrator these are all locked files of the tenant.
+   * 
+   * @param session
+   *          session
+   * @param pentahoJcrConstants
+   *          constants
+   * @return ids of the locked files
+   * @throws RepositoryException
+   *           if anything goes wrong
+   */
+  List<Serializable> getLockedFileIds( final Session session, final PentahoJcrConstants pentahoJcrConstants )
+    throws RepositoryException;
+
   /**
    * Adds the lock token associated with the file with the given file id if the file is locked.
    * 
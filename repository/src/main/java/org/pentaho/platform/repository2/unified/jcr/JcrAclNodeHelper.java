@@ -41,8 +41,13 @@ import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurity
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadAction;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
@@ -67,22 +72,7 @@ public class JcrAclNodeHelper implements IAclNodeHelper {
     try {
       return SecurityHelper.getInstance().runAsSystem( new Callable<RepositoryFile>() {
         @Override public RepositoryFile call() throws Exception {
-
-          List<RepositoryFile> referrers = unifiedRepository.getReferrers( file.getId() );
-
-          // Loop through nodes referring to the target file, return the first one designated as an ACL node
-          int i = referrers.size();
-          while ( i-- > 0 ) {
-            RepositoryFile referrer = referrers.get( i );
-            NodeRepositoryFileData dataForRead =
-                unifiedRepository.getDataForRead( referrer.getId(), NodeRepositoryFileData.class );
-            if ( dataForRead != null && dataForRead.getNode().hasProperty( IS_ACL_NODE ) ) {
-              return referrer;
-            }
-          }
-
-          // No ACL node found
-          return null;
+          return findAclNode( file );
         }
       } );
     } catch ( Exception e ) {
@@ -92,6 +82,27 @@ public class JcrAclNodeHelper implements IAclNodeHelper {
 
   }
 
+  /**
+   * Must be called as "system".
+   */
+  private RepositoryFile findAclNode( final RepositoryFile file ) {
+    List<RepositoryFile> referrers = unifiedRepository.getReferrers( file.getId() );
+
+    // Loop through nodes referring to the target file, return the first one designated as an ACL node
+    int i = referrers.size();
+    while ( i-- > 0 ) {
+      RepositoryFile referrer = referrers.get( i );
+      NodeRepositoryFileData dataForRead =
+          unifiedRepository.getDataForRead( referrer.getId(), NodeRepositoryFileData.class );
+      if ( dataForRead != null && dataForRead.getNode().hasProperty( IS_ACL_NODE ) ) {
+        return referrer;
+      }
+    }
+
+    // No ACL node found
+    return null;
+  }
+
   @Override public boolean canAccess( final RepositoryFile repositoryFile,
                                       final EnumSet<RepositoryFilePermission> permissions ) {
 
@@ -108,6 +119,56 @@ public class JcrAclNodeHelper implements IAclNodeHelper {
       return true;
     }
 
+    return canAccessAclNode( aclNode, permissions );
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * ACL nodes of all files are looked up in a single "system" call, and the current user's access is checked once per
+   * distinct ACL node.
+   * </p>
+   */
+  @Override public List<Boolean> canAccessInBatch( final List<RepositoryFile> repositoryFiles,
+                                                   final EnumSet<RepositoryFilePermission> permissions ) {
+    List<RepositoryFile> aclNodes;
+    try {
+      aclNodes = SecurityHelper.getInstance().runAsSystem( new Callable<List<RepositoryFile>>() {
+        @Override public List<RepositoryFile> call() throws Exception {
+          List<RepositoryFile> found = new ArrayList<RepositoryFile>( repositoryFiles.size() );
+          for ( RepositoryFile repositoryFile : repositoryFiles ) {
+            found.add( repositoryFile == null ? null : findAclNode( repositoryFile ) );
+          }
+          return found;
+        }
+      } );
+    } catch ( Exception e ) {
+      logger.error( "Error retrieving ACL Nodes", e );
+      aclNodes = Collections.<RepositoryFile>nCopies( repositoryFiles.size(), null );
+    }
+
+    List<Boolean> decisions = new ArrayList<Boolean>( repositoryFiles.size() );
+    Map<Serializable, Boolean> aclNodeDecisions = new HashMap<Serializable, Boolean>();
+    for ( int i = 0; i < repositoryFiles.size(); i++ ) {
+      RepositoryFile aclNode = aclNodes.get( i );
+      if ( repositoryFiles.get( i ) == null ) {
+        decisions.add( false );
+      } else if ( aclNode == null ) {
+        // public resource
+        decisions.add( true );
+      } else {
+        Boolean decision = aclNodeDecisions.get( aclNode.getId() );
+        if ( decision == null ) {
+          decision = canAccessAclNode( aclNode, permissions );
+          aclNodeDecisions.put( aclNode.getId(), decision );
+        }
+        decisions.add( decision );
+      }
+    }
+    return decisions;
+  }
+
+  private boolean canAccessAclNode( final RepositoryFile aclNode, final EnumSet<RepositoryFilePermission> permissions ) {
     boolean notFound;
     try {
       // Check to see if user has READ access to file, this will return null if not.
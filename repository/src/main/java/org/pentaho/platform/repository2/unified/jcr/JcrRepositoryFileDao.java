@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -65,6 +67,7 @@ import org.pentaho.platform.repository2.messages.Messages;
 import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
 import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
+import org.pentaho.platform.repository2.unified.exception.RepositoryFileDaoReferentialIntegrityException;
 import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 import org.springframework.util.Assert;
@@ -81,6 +84,11 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
   // ~ Static fields/initializers
   // ======================================================================================
 
+  /**
+   * Number of files removed per session save by {@link #permanentlyDeleteFiles(List, String)}.
+   */
+  public static final int DEFAULT_BULK_DELETE_BATCH_SIZE = 500;
+
   // ~ Instance fields
   // =================================================================================================
   private JcrTemplate jcrTemplate;
@@ -99,6 +107,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
 
   private IRepositoryAccessVoterManager accessVoterManager;
 
+  private int bulkDeleteBatchSize = DEFAULT_BULK_DELETE_BATCH_SIZE;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -605,6 +615,67 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Files that no longer exist, do not hold a lock themselves or cannot be unlocked by the current user are skipped.
+   * </p>
+   */
+  @Override
+  public int unlockFiles( final List<Serializable> fileIds ) {
+    if ( isKioskEnabled() ) {
+      throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
+    }
+
+    Assert.notNull( fileIds );
+    return (Integer) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        int unlocked = 0;
+        for ( Serializable fileId : fileIds ) {
+          Node fileNode;
+          try {
+            fileNode = session.getNodeByIdentifier( fileId.toString() );
+          } catch ( ItemNotFoundException e ) {
+            logger.debug( "File " + fileId + " no longer exists", e ); //$NON-NLS-1$ //$NON-NLS-2$
+            continue;
+          }
+          // a file below a locked folder is locked as well, but only the folder can be unlocked
+          if ( !fileNode.holdsLock() ) {
+            continue;
+          }
+          Lock lock = session.getWorkspace().getLockManager().getLock( fileNode.getPath() );
+          if ( lockHelper.canUnlock( session, pentahoJcrConstants, lock ) ) {
+            lockHelper.unlockFile( session, pentahoJcrConstants, fileId );
+            unlocked++;
+          }
+        }
+        return unlocked;
+      }
+    } );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getLockedFiles() {
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        List<RepositoryFile> lockedFiles = new ArrayList<RepositoryFile>();
+        for ( Serializable fileId : lockHelper.getLockedFileIds( session, pentahoJcrConstants ) ) {
+          lockedFiles.add( JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper,
+              lockHelper, session.getNodeByIdentifier( fileId.toString() ) ) );
+        }
+        return lockedFiles;
+      }
+    } );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -756,6 +827,23 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getDeletedFiles( final String owner, final String origParentFolderPath,
+      final Date deletedBefore, final int offset, final int limit ) {
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        return deleteHelper.getDeletedFiles( session, pentahoJcrConstants, owner, origParentFolderPath,
+            deletedBefore, offset, limit );
+      }
+    } );
+  }
+
   /**
    * {@inheritDoc}
    * <p/>
@@ -773,24 +861,107 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     jcrTemplate.execute( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
-        RepositoryFile fileToBeDeleted = getFileById( fileId );
-        // Get repository file info and acl info of parent
-        if ( fileToBeDeleted != null ) {
-          RepositoryFileAcl toBeDeletedFileAcl = aclDao.getAcl( fileToBeDeleted.getId() );
-          // Invoke accessVoterManager to see if we have access to perform this operation
-          if ( !accessVoterManager.hasAccess( fileToBeDeleted, RepositoryFilePermission.DELETE, toBeDeletedFileAcl,
-              PentahoSessionHolder.getSession() ) ) {
-            return null;
-          }
+        if ( internalPermanentlyDeleteFile( session, fileId ) ) {
+          session.save();
         }
-        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
-        deleteHelper.permanentlyDeleteFile( session, pentahoJcrConstants, fileId );
-        session.save();
         return null;
       }
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Files are removed in batches of {@link #getBulkDeleteBatchSize()}, each in one session save. Files that no longer
+   * exist, that the user may not delete or that are still referenced are skipped. When the save of a batch fails,
+   * its files are deleted one at a time, so that one failing file does not keep the others in the trash.
+   * </p>
+   */
+  @Override
+  public int permanentlyDeleteFiles( final List<Serializable> fileIds, final String versionMessage ) {
+    if ( isKioskEnabled() ) {
+      throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
+    }
+
+    Assert.notNull( fileIds );
+    int deleted = 0;
+    int failed = 0;
+    for ( int from = 0; from < fileIds.size(); from += bulkDeleteBatchSize ) {
+      List<Serializable> batch = fileIds.subList( from, Math.min( from + bulkDeleteBatchSize, fileIds.size() ) );
+      try {
+        deleted += permanentlyDeleteBatch( batch );
+      } catch ( RuntimeException e ) {
+        logger.warn( "Deleting a batch of " + batch.size() //$NON-NLS-1$
+            + " files failed, deleting them one at a time", e ); //$NON-NLS-1$
+        for ( Serializable fileId : batch ) {
+          try {
+            deleted += permanentlyDeleteBatch( Collections.singletonList( fileId ) );
+          } catch ( RuntimeException fileFailure ) {
+            failed++;
+            logger.warn( "File " + fileId + " could not be deleted", fileFailure ); //$NON-NLS-1$ //$NON-NLS-2$
+          }
+        }
+      }
+    }
+    if ( failed > 0 ) {
+      logger.warn( failed + " of " + fileIds.size() + " files could not be deleted" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return deleted;
+  }
+
+  /**
+   * Removes files in one session save. If anything fails, the removals are discarded from the session.
+   *
+   * @return number of files removed
+   */
+  private int permanentlyDeleteBatch( final List<Serializable> batch ) {
+    return (Integer) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        int removed = 0;
+        try {
+          for ( Serializable fileId : batch ) {
+            try {
+              if ( internalPermanentlyDeleteFile( session, fileId ) ) {
+                removed++;
+              }
+            } catch ( ItemNotFoundException e ) {
+              logger.debug( "File " + fileId + " no longer exists", e ); //$NON-NLS-1$ //$NON-NLS-2$
+            } catch ( RepositoryFileDaoReferentialIntegrityException e ) {
+              logger.warn( "File " + fileId + " is still referenced", e ); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+          }
+          session.save();
+        } catch ( RepositoryException | RuntimeException e ) {
+          // do not leave the removals of a failed batch in the session for a later save
+          session.refresh( false );
+          throw e;
+        }
+        return removed;
+      }
+    } );
+  }
+
+  /**
+   * @return {@code false} if the current user may not delete the file
+   */
+  private boolean internalPermanentlyDeleteFile( final Session session, final Serializable fileId )
+    throws RepositoryException {
+    RepositoryFile fileToBeDeleted = getFileById( fileId );
+    // Get repository file info and acl info of parent
+    if ( fileToBeDeleted != null ) {
+      RepositoryFileAcl toBeDeletedFileAcl = aclDao.getAcl( fileToBeDeleted.getId() );
+      // Invoke accessVoterManager to see if we have access to perform this operation
+      if ( !accessVoterManager.hasAccess( fileToBeDeleted, RepositoryFilePermission.DELETE, toBeDeletedFileAcl,
+          PentahoSessionHolder.getSession() ) ) {
+        return false;
+      }
+    }
+    PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+    deleteHelper.permanentlyDeleteFile( session, pentahoJcrConstants, fileId );
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1163,6 +1334,22 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    Assert.notNull( files );
+    return (List<Map<String, Serializable>>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( Session session ) throws IOException, RepositoryException {
+        List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+        for ( RepositoryFile file : files ) {
+          metadata.add( JcrRepositoryFileUtils.getFileMetadata( session, file.getId() ) );
+        }
+        return metadata;
+      }
+    } );
+  }
+
   @Override
   public List<Character> getReservedChars() {
     return JcrRepositoryFileUtils.getReservedChars();
@@ -1176,6 +1363,14 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     this.defaultAclHandler = defaultAclHandler;
   }
 
+  public int getBulkDeleteBatchSize() {
+    return bulkDeleteBatchSize;
+  }
+
+  public void setBulkDeleteBatchSize( int bulkDeleteBatchSize ) {
+    this.bulkDeleteBatchSize = bulkDeleteBatchSize > 0 ? bulkDeleteBatchSize : DEFAULT_BULK_DELETE_BATCH_SIZE;
+  }
+
   @Override
   public List<Locale> getAvailableLocalesForFileById( Serializable fileId ) {
     RepositoryFile repositoryFile = getFileById( fileId, true );
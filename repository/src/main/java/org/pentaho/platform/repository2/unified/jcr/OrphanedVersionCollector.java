@@ -0,0 +1,430 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2020 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.version.VersionHistory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Removes versions whose versionable node no longer exists from <tt>/jcr:system/jcr:versionStorage</tt>.
+ * <p>
+ * Version storage is walked depth first in bounded batches. Each batch uses its own system session and is saved
+ * before the next one starts, and the pending part of the walk is kept as a checkpoint between batches, so a
+ * collection can be paused and later resumed where it stopped. The walk can be throttled to a maximum number of
+ * visited nodes per second.
+ * </p>
+ * <p>
+ * A batch whose save fails puts the paths it took back on the checkpoint, so they are visited again by the next
+ * batch; the collection fails after {@value #MAX_BATCH_ATTEMPTS} consecutive failed batches. A collection started
+ * after a failed one starts over from the top of version storage.
+ * </p>
+ * There is one collector per repository, returned by {@link #getInstance(RepositoryImpl)}; the one of the system
+ * repository is driven by {@link RepositoryCleaner} and the administration endpoints.
+ */
+public class OrphanedVersionCollector {
+
+  public enum State {
+    IDLE, RUNNING, PAUSED, COMPLETED, FAILED
+  }
+
+  static final String VERSION_STORAGE_PATH = "/jcr:system/jcr:versionStorage";
+  private static final String JCR_FROZEN_NODE = "jcr:frozenNode";
+  private static final String JCR_FROZEN_UUID = "jcr:frozenUuid";
+  private static final String JCR_ROOT_VERSION = "jcr:rootVersion";
+
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  static final int MAX_BATCH_ATTEMPTS = 3;
+
+  private static final Map<RepositoryImpl, OrphanedVersionCollector> instances =
+      new WeakHashMap<RepositoryImpl, OrphanedVersionCollector>();
+
+  private final Log logger = LogFactory.getLog( OrphanedVersionCollector.class );
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private int maxNodesPerSecond = 0;
+
+  /** paths still to visit; the checkpoint between batches */
+  private final Deque<String> pending = new ArrayDeque<String>();
+
+  private volatile State state = State.IDLE;
+
+  private volatile boolean pauseRequested;
+
+  private volatile long visitedNodes;
+
+  private volatile long removedVersions;
+
+  private volatile long batches;
+
+  private volatile Date startTime;
+
+  private volatile Date endTime;
+
+  private final RepositoryImpl repository;
+
+  private IPentahoSystemSessionFactory lastSessionFactory;
+
+  /**
+   * @return the collector of the given repository, created on first use
+   */
+  public static OrphanedVersionCollector getInstance( RepositoryImpl repository ) {
+    synchronized ( instances ) {
+      OrphanedVersionCollector collector = instances.get( repository );
+      if ( collector == null ) {
+        collector = new OrphanedVersionCollector( repository );
+        instances.put( repository, collector );
+      }
+      return collector;
+    }
+  }
+
+  /**
+   * @return the collector of the system <tt>jcrRepository</tt>, or {@code null} if it is not a Jackrabbit repository
+   */
+  public static OrphanedVersionCollector getSystemInstance() {
+    Repository jcrRepository = PentahoSystem.get( Repository.class, "jcrRepository", null );
+    return jcrRepository instanceof RepositoryImpl ? getInstance( (RepositoryImpl) jcrRepository ) : null;
+  }
+
+  OrphanedVersionCollector( RepositoryImpl repository ) {
+    this.repository = repository;
+  }
+
+  /**
+   * Runs the collection in the calling thread until version storage has been fully walked or a pause is requested.
+   * Continues from the last checkpoint if the previous collection was paused.
+   *
+   * @return {@code true} if the walk completed, {@code false} if it was paused, failed or another collection is
+   * already running
+   */
+  public boolean collect( IPentahoSystemSessionFactory sessionFactory ) {
+    synchronized ( this ) {
+      if ( state == State.RUNNING ) {
+        logger.warn( "Orphaned version purge is already running" );
+        return false;
+      }
+      if ( state == State.FAILED ) {
+        // the checkpoint of a failed walk is not trusted; start over
+        pending.clear();
+      }
+      if ( pending.isEmpty() ) {
+        pending.push( VERSION_STORAGE_PATH );
+        visitedNodes = 0;
+        removedVersions = 0;
+        batches = 0;
+        startTime = new Date();
+        logger.debug( "Starting Orphaned Version Purge" );
+      } else {
+        logger.debug( "Resuming Orphaned Version Purge" );
+      }
+      lastSessionFactory = sessionFactory;
+      pauseRequested = false;
+      endTime = null;
+      state = State.RUNNING;
+    }
+
+    boolean completed = false;
+    boolean failed = false;
+    try {
+      long windowStart = System.currentTimeMillis();
+      long windowNodes = 0;
+      int failedAttempts = 0;
+      while ( true ) {
+        synchronized ( this ) {
+          if ( pending.isEmpty() ) {
+            completed = true;
+            logger.debug( "Finished Orphaned Version Purge" );
+            return true;
+          }
+          if ( pauseRequested || Thread.currentThread().isInterrupted() ) {
+            logger.info( String.format( "Orphaned version purge paused after %d nodes, %d versions removed",
+                visitedNodes, removedVersions ) );
+            return false;
+          }
+        }
+        try {
+          windowNodes += runBatch( sessionFactory );
+          failedAttempts = 0;
+        } catch ( RepositoryException e ) {
+          if ( ++failedAttempts >= MAX_BATCH_ATTEMPTS ) {
+            throw e;
+          }
+          logger.warn( "Orphaned version purge batch failed, retrying", e );
+        }
+        if ( maxNodesPerSecond > 0 ) {
+          long minElapsed = windowNodes * 1000L / maxNodesPerSecond;
+          long elapsed = System.currentTimeMillis() - windowStart;
+          if ( elapsed < minElapsed ) {
+            Thread.sleep( minElapsed - elapsed );
+          } else if ( elapsed > 60000L ) {
+            // start a new rate window so that time spent paused or idle does not allow a burst
+            windowStart = System.currentTimeMillis();
+            windowNodes = 0;
+          }
+        }
+      }
+    } catch ( RepositoryException e ) {
+      logger.error( "Error running Orphaned Version purge", e );
+      failed = true;
+      return false;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      synchronized ( this ) {
+        if ( completed ) {
+          state = State.COMPLETED;
+          endTime = new Date();
+        } else if ( failed ) {
+          state = State.FAILED;
+          endTime = new Date();
+          pending.clear();
+        } else {
+          state = State.PAUSED;
+        }
+      }
+    }
+  }
+
+  /**
+   * Processes one batch of at most {@link #getBatchSize()} nodes in its own system session. Paths discovered by the
+   * batch only become part of the checkpoint once the batch is saved; if it is not, the paths it took from the
+   * checkpoint are put back.
+   *
+   * @return number of nodes visited
+   */
+  private int runBatch( IPentahoSystemSessionFactory sessionFactory ) throws RepositoryException {
+    Deque<String> discovered = new ArrayDeque<String>();
+    List<String> taken = new ArrayList<String>();
+    boolean saved = false;
+    int visited = 0;
+    Session session = sessionFactory.create( repository );
+    try {
+      while ( visited < batchSize ) {
+        String path = discovered.poll();
+        if ( path == null ) {
+          synchronized ( this ) {
+            path = pending.poll();
+          }
+          if ( path == null ) {
+            break;
+          }
+          taken.add( path );
+        }
+        Node node;
+        try {
+          node = session.getNode( path );
+        } catch ( RepositoryException e ) {
+          // removed since it was queued, e.g. together with an orphaned version
+          continue;
+        }
+        visited++;
+        if ( node == null ) {
+          continue;
+        }
+        List<String> children = visit( node, session );
+        // push in reverse so that children are visited in document order
+        for ( int i = children.size() - 1; i >= 0; i-- ) {
+          discovered.push( children.get( i ) );
+        }
+      }
+      session.save();
+      saved = true;
+    } finally {
+      session.logout();
+      synchronized ( this ) {
+        if ( saved ) {
+          for ( Iterator<String> it = discovered.descendingIterator(); it.hasNext(); ) {
+            pending.push( it.next() );
+          }
+          visitedNodes += visited;
+          batches++;
+        } else {
+          for ( int i = taken.size() - 1; i >= 0; i-- ) {
+            pending.push( taken.get( i ) );
+          }
+        }
+      }
+    }
+    return visited;
+  }
+
+  /**
+   * Removes the version owning the given node if it is an orphaned frozen node.
+   *
+   * @return paths of the children to visit
+   */
+  private List<String> visit( Node node, Session session ) {
+    List<String> children = new ArrayList<String>();
+    try {
+      if ( node.getName().equals( JCR_FROZEN_NODE ) ) {
+        if ( node.hasProperty( JCR_FROZEN_UUID ) && !node.getParent().getName().equals( JCR_ROOT_VERSION ) ) {
+          // Version Node
+          Property property = node.getProperty( JCR_FROZEN_UUID );
+          Value uuid = property.getValue();
+          Node nodeByIdentifier = null;
+          try {
+            nodeByIdentifier = session.getNodeByIdentifier( uuid.getString() );
+            nodeByIdentifier = session.getNode( nodeByIdentifier.getPath() );
+          } catch ( RepositoryException ex ) {
+            // ignored this means the node is gone.
+          }
+          if ( nodeByIdentifier == null ) {
+            // node is gone
+            logger.info( "Removed orphan version: " + node.getPath() );
+            ( (VersionHistory) node.getParent().getParent() ).removeVersion( node.getParent().getName() );
+            synchronized ( this ) {
+              removedVersions++;
+            }
+          }
+        }
+        // frozen nodes never contain further versions
+        return children;
+      }
+    } catch ( RepositoryException e ) {
+      logger.error( "Error purging version nodes. Routine will continue", e );
+    }
+
+    NodeIterator nodes = null;
+    try {
+      nodes = node.getNodes();
+    } catch ( RepositoryException e ) {
+      logger.error( "Error purging version nodes. Routine will continue", e );
+    }
+    if ( nodes != null ) {
+      try {
+        while ( nodes.hasNext() ) {
+          children.add( nodes.nextNode().getPath() );
+        }
+      } catch ( RepositoryException e ) {
+        logger.error( "Error purging version nodes. Routine will continue", e );
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Asks a running collection to stop after its current batch. The checkpoint is kept for {@link #resume()}.
+   */
+  public void pause() {
+    pauseRequested = true;
+  }
+
+  /**
+   * Continues a paused collection, or starts a new one, in a background thread using the session factory of the last
+   * collection.
+   *
+   * @return {@code false} if no collection ever ran or one is already running
+   */
+  public synchronized boolean resume() {
+    if ( state == State.RUNNING || lastSessionFactory == null ) {
+      return false;
+    }
+    final IPentahoSystemSessionFactory sessionFactory = lastSessionFactory;
+    Thread thread = new Thread( new Runnable() {
+      @Override public void run() {
+        collect( sessionFactory );
+      }
+    }, "OrphanedVersionCollector" );
+    thread.setDaemon( true );
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Drops the checkpoint, so that the next collection starts from the top of version storage.
+   */
+  public synchronized void reset() {
+    if ( state != State.RUNNING ) {
+      pending.clear();
+      state = State.IDLE;
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  public long getRemovedVersions() {
+    return removedVersions;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public synchronized int getPendingNodes() {
+    return pending.size();
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+  }
+
+  public int getMaxNodesPerSecond() {
+    return maxNodesPerSecond;
+  }
+
+  /**
+   * @param maxNodesPerSecond maximum number of version storage nodes visited per second, {@code 0} for no limit
+   */
+  public void setMaxNodesPerSecond( int maxNodesPerSecond ) {
+    this.maxNodesPerSecond = Math.max( maxNodesPerSecond, 0 );
+  }
+}
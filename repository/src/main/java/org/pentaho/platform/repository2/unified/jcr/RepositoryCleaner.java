@@ -27,27 +27,20 @@ import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
 import org.apache.jackrabbit.core.RepositoryImpl;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
-import javax.jcr.Node;
-import javax.jcr.NodeIterator;
-import javax.jcr.Property;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
-import javax.jcr.Session;
-import javax.jcr.Value;
-import javax.jcr.version.VersionHistory;
 
 /**
- * This class provides a static method {@linkplain #gc()} for running JCR's GC routine.
+ * This class provides a method {@linkplain #gc()} for running JCR's GC routine. Orphaned versions are purged
+ * incrementally by the repository's {@link OrphanedVersionCollector}, which can be paused and resumed.
  *
  * @author Andrey Khayrutdinov
  */
 public class RepositoryCleaner {
 
   private final Log logger = LogFactory.getLog( RepositoryCleaner.class );
-  private static final String JCR_FROZEN_NODE = "jcr:frozenNode";
-  private static final String JCR_FROZEN_UUID = "jcr:frozenUuid";
-  private static final String JCR_ROOT_VERSION = "jcr:rootVersion";
   private IPentahoSystemSessionFactory systemSessionFactory = new IPentahoSystemSessionFactory.DefaultImpl();
+  private OrphanedVersionCollector versionCollector;
 
   /**
    * Exists primary for testing
@@ -57,7 +50,15 @@ public class RepositoryCleaner {
     this.systemSessionFactory = systemSessionFactory;
   }
 
-  public synchronized void gc() {
+  /**
+   * Exists primary for testing
+   * @param versionCollector
+   */
+  public void setVersionCollector( OrphanedVersionCollector versionCollector ) {
+    this.versionCollector = versionCollector;
+  }
+
+  public void gc() {
     Repository jcrRepository = PentahoSystem.get( Repository.class, "jcrRepository", null );
     if ( jcrRepository == null ) {
       logger.error( "Cannot obtain JCR repository. Exiting" );
@@ -71,16 +72,14 @@ public class RepositoryCleaner {
     }
 
     final RepositoryImpl repository = (RepositoryImpl) jcrRepository;
+    OrphanedVersionCollector versionCollector = this.versionCollector != null
+        ? this.versionCollector : OrphanedVersionCollector.getInstance( repository );
 
-    try {
-      logger.debug( "Starting Orphaned Version Purge" );
-      Session systemSession = systemSessionFactory.create( repository );
-      Node node = systemSession.getNode( "/jcr:system/jcr:versionStorage" );
-      findVersionNodesAndPurge( node, systemSession );
-      systemSession.save();
-      logger.debug( "Finished Orphaned Version Purge" );
-    } catch ( RepositoryException e ) {
-      logger.error( "Error running Orphaned Version purge", e );
+    if ( !versionCollector.collect( systemSessionFactory )
+        && versionCollector.getState() != OrphanedVersionCollector.State.FAILED ) {
+      // paused or already running elsewhere; leave the datastore alone until the version purge is done
+      logger.info( "Orphaned version purge did not complete, skipping data store garbage collection" );
+      return;
     }
 
     try {
@@ -110,47 +109,4 @@ public class RepositoryCleaner {
     }
 
   }
-
-  private void findVersionNodesAndPurge( Node node, Session session ) {
-    if ( node == null || session == null ) {
-      return;
-    }
-    try {
-      if ( node.getName().equals( JCR_FROZEN_NODE ) && node.hasProperty( JCR_FROZEN_UUID ) && !node.getParent()
-          .getName().equals( JCR_ROOT_VERSION ) ) {
-        // Version Node
-        Property property = node.getProperty( JCR_FROZEN_UUID );
-        Value uuid = property.getValue();
-        Node nodeByIdentifier = null;
-        try {
-          nodeByIdentifier = session.getNodeByIdentifier( uuid.getString() );
-          nodeByIdentifier = session.getNode( nodeByIdentifier.getPath() );
-        } catch ( RepositoryException ex ) {
-          // ignored this means the node is gone.
-        }
-        if ( nodeByIdentifier == null ) {
-          // node is gone
-          logger.info( "Removed orphan version: " + node.getPath() );
-          ( (VersionHistory) node.getParent().getParent() ).removeVersion( node.getParent().getName() );
-        }
-      }
-    } catch ( RepositoryException e ) {
-      logger.error( "Error purging version nodes. Routine will continue", e );
-    }
-
-    NodeIterator nodes = null;
-    try {
-      nodes = node.getNodes();
-    } catch ( RepositoryException e ) {
-      logger.error( "Error purging version nodes. Routine will continue", e );
-    }
-
-    if ( nodes == null ) {
-      return;
-    }
-
-    while ( nodes.hasNext() ) {
-      findVersionNodesAndPurge( nodes.nextNode(), session );
-    }
-  }
 }
@@ -0,0 +1,87 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.api.JackrabbitValue;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content comparison of binary values. Values held in a Jackrabbit data store are content addressed, so two of them
+ * are compared by their content identity without reading any data. Other values are compared by size and, up to
+ * {@link #MAX_COMPARE_LENGTH} bytes, byte by byte.
+ * <p>
+ * The data store already keeps a single record for identical binaries, so for values stored there the comparison
+ * saves no space. It is still made because replacing {@code jcr:data} with the same bytes is not free: the content
+ * node is rewritten, {@code jcr:lastModified} moves, and the search index extracts the text of the binary again. The
+ * comparison costs one lookup of the content identity. Values below the data store's {@code minRecordLength}, 1 KB in
+ * the shipped <tt>repository.xml</tt>, and all values of a repository without a data store are stored inline instead.
+ * Every version holds its own copy of those, so for them keeping the stored value also saves space.
+ * </p>
+ */
+final class BinaryContent {
+
+  /**
+   * Largest binary compared byte by byte when no content identity is available.
+   */
+  static final long MAX_COMPARE_LENGTH = 1024L * 1024L;
+
+  private BinaryContent() {
+  }
+
+  /**
+   * @return {@code true} if both values are known to hold the same bytes
+   */
+  static boolean isSame( final Value current, final Value candidate ) throws RepositoryException {
+    String currentIdentity = contentIdentity( current );
+    String candidateIdentity = contentIdentity( candidate );
+    if ( currentIdentity != null && candidateIdentity != null ) {
+      return currentIdentity.equals( candidateIdentity );
+    }
+    Binary currentBinary = current.getBinary();
+    Binary candidateBinary = candidate.getBinary();
+    long size = currentBinary.getSize();
+    if ( size != candidateBinary.getSize() || size > MAX_COMPARE_LENGTH ) {
+      return false;
+    }
+    InputStream currentStream = null;
+    InputStream candidateStream = null;
+    try {
+      currentStream = currentBinary.getStream();
+      candidateStream = candidateBinary.getStream();
+      return IOUtils.contentEquals( currentStream, candidateStream );
+    } catch ( IOException e ) {
+      return false;
+    } finally {
+      IOUtils.closeQuietly( currentStream );
+      IOUtils.closeQuietly( candidateStream );
+    }
+  }
+
+  private static String contentIdentity( final Value value ) {
+    return value instanceof JackrabbitValue ? ( (JackrabbitValue) value ).getContentIdentity() : null;
+  }
+}
@@ -0,0 +1,143 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream over the content of a JCR {@link Binary}. Sequential reads and skips are delegated in bulk to the stream of
+ * the binary, opened right away while the session that read the binary is still open, and {@link #read(long, byte[], int, int)} reads at an arbitrary position through
+ * {@link Binary#read(byte[], long)} without moving the stream. The binary is disposed of when the stream is closed.
+ */
+public class BinaryInputStream extends InputStream {
+
+  private final Binary binary;
+
+  private final InputStream stream;
+
+  private long position;
+
+  private boolean closed;
+
+  public BinaryInputStream( final Binary binary ) throws RepositoryException {
+    this.binary = binary;
+    try {
+      this.stream = binary.getStream();
+    } catch ( RepositoryException | RuntimeException e ) {
+      binary.dispose();
+      throw e;
+    }
+  }
+
+  private InputStream stream() throws IOException {
+    if ( closed ) {
+      throw new IOException( "Stream closed" ); //$NON-NLS-1$
+    }
+    return stream;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = stream().read();
+    if ( b >= 0 ) {
+      position++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read( final byte[] b, final int off, final int len ) throws IOException {
+    int read = stream().read( b, off, len );
+    if ( read > 0 ) {
+      position += read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip( final long n ) throws IOException {
+    if ( n <= 0 ) {
+      return 0;
+    }
+    long skipped = stream().skip( Math.min( n, Math.max( 0, getSize() - position ) ) );
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return stream().available();
+  }
+
+  /**
+   * Reads up to {@code len} bytes starting at {@code position} in the binary. Does not change the position of the
+   * stream.
+   *
+   * @return number of bytes read, {@code -1} if {@code position} is at or past the end of the binary
+   */
+  public int read( final long position, final byte[] b, final int off, final int len ) throws IOException {
+    if ( closed ) {
+      throw new IOException( "Stream closed" ); //$NON-NLS-1$
+    }
+    if ( len == 0 ) {
+      return 0;
+    }
+    try {
+      if ( off == 0 && len == b.length ) {
+        return binary.read( b, position );
+      }
+      byte[] buffer = new byte[len];
+      int read = binary.read( buffer, position );
+      if ( read > 0 ) {
+        System.arraycopy( buffer, 0, b, off, read );
+      }
+      return read;
+    } catch ( RepositoryException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  /**
+   * @return size of the binary in bytes
+   */
+  public long getSize() throws IOException {
+    try {
+      return binary.getSize();
+    } catch ( RepositoryException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( !closed ) {
+      closed = true;
+      try {
+        stream.close();
+      } finally {
+        binary.dispose();
+      }
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+import org.pentaho.platform.api.repository2.unified.data.node.DataProperty;
+
+/**
+ * Versioned binary encoding of a whole {@link DataNode} tree, used by
+ * {@link CompactNodeRepositoryFileDataTransformer}.
+ *
+ * <p>
+ * Layout (version 1), deflated after the 5 byte header:
+ * </p>
+ * <pre>
+ * header  := MAGIC:int VERSION:byte
+ * node    := name propertyCount:int property* childCount:int node*
+ * property:= name type:byte value
+ * name    := index:int [string]   (index -1 introduces a new name, otherwise refers to an earlier one)
+ * string  := length:int utf8Bytes
+ * </pre>
+ * {@code REF} values are written as an index into a reference table kept outside of the encoded bytes, so that the
+ * caller can store references in a form that preserves referential integrity.
+ */
+final class CompactDataNodeCodec {
+
+  static final int MAGIC = 0x504E4454; // "PNDT"
+
+  static final byte FORMAT_VERSION = 1;
+
+  private static final byte TYPE_STRING = 1;
+  private static final byte TYPE_BOOLEAN = 2;
+  private static final byte TYPE_DOUBLE = 3;
+  private static final byte TYPE_LONG = 4;
+  private static final byte TYPE_DATE = 5;
+  private static final byte TYPE_REF = 6;
+
+  private CompactDataNodeCodec() {
+  }
+
+  /**
+   * Encodes a tree.
+   *
+   * @param root tree to encode
+   * @param refs receives the distinct ids referenced by {@code REF} properties, in the order of their indexes
+   */
+  static byte[] encode( final DataNode root, final List<Serializable> refs ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream( bytes );
+    header.writeInt( MAGIC );
+    header.writeByte( FORMAT_VERSION );
+    header.flush();
+    DataOutputStream out = new DataOutputStream( new DeflaterOutputStream( bytes ) );
+    new Writer( out, refs ).writeNode( root );
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a tree.
+   *
+   * @param in   encoded bytes
+   * @param refs resolved references, indexed as returned by {@link #encode(DataNode, List)}
+   */
+  static DataNode decode( final InputStream in, final List<DataNodeRef> refs ) throws IOException {
+    DataInputStream header = new DataInputStream( in );
+    if ( header.readInt() != MAGIC ) {
+      throw new IOException( "Not a compact node data stream" ); //$NON-NLS-1$
+    }
+    byte version = header.readByte();
+    if ( version != FORMAT_VERSION ) {
+      throw new IOException( "Unsupported compact node data version " + version ); //$NON-NLS-1$
+    }
+    DataInputStream data = new DataInputStream( new InflaterInputStream( in ) );
+    return new Reader( data, refs ).readNode( null );
+  }
+
+  private static final class Writer {
+    private final DataOutputStream out;
+    private final List<Serializable> refs;
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private final Map<Serializable, Integer> refIndexes = new HashMap<Serializable, Integer>();
+
+    private Writer( final DataOutputStream out, final List<Serializable> refs ) {
+      this.out = out;
+      this.refs = refs;
+    }
+
+    private void writeNode( final DataNode node ) throws IOException {
+      writeName( node.getName() );
+      List<DataProperty> properties = new ArrayList<DataProperty>();
+      for ( DataProperty property : node.getProperties() ) {
+        // like a JCR property set to null, a property without a value is not stored
+        if ( property.getString() != null ) {
+          properties.add( property );
+        }
+      }
+      out.writeInt( properties.size() );
+      for ( DataProperty property : properties ) {
+        writeProperty( property );
+      }
+      List<DataNode> children = new ArrayList<DataNode>();
+      for ( DataNode child : node.getNodes() ) {
+        children.add( child );
+      }
+      out.writeInt( children.size() );
+      for ( DataNode child : children ) {
+        writeNode( child );
+      }
+    }
+
+    private void writeProperty( final DataProperty property ) throws IOException {
+      writeName( property.getName() );
+      switch ( property.getType() ) {
+        case STRING: {
+          out.writeByte( TYPE_STRING );
+          writeString( property.getString() );
+          break;
+        }
+        case BOOLEAN: {
+          out.writeByte( TYPE_BOOLEAN );
+          out.writeBoolean( property.getBoolean() );
+          break;
+        }
+        case DOUBLE: {
+          out.writeByte( TYPE_DOUBLE );
+          out.writeDouble( property.getDouble() );
+          break;
+        }
+        case LONG: {
+          out.writeByte( TYPE_LONG );
+          out.writeLong( property.getLong() );
+          break;
+        }
+        case DATE: {
+          out.writeByte( TYPE_DATE );
+          out.writeLong( property.getDate().getTime() );
+          break;
+        }
+        case REF: {
+          Serializable id = property.getRef().getId();
+          Integer index = refIndexes.get( id );
+          if ( index == null ) {
+            index = refs.size();
+            refs.add( id );
+            refIndexes.put( id, index );
+          }
+          out.writeByte( TYPE_REF );
+          out.writeInt( index );
+          break;
+        }
+        default: {
+          throw new IllegalArgumentException();
+        }
+      }
+    }
+
+    private void writeName( final String name ) throws IOException {
+      Integer index = names.get( name );
+      if ( index != null ) {
+        out.writeInt( index );
+      } else {
+        names.put( name, names.size() );
+        out.writeInt( -1 );
+        writeString( name );
+      }
+    }
+
+    private void writeString( final String value ) throws IOException {
+      byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+      out.writeInt( bytes.length );
+      out.write( bytes );
+    }
+  }
+
+  private static final class Reader {
+    private final DataInputStream in;
+    private final List<DataNodeRef> refs;
+    private final List<String> names = new ArrayList<String>();
+
+    private Reader( final DataInputStream in, final List<DataNodeRef> refs ) {
+      this.in = in;
+      this.refs = refs;
+    }
+
+    private DataNode readNode( final DataNode parent ) throws IOException {
+      String name = readName();
+      DataNode node = parent != null ? parent.addNode( name ) : new DataNode( name );
+      int propertyCount = in.readInt();
+      for ( int i = 0; i < propertyCount; i++ ) {
+        readProperty( node );
+      }
+      int childCount = in.readInt();
+      for ( int i = 0; i < childCount; i++ ) {
+        readNode( node );
+      }
+      return node;
+    }
+
+    private void readProperty( final DataNode node ) throws IOException {
+      String name = readName();
+      byte type = in.readByte();
+      switch ( type ) {
+        case TYPE_STRING: {
+          node.setProperty( name, readString() );
+          break;
+        }
+        case TYPE_BOOLEAN: {
+          node.setProperty( name, in.readBoolean() );
+          break;
+        }
+        case TYPE_DOUBLE: {
+          node.setProperty( name, in.readDouble() );
+          break;
+        }
+        case TYPE_LONG: {
+          node.setProperty( name, in.readLong() );
+          break;
+        }
+        case TYPE_DATE: {
+          node.setProperty( name, new Date( in.readLong() ) );
+          break;
+        }
+        case TYPE_REF: {
+          int index = in.readInt();
+          if ( index < 0 || index >= refs.size() ) {
+            throw new IOException( "Invalid reference index " + index ); //$NON-NLS-1$
+          }
+          node.setProperty( name, refs.get( index ) );
+          break;
+        }
+        default: {
+          throw new IOException( "Unknown property type " + type ); //$NON-NLS-1$
+        }
+      }
+    }
+
+    private String readName() throws IOException {
+      int index = in.readInt();
+      if ( index == -1 ) {
+        String name = readString();
+        names.add( name );
+        return name;
+      }
+      if ( index < 0 || index >= names.size() ) {
+        throw new IOException( "Invalid name index " + index ); //$NON-NLS-1$
+      }
+      return names.get( index );
+    }
+
+    private String readString() throws IOException {
+      int length = in.readInt();
+      if ( length < 0 ) {
+        throw new IOException( "Invalid string length " + length ); //$NON-NLS-1$
+      }
+      byte[] bytes = new byte[ length ];
+      in.readFully( bytes );
+      return new String( bytes, StandardCharsets.UTF_8 );
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.Binary;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+/**
+ * Stores a {@link NodeRepositoryFileData} as a single binary property of the content node instead of one JCR node
+ * per {@code DataNode} and one JCR property per {@code DataProperty}. See {@link CompactDataNodeCodec} for the
+ * format. {@code REF} properties are additionally kept in a multi-valued reference property, so that the referenced
+ * files keep their referential integrity.
+ *
+ * <p>
+ * Content stored in the node-per-{@code DataNode} layout of {@link NodeRepositoryFileDataTransformer} is still read,
+ * and is converted the next time the file is updated. With {@link #setCompactWrites(boolean)} set to {@code false}
+ * the legacy layout keeps being written while both layouts are read, which allows switching back.
+ * </p>
+ */
+public class CompactNodeRepositoryFileDataTransformer extends NodeRepositoryFileDataTransformer {
+
+  static final String COMPACT_DATA = "compactNodeData"; //$NON-NLS-1$
+
+  static final String COMPACT_REFS = "compactNodeRefs"; //$NON-NLS-1$
+
+  private boolean compactWrites = true;
+
+  public CompactNodeRepositoryFileDataTransformer() {
+    super();
+  }
+
+  public boolean isCompactWrites() {
+    return compactWrites;
+  }
+
+  /**
+   * @param compactWrites {@code false} to keep writing the legacy node-per-{@code DataNode} layout
+   */
+  public void setCompactWrites( final boolean compactWrites ) {
+    this.compactWrites = compactWrites;
+  }
+
+  @Override
+  protected void createOrUpdateContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final NodeRepositoryFileData data, final Node fileNode ) throws RepositoryException {
+    if ( !compactWrites ) {
+      super.createOrUpdateContentNode( session, pentahoJcrConstants, data, fileNode );
+      removeCompactProperties( session, fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() ) );
+      return;
+    }
+
+    Node contentNode = null;
+    if ( fileNode.hasNode( pentahoJcrConstants.getJCR_CONTENT() ) ) {
+      contentNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
+    } else {
+      contentNode =
+          fileNode.addNode( pentahoJcrConstants.getJCR_CONTENT(), pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
+    }
+
+    // drop any legacy layout
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    NodeIterator nodes = contentNode.getNodes( prefix + "*" ); //$NON-NLS-1$
+    while ( nodes.hasNext() ) {
+      nodes.nextNode().remove();
+    }
+
+    List<Serializable> refIds = new ArrayList<Serializable>();
+    byte[] bytes;
+    try {
+      bytes = CompactDataNodeCodec.encode( data.getNode(), refIds );
+    } catch ( IOException e ) {
+      throw new RepositoryException( e );
+    }
+
+    ValueFactory valueFactory = session.getValueFactory();
+    Binary binary = valueFactory.createBinary( new ByteArrayInputStream( bytes ) );
+    try {
+      contentNode.setProperty( prefix + COMPACT_DATA, binary );
+    } finally {
+      binary.dispose();
+    }
+    if ( refIds.isEmpty() ) {
+      if ( contentNode.hasProperty( prefix + COMPACT_REFS ) ) {
+        contentNode.getProperty( prefix + COMPACT_REFS ).remove();
+      }
+    } else {
+      Value[] refs = new Value[ refIds.size() ];
+      for ( int i = 0; i < refs.length; i++ ) {
+        refs[ i ] = valueFactory.createValue( session.getNodeByIdentifier( refIds.get( i ).toString() ) );
+      }
+      contentNode.setProperty( prefix + COMPACT_REFS, refs );
+    }
+  }
+
+  @Override
+  public NodeRepositoryFileData fromContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode ) throws RepositoryException {
+    Node contentNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    if ( !contentNode.hasProperty( prefix + COMPACT_DATA ) ) {
+      return super.fromContentNode( session, pentahoJcrConstants, fileNode );
+    }
+
+    List<DataNodeRef> refs = new ArrayList<DataNodeRef>();
+    if ( contentNode.hasProperty( prefix + COMPACT_REFS ) ) {
+      for ( Value value : contentNode.getProperty( prefix + COMPACT_REFS ).getValues() ) {
+        refs.add( resolveRef( session, value.getString() ) );
+      }
+    }
+
+    Binary binary = contentNode.getProperty( prefix + COMPACT_DATA ).getBinary();
+    try {
+      InputStream in = binary.getStream();
+      try {
+        return new NodeRepositoryFileData( CompactDataNodeCodec.decode( in, refs ) );
+      } finally {
+        in.close();
+      }
+    } catch ( IOException e ) {
+      throw new RepositoryException( e );
+    } finally {
+      binary.dispose();
+    }
+  }
+
+  /**
+   * @return whether the content of the given file is stored in the compact layout
+   */
+  public boolean isCompact( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode ) throws RepositoryException {
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    return fileNode.hasNode( pentahoJcrConstants.getJCR_CONTENT() )
+        && fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() ).hasProperty( prefix + COMPACT_DATA );
+  }
+
+  /**
+   * Same outcome as reading a reference property in the legacy layout: references the current user cannot access
+   * become {@link DataNodeRef#REF_MISSING}.
+   */
+  private DataNodeRef resolveRef( final Session session, final String id ) throws RepositoryException {
+    try {
+      return new DataNodeRef( session.getNodeByIdentifier( id ).getIdentifier() );
+    } catch ( ItemNotFoundException e ) {
+      return new DataNodeRef( DataNodeRef.REF_MISSING );
+    }
+  }
+
+  private void removeCompactProperties( final Session session, final Node contentNode ) throws RepositoryException {
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    if ( contentNode.hasProperty( prefix + COMPACT_DATA ) ) {
+      contentNode.getProperty( prefix + COMPACT_DATA ).remove();
+    }
+    if ( contentNode.hasProperty( prefix + COMPACT_REFS ) ) {
+      contentNode.getProperty( prefix + COMPACT_REFS ).remove();
+    }
+  }
+}
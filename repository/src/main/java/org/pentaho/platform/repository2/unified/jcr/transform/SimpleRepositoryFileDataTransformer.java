@@ -20,20 +20,27 @@
 
 package org.pentaho.platform.repository2.unified.jcr.transform;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository2.unified.jcr.ITransformer;
 import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
 import org.springframework.util.StringUtils;
 
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
 import java.io.InputStream;
 import java.util.Calendar;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * An {@link ITransformer} that can read and write {@code nt:resource} nodes.
+ * An {@link ITransformer} that can read and write {@code nt:resource} nodes. An update whose content is identical to
+ * the stored content keeps the stored binary value, so that consecutive versions keep sharing it.
  * 
  * @author mlowery
  */
@@ -42,9 +49,13 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
   // ~ Static fields/initializers
   // ======================================================================================
 
+  private static final LongAdder deduplicatedUpdates = new LongAdder();
+
   // ~ Instance fields
   // =================================================================================================
 
+  private final Log logger = LogFactory.getLog( SimpleRepositoryFileDataTransformer.class );
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -107,8 +118,10 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if ( resourceNode.hasProperty( pentahoJcrConstants.getJCR_ENCODING() ) ) {
       encoding = resourceNode.getProperty( pentahoJcrConstants.getJCR_ENCODING() ).getString();
     }
-    InputStream data = resourceNode.getProperty( pentahoJcrConstants.getJCR_DATA() ).getBinary().getStream();
     String mimeType = resourceNode.getProperty( pentahoJcrConstants.getJCR_MIMETYPE() ).getString();
+    // opened here, inside the session, rather than when the caller first reads
+    InputStream data =
+        new BinaryInputStream( resourceNode.getProperty( pentahoJcrConstants.getJCR_DATA() ).getBinary() );
     return new SimpleRepositoryFileData( data, encoding, mimeType );
   }
 
@@ -119,15 +132,33 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
       final SimpleRepositoryFileData data, final Node fileNode ) throws RepositoryException {
     Node resourceNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
 
-    // mandatory property on nt:resource; give them a value to satisfy Jackrabbit
-    resourceNode.setProperty( pentahoJcrConstants.getJCR_LASTMODIFIED(), Calendar.getInstance() );
-
     if ( StringUtils.hasText( data.getEncoding() ) ) {
       resourceNode.setProperty( pentahoJcrConstants.getJCR_ENCODING(), data.getEncoding() );
     }
-    resourceNode.setProperty( pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(
-        data.getInputStream() ) );
+    ValueFactory valueFactory = session.getValueFactory();
+    Binary binary = valueFactory.createBinary( data.getInputStream() );
+    Value value = valueFactory.createValue( binary );
+    if ( resourceNode.hasProperty( pentahoJcrConstants.getJCR_DATA() )
+        && BinaryContent.isSame( resourceNode.getProperty( pentahoJcrConstants.getJCR_DATA() ).getValue(), value ) ) {
+      // unchanged content; keep the existing value so that it stays shared with the previous version
+      binary.dispose();
+      deduplicatedUpdates.increment();
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Content of " + fileNode.getPath() + " is unchanged" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    } else {
+      // mandatory property on nt:resource; give them a value to satisfy Jackrabbit
+      resourceNode.setProperty( pentahoJcrConstants.getJCR_LASTMODIFIED(), Calendar.getInstance() );
+      resourceNode.setProperty( pentahoJcrConstants.getJCR_DATA(), value );
+    }
     resourceNode.setProperty( pentahoJcrConstants.getJCR_MIMETYPE(), data.getMimeType() );
   }
 
+  /**
+   * @return number of updates that left the stored content untouched because it was identical to the new content
+   */
+  public static long getDeduplicatedUpdateCount() {
+    return deduplicatedUpdates.sum();
+  }
+
 }
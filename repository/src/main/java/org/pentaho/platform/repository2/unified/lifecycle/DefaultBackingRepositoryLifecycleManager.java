@@ -25,6 +25,7 @@ import org.apache.jackrabbit.api.security.authorization.PrivilegeManager;
 import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.mt.ITenantManager;
@@ -58,8 +59,13 @@ import javax.jcr.Session;
 import javax.jcr.Workspace;
 import javax.jcr.security.AccessControlException;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Default {@link IBackingRepositoryLifecycleManager} implementation.
@@ -100,6 +106,10 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
 
   private IPasswordService passwordService;
 
+  private boolean bootstrapUserHomeFoldersOnStartup;
+
+  private UserHomeFolderBootstrap userHomeFolderBootstrap;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -124,7 +134,8 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
     this.tenantAnonymousRoleName = tenantAnonymousRoleName;
     this.systemTenantAdminPassword = systemTenantAdminPassword;
     this.passwordService = passwordService;
-
+    this.userHomeFolderBootstrap =
+        new UserHomeFolderBootstrap( this::getTenantManager, txnTemplate, this::loginAsRepositoryAdmin );
   }
 
   // ~ Methods
@@ -141,8 +152,15 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
 
   @Override
   public synchronized void newUser( final ITenant tenant, final String username ) {
-    if ( getTenantManager().getUserHomeFolder( tenant, username ) == null ) {
-      getTenantManager().createUserHomeFolder( tenant, username );
+    // the lock a bulk bootstrap holds while it creates the same home folder
+    Lock userLock = userHomeFolderBootstrap.getUserLock( tenant, username );
+    userLock.lock();
+    try {
+      if ( getTenantManager().getUserHomeFolder( tenant, username ) == null ) {
+        getTenantManager().createUserHomeFolder( tenant, username );
+      }
+    } finally {
+      userLock.unlock();
     }
   }
 
@@ -184,6 +202,54 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
         th.printStackTrace();
       }
     }
+    if ( bootstrapUserHomeFoldersOnStartup ) {
+      try {
+        bootstrapUserHomeFolders();
+      } catch ( Throwable th ) {
+        logger.error( "Error bootstrapping user home folders", th ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  /**
+   * Creates the missing home folders of the users of every enabled tenant, in parallel batches. See
+   * {@link UserHomeFolderBootstrap}.
+   * 
+   * @return {@code true} if every user has a home folder
+   */
+  public boolean bootstrapUserHomeFolders() {
+    loginAsRepositoryAdmin();
+    ITenantManager tenantMgr = getTenantManager();
+    Map<ITenant, List<String>> usersByTenant = new LinkedHashMap<ITenant, List<String>>();
+    ITenant systemTenant = tenantMgr.getTenant( ServerRepositoryPaths.getPentahoRootFolderPath() );
+    Deque<ITenant> tenants = new ArrayDeque<ITenant>();
+    if ( systemTenant != null ) {
+      tenants.addAll( tenantMgr.getChildTenants( systemTenant, false ) );
+    }
+    while ( !tenants.isEmpty() ) {
+      ITenant tenant = tenants.poll();
+      List<String> usernames = new ArrayList<String>();
+      for ( IPentahoUser user : userRoleDao.getUsers( tenant ) ) {
+        usernames.add( user.getUsername() );
+      }
+      usersByTenant.put( tenant, usernames );
+      tenants.addAll( tenantMgr.getChildTenants( tenant, false ) );
+    }
+    return userHomeFolderBootstrap.run( usersByTenant );
+  }
+
+  /**
+   * Creates the missing home folders of users provisioned in bulk, in parallel batches. Unlike
+   * {@link #newUser(ITenant, String)}, this does not block logins while it runs; each home folder is still created
+   * under the same per-user lock as a login takes. The checkpoint of {@link #bootstrapUserHomeFolders()} is neither
+   * used nor changed, since these are only some of the users of the tenant.
+   * 
+   * @return {@code true} if every user has a home folder
+   */
+  public boolean newUsers( final ITenant tenant, final List<String> usernames ) {
+    Map<ITenant, List<String>> usersByTenant = new LinkedHashMap<ITenant, List<String>>();
+    usersByTenant.put( tenant, usernames );
+    return userHomeFolderBootstrap.run( usersByTenant, false );
   }
 
   /**
@@ -236,6 +302,31 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
     this.tenantManager = tenantManager;
   }
 
+  public UserHomeFolderBootstrap getUserHomeFolderBootstrap() {
+    return userHomeFolderBootstrap;
+  }
+
+  public boolean isBootstrapUserHomeFoldersOnStartup() {
+    return bootstrapUserHomeFoldersOnStartup;
+  }
+
+  /**
+   * @param bootstrapUserHomeFoldersOnStartup
+   *          whether {@link #startup()} creates the missing home folders of all users instead of leaving them to be
+   *          created when each user first logs in
+   */
+  public void setBootstrapUserHomeFoldersOnStartup( final boolean bootstrapUserHomeFoldersOnStartup ) {
+    this.bootstrapUserHomeFoldersOnStartup = bootstrapUserHomeFoldersOnStartup;
+  }
+
+  public void setBootstrapThreads( final int threads ) {
+    userHomeFolderBootstrap.setThreads( threads );
+  }
+
+  public void setBootstrapBatchSize( final int batchSize ) {
+    userHomeFolderBootstrap.setBatchSize( batchSize );
+  }
+
   public IUserRoleDao getUserRoleDao() {
     return userRoleDao;
   }
@@ -0,0 +1,464 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2020 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.lifecycle;
+
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantManager;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Creates the home folders of many users at once, e.g. at startup of a deployment with many tenants or when users
+ * are provisioned in bulk.
+ * <p>
+ * The users of each tenant are split into batches of at most {@link #getBatchSize()} users. Each batch runs in its
+ * own transaction, and therefore its own JCR session, on one of {@link #getThreads()} worker threads logged in as the
+ * repository administrator. The first user of a tenant is handled on its own before the other batches of that tenant
+ * are started, so that the tenant home folder is created once instead of by concurrent batches. A batch that fails is
+ * retried one user per transaction so that a single bad user does not hold back the others.
+ * </p>
+ * Existing home folders are left alone, so a bootstrap can safely be repeated. Tenants whose users all have a home
+ * folder are remembered, and skipped when an interrupted or partly failed bootstrap is run again.
+ * <p>
+ * A batch holds the {@link #getUserLock(ITenant, String) user lock} of each of its users until its transaction has
+ * committed, so that it never creates a home folder at the same time as a login does.
+ * </p>
+ */
+public class UserHomeFolderBootstrap {
+
+  public enum State {
+    IDLE, RUNNING, STOPPED, COMPLETED, FAILED
+  }
+
+  public static final int DEFAULT_THREADS = 4;
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  private static final int USER_LOCK_STRIPES = 1024;
+
+  private final Log logger = LogFactory.getLog( UserHomeFolderBootstrap.class );
+
+  private final Supplier<ITenantManager> tenantManager;
+
+  private final TransactionTemplate txnTemplate;
+
+  /** logs the calling thread in as the repository administrator */
+  private final Runnable login;
+
+  private final Striped<Lock> userLocks = Striped.lazyWeakLock( USER_LOCK_STRIPES );
+
+  private int threads = DEFAULT_THREADS;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /** ids of the tenants whose users all have a home folder; the checkpoint between runs */
+  private final Set<String> completedTenants = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+  private volatile State state = State.IDLE;
+
+  private volatile boolean stopRequested;
+
+  private volatile int totalTenants;
+
+  private volatile int skippedTenants;
+
+  private volatile long totalUsers;
+
+  private final LongAdder createdHomeFolders = new LongAdder();
+
+  private final LongAdder existingHomeFolders = new LongAdder();
+
+  private final LongAdder failedUsers = new LongAdder();
+
+  private final LongAdder batches = new LongAdder();
+
+  private volatile Date startTime;
+
+  private volatile Date endTime;
+
+  public UserHomeFolderBootstrap( final Supplier<ITenantManager> tenantManager, final TransactionTemplate txnTemplate,
+                                  final Runnable login ) {
+    this.tenantManager = tenantManager;
+    this.txnTemplate = txnTemplate;
+    this.login = login;
+  }
+
+  /**
+   * Creates the missing home folders of the given users, blocking until all batches have finished or a stop is
+   * requested.
+   *
+   * @param usersByTenant user names per tenant
+   * @return {@code true} if every user has a home folder, {@code false} if some could not be created, the bootstrap
+   * was stopped, or another bootstrap is already running
+   */
+  public boolean run( final Map<ITenant, List<String>> usersByTenant ) {
+    return run( usersByTenant, true );
+  }
+
+  /**
+   * @param checkpoint whether to skip and record completed tenants; off for a run over only some users of a tenant
+   */
+  boolean run( final Map<ITenant, List<String>> usersByTenant, final boolean checkpoint ) {
+    Map<ITenant, List<String>> pending = new LinkedHashMap<ITenant, List<String>>();
+    synchronized ( this ) {
+      if ( state == State.RUNNING ) {
+        logger.warn( "User home folder bootstrap is already running" ); //$NON-NLS-1$
+        return false;
+      }
+      int skipped = 0;
+      long users = 0;
+      for ( Map.Entry<ITenant, List<String>> entry : usersByTenant.entrySet() ) {
+        if ( checkpoint && completedTenants.contains( entry.getKey().getId() ) ) {
+          skipped++;
+        } else if ( entry.getValue().isEmpty() ) {
+          if ( checkpoint ) {
+            completedTenants.add( entry.getKey().getId() );
+          }
+        } else {
+          pending.put( entry.getKey(), entry.getValue() );
+          users += entry.getValue().size();
+        }
+      }
+      totalTenants = usersByTenant.size();
+      skippedTenants = skipped;
+      totalUsers = users;
+      createdHomeFolders.reset();
+      existingHomeFolders.reset();
+      failedUsers.reset();
+      batches.reset();
+      stopRequested = false;
+      startTime = new Date();
+      endTime = null;
+      state = State.RUNNING;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool( threads, new WorkerThreadFactory() );
+    boolean complete = false;
+    boolean failed = false;
+    try {
+      // one user per tenant first, which creates the tenant home folder if needed
+      Map<ITenant, List<Future<Boolean>>> results = new LinkedHashMap<ITenant, List<Future<Boolean>>>();
+      for ( Map.Entry<ITenant, List<String>> entry : pending.entrySet() ) {
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        futures.add( executor.submit( new Batch( entry.getKey(), entry.getValue().subList( 0, 1 ) ) ) );
+        results.put( entry.getKey(), futures );
+      }
+      for ( Map.Entry<ITenant, List<String>> entry : pending.entrySet() ) {
+        List<Future<Boolean>> futures = results.get( entry.getKey() );
+        if ( !futures.get( 0 ).get() ) {
+          continue;
+        }
+        List<String> users = entry.getValue();
+        for ( int from = 1; from < users.size(); from += batchSize ) {
+          List<String> batch = users.subList( from, Math.min( from + batchSize, users.size() ) );
+          futures.add( executor.submit( new Batch( entry.getKey(), batch ) ) );
+        }
+      }
+      complete = true;
+      for ( Map.Entry<ITenant, List<Future<Boolean>>> entry : results.entrySet() ) {
+        boolean tenantComplete = true;
+        for ( Future<Boolean> future : entry.getValue() ) {
+          tenantComplete &= future.get();
+        }
+        if ( !tenantComplete ) {
+          complete = false;
+        } else if ( checkpoint ) {
+          completedTenants.add( entry.getKey().getId() );
+        }
+      }
+      return complete;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      stopRequested = true;
+      return false;
+    } catch ( ExecutionException e ) {
+      logger.error( "Error bootstrapping user home folders", e ); //$NON-NLS-1$
+      failed = true;
+      return false;
+    } finally {
+      executor.shutdownNow();
+      synchronized ( this ) {
+        endTime = new Date();
+        if ( stopRequested ) {
+          state = State.STOPPED;
+        } else if ( failed || !complete ) {
+          state = State.FAILED;
+        } else {
+          state = State.COMPLETED;
+        }
+      }
+      logger.info( String.format( "User home folder bootstrap %s after %d ms: %d of %d tenants done, %d home folders"
+          + " created, %d existing, %d users failed", state, getElapsedMillis(), completedTenants.size(), totalTenants,
+          getCreatedHomeFolders(), getExistingHomeFolders(), getFailedUsers() ) ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Creates the missing home folders of a batch of users of one tenant.
+   */
+  private class Batch implements Callable<Boolean> {
+
+    private final ITenant tenant;
+
+    private final List<String> usernames;
+
+    private Batch( final ITenant tenant, final List<String> usernames ) {
+      this.tenant = tenant;
+      this.usernames = usernames;
+    }
+
+    @Override
+    public Boolean call() {
+      if ( stopRequested ) {
+        return false;
+      }
+      login.run();
+      try {
+        batches.increment();
+        try {
+          return inTransaction( usernames );
+        } catch ( RuntimeException e ) {
+          if ( usernames.size() == 1 ) {
+            return failed( usernames.get( 0 ), e );
+          }
+          logger.debug( "Retrying user home folder batch one user at a time", e ); //$NON-NLS-1$
+        }
+        boolean complete = true;
+        for ( String username : usernames ) {
+          if ( stopRequested ) {
+            return false;
+          }
+          try {
+            complete &= inTransaction( Collections.singletonList( username ) );
+          } catch ( RuntimeException e ) {
+            complete = failed( username, e );
+          }
+        }
+        return complete;
+      } finally {
+        PentahoSessionHolder.removeSession();
+        SecurityContextHolder.clearContext();
+      }
+    }
+
+    private boolean inTransaction( final List<String> names ) {
+      final int[] created = new int[ 1 ];
+      final int[] existing = new int[ 1 ];
+      final ITenantManager tenantMgr = tenantManager.get();
+      List<String> keys = new ArrayList<String>( names.size() );
+      for ( String username : names ) {
+        keys.add( lockKey( tenant, username ) );
+      }
+      // bulkGet orders the locks consistently, so batches cannot deadlock on each other
+      List<Lock> locks = new ArrayList<Lock>();
+      Boolean complete;
+      try {
+        for ( Lock lock : userLocks.bulkGet( keys ) ) {
+          lock.lock();
+          locks.add( lock );
+        }
+        complete = createHomeFolders( tenantMgr, names, created, existing );
+      } finally {
+        for ( Lock lock : locks ) {
+          lock.unlock();
+        }
+      }
+      // only counted once the transaction has committed
+      createdHomeFolders.add( created[ 0 ] );
+      existingHomeFolders.add( existing[ 0 ] );
+      failedUsers.add( names.size() - created[ 0 ] - existing[ 0 ] );
+      return Boolean.TRUE.equals( complete );
+    }
+
+    private Boolean createHomeFolders( final ITenantManager tenantMgr, final List<String> names, final int[] created,
+                                       final int[] existing ) {
+      return (Boolean) txnTemplate.execute( new TransactionCallback() {
+        @Override
+        public Object doInTransaction( final TransactionStatus status ) {
+          boolean allCreated = true;
+          for ( String username : names ) {
+            if ( tenantMgr.getUserHomeFolder( tenant, username ) != null ) {
+              existing[ 0 ]++;
+            } else if ( tenantMgr.createUserHomeFolder( tenant, username ) != null ) {
+              created[ 0 ]++;
+            } else {
+              // the tenant root folder does not exist
+              allCreated = false;
+            }
+          }
+          return allCreated;
+        }
+      } );
+    }
+
+    private boolean failed( final String username, final RuntimeException e ) {
+      failedUsers.increment();
+      logger.warn( "Could not create the home folder of user " + username + " in tenant " //$NON-NLS-1$ //$NON-NLS-2$
+          + tenant.getId(), e );
+      return false;
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( final Runnable runnable ) {
+      Thread thread = new Thread( runnable, "UserHomeFolderBootstrap-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+  /**
+   * Asks a running bootstrap to stop once its current batches are done. Completed tenants are kept for the next run.
+   */
+  public void stop() {
+    stopRequested = true;
+  }
+
+  /**
+   * Forgets which tenants were completed, so that the next run checks every user again. The checkpoint of a failed
+   * or stopped run is kept, so that the next run resumes it; it can only be reset once a run has completed.
+   *
+   * @return {@code true} if the checkpoint was reset
+   */
+  public synchronized boolean reset() {
+    if ( state != State.COMPLETED && state != State.IDLE ) {
+      return false;
+    }
+    completedTenants.clear();
+    state = State.IDLE;
+    return true;
+  }
+
+  /**
+   * @return the lock held while the home folder of the user is created, by a batch or by a login
+   */
+  public Lock getUserLock( final ITenant tenant, final String username ) {
+    return userLocks.get( lockKey( tenant, username ) );
+  }
+
+  private static String lockKey( final ITenant tenant, final String username ) {
+    return tenant.getId() + '\n' + username;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getTotalTenants() {
+    return totalTenants;
+  }
+
+  public int getCompletedTenants() {
+    return completedTenants.size();
+  }
+
+  /**
+   * @return tenants skipped by the last run because an earlier run had completed them
+   */
+  public int getSkippedTenants() {
+    return skippedTenants;
+  }
+
+  public long getTotalUsers() {
+    return totalUsers;
+  }
+
+  public long getCreatedHomeFolders() {
+    return createdHomeFolders.sum();
+  }
+
+  public long getExistingHomeFolders() {
+    return existingHomeFolders.sum();
+  }
+
+  public long getFailedUsers() {
+    return failedUsers.sum();
+  }
+
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * @return duration of the last run, or of the current one so far
+   */
+  public long getElapsedMillis() {
+    Date start = startTime;
+    if ( start == null ) {
+      return 0;
+    }
+    Date end = endTime;
+    return ( end != null ? end.getTime() : System.currentTimeMillis() ) - start.getTime();
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads( final int threads ) {
+    this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( final int batchSize ) {
+    this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+  }
+}
@@ -21,12 +21,14 @@
 package org.pentaho.platform.repository2.unified.webservices.jaxws;
 
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAclDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 
 import javax.jws.WebService;
+import javax.xml.ws.soap.MTOM;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,6 +36,7 @@ import java.util.List;
     endpointInterface = "org.pentaho.platform.repository2.unified.webservices.jaxws.IUnifiedRepositoryJaxwsWebService",
     serviceName = "unifiedRepository", portName = "unifiedRepositoryPort",
     targetNamespace = "http://www.pentaho.org/ws/1.0" )
+@MTOM
 public class DefaultUnifiedRepositoryJaxwsWebService extends DefaultUnifiedRepositoryWebService implements
     IUnifiedRepositoryJaxwsWebService {
 
@@ -96,4 +99,22 @@ public class DefaultUnifiedRepositoryJaxwsWebService extends DefaultUnifiedRepos
     }
     return data;
   }
+
+  public List<RepositoryFileAndDataDto> getFilesWithDataAsBinaryForRead( final List<String> paths ) {
+    List<RepositoryFileAndDataDto> filesAndData = new ArrayList<RepositoryFileAndDataDto>( paths.size() );
+    for ( String path : paths ) {
+      validateEtcReadAccess( path );
+      RepositoryFile file = repo.getFile( path );
+      if ( file == null ) {
+        continue;
+      }
+      SimpleRepositoryFileDataDto data = null;
+      if ( !file.isFolder() ) {
+        data = SimpleRepositoryFileDataDto
+            .convert( repo.getDataForRead( file.getId(), SimpleRepositoryFileData.class ) );
+      }
+      filesAndData.add( new RepositoryFileAndDataDto( repositoryFileAdapter.marshal( file ), data ) );
+    }
+    return filesAndData;
+  }
 }
@@ -44,4 +44,9 @@ public interface IUnifiedRepositoryJaxwsWebService extends IUnifiedRepositoryWeb
   SimpleRepositoryFileDataDto getDataAsBinaryForReadAtVersion( final String fileId, final String versionId );
 
   List<SimpleRepositoryFileDataDto> getDataAsBinaryForReadInBatch( final List<RepositoryFileDto> files );
+
+  /**
+   * Fetches several files and their binary content in one call. Paths that do not exist are left out of the result.
+   */
+  List<RepositoryFileAndDataDto> getFilesWithDataAsBinaryForRead( final List<String> paths );
 }
@@ -0,0 +1,65 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices.jaxws;
+
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+
+/**
+ * A file together with its binary content, so that browsing clients can fetch both in a single call. The content is
+ * {@code null} for folders.
+ */
+public class RepositoryFileAndDataDto {
+
+  private RepositoryFileDto file;
+
+  private SimpleRepositoryFileDataDto data;
+
+  public RepositoryFileAndDataDto() {
+    super();
+  }
+
+  public RepositoryFileAndDataDto( final RepositoryFileDto file, final SimpleRepositoryFileDataDto data ) {
+    this.file = file;
+    this.data = data;
+  }
+
+  public RepositoryFileDto getFile() {
+    return file;
+  }
+
+  public void setFile( RepositoryFileDto file ) {
+    this.file = file;
+  }
+
+  public SimpleRepositoryFileDataDto getData() {
+    return data;
+  }
+
+  public void setData( SimpleRepositoryFileDataDto data ) {
+    this.data = data;
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "RepositoryFileAndDataDto [file=" + file + ", data=" + data + "]";
+  }
+}
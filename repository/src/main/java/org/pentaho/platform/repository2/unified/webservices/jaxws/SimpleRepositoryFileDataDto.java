@@ -20,18 +20,22 @@
 
 package org.pentaho.platform.repository2.unified.webservices.jaxws;
 
+import org.apache.commons.io.FileCleaningTracker;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 
 import javax.activation.DataHandler;
-import javax.activation.FileDataSource;
+import javax.activation.DataSource;
 import javax.xml.bind.annotation.XmlMimeType;
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * This class exists for one purpose: to be able to apply the XmlMimeType annotation.
@@ -40,6 +44,16 @@ import java.io.InputStream;
  */
 public class SimpleRepositoryFileDataDto {
 
+  /**
+   * Content up to this size is kept in memory, larger content goes to a temporary file.
+   */
+  static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+  /**
+   * Deletes the temporary file of a DTO that is dropped without its content ever being sent.
+   */
+  private static final FileCleaningTracker FILE_CLEANER = new FileCleaningTracker();
+
   /**
    * There is no getter/setter for dataHandler because JAX-WS will complain about duplicate fields.
    */
@@ -51,75 +65,153 @@ public class SimpleRepositoryFileDataDto {
   String mimeType;
 
   /**
-   * Converts SimpleRepositoryFileData to SimpleRepositoryFileDataDto. Does not use ByteArrayDataSource since that
-   * implementation reads the entire stream into a byte array.
+   * Converts SimpleRepositoryFileData to SimpleRepositoryFileDataDto. The repository stream is read and closed right
+   * away, while the caller still holds the repository session. Content up to {@link #MEMORY_THRESHOLD} is kept in
+   * memory and can be read any number of times. Larger content is still copied to a temporary file, which is deleted
+   * once the attachment has been read to the end, i.e. once the response has been written.
    */
   public static SimpleRepositoryFileDataDto convert( final SimpleRepositoryFileData simpleData ) {
-    FileOutputStream fout = null;
-    boolean foutClosed = false;
+    return convert( simpleData, MEMORY_THRESHOLD );
+  }
+
+  static SimpleRepositoryFileDataDto convert( final SimpleRepositoryFileData simpleData, final int memoryThreshold ) {
+    DeferredFileOutputStream out =
+        new DeferredFileOutputStream( memoryThreshold, "pentaho-ws", null, null ); //$NON-NLS-1$
+    InputStream in = simpleData.getInputStream();
     try {
-      SimpleRepositoryFileDataDto simpleJaxWsData = new SimpleRepositoryFileDataDto();
-      File tmpFile = File.createTempFile( "pentaho-ws", null ); //$NON-NLS-1$
-      // TODO mlowery this might not delete files soon enough
-      tmpFile.deleteOnExit();
-      fout = FileUtils.openOutputStream( tmpFile );
-      IOUtils.copy( simpleData.getStream(), fout );
-      fout.close();
-      foutClosed = true;
-      simpleJaxWsData.dataHandler = new DataHandler( new FileDataSource( tmpFile ) );
-      simpleJaxWsData.encoding = simpleData.getEncoding();
-      simpleJaxWsData.mimeType = simpleData.getMimeType();
-      return simpleJaxWsData;
+      if ( in != null ) {
+        IOUtils.copy( in, out );
+      }
+      out.close();
     } catch ( IOException e ) {
+      IOUtils.closeQuietly( out );
+      FileUtils.deleteQuietly( out.getFile() );
       throw new RuntimeException( e );
     } finally {
-      try {
-        if ( fout != null && !foutClosed ) {
-          fout.close();
-        }
-      } catch ( Exception e ) {
-        // CHECKSTYLES IGNORE
-      }
+      IOUtils.closeQuietly( in );
+      IOUtils.closeQuietly( out );
     }
+
+    SimpleRepositoryFileDataDto simpleJaxWsData = new SimpleRepositoryFileDataDto();
+    if ( out.isInMemory() ) {
+      simpleJaxWsData.dataHandler = new DataHandler( new BytesDataSource( out.getData(), simpleData.getMimeType() ) );
+    } else {
+      File tmpFile = out.getFile();
+      SpillFileDataSource dataSource = new SpillFileDataSource( tmpFile, simpleData.getMimeType() );
+      FILE_CLEANER.track( tmpFile, dataSource );
+      simpleJaxWsData.dataHandler = new DataHandler( dataSource );
+    }
+    simpleJaxWsData.encoding = simpleData.getEncoding();
+    simpleJaxWsData.mimeType = simpleData.getMimeType();
+    return simpleJaxWsData;
   }
 
   /**
-   * Converts SimpleRepositoryFileDataDto to SimpleRepositoryFileData.
+   * Converts SimpleRepositoryFileDataDto to SimpleRepositoryFileData. The returned data reads directly from the
+   * attachment; JAX-WS has already taken care of buffering it, so no further copy is made.
    */
   public static SimpleRepositoryFileData convert( final SimpleRepositoryFileDataDto simpleJaxWsData ) {
-    FileOutputStream fout = null;
-    InputStream in = null;
-    DataHandler dh = null;
-    boolean foutClosed = false;
     try {
-      File tmpFile = File.createTempFile( "pentaho", null ); //$NON-NLS-1$
-      // TODO mlowery this might not delete files soon enough
-      tmpFile.deleteOnExit();
-      fout = FileUtils.openOutputStream( tmpFile );
       // used to cast to com.sun.xml.ws.developer.StreamingDataHandler here but that stopped working
-      dh = simpleJaxWsData.dataHandler;
-      // used to call dh.readOnce() (instead of dh.getInputStream()) here
-      in = dh.getInputStream();
-      IOUtils.copy( in, fout );
-      fout.close();
-      foutClosed = true;
-      InputStream fin = new BufferedInputStream( FileUtils.openInputStream( tmpFile ) );
-      return new SimpleRepositoryFileData( fin, simpleJaxWsData.encoding, simpleJaxWsData.mimeType );
-    } catch ( Exception e ) {
+      InputStream in = simpleJaxWsData.dataHandler.getInputStream();
+      return new SimpleRepositoryFileData( in, simpleJaxWsData.encoding, simpleJaxWsData.mimeType );
+    } catch ( IOException e ) {
       throw new RuntimeException( e );
-    } finally {
-      try {
-        // close the streams
-        if ( in != null ) {
-          in.close();
+    }
+  }
+
+  /**
+   * Data source over content already read into memory; every call to {@link #getInputStream()} starts over.
+   */
+  static class BytesDataSource implements DataSource {
+
+    private final String contentType;
+
+    private final byte[] data;
+
+    BytesDataSource( final byte[] data, final String contentType ) {
+      this.data = data;
+      this.contentType = contentType;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream( data );
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      throw new IOException( "Read only data source" ); //$NON-NLS-1$
+    }
+
+    @Override
+    public String getContentType() {
+      return contentType != null ? contentType : "application/octet-stream"; //$NON-NLS-1$
+    }
+
+    @Override
+    public String getName() {
+      return null;
+    }
+  }
+
+  /**
+   * Data source over content copied to a temporary file. The file is deleted when a stream that has read it to the
+   * end is closed; the content cannot be read again after that.
+   */
+  static class SpillFileDataSource implements DataSource {
+
+    private final String contentType;
+
+    private final File file;
+
+    SpillFileDataSource( final File file, final String contentType ) {
+      this.file = file;
+      this.contentType = contentType;
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      if ( !file.exists() ) {
+        throw new IOException( "Content has already been read" ); //$NON-NLS-1$
+      }
+      return new ProxyInputStream( new FileInputStream( file ) ) {
+        private boolean end;
+
+        @Override
+        protected void afterRead( final int n ) {
+          if ( n < 0 ) {
+            end = true;
+          }
         }
-        // used to have to call dh.close() on the com.sun.xml.ws.developer.StreamingDataHandler here
-        if ( fout != null && !foutClosed ) {
-          fout.close();
+
+        @Override
+        public void close() throws IOException {
+          super.close();
+          if ( end ) {
+            FileUtils.deleteQuietly( file );
+          }
         }
-      } catch ( Exception e ) {
-        // CHECKSTYLES IGNORE
-      }
+      };
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      throw new IOException( "Read only data source" ); //$NON-NLS-1$
+    }
+
+    @Override
+    public String getContentType() {
+      return contentType != null ? contentType : "application/octet-stream"; //$NON-NLS-1$
+    }
+
+    @Override
+    public String getName() {
+      return file.getName();
     }
   }
 
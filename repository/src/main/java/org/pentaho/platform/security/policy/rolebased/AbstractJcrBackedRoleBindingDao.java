@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.Node;
@@ -79,6 +80,12 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
 
   private static final String LOGICAL_ROLE_BINDINGS_REGION = "roleBindingCache";
 
+  /**
+   * Incremented whenever role bindings change so that compiled views of them (see {@link RoleAuthorizationPolicy})
+   * can be discarded.
+   */
+  private final AtomicLong bindingsGeneration = new AtomicLong();
+
   public AbstractJcrBackedRoleBindingDao() {
 
     cacheManager = PentahoSystem.getCacheManager( null );
@@ -135,6 +142,7 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
             if ( cacheManager.cacheEnabled( LOGICAL_ROLE_BINDINGS_REGION ) ) {
               cacheManager.removeRegionCache( LOGICAL_ROLE_BINDINGS_REGION );
             }
+            bindingsChanged();
             loaded = true;
           }
         }
@@ -142,6 +150,18 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getBindingsGeneration() {
+    return bindingsGeneration.get();
+  }
+
+  protected void bindingsChanged() {
+    bindingsGeneration.incrementAndGet();
+  }
+
   public void updateImmutableRoleBindingNames() {
     for ( List<String> roles : immutableRoleBindingNames.values() ) {
       roles.clear();
@@ -314,6 +334,7 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     // update cache
     String roleId = tenantedRoleNameUtils.getPrincipleId( tenant, runtimeRoleName );
     cacheManager.putInRegionCache( LOGICAL_ROLE_BINDINGS_REGION, roleId, logicalRoleNames );
+    bindingsChanged();
   }
 
   private String getPrincipalName( String principalId ) {
@@ -0,0 +1,151 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled form of the logical role bindings used by {@link RoleAuthorizationPolicy}. Logical role (action) names
+ * are interned to bit positions and every distinct list of runtime role names, as resolved by
+ * {@link RoleAuthorizationPolicy#getRuntimeRoleNames()}, is mapped to an immutable bitmap of the actions it is allowed
+ * to perform, so that answering {@code isAllowed} on a warm model is a hash lookup plus a bit test.
+ *
+ * <p>
+ * The model is invalidated whenever {@link IRoleAuthorizationPolicyRoleBindingDao#getBindingsGeneration()} changes.
+ * </p>
+ */
+class CompiledRoleAuthorizationModel {
+
+  /**
+   * Upper bound on the number of distinct runtime role sets kept; the model is simply reset when exceeded.
+   */
+  static final int DEFAULT_MAX_ROLE_SETS = 10000;
+
+  private final ConcurrentMap<String, Integer> actionBits = new ConcurrentHashMap<String, Integer>();
+
+  private final int maxRoleSets;
+
+  private volatile State state = new State( -1L );
+
+  CompiledRoleAuthorizationModel() {
+    this( DEFAULT_MAX_ROLE_SETS );
+  }
+
+  CompiledRoleAuthorizationModel( final int maxRoleSets ) {
+    this.maxRoleSets = maxRoleSets;
+  }
+
+  /**
+   * Returns the permission bitmap compiled for the given runtime role names, or {@code null} if they have not been
+   * compiled for the given bindings generation yet.
+   */
+  long[] lookup( final List<String> runtimeRoleNames, final long generation ) {
+    State current = state;
+    if ( current.generation != generation ) {
+      return null;
+    }
+    return current.permissions.get( runtimeRoleNames );
+  }
+
+  /**
+   * Compiles the bound logical role names of a runtime role set into a bitmap and caches it.
+   */
+  long[] compile( final List<String> runtimeRoleNames, final long generation,
+                  final Collection<String> boundLogicalRoleNames ) {
+    long[] bits = new long[1];
+    for ( String logicalRoleName : boundLogicalRoleNames ) {
+      int bit = intern( logicalRoleName );
+      int word = bit >>> 6;
+      if ( word >= bits.length ) {
+        long[] grown = new long[word + 1];
+        System.arraycopy( bits, 0, grown, 0, bits.length );
+        bits = grown;
+      }
+      bits[word] |= 1L << bit;
+    }
+
+    State current = state;
+    if ( generation < current.generation ) {
+      // bindings changed while these were being resolved; usable by the caller but not worth caching
+      return bits;
+    }
+    if ( current.generation != generation || current.permissions.size() >= maxRoleSets ) {
+      current = new State( generation );
+      state = current;
+    }
+    current.permissions.put( new ArrayList<String>( runtimeRoleNames ), bits );
+    return bits;
+  }
+
+  /**
+   * Tests whether the given action is set in a compiled bitmap. Unknown actions are never allowed since every name
+   * bound to a compiled role set has been interned during compilation.
+   */
+  boolean isSet( final long[] bits, final String actionName ) {
+    Integer bit = actionBits.get( actionName );
+    if ( bit == null ) {
+      return false;
+    }
+    int word = bit >>> 6;
+    return word < bits.length && ( bits[word] & ( 1L << bit ) ) != 0;
+  }
+
+  /**
+   * Drops all compiled role sets. Interned action positions are kept since they stay valid.
+   */
+  void invalidate() {
+    state = new State( -1L );
+  }
+
+  int size() {
+    return state.permissions.size();
+  }
+
+  private int intern( final String actionName ) {
+    Integer bit = actionBits.get( actionName );
+    if ( bit != null ) {
+      return bit;
+    }
+    synchronized ( actionBits ) {
+      bit = actionBits.get( actionName );
+      if ( bit == null ) {
+        bit = actionBits.size();
+        actionBits.put( actionName, bit );
+      }
+      return bit;
+    }
+  }
+
+  private static final class State {
+    private final long generation;
+
+    /** keyed by private copies so that a caller changing its list later cannot corrupt the model */
+    private final ConcurrentMap<List<String>, long[]> permissions = new ConcurrentHashMap<List<String>, long[]>();
+
+    private State( final long generation ) {
+      this.generation = generation;
+    }
+  }
+}
@@ -122,4 +122,15 @@ public interface IRoleAuthorizationPolicyRoleBindingDao {
    * @return list of logical role names, never {@code null}
    */
   List<String> getBoundLogicalRoleNames( final Session session, final ITenant tenant, final List<String> runtimeRoleNames ) throws RepositoryException;
+
+  /**
+   * Returns a counter that changes every time the bindings known to this DAO change, so that callers may keep
+   * derived views of them (see {@link RoleAuthorizationPolicy}) until it moves on. Implementations that cannot tell
+   * when their bindings change return {@code -1}, the default, and callers then must not keep anything.
+   *
+   * @return the current bindings generation, or {@code -1} if unknown
+   */
+  default long getBindingsGeneration() {
+    return -1L;
+  }
 }
@@ -45,6 +45,8 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
 
   private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
 
+  private final CompiledRoleAuthorizationModel compiledModel = new CompiledRoleAuthorizationModel();
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -81,7 +83,26 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    * {@inheritDoc}
    */
   public boolean isAllowed( String actionName ) {
-    return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ).contains( actionName );
+    List<String> runtimeRoleNames = getRuntimeRoleNames();
+    long generation = roleBindingDao.getBindingsGeneration();
+    if ( generation < 0 ) {
+      // the DAO cannot tell when its bindings change, so nothing may be kept
+      return roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ).contains( actionName );
+    }
+    long[] permissions = compiledModel.lookup( runtimeRoleNames, generation );
+    if ( permissions == null ) {
+      permissions =
+          compiledModel.compile( runtimeRoleNames, generation, roleBindingDao.getBoundLogicalRoleNames(
+              runtimeRoleNames ) );
+    }
+    return compiledModel.isSet( permissions, actionName );
+  }
+
+  /**
+   * Discards all compiled permissions; they are rebuilt lazily on the next {@link #isAllowed(String)} call.
+   */
+  public void invalidate() {
+    compiledModel.invalidate();
   }
 
   protected List<String> getRuntimeRoleNames() {
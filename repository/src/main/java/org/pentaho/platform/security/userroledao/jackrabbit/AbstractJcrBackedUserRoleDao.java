@@ -66,6 +66,8 @@ import org.pentaho.platform.security.userroledao.PentahoUser;
 import org.pentaho.platform.security.userroledao.messages.Messages;
 import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.cache.NullUserCache;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jcr.Credentials;
 import javax.jcr.NamespaceException;
@@ -78,13 +80,18 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
 
@@ -128,6 +135,16 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
 
   private boolean useJackrabbitUserCache = true;
 
+  /**
+   * One-pass user/role membership snapshots keyed by tenant id, see {@link #getUserRoleNames(Session, ITenant)}.
+   * The cache is local to this server: it is only invalidated by changes made through this DAO instance, so in a
+   * cluster a node keeps serving its snapshot after another node changed memberships, until it changes them itself.
+   * Clustered deployments that need other nodes' changes to be visible must not use the bulk membership queries.
+   */
+  private final Map<String, MembershipSnapshot> membershipCache = new ConcurrentHashMap<String, MembershipSnapshot>();
+
+  private final AtomicLong membershipGeneration = new AtomicLong();
+
   public AbstractJcrBackedUserRoleDao( ITenantedPrincipleNameResolver userNameUtils,
                                        ITenantedPrincipleNameResolver roleNameUtils, String authenticatedRoleName,
                                        String tenantAdminRoleName,
@@ -219,6 +236,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
       // Purge the UserDetails cache
       purgeUserFromCache( userId );
     }
+    invalidateMembershipCache();
   }
 
   private void setUserRolesForNewUser( Session session, final ITenant theTenant, final String userName,
@@ -254,6 +272,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
       // Purge the UserDetails cache
       purgeUserFromCache( userName );
     }
+    invalidateMembershipCache();
   }
 
   private void purgeUserFromCache( String userName ) {
@@ -350,6 +369,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
 
     // Purge the UserDetails cache
     purgeUserFromCache( userName );
+    invalidateMembershipCache();
   }
 
   public IPentahoRole createRole( Session session, final ITenant theTenant, final String roleName,
@@ -379,6 +399,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     UserManager tenantUserMgr = getUserManager( tenant, session );
     // Intermediate path will always be an empty string. The path is already provided while creating a user manager
     tenantUserMgr.createGroup( new PrincipalImpl( roleId ), "" );
+    invalidateMembershipCache();
     setRoleMembers( session, tenant, role, memberUserNames );
     setRoleDescription( session, tenant, role, description );
     return getRole( session, theTenant, roleName );
@@ -431,6 +452,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
       for ( IPentahoUser roleMember : roleMembers ) {
         purgeUserFromCache( roleMember.getUsername() );
       }
+      invalidateMembershipCache();
     } else {
       throw new RepositoryException( Messages.getInstance().getString(
           "AbstractJcrBackedUserRoleDao.ERROR_0007_ATTEMPTED_SYSTEM_ROLE_DELETE" ) );
@@ -455,6 +477,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
         // [BISERVER-9215]
         jackrabbitUser.remove();
         session.save();
+        invalidateMembershipCache();
       } else {
         throw new NotFoundException( "" ); //$NON-NLS-1$
       }
@@ -803,6 +826,125 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     return roles;
   }
 
+  /**
+   * Gets the role names of every user of a tenant, computed in one pass over the tenant's users and groups and
+   * cached until memberships change through this server (the cache is per node, see {@link #membershipCache}).
+   *
+   * @return map of user name to role names, sorted by user name
+   */
+  public Map<String, List<String>> getUserRoleNames( Session session, final ITenant theTenant )
+      throws RepositoryException {
+    return getMembershipSnapshot( session, theTenant ).userRoleNames;
+  }
+
+  /**
+   * Gets the member names of every role of a tenant, computed in one pass over the tenant's users and groups and
+   * cached until memberships change through this server (the cache is per node, see {@link #membershipCache}).
+   *
+   * @return map of role name to member user names, sorted by role name
+   */
+  public Map<String, List<String>> getRoleMemberNames( Session session, final ITenant theTenant )
+      throws RepositoryException {
+    return getMembershipSnapshot( session, theTenant ).roleMemberNames;
+  }
+
+  private MembershipSnapshot getMembershipSnapshot( Session session, ITenant theTenant ) throws RepositoryException {
+    if ( theTenant == null || theTenant.getId() == null ) {
+      theTenant = JcrTenantUtils.getTenant();
+    }
+    if ( !TenantUtils.isAccessibleTenant( theTenant ) ) {
+      return MembershipSnapshot.EMPTY;
+    }
+    MembershipSnapshot snapshot = membershipCache.get( theTenant.getId() );
+    if ( snapshot != null ) {
+      return snapshot;
+    }
+
+    long generation = membershipGeneration.get();
+    Map<String, List<String>> userRoleNames = new TreeMap<String, List<String>>();
+    Map<String, List<String>> roleMemberNames = new TreeMap<String, List<String>>();
+    UserManager userMgr = getUserManager( theTenant, session );
+    pPrincipalName = getJcrName( session );
+
+    Iterator<Authorizable> users = userMgr.findAuthorizables( pPrincipalName, null, UserManager.SEARCH_TYPE_USER );
+    while ( users.hasNext() ) {
+      Authorizable user = users.next();
+      if ( theTenant.equals( tenantedUserNameUtils.getTenant( user.getID() ) ) ) {
+        userRoleNames.put( tenantedUserNameUtils.getPrincipleName( user.getID() ), new ArrayList<String>() );
+      }
+    }
+
+    Iterator<Authorizable> groups = userMgr.findAuthorizables( pPrincipalName, null, UserManager.SEARCH_TYPE_GROUP );
+    while ( groups.hasNext() ) {
+      Group group = (Group) groups.next();
+      String roleName = tenantedRoleNameUtils.getPrincipleName( group.getID() );
+      // Exclude the extra roles, as getRoles and getUserRoles do
+      if ( extraRoles.contains( roleName ) || !theTenant.equals( tenantedRoleNameUtils.getTenant( group.getID() ) ) ) {
+        continue;
+      }
+      List<String> memberNames = new ArrayList<String>();
+      Iterator<Authorizable> members = group.getMembers();
+      while ( members.hasNext() ) {
+        Authorizable member = members.next();
+        if ( member instanceof User ) {
+          String userName = tenantedUserNameUtils.getPrincipleName( member.getID() );
+          memberNames.add( userName );
+          List<String> roleNames = userRoleNames.get( userName );
+          if ( roleNames != null ) {
+            roleNames.add( roleName );
+          }
+        }
+      }
+      roleMemberNames.put( roleName, memberNames );
+    }
+
+    snapshot = new MembershipSnapshot( userRoleNames, roleMemberNames );
+    // a membership change while we were reading makes this snapshot possibly stale; use it but don't cache it
+    if ( generation == membershipGeneration.get() ) {
+      membershipCache.put( theTenant.getId(), snapshot );
+    }
+    return snapshot;
+  }
+
+  /**
+   * Discards cached membership snapshots. When called inside a transaction, the cache is discarded again once the
+   * transaction completes, so that readers cannot cache memberships that were read before the commit.
+   */
+  protected void invalidateMembershipCache() {
+    membershipGeneration.incrementAndGet();
+    membershipCache.clear();
+    if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+      TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion( int status ) {
+          membershipGeneration.incrementAndGet();
+          membershipCache.clear();
+        }
+      } );
+    }
+  }
+
+  private static final class MembershipSnapshot {
+    private static final MembershipSnapshot EMPTY =
+        new MembershipSnapshot( new TreeMap<String, List<String>>(), new TreeMap<String, List<String>>() );
+
+    private final Map<String, List<String>> userRoleNames;
+    private final Map<String, List<String>> roleMemberNames;
+
+    private MembershipSnapshot( Map<String, List<String>> userRoleNames, Map<String, List<String>> roleMemberNames ) {
+      this.userRoleNames = freeze( userRoleNames );
+      this.roleMemberNames = freeze( roleMemberNames );
+    }
+
+    private static Map<String, List<String>> freeze( Map<String, List<String>> map ) {
+      for ( Map.Entry<String, List<String>> entry : map.entrySet() ) {
+        Collections.sort( entry.getValue() );
+        entry.setValue( Collections.unmodifiableList( entry.getValue() ) );
+      }
+      return Collections.unmodifiableMap( map );
+    }
+  }
+
   @VisibleForTesting
   protected RepositoryFile createUserHomeFolder( ITenant theTenant, String username, Session session )
       throws RepositoryException {
@@ -49,6 +49,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
 
@@ -364,4 +365,35 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
           "JcrUserRoleDao.ERROR_0011_LISTING_ROLE_MEMBERS", e.getLocalizedMessage() ), e );
     }
   }
+
+  @Override
+  public Map<String, List<String>> getUserRoleNames( final ITenant tenant ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (Map<String, List<String>>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getUserRoleNames( session, tenant );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0011_LISTING_ROLE_MEMBERS", e.getLocalizedMessage() ), e );
+    }
+  }
+
+  @Override
+  public Map<String, List<String>> getRoleMemberNames( final ITenant tenant )
+    throws UncategorizedUserRoleDaoException {
+    try {
+      return (Map<String, List<String>>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getRoleMemberNames( session, tenant );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0011_LISTING_ROLE_MEMBERS", e.getLocalizedMessage() ), e );
+    }
+  }
 }
@@ -0,0 +1,98 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fileio;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@SuppressWarnings( { "nls" } )
+public class RepositoryFileInputStreamTest {
+
+  private static final String PATH = "/public/test.bin";
+
+  private final byte[] content = new byte[ 200000 ];
+
+  private IUnifiedRepository repo;
+
+  @Before
+  public void setUp() {
+    for ( int i = 0; i < content.length; i++ ) {
+      content[ i ] = (byte) i;
+    }
+    repo = mock( IUnifiedRepository.class );
+    RepositoryFile file = new RepositoryFile.Builder( "123", "test.bin" ).path( PATH ).fileSize( content.length )
+        .build();
+    doReturn( file ).when( repo ).getFile( PATH );
+    doAnswer( invocation -> new SimpleRepositoryFileData( new ByteArrayInputStream( content ), null,
+        "application/octet-stream" ) ).when( repo ).getDataForRead( "123", SimpleRepositoryFileData.class );
+  }
+
+  @Test
+  public void testBulkReadAndSkip() throws IOException {
+    RepositoryFileInputStream is = new RepositoryFileInputStream( PATH, repo );
+    byte[] buffer = new byte[ 10 ];
+    assertEquals( 10, is.read( buffer, 0, 10 ) );
+    assertEquals( 1000, is.skip( 1000 ) );
+    assertEquals( content.length - 1010, is.available() );
+    assertEquals( (byte) 1010, (byte) is.read() );
+    is.close();
+  }
+
+  @Test
+  public void testCopyRange() throws IOException {
+    RepositoryFileInputStream is = new RepositoryFileInputStream( PATH, repo );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals( 100000, is.copyRange( 50000, 100000, out ) );
+    byte[] expected = new byte[ 100000 ];
+    System.arraycopy( content, 50000, expected, 0, expected.length );
+    assertArrayEquals( expected, out.toByteArray() );
+
+    is = new RepositoryFileInputStream( PATH, repo );
+    out = new ByteArrayOutputStream();
+    assertEquals( 100, is.copyRange( content.length - 100, -1, out ) );
+    assertEquals( content.length, is.getSize() );
+  }
+
+  @Test
+  public void testPositionedRead() throws IOException {
+    RepositoryFileInputStream is = new RepositoryFileInputStream( PATH, repo );
+    assertEquals( 0, is.read() );
+    byte[] buffer = new byte[ 4 ];
+    assertEquals( 4, is.read( 1000, buffer, 0, 4 ) );
+    assertEquals( (byte) 1000, buffer[ 0 ] );
+    assertEquals( -1, is.read( content.length + 10, buffer, 0, 4 ) );
+    // the position of the stream itself is unchanged
+    assertEquals( 1, is.read() );
+  }
+}
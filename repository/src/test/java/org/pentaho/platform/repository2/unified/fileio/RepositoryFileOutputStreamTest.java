@@ -31,13 +31,23 @@ import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFile
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -47,6 +57,14 @@ import static org.mockito.Mockito.when;
 
 public class RepositoryFileOutputStreamTest {
 
+  /**
+   * Size of the output written by {@link #testLargeOutputWithBoundedBuffer()}. The default spills several times the
+   * buffer without filling the disk on every build; set the system property to 2147483648 or more to check content
+   * beyond the range of a byte array.
+   */
+  private static final long LARGE_OUTPUT_BYTES =
+    Long.getLong( "RepositoryFileOutputStreamTest.largeOutputBytes", 8L * 1024 * 1024 );
+
   @Test
   public void convertTest() throws Exception {
     RepositoryFileOutputStream spy = spy( new RepositoryFileOutputStream( "1.ktr", "UTF-8" ) );
@@ -121,4 +139,96 @@ public class RepositoryFileOutputStreamTest {
     verify( streamListener, times( 1 ) ).streamComplete();
     verify( streamListener, times( 0 ) ).fileCreated( any() );
   }
+
+  @Test
+  public void testSpillsBeyondThreshold() throws IOException {
+    IUnifiedRepository repository = mockRepository();
+    final byte[][] stored = new byte[1][];
+    doAnswer( invocation -> {
+      stored[0] = readAll( ( (SimpleRepositoryFileData) invocation.getArguments()[2] ).getInputStream() );
+      return mock( RepositoryFile.class );
+    } ).when( repository ).createFile( eq( "parent" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      anyString() );
+
+    RepositoryFileOutputStream out =
+      new RepositoryFileOutputStream( "/public/out.csv", false, false, repository, false );
+    out.setSpillThreshold( 16 );
+    byte[] expected = new byte[100];
+    for ( int i = 0; i < expected.length; i++ ) {
+      expected[i] = (byte) i;
+    }
+    out.write( expected, 0, 10 );
+    assertFalse( out.isSpilled() );
+    out.write( expected, 10, 40 );
+    for ( int i = 50; i < 100; i++ ) {
+      out.write( expected[i] );
+    }
+    assertTrue( out.isSpilled() );
+    assertEquals( 100, out.size() );
+    assertArrayEquals( expected, out.toByteArray() );
+
+    out.close();
+    assertArrayEquals( expected, stored[0] );
+    assertEquals( 0, out.getLength() );
+    assertFalse( out.isSpilled() );
+  }
+
+  @Test
+  public void testLargeOutputWithBoundedBuffer() throws IOException {
+    IUnifiedRepository repository = mockRepository();
+    final AtomicLong storedBytes = new AtomicLong();
+    final CRC32 storedCrc = new CRC32();
+    doAnswer( invocation -> {
+      InputStream in = ( (SimpleRepositoryFileData) invocation.getArguments()[2] ).getInputStream();
+      assertFalse( in instanceof ByteArrayInputStream );
+      byte[] chunk = new byte[65536];
+      int read;
+      while ( ( read = in.read( chunk ) ) > 0 ) {
+        storedCrc.update( chunk, 0, read );
+        storedBytes.addAndGet( read );
+      }
+      return mock( RepositoryFile.class );
+    } ).when( repository ).createFile( eq( "parent" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      anyString() );
+
+    RepositoryFileOutputStream out =
+      new RepositoryFileOutputStream( "/public/big.csv", false, false, repository, false );
+    out.setSpillThreshold( 1024 * 1024 );
+    CRC32 writtenCrc = new CRC32();
+    byte[] row = new byte[8000];
+    long written = 0;
+    for ( int i = 0; written < LARGE_OUTPUT_BYTES; i++ ) {
+      Arrays.fill( row, (byte) ( 'a' + i % 26 ) );
+      int len = (int) Math.min( row.length - ( i % 7 ) * 1000, LARGE_OUTPUT_BYTES - written );
+      out.write( row, 0, len );
+      writtenCrc.update( row, 0, len );
+      written += len;
+    }
+    assertEquals( LARGE_OUTPUT_BYTES, out.getLength() );
+    // the in-memory buffer never grows past the spill threshold, however much is written
+    assertTrue( out.buf.length <= out.getSpillThreshold() );
+
+    out.close();
+    assertEquals( LARGE_OUTPUT_BYTES, storedBytes.get() );
+    assertEquals( writtenCrc.getValue(), storedCrc.getValue() );
+  }
+
+  private static IUnifiedRepository mockRepository() {
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    RepositoryFile parent = mock( RepositoryFile.class );
+    when( parent.getId() ).thenReturn( "parent" );
+    when( parent.isFolder() ).thenReturn( true );
+    when( repository.getFile( "/public" ) ).thenReturn( parent );
+    return repository;
+  }
+
+  private static byte[] readAll( InputStream in ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[1024];
+    int read;
+    while ( ( read = in.read( chunk ) ) > 0 ) {
+      bytes.write( chunk, 0, read );
+    }
+    return bytes.toByteArray();
+  }
 }
@@ -308,6 +308,68 @@ public class DefaultDeleteHelperTest {
   }
 
 
+  @Test
+  public void testGetDeletedFilesPage() throws Exception {
+    final Calendar date1 = Calendar.getInstance();
+    final Node deletedNode1 = createDeletedNode( "/public/a", date1 );
+    final Calendar date2 = Calendar.getInstance();
+    final Node deletedNode2 = createDeletedNode( "/public/a/b", date2 );
+
+    final Node nodeUserFolder = mock( Node.class );
+    when( nodeUserFolder.getName() ).thenReturn( "test" );
+    final Node nodeTrash = mock( Node.class );
+    when( nodeTrash.getName() ).thenReturn( ".trash" );
+    when( nodeTrash.getParent() ).thenReturn( nodeUserFolder );
+    when( deletedNode1.getParent() ).thenReturn( nodeTrash );
+    when( deletedNode2.getParent() ).thenReturn( nodeTrash );
+
+    final NodeIterator nodeIterator = mock( NodeIterator.class );
+    when( nodeIterator.hasNext() ).thenReturn( true, true, false );
+    when( nodeIterator.nextNode() ).thenReturn( deletedNode1, deletedNode2 );
+
+    final QueryResult queryResult = mock( QueryResult.class );
+    when( queryResult.getNodes() ).thenReturn( nodeIterator );
+    final QueryObjectModel queryObjectModel = mock( QueryObjectModel.class );
+    when( queryObjectModel.execute() ).thenReturn( queryResult );
+
+    final QueryObjectModelFactory qomFactory = mock( QueryObjectModelFactory.class );
+    when( qomFactory.createQuery( ArgumentMatchers.<Source>any(), ArgumentMatchers.<Constraint>any(),
+        ArgumentMatchers.<Ordering[]>any(), ArgumentMatchers.<Column[]>any() ) ).thenReturn( queryObjectModel );
+    final QueryManager queryManager = mock( QueryManager.class );
+    when( queryManager.getQOMFactory() ).thenReturn( qomFactory );
+    final Workspace workspace = mock( Workspace.class );
+    when( workspace.getQueryManager() ).thenReturn( queryManager );
+    final ValueFactory valueFactory = mock( ValueFactory.class );
+
+    when( session.getWorkspace() ).thenReturn( workspace );
+    when( session.getValueFactory() ).thenReturn( valueFactory );
+    when( session.itemExists( endsWith( "/.trash" ) ) ).thenReturn( true );
+
+    final List<RepositoryFile> deletedFiles =
+        defaultDeleteHelper.getDeletedFiles( session, pentahoJcrConstants, "test", "/public/a", date1.getTime(), 100,
+            50 );
+    assertEquals( 2, deletedFiles.size() );
+    assertEquals( "/public/a", deletedFiles.get( 0 ).getOriginalParentFolderPath() );
+    assertEquals( "test", deletedFiles.get( 0 ).getCreatorId() );
+    assertEquals( "/public/a/b", deletedFiles.get( 1 ).getOriginalParentFolderPath() );
+
+    verify( queryObjectModel ).setOffset( 100 );
+    verify( queryObjectModel ).setLimit( 50 );
+    verify( valueFactory ).createValue( "/public/a" );
+    verify( valueFactory ).createValue( "/public/a/%" );
+    verify( qomFactory ).descending( any() );
+
+    // other users' trash is not visible to non-administrators
+    DefaultDeleteHelper nonAdminDeleteHelper = new DefaultDeleteHelper( lockHelper, pathConversionHelper ) {
+      @Override
+      protected boolean isAdmin() {
+        return false;
+      }
+    };
+    assertEquals( 0, nonAdminDeleteHelper.getDeletedFiles( session, pentahoJcrConstants, "suzy", null, null, 0, 0 )
+        .size() );
+  }
+
   @Test
   public void testGetAllDeletedFiles() throws Exception {
     final String path1 = "path1";
@@ -365,12 +427,19 @@ public class DefaultDeleteHelperTest {
     assertNotNull( deletedFiles );
     assertEquals( 1, deletedFiles.size() );
     assertEquals( pathUsr, deletedFiles.get( 0 ).getOriginalParentFolderPath() );
+    // deleted files report the owner of the trash they are in, i.e. who deleted them, as their creator
+    assertEquals( "test", deletedFiles.get( 0 ).getCreatorId() );
 
     // as admin
     admin[0] = true;
     final List<RepositoryFile> deletedFilesAdmin = defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants );
     assertNotNull( deletedFilesAdmin );
     assertEquals( 3, deletedFilesAdmin.size() );
+    int deletedByOther = 0;
+    for ( RepositoryFile file : deletedFilesAdmin ) {
+      deletedByOther += "other".equals( file.getCreatorId() ) ? 1 : 0;
+    }
+    assertEquals( 2, deletedByOther );
   }
 
   @Test
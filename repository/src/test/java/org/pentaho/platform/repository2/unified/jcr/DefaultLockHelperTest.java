@@ -0,0 +1,189 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.lock.Lock;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModel;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultLockHelperTest {
+
+  private static final String FILE_ID = "0a1b2c3d-0000-0000-0000-000000000001";
+
+  private static final String LOCK_TOKEN_PROPERTY = "pho:lockToken";
+
+  private Session session;
+
+  private PentahoJcrConstants pentahoJcrConstants;
+
+  private Node lockTokensNode;
+
+  private Lock lock;
+
+  private DefaultLockHelper lockHelper;
+
+  @Before
+  public void setUp() throws Exception {
+    IPentahoSession pentahoSession = mock( IPentahoSession.class );
+    when( pentahoSession.getName() ).thenReturn( "suzy" );
+    PentahoSessionHolder.setSession( pentahoSession );
+
+    session = mock( Session.class );
+    pentahoJcrConstants = mock( PentahoJcrConstants.class );
+    when( pentahoJcrConstants.getPHO_LOCKTOKEN() ).thenReturn( LOCK_TOKEN_PROPERTY );
+    when( pentahoJcrConstants.getPHO_NT_LOCKTOKENSTORAGE() ).thenReturn( "pho_nt:lockTokenStorage" );
+
+    ITenantedPrincipleNameResolver userNameUtils = mock( ITenantedPrincipleNameResolver.class );
+    when( userNameUtils.getPrincipleName( "suzy" ) ).thenReturn( "suzy" );
+
+    Node homeFolderNode = mock( Node.class );
+    lockTokensNode = mock( Node.class );
+    when( session.getItem( anyString() ) ).thenReturn( homeFolderNode );
+    when( homeFolderNode.hasNode( ".lockTokens" ) ).thenReturn( true );
+    when( homeFolderNode.getNode( ".lockTokens" ) ).thenReturn( lockTokensNode );
+
+    Node fileNode = mock( Node.class );
+    when( fileNode.getIdentifier() ).thenReturn( FILE_ID );
+    lock = mock( Lock.class );
+    when( lock.getNode() ).thenReturn( fileNode );
+    when( lock.getLockOwner() ).thenReturn( "suzy:1332272120111:message" );
+
+    lockHelper = new DefaultLockHelper( userNameUtils );
+  }
+
+  @After
+  public void tearDown() {
+    PentahoSessionHolder.removeSession();
+  }
+
+  @Test
+  public void testGetLockTokenLooksUpTokenNodeByName() throws Exception {
+    Node lockTokenNode = mock( Node.class );
+    Property lockTokenProperty = mock( Property.class );
+    when( lockTokensNode.hasNode( FILE_ID ) ).thenReturn( true );
+    when( lockTokensNode.getNode( FILE_ID ) ).thenReturn( lockTokenNode );
+    when( lockTokenNode.getProperty( LOCK_TOKEN_PROPERTY ) ).thenReturn( lockTokenProperty );
+    when( lockTokenProperty.getString() ).thenReturn( "token" );
+
+    assertEquals( "token", lockHelper.getLockToken( session, pentahoJcrConstants, lock ) );
+    verify( lockTokensNode, never() ).getNodes( anyString() );
+  }
+
+  @Test
+  public void testRemoveLockToken() throws Exception {
+    Node lockTokenNode = mock( Node.class );
+    when( lockTokensNode.hasNode( FILE_ID ) ).thenReturn( true );
+    when( lockTokensNode.getNode( FILE_ID ) ).thenReturn( lockTokenNode );
+
+    lockHelper.removeLockToken( session, pentahoJcrConstants, lock );
+
+    verify( lockTokenNode ).remove();
+    verify( lockTokensNode, never() ).getNodes( anyString() );
+    verify( session ).save();
+  }
+
+  @Test
+  public void testRemoveMissingLockToken() throws Exception {
+    when( lockTokensNode.hasNode( FILE_ID ) ).thenReturn( false );
+
+    lockHelper.removeLockToken( session, pentahoJcrConstants, lock );
+
+    verify( lockTokensNode, never() ).getNode( anyString() );
+    verify( session ).save();
+  }
+
+  @Test
+  public void testGetLockedFileIds() throws Exception {
+    Node locked = lockTokenNode( "locked" );
+    Node unlocked = lockTokenNode( "unlocked" );
+    Node missing = lockTokenNode( "missing" );
+    Node lockedFile = mock( Node.class );
+    when( lockedFile.holdsLock() ).thenReturn( true );
+    when( lockedFile.getIdentifier() ).thenReturn( "locked" );
+    when( session.getNodeByIdentifier( "locked" ) ).thenReturn( lockedFile );
+    when( session.getNodeByIdentifier( "unlocked" ) ).thenReturn( mock( Node.class ) );
+    when( session.getNodeByIdentifier( "missing" ) ).thenThrow( new ItemNotFoundException() );
+    mockQuery( locked, unlocked, missing );
+
+    List<Serializable> fileIds = lockHelper.getLockedFileIds( session, pentahoJcrConstants );
+
+    assertEquals( Arrays.<Serializable>asList( "locked" ), fileIds );
+  }
+
+  private static Node lockTokenNode( final String fileId ) throws Exception {
+    Node node = mock( Node.class );
+    when( node.getName() ).thenReturn( fileId );
+    when( node.getPath() ).thenReturn( "/pentaho/tenant0/home/suzy/.lockTokens/" + fileId );
+    return node;
+  }
+
+  private void mockQuery( final Node... results ) throws Exception {
+    when( session.itemExists( anyString() ) ).thenReturn( true );
+    Workspace workspace = mock( Workspace.class );
+    QueryManager queryManager = mock( QueryManager.class );
+    QueryObjectModelFactory fac = mock( QueryObjectModelFactory.class );
+    QueryObjectModel query = mock( QueryObjectModel.class );
+    QueryResult result = mock( QueryResult.class );
+    NodeIterator nodes = mock( NodeIterator.class );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    when( workspace.getQueryManager() ).thenReturn( queryManager );
+    when( queryManager.getQOMFactory() ).thenReturn( fac );
+    when( fac.selector( anyString(), anyString() ) ).thenReturn( mock( Selector.class ) );
+    when( fac.descendantNode( anyString(), anyString() ) ).thenReturn( mock( Constraint.class ) );
+    when( fac.createQuery( any( Selector.class ), any( Constraint.class ), isNull(), isNull() ) ).thenReturn( query );
+    when( query.execute() ).thenReturn( result );
+    when( result.getNodes() ).thenReturn( nodes );
+    Boolean[] more = new Boolean[ results.length ];
+    Arrays.fill( more, Boolean.TRUE );
+    more[ results.length - 1 ] = Boolean.FALSE;
+    when( nodes.hasNext() ).thenReturn( true, more );
+    when( nodes.nextNode() ).thenReturn( results[ 0 ], Arrays.copyOfRange( results, 1, results.length ) );
+  }
+}
@@ -37,18 +37,27 @@ import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 
 import javax.jcr.AccessDeniedException;
+import javax.jcr.InvalidItemStateException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Workspace;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.nullable;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class JcrRepositoryFileDaoTest {
@@ -168,4 +177,36 @@ public class JcrRepositoryFileDaoTest {
       }
     }
   }
+
+  @Test
+  public void testPermanentlyDeleteFilesRetriesFailedBatchFileByFile() throws Exception {
+    final Session session = mock( Session.class );
+    when( session.getWorkspace() ).thenReturn( mock( Workspace.class ) );
+    // the batch fails, then "a" alone succeeds and "b" alone fails
+    doThrow( new InvalidItemStateException() ).doNothing().doThrow( new InvalidItemStateException() )
+      .when( session ).save();
+    JcrTemplate jcrTemplate = new JcrTemplate() {
+      @Override
+      public Object execute( JcrCallback callback ) throws DataAccessException {
+        try {
+          return callback.doInJcr( session );
+        } catch ( Exception e ) {
+          throw new RuntimeException( e );
+        }
+      }
+    };
+    IDeleteHelper deleteHelper = mock( IDeleteHelper.class );
+    List<ITransformer<IRepositoryFileData>> transformerList = Collections.emptyList();
+    JcrRepositoryFileDao bulkDao = spy( new JcrRepositoryFileDao( jcrTemplate, transformerList, null, deleteHelper,
+      new DefaultPathConversionHelper(), mock( IRepositoryFileAclDao.class ), null, accessVoterManager ) );
+    doReturn( null ).when( bulkDao ).getFileById( any( Serializable.class ) );
+
+    assertEquals( 1, bulkDao.permanentlyDeleteFiles( Arrays.<Serializable>asList( "a", "b" ), null ) );
+    verify( deleteHelper, times( 2 ) ).permanentlyDeleteFile( eq( session ), any( PentahoJcrConstants.class ),
+      eq( "a" ) );
+    verify( deleteHelper, times( 2 ) ).permanentlyDeleteFile( eq( session ), any( PentahoJcrConstants.class ),
+      eq( "b" ) );
+    // the removals of each failed save are discarded
+    verify( session, times( 2 ) ).refresh( false );
+  }
 }
@@ -0,0 +1,218 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.version.Version;
+import javax.jcr.version.VersionHistory;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrphanedVersionCollectorTest {
+
+  private RepositoryImpl repository;
+  private Session session;
+  private IPentahoSystemSessionFactory sessionFactory;
+  private VersionHistory history;
+
+  /**
+   * versionStorage / history / 1.0 / jcr:frozenNode, where the frozen node's versionable node is gone
+   */
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( RepositoryImpl.class );
+    session = mock( Session.class );
+    sessionFactory = mock( IPentahoSystemSessionFactory.class );
+    when( sessionFactory.create( repository ) ).thenReturn( session );
+
+    Node storage = node( OrphanedVersionCollector.VERSION_STORAGE_PATH, "jcr:versionStorage" );
+    history = mock( VersionHistory.class );
+    register( history, "/history", "history" );
+    Version version = mock( Version.class );
+    register( version, "/history/1.0", "1.0" );
+    Node frozen = node( "/history/1.0/jcr:frozenNode", "jcr:frozenNode" );
+
+    children( storage, history );
+    children( history, version );
+    children( version, frozen );
+    when( frozen.getParent() ).thenReturn( version );
+    when( version.getParent() ).thenReturn( history );
+
+    Property property = mock( Property.class );
+    Value value = mock( Value.class );
+    when( frozen.hasProperty( "jcr:frozenUuid" ) ).thenReturn( true );
+    when( frozen.getProperty( "jcr:frozenUuid" ) ).thenReturn( property );
+    when( property.getValue() ).thenReturn( value );
+    when( value.getString() ).thenReturn( "gone" );
+    when( session.getNodeByIdentifier( anyString() ) ).thenThrow( new ItemNotFoundException( "gone" ) );
+  }
+
+  @Test
+  public void testCollectInBatches() throws Exception {
+    OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 1 );
+
+    assertTrue( collector.collect( sessionFactory ) );
+
+    verify( history, times( 1 ) ).removeVersion( "1.0" );
+    assertEquals( OrphanedVersionCollector.State.COMPLETED, collector.getState() );
+    assertEquals( 4, collector.getVisitedNodes() );
+    assertEquals( 1, collector.getRemovedVersions() );
+    assertEquals( 4, collector.getBatches() );
+    assertEquals( 0, collector.getPendingNodes() );
+    // one session per batch, each saved and released
+    verify( session, times( 4 ) ).save();
+    verify( session, times( 4 ) ).logout();
+  }
+
+  @Test
+  public void testPauseAndResumeFromCheckpoint() throws Exception {
+    final OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 1 );
+    when( sessionFactory.create( repository ) ).thenReturn( session ).thenAnswer( invocation -> {
+      collector.pause();
+      return session;
+    } ).thenReturn( session );
+
+    assertFalse( collector.collect( sessionFactory ) );
+    assertEquals( OrphanedVersionCollector.State.PAUSED, collector.getState() );
+    assertEquals( 2, collector.getVisitedNodes() );
+    assertEquals( 1, collector.getPendingNodes() );
+    verify( history, never() ).removeVersion( anyString() );
+
+    assertTrue( collector.collect( sessionFactory ) );
+    assertEquals( OrphanedVersionCollector.State.COMPLETED, collector.getState() );
+    assertEquals( 4, collector.getVisitedNodes() );
+    verify( history, times( 1 ) ).removeVersion( "1.0" );
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 1 );
+    when( sessionFactory.create( repository ) ).thenAnswer( invocation -> {
+      collector.pause();
+      return session;
+    } );
+
+    assertFalse( collector.collect( sessionFactory ) );
+    assertEquals( 1, collector.getPendingNodes() );
+    collector.reset();
+    assertEquals( 0, collector.getPendingNodes() );
+    assertEquals( OrphanedVersionCollector.State.IDLE, collector.getState() );
+  }
+
+  @Test
+  public void testFailedSaveRequeuesBatch() throws Exception {
+    OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 2 );
+    doThrow( new InvalidItemStateException( "conflict" ) ).doNothing().when( session ).save();
+
+    assertTrue( collector.collect( sessionFactory ) );
+
+    // the failed batch is visited again, so nothing below it is lost
+    verify( history, times( 1 ) ).removeVersion( "1.0" );
+    assertEquals( OrphanedVersionCollector.State.COMPLETED, collector.getState() );
+    assertEquals( 4, collector.getVisitedNodes() );
+    assertEquals( 2, collector.getBatches() );
+  }
+
+  @Test
+  public void testFailedCollectionStartsOver() throws Exception {
+    OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 1 );
+    doThrow( new InvalidItemStateException( "conflict" ) ).when( session ).save();
+
+    assertFalse( collector.collect( sessionFactory ) );
+    assertEquals( OrphanedVersionCollector.State.FAILED, collector.getState() );
+    assertEquals( 0, collector.getPendingNodes() );
+    verify( session, times( OrphanedVersionCollector.MAX_BATCH_ATTEMPTS ) ).save();
+
+    doNothing().when( session ).save();
+    assertTrue( collector.collect( sessionFactory ) );
+    assertEquals( 4, collector.getVisitedNodes() );
+    verify( history, times( 1 ) ).removeVersion( "1.0" );
+  }
+
+  @Test
+  public void testOneCollectorPerRepository() {
+    OrphanedVersionCollector collector = OrphanedVersionCollector.getInstance( repository );
+    assertSame( collector, OrphanedVersionCollector.getInstance( repository ) );
+    assertNotSame( collector, OrphanedVersionCollector.getInstance( mock( RepositoryImpl.class ) ) );
+  }
+
+  @Test
+  public void testSettings() {
+    OrphanedVersionCollector collector = new OrphanedVersionCollector( repository );
+    collector.setBatchSize( 0 );
+    collector.setMaxNodesPerSecond( -5 );
+    assertEquals( OrphanedVersionCollector.DEFAULT_BATCH_SIZE, collector.getBatchSize() );
+    assertEquals( 0, collector.getMaxNodesPerSecond() );
+    assertFalse( collector.resume() );
+  }
+
+  private Node node( String path, String name ) throws Exception {
+    Node node = mock( Node.class );
+    register( node, path, name );
+    return node;
+  }
+
+  private void register( Node node, String path, String name ) throws Exception {
+    when( node.getPath() ).thenReturn( path );
+    when( node.getName() ).thenReturn( name );
+    when( session.getNode( path ) ).thenReturn( node );
+  }
+
+  private static void children( Node parent, Node... children ) throws Exception {
+    when( parent.getNodes() ).thenAnswer( invocation -> {
+      final Iterator<Node> iterator = Arrays.asList( children ).iterator();
+      NodeIterator nodes = mock( NodeIterator.class );
+      when( nodes.hasNext() ).thenAnswer( hasNext -> iterator.hasNext() );
+      when( nodes.nextNode() ).thenAnswer( nextNode -> iterator.next() );
+      return nodes;
+    } );
+  }
+}
@@ -0,0 +1,111 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+
+public class CompactDataNodeCodecTest {
+
+  private static DataNode createTree() {
+    DataNode root = new DataNode( "root" );
+    root.setProperty( "string", "caf\u00e9 / : [ ] * |" );
+    root.setProperty( "boolean", true );
+    root.setProperty( "double", 1.5d );
+    root.setProperty( "long", Long.MAX_VALUE );
+    root.setProperty( "date", new Date( 1234567890L ) );
+    root.setProperty( "ref", new DataNodeRef( "id-1" ) );
+    for ( int i = 0; i < 3; i++ ) {
+      DataNode child = root.addNode( "child" + i );
+      child.setProperty( "string", "value" + i );
+      child.setProperty( "ref", new DataNodeRef( i % 2 == 0 ? "id-1" : "id-2" ) );
+      child.addNode( "grandchild" ).setProperty( "long", i );
+    }
+    return root;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<Serializable> refIds = new ArrayList<Serializable>();
+    byte[] bytes = CompactDataNodeCodec.encode( createTree(), refIds );
+    assertEquals( Arrays.<Serializable>asList( "id-1", "id-2" ), refIds );
+
+    DataNode decoded = CompactDataNodeCodec.decode( new ByteArrayInputStream( bytes ),
+        Arrays.asList( new DataNodeRef( "id-1" ), new DataNodeRef( "id-2" ) ) );
+    assertEquals( createTree(), decoded );
+
+    // child order is preserved
+    Iterator<DataNode> children = decoded.getNodes().iterator();
+    assertEquals( "child0", children.next().getName() );
+    assertEquals( "child1", children.next().getName() );
+    assertEquals( "child2", children.next().getName() );
+  }
+
+  @Test
+  public void testNullValuesAreNotStored() throws Exception {
+    DataNode root = new DataNode( "root" );
+    root.setProperty( "string", (String) null );
+    DataNode decoded = CompactDataNodeCodec.decode(
+        new ByteArrayInputStream( CompactDataNodeCodec.encode( root, new ArrayList<Serializable>() ) ),
+        Collections.<DataNodeRef>emptyList() );
+    assertFalse( decoded.hasProperty( "string" ) );
+  }
+
+  @Test
+  public void testRejectsUnknownVersion() throws Exception {
+    byte[] bytes = CompactDataNodeCodec.encode( new DataNode( "root" ), new ArrayList<Serializable>() );
+    bytes[ 4 ] = (byte) ( CompactDataNodeCodec.FORMAT_VERSION + 1 );
+    try {
+      CompactDataNodeCodec.decode( new ByteArrayInputStream( bytes ), Collections.<DataNodeRef>emptyList() );
+      fail();
+    } catch ( IOException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRejectsInvalidReference() throws Exception {
+    DataNode root = new DataNode( "root" );
+    root.setProperty( "ref", new DataNodeRef( "id-1" ) );
+    byte[] bytes = CompactDataNodeCodec.encode( root, new ArrayList<Serializable>() );
+    try {
+      CompactDataNodeCodec.decode( new ByteArrayInputStream( bytes ), Collections.<DataNodeRef>emptyList() );
+      fail();
+    } catch ( IOException e ) {
+      // expected
+    }
+  }
+}
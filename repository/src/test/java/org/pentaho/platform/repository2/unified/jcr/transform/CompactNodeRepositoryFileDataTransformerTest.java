@@ -0,0 +1,173 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Binary;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+public class CompactNodeRepositoryFileDataTransformerTest {
+
+  private static final String DATA = "pho:" + CompactNodeRepositoryFileDataTransformer.COMPACT_DATA;
+
+  private static final String REFS = "pho:" + CompactNodeRepositoryFileDataTransformer.COMPACT_REFS;
+
+  private Session session;
+  private ValueFactory valueFactory;
+  private PentahoJcrConstants constants;
+  private Node fileNode;
+  private Node contentNode;
+  private final AtomicReference<byte[]> stored = new AtomicReference<byte[]>();
+
+  @Before
+  public void setUp() throws Exception {
+    session = mock( Session.class );
+    valueFactory = mock( ValueFactory.class );
+    constants = mock( PentahoJcrConstants.class );
+    fileNode = mock( Node.class );
+    contentNode = mock( Node.class );
+    when( session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) ).thenReturn( "pho" );
+    when( session.getValueFactory() ).thenReturn( valueFactory );
+    when( constants.getJCR_CONTENT() ).thenReturn( "jcr:content" );
+    when( fileNode.hasNode( "jcr:content" ) ).thenReturn( true );
+    when( fileNode.getNode( "jcr:content" ) ).thenReturn( contentNode );
+    NodeIterator noNodes = mock( NodeIterator.class );
+    when( contentNode.getNodes( "pho:*" ) ).thenReturn( noNodes );
+    when( valueFactory.createBinary( any( InputStream.class ) ) ).thenAnswer( new Answer<Binary>() {
+      @Override
+      public Binary answer( InvocationOnMock invocation ) throws Throwable {
+        stored.set( IOUtils.toByteArray( (InputStream) invocation.getArguments()[ 0 ] ) );
+        return mock( Binary.class );
+      }
+    } );
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    Node target = mock( Node.class );
+    when( target.getIdentifier() ).thenReturn( "id-1" );
+    when( session.getNodeByIdentifier( "id-1" ) ).thenReturn( target );
+    Value refValue = mock( Value.class );
+    when( refValue.getString() ).thenReturn( "id-1" );
+    when( valueFactory.createValue( target ) ).thenReturn( refValue );
+
+    DataNode root = new DataNode( "root" );
+    root.setProperty( "name", "value" );
+    root.addNode( "child" ).setProperty( "ref", new DataNodeRef( "id-1" ) );
+
+    CompactNodeRepositoryFileDataTransformer transformer = new CompactNodeRepositoryFileDataTransformer();
+    transformer.updateContentNode( session, constants, new NodeRepositoryFileData( root ), fileNode );
+
+    ArgumentCaptor<Value[]> refs = ArgumentCaptor.forClass( Value[].class );
+    verify( contentNode ).setProperty( eq( REFS ), refs.capture() );
+    assertEquals( 1, refs.getValue().length );
+    verify( contentNode ).setProperty( eq( DATA ), any( Binary.class ) );
+
+    Binary binary = mock( Binary.class );
+    when( binary.getStream() ).thenReturn( new ByteArrayInputStream( stored.get() ) );
+    Property dataProperty = mock( Property.class );
+    when( dataProperty.getBinary() ).thenReturn( binary );
+    Property refsProperty = mock( Property.class );
+    when( refsProperty.getValues() ).thenReturn( new Value[] { refValue } );
+    when( contentNode.hasProperty( DATA ) ).thenReturn( true );
+    when( contentNode.hasProperty( REFS ) ).thenReturn( true );
+    when( contentNode.getProperty( DATA ) ).thenReturn( dataProperty );
+    when( contentNode.getProperty( REFS ) ).thenReturn( refsProperty );
+
+    assertTrue( transformer.isCompact( session, constants, fileNode ) );
+    assertEquals( root, transformer.fromContentNode( session, constants, fileNode ).getNode() );
+    verify( binary ).dispose();
+  }
+
+  @Test
+  public void testInaccessibleReferenceIsMissing() throws Exception {
+    DataNode root = new DataNode( "root" );
+    root.setProperty( "ref", new DataNodeRef( "id-1" ) );
+    stored.set( CompactDataNodeCodec.encode( root, new ArrayList<Serializable>() ) );
+
+    Binary binary = mock( Binary.class );
+    when( binary.getStream() ).thenReturn( new ByteArrayInputStream( stored.get() ) );
+    Property dataProperty = mock( Property.class );
+    when( dataProperty.getBinary() ).thenReturn( binary );
+    Value refValue = mock( Value.class );
+    when( refValue.getString() ).thenReturn( "id-1" );
+    Property refsProperty = mock( Property.class );
+    when( refsProperty.getValues() ).thenReturn( new Value[] { refValue } );
+    when( contentNode.hasProperty( DATA ) ).thenReturn( true );
+    when( contentNode.hasProperty( REFS ) ).thenReturn( true );
+    when( contentNode.getProperty( DATA ) ).thenReturn( dataProperty );
+    when( contentNode.getProperty( REFS ) ).thenReturn( refsProperty );
+    when( session.getNodeByIdentifier( "id-1" ) ).thenThrow( new ItemNotFoundException() );
+
+    DataNode read = new CompactNodeRepositoryFileDataTransformer().fromContentNode( session, constants, fileNode )
+        .getNode();
+    assertEquals( DataNodeRef.REF_MISSING, read.getProperty( "ref" ).getRef().getId() );
+  }
+
+  @Test
+  public void testLegacyWritesDropCompactProperties() throws Exception {
+    Node legacyNode = mock( Node.class );
+    when( contentNode.addNode( anyString(), any() ) ).thenReturn( legacyNode );
+    Property dataProperty = mock( Property.class );
+    when( contentNode.hasProperty( DATA ) ).thenReturn( true );
+    when( contentNode.getProperty( DATA ) ).thenReturn( dataProperty );
+
+    CompactNodeRepositoryFileDataTransformer transformer = new CompactNodeRepositoryFileDataTransformer();
+    transformer.setCompactWrites( false );
+    transformer.updateContentNode( session, constants, new NodeRepositoryFileData( new DataNode( "root" ) ),
+        fileNode );
+
+    verify( dataProperty ).remove();
+    verify( valueFactory, never() ).createBinary( any( InputStream.class ) );
+  }
+}
@@ -0,0 +1,170 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Calendar;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.api.JackrabbitValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+public class SimpleRepositoryFileDataTransformerTest {
+
+  private Session session;
+  private PentahoJcrConstants constants;
+  private Node fileNode;
+  private Node resourceNode;
+  private Property dataProperty;
+
+  /**
+   * Binary over an in memory byte array.
+   */
+  static Binary binary( final byte[] bytes ) throws Exception {
+    Binary binary = mock( Binary.class );
+    when( binary.getSize() ).thenReturn( (long) bytes.length );
+    when( binary.getStream() ).thenAnswer( new Answer<InputStream>() {
+      @Override
+      public InputStream answer( InvocationOnMock invocation ) {
+        return new ByteArrayInputStream( bytes );
+      }
+    } );
+    return binary;
+  }
+
+  static Value value( final Binary binary ) throws Exception {
+    Value value = mock( Value.class );
+    when( value.getBinary() ).thenReturn( binary );
+    return value;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    session = mock( Session.class );
+    constants = mock( PentahoJcrConstants.class );
+    fileNode = mock( Node.class );
+    resourceNode = mock( Node.class );
+    dataProperty = mock( Property.class );
+    when( constants.getJCR_CONTENT() ).thenReturn( "jcr:content" );
+    when( constants.getJCR_DATA() ).thenReturn( "jcr:data" );
+    when( constants.getJCR_LASTMODIFIED() ).thenReturn( "jcr:lastModified" );
+    when( constants.getJCR_MIMETYPE() ).thenReturn( "jcr:mimeType" );
+    when( fileNode.getNode( "jcr:content" ) ).thenReturn( resourceNode );
+    when( resourceNode.hasProperty( "jcr:data" ) ).thenReturn( true );
+    when( resourceNode.getProperty( "jcr:data" ) ).thenReturn( dataProperty );
+    ValueFactory valueFactory = mock( ValueFactory.class );
+    when( session.getValueFactory() ).thenReturn( valueFactory );
+    when( valueFactory.createBinary( any( InputStream.class ) ) ).thenAnswer( new Answer<Binary>() {
+      @Override
+      public Binary answer( InvocationOnMock invocation ) throws Throwable {
+        return binary( IOUtils.toByteArray( (InputStream) invocation.getArguments()[ 0 ] ) );
+      }
+    } );
+    when( valueFactory.createValue( any( Binary.class ) ) ).thenAnswer( new Answer<Value>() {
+      @Override
+      public Value answer( InvocationOnMock invocation ) throws Throwable {
+        return value( (Binary) invocation.getArguments()[ 0 ] );
+      }
+    } );
+  }
+
+  private static SimpleRepositoryFileData data( final String content ) throws Exception {
+    return new SimpleRepositoryFileData( new ByteArrayInputStream( content.getBytes( "UTF-8" ) ), "UTF-8",
+        "text/xml" );
+  }
+
+  @Test
+  public void testUnchangedContentKeepsStoredValue() throws Exception {
+    Value stored = value( binary( "<dashboard/>".getBytes( "UTF-8" ) ) );
+    when( dataProperty.getValue() ).thenReturn( stored );
+    long before = SimpleRepositoryFileDataTransformer.getDeduplicatedUpdateCount();
+
+    new SimpleRepositoryFileDataTransformer().updateContentNode( session, constants, data( "<dashboard/>" ),
+        fileNode );
+
+    verify( resourceNode, never() ).setProperty( eq( "jcr:data" ), any( Value.class ) );
+    verify( resourceNode, never() ).setProperty( eq( "jcr:lastModified" ), any( Calendar.class ) );
+    verify( resourceNode ).setProperty( "jcr:mimeType", "text/xml" );
+    assertEquals( before + 1, SimpleRepositoryFileDataTransformer.getDeduplicatedUpdateCount() );
+  }
+
+  @Test
+  public void testChangedContentReplacesStoredValue() throws Exception {
+    Value stored = value( binary( "<dashboard/>".getBytes( "UTF-8" ) ) );
+    when( dataProperty.getValue() ).thenReturn( stored );
+
+    new SimpleRepositoryFileDataTransformer().updateContentNode( session, constants, data( "<dashboard2/>" ),
+        fileNode );
+
+    verify( resourceNode ).setProperty( eq( "jcr:data" ), any( Value.class ) );
+    verify( resourceNode ).setProperty( eq( "jcr:lastModified" ), any( Calendar.class ) );
+  }
+
+  @Test
+  public void testContentIdentity() throws Exception {
+    Value current = mock( Value.class, withSettings().extraInterfaces( JackrabbitValue.class ) );
+    Value same = mock( Value.class, withSettings().extraInterfaces( JackrabbitValue.class ) );
+    Value other = mock( Value.class, withSettings().extraInterfaces( JackrabbitValue.class ) );
+    when( ( (JackrabbitValue) current ).getContentIdentity() ).thenReturn( "abc" );
+    when( ( (JackrabbitValue) same ).getContentIdentity() ).thenReturn( "abc" );
+    when( ( (JackrabbitValue) other ).getContentIdentity() ).thenReturn( "def" );
+
+    assertTrue( BinaryContent.isSame( current, same ) );
+    assertFalse( BinaryContent.isSame( current, other ) );
+    // identities are compared without reading any content
+    verify( current, never() ).getBinary();
+  }
+
+  @Test
+  public void testSizeMismatchAndLargeBinaries() throws Exception {
+    assertFalse( BinaryContent.isSame( value( binary( new byte[] { 1 } ) ),
+        value( binary( new byte[] { 1, 2 } ) ) ) );
+
+    Binary large = mock( Binary.class );
+    when( large.getSize() ).thenReturn( BinaryContent.MAX_COMPARE_LENGTH + 1 );
+    assertFalse( BinaryContent.isSame( value( large ), value( large ) ) );
+    verify( large, never() ).getStream();
+  }
+}
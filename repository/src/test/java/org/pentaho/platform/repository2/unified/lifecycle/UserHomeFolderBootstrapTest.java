@@ -0,0 +1,188 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.lifecycle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.core.mt.Tenant;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserHomeFolderBootstrapTest {
+
+  private final ITenant tenant1 = new Tenant( "/pentaho/tenant1", true );
+
+  private final ITenant tenant2 = new Tenant( "/pentaho/tenant2", true );
+
+  private ITenantManager tenantManager;
+
+  private TransactionTemplate txnTemplate;
+
+  private final List<String> created = Collections.synchronizedList( new ArrayList<String>() );
+
+  private UserHomeFolderBootstrap bootstrap;
+
+  @Before
+  public void setUp() {
+    tenantManager = mock( ITenantManager.class );
+    when( tenantManager.createUserHomeFolder( any( ITenant.class ), anyString() ) ).thenAnswer( invocation -> {
+      created.add( invocation.getArgument( 0, ITenant.class ).getId() + "/" + invocation.getArgument( 1 ) );
+      return mock( RepositoryFile.class );
+    } );
+    txnTemplate = mock( TransactionTemplate.class );
+    when( txnTemplate.execute( any( TransactionCallback.class ) ) ).thenAnswer(
+        invocation -> invocation.getArgument( 0, TransactionCallback.class ).doInTransaction( null ) );
+    bootstrap = new UserHomeFolderBootstrap( () -> tenantManager, txnTemplate, () -> { } );
+    bootstrap.setThreads( 4 );
+    bootstrap.setBatchSize( 2 );
+  }
+
+  @Test
+  public void testCreatesMissingHomeFolders() {
+    when( tenantManager.getUserHomeFolder( tenant1, "joe" ) ).thenReturn( mock( RepositoryFile.class ) );
+
+    assertTrue( bootstrap.run( users( Arrays.asList( "suzy", "joe", "pat", "tiffany", "bob" ),
+        Arrays.asList( "admin" ) ) ) );
+
+    assertEquals( UserHomeFolderBootstrap.State.COMPLETED, bootstrap.getState() );
+    assertEquals( 2, bootstrap.getCompletedTenants() );
+    assertEquals( 6, bootstrap.getTotalUsers() );
+    assertEquals( 5, bootstrap.getCreatedHomeFolders() );
+    assertEquals( 1, bootstrap.getExistingHomeFolders() );
+    assertEquals( 0, bootstrap.getFailedUsers() );
+    // the first user of each tenant on its own, then batches of two
+    assertEquals( 4, bootstrap.getBatches() );
+    verify( tenantManager, never() ).createUserHomeFolder( tenant1, "joe" );
+  }
+
+  @Test
+  public void testFirstUserOfTenantCreatesTenantHomeFolder() {
+    bootstrap.run( users( Arrays.asList( "suzy", "joe", "pat", "tiffany", "bob" ), Collections.<String>emptyList() ) );
+
+    assertEquals( 5, created.size() );
+    assertEquals( "/pentaho/tenant1/suzy", created.get( 0 ) );
+  }
+
+  @Test
+  public void testCompletedTenantsAreSkippedWhenRunAgain() {
+    Map<ITenant, List<String>> users = users( Arrays.asList( "suzy", "joe" ), Arrays.asList( "admin" ) );
+    assertTrue( bootstrap.run( users ) );
+
+    assertTrue( bootstrap.run( users ) );
+
+    assertEquals( 2, bootstrap.getSkippedTenants() );
+    assertEquals( 0, bootstrap.getTotalUsers() );
+    verify( tenantManager, times( 1 ) ).getUserHomeFolder( tenant1, "suzy" );
+
+    bootstrap.reset();
+    assertTrue( bootstrap.run( users ) );
+    verify( tenantManager, times( 2 ) ).getUserHomeFolder( tenant1, "suzy" );
+  }
+
+  @Test
+  public void testFailedBatchIsRetriedPerUserAndResumed() {
+    when( tenantManager.createUserHomeFolder( eq( tenant1 ), eq( "pat" ) ) ).thenThrow( new RuntimeException() );
+
+    assertFalse( bootstrap.run( users( Arrays.asList( "suzy", "joe", "pat" ), Arrays.asList( "admin" ) ) ) );
+
+    assertEquals( UserHomeFolderBootstrap.State.FAILED, bootstrap.getState() );
+    assertEquals( 1, bootstrap.getFailedUsers() );
+    assertEquals( 1, bootstrap.getCompletedTenants() );
+    assertTrue( created.contains( "/pentaho/tenant1/joe" ) );
+
+    // only the failed tenant is looked at again
+    doReturn( mock( RepositoryFile.class ) ).when( tenantManager ).createUserHomeFolder( tenant1, "pat" );
+    assertTrue( bootstrap.run( users( Arrays.asList( "suzy", "joe", "pat" ), Arrays.asList( "admin" ) ) ) );
+    assertEquals( 1, bootstrap.getSkippedTenants() );
+    assertEquals( 2, bootstrap.getCompletedTenants() );
+  }
+
+  @Test
+  public void testResetKeepsCheckpointOfFailedRun() {
+    when( tenantManager.createUserHomeFolder( eq( tenant1 ), eq( "pat" ) ) ).thenThrow( new RuntimeException() );
+    assertFalse( bootstrap.run( users( Arrays.asList( "suzy", "pat" ), Arrays.asList( "admin" ) ) ) );
+
+    assertFalse( bootstrap.reset() );
+    assertEquals( 1, bootstrap.getCompletedTenants() );
+  }
+
+  @Test
+  public void testRunWithoutCheckpoint() {
+    assertTrue( bootstrap.run( users( Arrays.asList( "suzy" ), Arrays.asList( "admin" ) ) ) );
+
+    // only some users of a completed tenant: the tenant is not skipped and the checkpoint is left as it was
+    Map<ITenant, List<String>> added = new LinkedHashMap<ITenant, List<String>>();
+    added.put( tenant1, Arrays.asList( "joe" ) );
+    assertTrue( bootstrap.run( added, false ) );
+    assertEquals( 0, bootstrap.getSkippedTenants() );
+    assertTrue( created.contains( "/pentaho/tenant1/joe" ) );
+    assertEquals( 2, bootstrap.getCompletedTenants() );
+  }
+
+  @Test
+  public void testBatchHoldsUserLocks() throws Exception {
+    Lock lock = bootstrap.getUserLock( tenant1, "joe" );
+    lock.lock();
+    Map<ITenant, List<String>> users = users( Arrays.asList( "joe" ), Collections.<String>emptyList() );
+    Thread runner = new Thread( () -> bootstrap.run( users ) );
+    try {
+      runner.start();
+      Thread.sleep( 200L );
+      // a login creating the same home folder keeps the batch waiting
+      assertFalse( created.contains( "/pentaho/tenant1/joe" ) );
+    } finally {
+      lock.unlock();
+    }
+    runner.join( 10000L );
+    assertTrue( created.contains( "/pentaho/tenant1/joe" ) );
+  }
+
+  private Map<ITenant, List<String>> users( final List<String> tenant1Users, final List<String> tenant2Users ) {
+    Map<ITenant, List<String>> users = new LinkedHashMap<ITenant, List<String>>();
+    users.put( tenant1, tenant1Users );
+    users.put( tenant2, tenant2Users );
+    return users;
+  }
+}
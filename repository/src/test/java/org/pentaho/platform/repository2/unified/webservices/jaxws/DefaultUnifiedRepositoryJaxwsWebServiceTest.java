@@ -0,0 +1,66 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices.jaxws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+public class DefaultUnifiedRepositoryJaxwsWebServiceTest {
+
+  @Test
+  public void testGetFilesWithDataAsBinaryForRead() throws Exception {
+    IUnifiedRepository repo = mock( IUnifiedRepository.class );
+    RepositoryFile folder = new RepositoryFile.Builder( "f1", "public" ).path( "/public" ).folder( true ).build();
+    RepositoryFile file = new RepositoryFile.Builder( "f2", "a.ktr" ).path( "/public/a.ktr" ).build();
+    when( repo.getFile( "/public" ) ).thenReturn( folder );
+    when( repo.getFile( "/public/a.ktr" ) ).thenReturn( file );
+    when( repo.getDataForRead( "f2", SimpleRepositoryFileData.class ) ).thenReturn(
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "<transformation/>".getBytes( "UTF-8" ) ), "UTF-8",
+            "text/xml" ) );
+
+    DefaultUnifiedRepositoryJaxwsWebService service = new DefaultUnifiedRepositoryJaxwsWebService( repo ) {
+      @Override
+      protected void validateEtcReadAccess( String path ) {
+      }
+    };
+    List<RepositoryFileAndDataDto> filesAndData =
+        service.getFilesWithDataAsBinaryForRead( Arrays.asList( "/public", "/missing", "/public/a.ktr" ) );
+
+    assertEquals( 2, filesAndData.size() );
+    assertEquals( "/public", filesAndData.get( 0 ).getFile().getPath() );
+    assertNull( filesAndData.get( 0 ).getData() );
+    assertEquals( "f2", filesAndData.get( 1 ).getFile().getId() );
+    assertEquals( "<transformation/>",
+        IOUtils.toString( filesAndData.get( 1 ).getData().dataHandler.getInputStream(), "UTF-8" ) );
+  }
+}
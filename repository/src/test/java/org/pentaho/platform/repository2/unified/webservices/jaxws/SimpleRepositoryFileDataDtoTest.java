@@ -0,0 +1,108 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices.jaxws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+public class SimpleRepositoryFileDataDtoTest {
+
+  @Test
+  public void testReadsRepositoryContentRightAway() throws Exception {
+    InputStream content = spy( new ByteArrayInputStream( "content".getBytes( "UTF-8" ) ) );
+    SimpleRepositoryFileDataDto dto =
+        SimpleRepositoryFileDataDto.convert( new SimpleRepositoryFileData( content, "UTF-8", "text/xml" ) );
+
+    // the repository stream is consumed and closed before the DTO leaves the call
+    verify( content ).close();
+    assertEquals( "UTF-8", dto.getEncoding() );
+    assertEquals( "text/xml", dto.getMimeType() );
+    assertEquals( "text/xml", dto.dataHandler.getContentType() );
+    assertEquals( "content", IOUtils.toString( dto.dataHandler.getInputStream(), "UTF-8" ) );
+  }
+
+  @Test
+  public void testDataSourceCanBeReadAgain() throws Exception {
+    SimpleRepositoryFileDataDto dto = SimpleRepositoryFileDataDto.convert(
+        new SimpleRepositoryFileData( new ByteArrayInputStream( new byte[] { 1, 2, 3 } ), null, null ) );
+
+    assertEquals( "application/octet-stream", dto.dataHandler.getContentType() );
+    for ( int i = 0; i < 2; i++ ) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      dto.dataHandler.writeTo( out );
+      assertArrayEquals( new byte[] { 1, 2, 3 }, out.toByteArray() );
+    }
+  }
+
+  @Test
+  public void testLargeContentGoesToTemporaryFileUntilSent() throws Exception {
+    SimpleRepositoryFileDataDto dto = SimpleRepositoryFileDataDto.convert(
+        new SimpleRepositoryFileData( new ByteArrayInputStream( new byte[] { 1, 2, 3 } ), null, null ), 2 );
+
+    assertTrue( dto.dataHandler.getDataSource() instanceof SimpleRepositoryFileDataDto.SpillFileDataSource );
+    File file = ( (SimpleRepositoryFileDataDto.SpillFileDataSource) dto.dataHandler.getDataSource() ).getFile();
+    assertTrue( file.exists() );
+
+    // a stream closed before the end keeps the file
+    InputStream partial = dto.dataHandler.getInputStream();
+    assertEquals( 1, partial.read() );
+    partial.close();
+    assertTrue( file.exists() );
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    dto.dataHandler.writeTo( out );
+    assertArrayEquals( new byte[] { 1, 2, 3 }, out.toByteArray() );
+    assertFalse( file.exists() );
+    try {
+      dto.dataHandler.getInputStream();
+      fail( "content was already sent" );
+    } catch ( IOException expected ) {
+      // the file is gone
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    SimpleRepositoryFileDataDto dto = SimpleRepositoryFileDataDto.convert(
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "content".getBytes( "UTF-8" ) ), "UTF-8",
+            "text/plain" ) );
+    SimpleRepositoryFileData data = SimpleRepositoryFileDataDto.convert( dto );
+
+    assertEquals( "UTF-8", data.getEncoding() );
+    assertEquals( "text/plain", data.getMimeType() );
+    assertEquals( "content", IOUtils.toString( data.getInputStream(), "UTF-8" ) );
+  }
+}
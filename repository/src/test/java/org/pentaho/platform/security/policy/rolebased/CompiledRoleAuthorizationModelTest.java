@@ -0,0 +1,101 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CompiledRoleAuthorizationModelTest {
+
+  private static List<String> roles( String... roles ) {
+    return new ArrayList<String>( Arrays.asList( roles ) );
+  }
+
+  @Test
+  public void testCompileAndLookup() {
+    CompiledRoleAuthorizationModel model = new CompiledRoleAuthorizationModel();
+    List<String> admin = roles( "Administrator", "Authenticated" );
+
+    assertNull( model.lookup( admin, 1L ) );
+    long[] bits = model.compile( admin, 1L, Arrays.asList( "org.pentaho.repository.read",
+        "org.pentaho.security.administerSecurity" ) );
+
+    assertTrue( model.isSet( bits, "org.pentaho.repository.read" ) );
+    assertTrue( model.isSet( bits, "org.pentaho.security.administerSecurity" ) );
+    assertFalse( model.isSet( bits, "org.pentaho.scheduler.manage" ) );
+
+    // an equal but distinct list hits the compiled entry
+    assertNotNull( model.lookup( roles( "Administrator", "Authenticated" ), 1L ) );
+    assertNull( model.lookup( roles( "Authenticated" ), 1L ) );
+  }
+
+  @Test
+  public void testActionsInternedByOtherRoleSets() {
+    CompiledRoleAuthorizationModel model = new CompiledRoleAuthorizationModel();
+    long[] user = model.compile( roles( "Authenticated" ), 1L, Arrays.asList( "read" ) );
+    List<String> many = new ArrayList<String>();
+    for ( int i = 0; i < 130; i++ ) {
+      many.add( "action" + i );
+    }
+    long[] admin = model.compile( roles( "Administrator" ), 1L, many );
+
+    assertTrue( model.isSet( user, "read" ) );
+    assertFalse( model.isSet( user, "action129" ) );
+    assertTrue( model.isSet( admin, "action129" ) );
+    assertFalse( model.isSet( admin, "read" ) );
+  }
+
+  @Test
+  public void testGenerationChangeInvalidates() {
+    CompiledRoleAuthorizationModel model = new CompiledRoleAuthorizationModel();
+    List<String> user = roles( "Authenticated" );
+    model.compile( user, 1L, Arrays.asList( "read" ) );
+
+    assertNull( model.lookup( user, 2L ) );
+    model.compile( user, 2L, Arrays.asList( "write" ) );
+    assertTrue( model.isSet( model.lookup( user, 2L ), "write" ) );
+
+    // a stale compilation does not replace newer state
+    model.compile( roles( "Other" ), 1L, Arrays.asList( "read" ) );
+    assertNotNull( model.lookup( user, 2L ) );
+
+    model.invalidate();
+    assertNull( model.lookup( user, 2L ) );
+  }
+
+  @Test
+  public void testBoundedRoleSets() {
+    CompiledRoleAuthorizationModel model = new CompiledRoleAuthorizationModel( 2 );
+    model.compile( roles( "a" ), 1L, Arrays.asList( "read" ) );
+    model.compile( roles( "b" ), 1L, Arrays.asList( "read" ) );
+    model.compile( roles( "c" ), 1L, Arrays.asList( "read" ) );
+    assertEquals( 1, model.size() );
+  }
+}
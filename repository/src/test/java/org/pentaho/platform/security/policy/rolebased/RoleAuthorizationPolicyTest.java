@@ -0,0 +1,131 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class RoleAuthorizationPolicyTest {
+
+  private static final String READ = "org.pentaho.repository.read"; //$NON-NLS-1$
+
+  private static final String ADMINISTER = "org.pentaho.security.administerSecurity"; //$NON-NLS-1$
+
+  private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
+
+  @Before
+  public void setUp() {
+    roleBindingDao = mock( IRoleAuthorizationPolicyRoleBindingDao.class );
+    when( roleBindingDao.getBindingsGeneration() ).thenReturn( 1L );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) ) ).thenReturn(
+        Arrays.asList( READ ) );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Administrator", "Authenticated" ) ) ).thenReturn(
+        Arrays.asList( READ, ADMINISTER ) );
+    login( "Authenticated" );
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private static void login( String... roles ) {
+    List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( "joe", null, authorities ) );
+  }
+
+  @Test
+  public void testIsAllowed() {
+    RoleAuthorizationPolicy policy = new RoleAuthorizationPolicy( roleBindingDao );
+    assertTrue( policy.isAllowed( READ ) );
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+    assertFalse( policy.isAllowed( "unknown" ) );
+
+    login( "Administrator", "Authenticated" );
+    assertTrue( policy.isAllowed( READ ) );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+  }
+
+  @Test
+  public void testBindingsResolvedOncePerGeneration() {
+    RoleAuthorizationPolicy policy = new RoleAuthorizationPolicy( roleBindingDao );
+    policy.isAllowed( READ );
+    policy.isAllowed( ADMINISTER );
+    policy.isAllowed( READ );
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( anyList() );
+
+    // bindings changed: the new ones must be seen
+    when( roleBindingDao.getBindingsGeneration() ).thenReturn( 2L );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) ) ).thenReturn(
+        Arrays.asList( READ, ADMINISTER ) );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+    verify( roleBindingDao, times( 2 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testUnknownGenerationIsNotCached() {
+    when( roleBindingDao.getBindingsGeneration() ).thenReturn( -1L );
+    RoleAuthorizationPolicy policy = new RoleAuthorizationPolicy( roleBindingDao );
+    assertTrue( policy.isAllowed( READ ) );
+    assertTrue( policy.isAllowed( READ ) );
+    verify( roleBindingDao, times( 2 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testRuntimeRoleNamesAreResolvedFirst() {
+    // a subclass mapping authorities to other runtime roles must be honoured by the compiled model too
+    RoleAuthorizationPolicy policy = new RoleAuthorizationPolicy( roleBindingDao ) {
+      @Override
+      protected List<String> getRuntimeRoleNames() {
+        List<String> runtimeRoleNames = super.getRuntimeRoleNames();
+        if ( runtimeRoleNames.contains( "Power User" ) ) {
+          return Arrays.asList( "Administrator", "Authenticated" );
+        }
+        return runtimeRoleNames;
+      }
+    };
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+
+    login( "Power User" );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+  }
+}
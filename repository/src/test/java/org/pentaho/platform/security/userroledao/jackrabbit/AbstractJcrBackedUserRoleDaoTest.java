@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.MockedStatic;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.platform.api.engine.security.userroledao.IPentahoRole;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
@@ -49,21 +50,31 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static junit.framework.TestCase.assertNull;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.nullable;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 /**
  * Tests for {@link org.pentaho.platform.security.userroledao.jackrabbit.AbstractJcrBackedUserRoleDao} Class is created
@@ -204,6 +215,48 @@ public class AbstractJcrBackedUserRoleDaoTest {
     }
   }
 
+  @Test
+  public void testMembershipSnapshotInvalidatedOnMembershipChanges() throws Exception {
+    ITenantedPrincipleNameResolver userResolver = identityResolver();
+    ITenantedPrincipleNameResolver roleResolver = identityResolver();
+    AbstractJcrBackedUserRoleDao dao = mock( AbstractJcrBackedUserRoleDao.class, withSettings()
+        .useConstructor( userResolver, roleResolver, "Authenticated", "Administrator", ADMIN_USER, null, null, null,
+            null, null, new ArrayList<String>(), new ArrayList<String>(), new NullUserCache() )
+        .defaultAnswer( CALLS_REAL_METHODS ) );
+    doReturn( null ).when( dao ).createUserHomeFolder( any(), any(), any() );
+
+    try ( MockedStatic<TenantUtils> tenantUtils = mockStatic( TenantUtils.class ) ) {
+      tenantUtils.when( () -> TenantUtils.isAccessibleTenant( any() ) ).thenReturn( true );
+
+      dao.createUser( adminSession, tenantMock, "membershipUser", "password", TEST_USER_DEC, new String[ 0 ] );
+      Map<String, List<String>> userRoleNames = dao.getUserRoleNames( adminSession, tenantMock );
+      assertThat( userRoleNames.get( "membershipUser" ), is( Collections.<String>emptyList() ) );
+      // nothing changed, so the snapshot is served again
+      assertSame( userRoleNames, dao.getUserRoleNames( adminSession, tenantMock ) );
+
+      IPentahoRole role = dao.createRole( adminSession, tenantMock, "membershipRole", "", new String[] {
+        "membershipUser" } );
+      assertThat( dao.getUserRoleNames( adminSession, tenantMock ).get( "membershipUser" ),
+          is( Arrays.asList( "membershipRole" ) ) );
+      assertThat( dao.getRoleMemberNames( adminSession, tenantMock ).get( "membershipRole" ),
+          is( Arrays.asList( "membershipUser" ) ) );
+
+      dao.deleteRole( adminSession, role );
+      assertFalse( dao.getRoleMemberNames( adminSession, tenantMock ).containsKey( "membershipRole" ) );
+      assertThat( dao.getUserRoleNames( adminSession, tenantMock ).get( "membershipUser" ),
+          is( Collections.<String>emptyList() ) );
+    }
+  }
+
+  private static ITenantedPrincipleNameResolver identityResolver() {
+    ITenantedPrincipleNameResolver resolver = mock( ITenantedPrincipleNameResolver.class );
+    when( resolver.getPrincipleId( nullable( ITenant.class ), nullable( String.class ) ) )
+        .thenAnswer( invocation -> invocation.getArgument( 1 ) );
+    when( resolver.getPrincipleName( nullable( String.class ) ) ).thenAnswer( invocation -> invocation.getArgument( 0 ) );
+    when( resolver.getTenant( nullable( String.class ) ) ).thenReturn( tenantMock );
+    return resolver;
+  }
+
   @Test
   public void testConvertToPentahoUserEnableCache() throws RepositoryException {
     AbstractJcrBackedUserRoleDao abstractJcrBackedUserRoleDaoMock = mock( AbstractJcrBackedUserRoleDao.class );